@@ -7,6 +7,7 @@ import org.sat4j.specs.TimeoutException;
 import RegexParser.RegexNode;
 import RegexParser.RegexParserProvider;
 import automata.sfa.SFA;
+import automata.sfa.SFACache;
 import benchmark.regexconverter.RegexConverter;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
@@ -27,6 +28,17 @@ public class SFAprovider {
 	public SFA<CharPred, Character> getSFA(){
 		return mySFA;
 	}
+
+	/**
+	 * A cache of the SFAs of regular expressions, which parses and converts
+	 * every regular expression once
+	 */
+	public static SFACache<CharPred, Character> newCache(final UnaryCharIntervalSolver solver, long maxFootprint){
+		return new SFACache<CharPred, Character>(solver, regex -> {
+			String[] str = {regex};
+			return RegexConverter.toSFA(RegexParserProvider.parse(str).get(0), solver);
+		}, maxFootprint);
+	}
 	
 	
 	private SFA<CharPred, Character> mySFA;
@@ -12,6 +12,8 @@ import benchmark.regexconverter.RegexConverter;
 import theory.BooleanAlgebra;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
+import strings.BoundedEditDistanceMatcher;
+import strings.EditDistanceRepair;
 import strings.EditDistanceStrToSFA;
 
 public class TestRegexCorrection {
@@ -38,10 +40,19 @@ public class TestRegexCorrection {
 								sb.append(c);
 							}
 							String sampleStr = sb.toString();
+							// built once per automaton, the timings only cover the queries
+							EditDistanceRepair repair = new EditDistanceRepair(sfa_comp, solver);
+							BoundedEditDistanceMatcher matcher = new BoundedEditDistanceMatcher(sfa_comp, solver, 2);
 							long startTime = System.nanoTime();
 							String resultStr = EditDistanceStrToSFA.getCorrectString(sfa_comp, sampleStr);
 							long endTime = System.nanoTime();
-							System.out.println(i++ + "[" + sampleStr + "]\t[" + resultStr + "]\t" + ((endTime - startTime) / (double)1000000000));
+							String repairStr = repair.repair(sampleStr);
+							long repairTime = System.nanoTime();
+							boolean matched = matcher.matches(sampleStr);
+							long matchTime = System.nanoTime();
+							System.out.println(i++ + "[" + sampleStr + "]\t[" + resultStr + "]\t" + ((endTime - startTime) / (double)1000000000)
+									+ "\t[" + repairStr + "]\t" + ((repairTime - endTime) / (double)1000000000)
+									+ "\t" + matched + "\t" + ((matchTime - repairTime) / (double)1000000000));
 						}
 						// Counter=0;
 					} catch (Exception e1) {
@@ -0,0 +1,128 @@
+package benchmark.regexconverter;
+
+import RegexParser.*;
+import logic.regex.DerivativeAutomaton;
+import logic.regex.Regex;
+import logic.regex.RegexFactory;
+import theory.characters.CharPred;
+import theory.characters.StdCharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates a parsed regex into a {@link Regex}, whose derivatives give a
+ * deterministic automaton built lazily. Unlike {@link SFAConstruction} no
+ * intermediate NFA is built, and bounded repetitions are kept as counters
+ * instead of being unfolded.
+ */
+public class DerivativeConstruction {
+
+    public static DerivativeAutomaton<CharPred, Character> toDerivativeAutomaton(FormulaNode phi,
+            UnaryCharIntervalSolver unarySolver) {
+        RegexFactory<CharPred, Character> factory = new RegexFactory<>();
+        return new DerivativeAutomaton<>(toRegex(phi, factory, unarySolver), factory, unarySolver);
+    }
+
+    public static Regex<CharPred, Character> toRegex(FormulaNode phi, RegexFactory<CharPred, Character> factory,
+            UnaryCharIntervalSolver unarySolver) {
+        if (phi instanceof PositiveLookaheadNode || phi instanceof NegativeLookaheadNode
+                || phi instanceof AtomicGroupNode || phi instanceof ModifierNode) {
+            throw new UnsupportedOperationException(phi.getClass().getSimpleName() + " is not a regular operator");
+
+        } else if (phi instanceof UnionNode) {
+            UnionNode cphi = (UnionNode) phi;
+            return factory.MkUnion(toRegex(cphi.getMyRegex1(), factory, unarySolver),
+                    toRegex(cphi.getMyRegex2(), factory, unarySolver));
+
+        } else if (phi instanceof ConcatenationNode) {
+            List<Regex<CharPred, Character>> concatenation = new ArrayList<>();
+            for (RegexNode node : ((ConcatenationNode) phi).getList())
+                concatenation.add(toRegex(node, factory, unarySolver));
+            return factory.MkConcat(concatenation);
+
+        } else if (phi instanceof DotNode) {
+            return factory.MkAtom(unarySolver.True());
+
+        } else if (phi instanceof AnchorNode) {
+            // the strings are matched whole, so an anchor only matches the
+            // empty string
+            return factory.Epsilon();
+
+        } else if (phi instanceof StarNode) {
+            return factory.MkStar(toRegex(((StarNode) phi).getMyRegex1(), factory, unarySolver));
+
+        } else if (phi instanceof PlusNode) {
+            return factory.MkPlus(toRegex(((PlusNode) phi).getMyRegex1(), factory, unarySolver));
+
+        } else if (phi instanceof OptionalNode) {
+            return factory.MkOptional(toRegex(((OptionalNode) phi).getMyRegex1(), factory, unarySolver));
+
+        } else if (phi instanceof NormalCharNode) {
+            return factory.MkAtom(new CharPred(((NormalCharNode) phi).getChar()));
+
+        } else if (phi instanceof EscapedCharNode) {
+            return factory.MkAtom(new CharPred(((EscapedCharNode) phi).getChar()));
+
+        } else if (phi instanceof MetaCharNode) {
+            return factory.MkAtom(getMetaCharPred(((MetaCharNode) phi).getChar(), unarySolver));
+
+        } else if (phi instanceof CharacterClassNode) {
+            return factory.MkAtom(getCharPred(((CharacterClassNode) phi).getIntervals(), unarySolver));
+
+        } else if (phi instanceof NotCharacterClassNode) {
+            return factory.MkAtom(
+                    unarySolver.MkNot(getCharPred(((NotCharacterClassNode) phi).getIntervals(), unarySolver)));
+
+        } else if (phi instanceof RepetitionNode) {
+            RepetitionNode cphi = (RepetitionNode) phi;
+            Regex<CharPred, Character> regex = toRegex(cphi.getMyRegex1(), factory, unarySolver);
+            if (cphi.getMode().equals("min"))
+                return factory.MkRepeat(regex, cphi.getMin(), cphi.getMin());
+            else if (cphi.getMode().equals("minToInfinite"))
+                return factory.MkRepeat(regex, cphi.getMin(), RegexFactory.UNBOUNDED);
+            else // minToMax
+                return factory.MkRepeat(regex, cphi.getMin(), cphi.getMax());
+        }
+
+        throw new UnsupportedOperationException("Wrong instance of phi " + phi.getClass().getSimpleName());
+    }
+
+    // The union of the intervals of a character class
+    private static CharPred getCharPred(List<IntervalNode> intervals, UnaryCharIntervalSolver unarySolver) {
+        CharPred predicate = unarySolver.False();
+        for (IntervalNode interval : intervals)
+            predicate = unarySolver.MkOr(predicate, RegexConverter.getCharPred(interval, unarySolver));
+        return predicate;
+    }
+
+    // The characters of a meta character, as in SFAConstruction
+    private static CharPred getMetaCharPred(char meta, UnaryCharIntervalSolver unarySolver) {
+        switch (meta) {
+        case 't':
+            return new CharPred('\t');
+        case 'n':
+            return new CharPred('\n');
+        case 'r':
+            return new CharPred('\r');
+        case 'f':
+            return new CharPred('\f');
+        case 'd':
+            return StdCharPred.NUM;
+        case 'D':
+            return unarySolver.MkNot(StdCharPred.NUM);
+        case 's':
+            return StdCharPred.SPACES;
+        case 'S':
+            return unarySolver.MkNot(StdCharPred.SPACES);
+        case 'w':
+            return StdCharPred.WORD;
+        case 'W':
+            return unarySolver.MkNot(StdCharPred.WORD);
+        default:
+            // word boundaries and \v
+            throw new UnsupportedOperationException("Unsupported meta character \\" + meta);
+        }
+    }
+}
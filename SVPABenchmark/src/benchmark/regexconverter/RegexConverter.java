@@ -3,8 +3,11 @@ package benchmark.regexconverter;
 
 import RegexParser.*;
 import automata.AutomataException;
+import automata.csfa.CSFA;
 import automata.safa.*;
 import automata.sfa.SFA;
+import logic.regex.DerivativeAutomaton;
+import logic.regex.RegexFactory;
 import org.sat4j.specs.TimeoutException;
 
 import theory.characters.CharPred;
@@ -30,6 +33,15 @@ public class RegexConverter {
         return SFAConstruction.toSFA(phi, unarySolver);
     }
 
+    public static DerivativeAutomaton<CharPred, Character> toDerivativeAutomaton(FormulaNode phi,
+                                                                                UnaryCharIntervalSolver unarySolver) {
+        return DerivativeConstruction.toDerivativeAutomaton(phi, unarySolver);
+    }
+
+    public static CSFA<CharPred, Character> toCSFA(FormulaNode phi, UnaryCharIntervalSolver unarySolver) {
+        return DerivativeConstruction.toRegex(phi, new RegexFactory<>(), unarySolver).getCSFA();
+    }
+
     public static CharPred getCharPred(IntervalNode node, UnaryCharIntervalSolver unarySolver) {
         CharPred predicate = null;
         if (node.getMode().equals("single")) {
@@ -0,0 +1,58 @@
+/**
+ * Cached membership oracle adapter
+ */
+package algebralearning.oracles;
+
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import utilities.QueryCache;
+
+/**
+ * Membership oracle over sequences answering repeated queries from a QueryCache
+ * and forwarding only the unknown sequences to the wrapped oracle. The cache can
+ * be shared with the oracles of other learners.
+ * 
+ * @param <D> Domain of the symbols of the sequences
+ */
+public class CachedMembershipOracle <D> extends MembershipOracle <List<D>> {
+
+	private final MembershipOracle <List<D>> oracle;
+	private final QueryCache <D> cache;
+	
+	/**
+	 * @param oracle The oracle answering the unknown queries.
+	 * @param cache The cache storing the answers.
+	 */
+	public CachedMembershipOracle(MembershipOracle <List<D>> oracle, QueryCache <D> cache) {
+		this.oracle = oracle;
+		this.cache = cache;
+	}
+	
+	/**
+	 * @return the cache storing the answers.
+	 */
+	public QueryCache <D> getCache() {
+		return cache;
+	}
+	
+	public boolean query(List<D> input) throws TimeoutException {
+		Boolean answer = cache.lookup(input);
+		if (answer == null) {
+			answer = oracle.query(input);
+			cache.put(input, answer);
+		}
+		return answer;
+	}
+	
+	@Override
+	public List<Boolean> queryAll(List<List<D>> inputs) throws TimeoutException {
+		return cache.answerAll(inputs, new QueryCache.Batch<D>() {
+			public List<Boolean> answer(List<List<D>> missing) throws TimeoutException {
+				return oracle.queryAll(missing);
+			}
+		});
+	}
+	
+}
@@ -5,6 +5,8 @@
 package algebralearning.oracles;
 
 
+import java.util.ArrayList;
+import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -23,4 +25,18 @@ public abstract class MembershipOracle <D> {
 	 */
 	abstract public boolean query(D input) throws TimeoutException;
 	
+	/**
+	 * Return the results of a batch of membership queries. The default implementation
+	 * answers them one at a time; oracles that can answer a batch at once override it.
+	 * 
+	 * @param inputs The inputs to the membership queries.
+	 * @return the value of the target function on each input, in the order of inputs.
+	 */
+	public List<Boolean> queryAll(List<D> inputs) throws TimeoutException {
+		List<Boolean> results = new ArrayList<Boolean>(inputs.size());
+		for (D input : inputs)
+			results.add(query(input));
+		return results;
+	}
+	
 }
@@ -0,0 +1,50 @@
+/**
+ * Parallel membership oracle adapter
+ */
+package algebralearning.oracles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.sat4j.specs.TimeoutException;
+
+import utilities.ParallelQueries;
+
+/**
+ * Membership oracle answering batches of queries concurrently on an executor.
+ * Every query is delegated to an oracle that must be safe to call from several threads.
+ * 
+ * @param <D> Domain of the underlying Boolean algebra
+ */
+public class ParallelMembershipOracle <D> extends MembershipOracle <D> {
+
+	private final MembershipOracle <D> oracle;
+	private final ExecutorService executor;
+	
+	/**
+	 * @param oracle The oracle answering each query.
+	 * @param executor The executor running the queries of a batch.
+	 */
+	public ParallelMembershipOracle(MembershipOracle <D> oracle, ExecutorService executor) {
+		this.oracle = oracle;
+		this.executor = executor;
+	}
+	
+	public boolean query(D input) throws TimeoutException {
+		return oracle.query(input);
+	}
+	
+	@Override
+	public List<Boolean> queryAll(List<D> inputs) throws TimeoutException {
+		List<ParallelQueries.Query> queries = new ArrayList<ParallelQueries.Query>(inputs.size());
+		for (final D input : inputs)
+			queries.add(new ParallelQueries.Query() {
+				public boolean answer() throws TimeoutException {
+					return oracle.query(input);
+				}
+			});
+		return ParallelQueries.answerAll(executor, queries);
+	}
+	
+}
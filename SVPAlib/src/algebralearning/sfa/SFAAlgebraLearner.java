@@ -377,12 +377,11 @@ public class SFAAlgebraLearner <P,D> extends AlgebraLearner <SFA <P,D>, List <D>
     		}
     		// Determine Final States 
     		List <Integer> finalStates = new LinkedList <Integer>();
-    		Integer stateId = 0;
-    		for (List <D>accessString : tree.getLeafs()) {    			
-    			if (membOracle.query(accessString)) {
+    		List <Boolean> accepted = membOracle.queryAll(tree.getLeafs());
+    		for (Integer stateId = 0; stateId < accepted.size(); stateId ++) {
+    			if (accepted.get(stateId)) {
     				finalStates.add(stateId);
     			}
-    			stateId ++;
     		}
     		// Construct the final SFA model and return a fresh copy back to the caller.
     		model = SFA.MkSFA(transitions, 0, finalStates, ba, false, false, true);
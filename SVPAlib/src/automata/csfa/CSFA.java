@@ -0,0 +1,267 @@
+package automata.csfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebra;
+
+/**
+ * A counting symbolic automaton: an SFA whose counting states count the
+ * iterations of their loop, between a minimum and a maximum. A counting state
+ * can only be left, or accept, once its counter reaches its minimum, and its
+ * loop can only be taken while the counter is below its maximum. This gives a
+ * bounded repetition x{n,m} of a predicate one state instead of m.
+ *
+ * A counting state may be reached by several runs with different counter
+ * values, so the matcher keeps for every state the set of its counter values
+ * as a bitset, which an increment shifts.
+ */
+public class CSFA<P, S> {
+
+	/**
+	 * The maximum of a counter that is not bounded: once the counter reaches
+	 * its minimum it stays there
+	 */
+	public static final int UNBOUNDED = -1;
+
+	/**
+	 * The bounds of the counter of a counting state
+	 */
+	public static class Counter {
+		public final int min, max;
+
+		public Counter(int min, int max) {
+			if (min < 1 || (max != UNBOUNDED && max < min))
+				throw new IllegalArgumentException("Invalid counter bounds [" + min + "," + max + "]");
+			this.min = min;
+			this.max = max;
+		}
+
+		// The largest value the counter keeps
+		int cap() {
+			return max == UNBOUNDED ? min : max;
+		}
+
+		// The values after an increment, dropping those above the maximum
+		BitSet increment(BitSet values) {
+			long[] words = values.toLongArray();
+			long carry = 0;
+			for (int i = 0; i < words.length; i++) {
+				long next = words[i] >>> 63;
+				words[i] = (words[i] << 1) | carry;
+				carry = next;
+			}
+			BitSet incremented = BitSet.valueOf(words);
+			if (carry != 0)
+				incremented.set(words.length * 64);
+
+			int cap = cap();
+			if (incremented.nextSetBit(cap + 1) >= 0) {
+				incremented.clear(cap + 1, incremented.length());
+				if (max == UNBOUNDED)
+					incremented.set(cap);
+			}
+			return incremented;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + min + "," + (max == UNBOUNDED ? "" : max) + "]";
+		}
+	}
+
+	private Integer initialState;
+	private Set<Integer> states;
+	private Set<Integer> finalStates;
+	private Map<Integer, Counter> counters;
+	private Map<Integer, List<CSFAMove<P, S>>> movesFrom;
+	private int moveCount;
+
+	private CSFA() {
+	}
+
+	/**
+	 * Creates a CSFA whose counting states are the keys of
+	 * <code>counters</code>
+	 */
+	public static <A, B> CSFA<A, B> MkCSFA(Collection<CSFAMove<A, B>> moves, Integer initialState,
+			Collection<Integer> finalStates, Map<Integer, Counter> counters) {
+		CSFA<A, B> aut = new CSFA<A, B>();
+		aut.initialState = initialState;
+		aut.finalStates = new HashSet<>(finalStates);
+		aut.counters = new HashMap<>(counters);
+		aut.states = new HashSet<>();
+		aut.states.add(initialState);
+		aut.states.addAll(finalStates);
+		aut.states.addAll(counters.keySet());
+		aut.movesFrom = new HashMap<>();
+		for (CSFAMove<A, B> move : moves) {
+			if (move.increment && !counters.containsKey(move.from))
+				throw new IllegalArgumentException("Increment of state " + move.from + ", which has no counter");
+			aut.states.add(move.from);
+			aut.states.add(move.to);
+			aut.movesFrom.computeIfAbsent(move.from, s -> new ArrayList<>()).add(move);
+			aut.moveCount++;
+		}
+		return aut;
+	}
+
+	/**
+	 * @return true if the CSFA accepts <code>input</code>
+	 */
+	public boolean accepts(List<S> input, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		Map<Integer, BitSet> configuration = new HashMap<>();
+		configuration.put(initialState, entry(initialState));
+		for (S a : input) {
+			configuration = step(configuration, a, ba);
+			if (configuration.isEmpty())
+				return false;
+		}
+		for (Map.Entry<Integer, BitSet> state : configuration.entrySet())
+			if (finalStates.contains(state.getKey()) && canExit(state.getKey(), state.getValue()))
+				return true;
+		return false;
+	}
+
+	// The states reached by reading a from the configuration, with their
+	// counter values
+	private Map<Integer, BitSet> step(Map<Integer, BitSet> configuration, S a, BooleanAlgebra<P, S> ba)
+			throws TimeoutException {
+		Map<Integer, BitSet> next = new HashMap<>();
+		for (Map.Entry<Integer, BitSet> state : configuration.entrySet()) {
+			Integer from = state.getKey();
+			BitSet values = state.getValue();
+			boolean canExit = canExit(from, values);
+			for (CSFAMove<P, S> move : getMovesFrom(from)) {
+				if (!(move.increment || canExit) || !ba.HasModel(move.guard, a))
+					continue;
+				BitSet reached = move.increment ? counters.get(from).increment(values) : entry(move.to);
+				if (reached.isEmpty())
+					continue;
+				BitSet old = next.get(move.to);
+				if (old == null)
+					next.put(move.to, reached);
+				else
+					old.or(reached);
+			}
+		}
+		return next;
+	}
+
+	// The counter values of a state when it is entered: 1 for a counting
+	// state, and 0 standing for no counter otherwise
+	private BitSet entry(Integer state) {
+		BitSet values = new BitSet();
+		values.set(counters.containsKey(state) ? 1 : 0);
+		return values;
+	}
+
+	// Whether one of the counter values lets the state be left
+	private boolean canExit(Integer state, BitSet values) {
+		Counter counter = counters.get(state);
+		return counter == null || values.nextSetBit(counter.min) >= 0;
+	}
+
+	/**
+	 * @return an SFA equivalent to the CSFA, with a state for every value of
+	 *         every counter
+	 */
+	public SFA<P, S> toSFA(BooleanAlgebra<P, S> ba) throws TimeoutException {
+		// the first SFA state of every CSFA state, followed by the states of
+		// its other counter values
+		Map<Integer, Integer> firstId = new HashMap<>();
+		int next = 0;
+		for (Integer state : states) {
+			firstId.put(state, next);
+			Counter counter = counters.get(state);
+			next += counter == null ? 1 : counter.cap();
+		}
+
+		Collection<SFAMove<P, S>> transitions = new LinkedList<>();
+		Collection<Integer> finals = new HashSet<>();
+		for (Integer state : states) {
+			Counter counter = counters.get(state);
+			int first = firstId.get(state);
+			int last = counter == null ? first : first + counter.cap() - 1;
+			// the states of the counter values that let it be left
+			int exit = counter == null ? first : first + counter.min - 1;
+
+			if (finalStates.contains(state))
+				for (int id = exit; id <= last; id++)
+					finals.add(id);
+			for (CSFAMove<P, S> move : getMovesFrom(state)) {
+				if (move.increment) {
+					for (int id = first; id < last; id++)
+						transitions.add(new SFAInputMove<P, S>(id, id + 1, move.guard));
+					if (counter.max == UNBOUNDED)
+						transitions.add(new SFAInputMove<P, S>(last, last, move.guard));
+				} else
+					for (int id = exit; id <= last; id++)
+						transitions.add(new SFAInputMove<P, S>(id, firstId.get(move.to), move.guard));
+			}
+		}
+		return SFA.MkSFA(transitions, firstId.get(initialState), finals, ba, true, false);
+	}
+
+	/**
+	 * @return the moves from <code>state</code>
+	 */
+	public List<CSFAMove<P, S>> getMovesFrom(Integer state) {
+		List<CSFAMove<P, S>> moves = movesFrom.get(state);
+		return moves == null ? new ArrayList<>() : moves;
+	}
+
+	/**
+	 * @return the counter of <code>state</code>, null if it is not a counting
+	 *         state
+	 */
+	public Counter getCounter(Integer state) {
+		return counters.get(state);
+	}
+
+	public Integer getInitialState() {
+		return initialState;
+	}
+
+	public Collection<Integer> getFinalStates() {
+		return finalStates;
+	}
+
+	public Collection<Integer> getStates() {
+		return states;
+	}
+
+	public int stateCount() {
+		return states.size();
+	}
+
+	public int getTransitionCount() {
+		return moveCount;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Automaton: " + moveCount + " transitions, " + states.size() + " states\n");
+		sb.append("Initial State \n" + initialState + "\n");
+		sb.append("Final States \n" + finalStates + "\n");
+		sb.append("Counters \n" + counters + "\n");
+		sb.append("Transitions \n");
+		for (Integer state : states)
+			for (CSFAMove<P, S> move : getMovesFrom(state))
+				sb.append(move + "\n");
+		return sb.toString();
+	}
+}
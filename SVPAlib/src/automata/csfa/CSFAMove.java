@@ -0,0 +1,35 @@
+package automata.csfa;
+
+/**
+ * A move of a {@link CSFA} reading a character satisfying
+ * <code>guard</code>. An increment is the loop of a counting state, which
+ * increments its counter. Any other move leaves <code>from</code>, which
+ * requires its counter to reach its minimum if it is a counting state, and
+ * enters <code>to</code>, which sets its counter to 1 if it is a counting
+ * state.
+ */
+public class CSFAMove<P, S> {
+
+	public final Integer from;
+	public final Integer to;
+	public final P guard;
+	public final boolean increment;
+
+	public CSFAMove(Integer from, Integer to, P guard) {
+		this(from, to, guard, false);
+	}
+
+	public CSFAMove(Integer from, Integer to, P guard, boolean increment) {
+		if (increment && !from.equals(to))
+			throw new IllegalArgumentException("An increment must be a loop");
+		this.from = from;
+		this.to = to;
+		this.guard = guard;
+		this.increment = increment;
+	}
+
+	@Override
+	public String toString() {
+		return "C: " + from + " -" + guard + (increment ? "/++" : "") + "-> " + to;
+	}
+}
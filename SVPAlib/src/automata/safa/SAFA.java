@@ -187,7 +187,7 @@ public class SAFA<P, S> {
 
         //Hack
         aut.maxStateId = 0;
-        for (int state : aut.finalStates)
+        for (int state : aut.states)
             aut.maxStateId = Integer.max(aut.maxStateId, state);
 
         for (SAFAMove<A, B> t : transitions)
@@ -850,6 +850,164 @@ public class SAFA<P, S> {
         return isEquivalent(aut, getEmptySAFA(ba), ba, boolexpr, timeout).getFirst();
     }
 
+    /**
+     * @return a string accepted by the SAFA, null if it is empty
+     * @throws TimeoutException
+     */
+    public List<S> getWitness(BooleanAlgebra<P, S> ba) throws TimeoutException {
+        return getWitness(ba, Long.MAX_VALUE);
+    }
+
+    /**
+     * Looks for a string accepted by the SAFA exploring its configurations,
+     * the sets of states that must all accept the rest of the string, depth
+     * first from the initial state, and stops at the first accepting one. The
+     * successors of a configuration are enumerated one at a time, so the
+     * disjunctive normal forms of the moves are never built, and the
+     * configurations containing a visited one are skipped.
+     *
+     * @return a string accepted by the SAFA, null if it is empty
+     * @throws TimeoutException
+     */
+    public List<S> getWitness(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+        long deadline = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        SAFA<P, S> aut = isEpsilonFree() ? this : removeEpsilonMovesFrom(this, ba);
+
+        Set<Integer> accepting = new HashSet<>(aut.finalStates);
+        accepting.addAll(aut.lookaheadFinalStates);
+
+        // the configurations on the current path, starting from the choice
+        // of a disjunct of the initial state. A configuration containing a
+        // visited one accepts fewer strings and is not explored.
+        List<Set<Integer>> visited = new ArrayList<>();
+        LinkedList<Successors<P, S>> path = new LinkedList<>();
+        path.add(new Successors<>(aut, ba, null, Collections.emptyList(), aut.initialState));
+        while (!path.isEmpty()) {
+            Pair<P, Set<Integer>> next = path.getLast().next(deadline);
+            if (next == null) {
+                path.removeLast();
+                continue;
+            }
+
+            if (accepting.containsAll(next.second)) {
+                LinkedList<S> witness = new LinkedList<>();
+                for (Successors<P, S> step : path)
+                    if (step.guard != null)
+                        witness.add(ba.generateWitness(step.guard));
+                if (next.first != null)
+                    witness.add(ba.generateWitness(next.first));
+                return witness;
+            }
+            if (visited.stream().noneMatch(next.second::containsAll)) {
+                visited.add(next.second);
+                path.add(new Successors<>(aut, ba, next.first, next.second, null));
+            }
+        }
+        return null;
+    }
+
+    // Enumerates the successors of a configuration, with the guards reading
+    // to them: every state takes one of its moves and one disjunct of every
+    // target is picked. The choices left to try are kept on a stack.
+    private static class Successors<P, S> {
+        // the guard read to reach the configuration, null for the initial one
+        final P guard;
+        private final SAFA<P, S> aut;
+        private final BooleanAlgebra<P, S> ba;
+        private final List<Integer> states;
+        private final LinkedList<Choice<P>> choices = new LinkedList<>();
+
+        Successors(SAFA<P, S> aut, BooleanAlgebra<P, S> ba, P guard, Collection<Integer> states,
+                   PositiveBooleanExpression initialState) {
+            this.guard = guard;
+            this.aut = aut;
+            this.ba = ba;
+            this.states = new ArrayList<>(states);
+            if (initialState == null)
+                choices.add(new Choice<>(0, ba.True(), null, new HashSet<>()));
+            else
+                choices.add(new Choice<>(this.states.size(), null, new Goals(initialState, null), new HashSet<>()));
+        }
+
+        // The next successor, null if there are no more
+        Pair<P, Set<Integer>> next(long deadline) throws TimeoutException {
+            nextChoice:
+            while (!choices.isEmpty()) {
+                Choice<P> choice = choices.removeLast();
+                int index = choice.index;
+                P guard = choice.guard;
+                Goals goals = choice.goals;
+                Set<Integer> conf = choice.conf;
+                while (true) {
+                    if (System.currentTimeMillis() > deadline)
+                        throw new TimeoutException();
+
+                    if (goals != null) {
+                        PositiveBooleanExpression goal = goals.goal;
+                        goals = goals.next;
+                        if (goal instanceof PositiveId)
+                            conf.add(((PositiveId) goal).state);
+                        else if (goal instanceof PositiveAnd)
+                            goals = new Goals(((PositiveAnd) goal).left, new Goals(((PositiveAnd) goal).right, goals));
+                        else if (goal instanceof PositiveOr) {
+                            choices.add(new Choice<>(index, guard, new Goals(((PositiveOr) goal).right, goals),
+                                    new HashSet<>(conf)));
+                            goals = new Goals(((PositiveOr) goal).left, goals);
+                        } else if (goal instanceof PositiveFalse)
+                            continue nextChoice;
+                    } else if (index < states.size()) {
+                        P taken = null;
+                        PositiveBooleanExpression to = null;
+                        for (SAFAInputMove<P, S> move : aut.getInputMovesFrom(states.get(index))) {
+                            P conj = ba.MkAnd(guard, move.guard);
+                            if (!ba.IsSatisfiable(conj))
+                                continue;
+                            if (taken == null) {
+                                taken = conj;
+                                to = move.to;
+                            } else
+                                choices.add(new Choice<>(index + 1, conj, new Goals(move.to, null), new HashSet<>(conf)));
+                        }
+                        if (taken == null)
+                            continue nextChoice;
+                        index++;
+                        guard = taken;
+                        goals = new Goals(to, null);
+                    } else
+                        return new Pair<>(guard, conf);
+                }
+            }
+            return null;
+        }
+    }
+
+    // A partial successor: the moves of the states before index are taken,
+    // and the goals are left to add to conf
+    private static class Choice<P> {
+        final int index;
+        final P guard;
+        final Goals goals;
+        final Set<Integer> conf;
+
+        Choice(int index, P guard, Goals goals, Set<Integer> conf) {
+            this.index = index;
+            this.guard = guard;
+            this.goals = goals;
+            this.conf = conf;
+        }
+    }
+
+    // An immutable list of expressions, shared by the choices
+    private static class Goals {
+        final PositiveBooleanExpression goal;
+        final Goals next;
+
+        Goals(PositiveBooleanExpression goal, Goals next) {
+            this.goal = goal;
+            this.next = next;
+        }
+    }
+
     /**
      * Checks whether laut and raut are equivalent using bisimulation up to
      * congruence.
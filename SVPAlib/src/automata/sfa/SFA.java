@@ -1187,12 +1187,14 @@ public class SFA<P, S> extends Automaton<P, S> {
 		reachedStates.put(detInitialState, 0);
 		toVisitStates.add(detInitialState);
 
-		long availableMemory = Runtime.getRuntime().totalMemory();
+		// the heap can grow up to its maximum size
+		Runtime runtime = Runtime.getRuntime();
+		long availableMemory = runtime.maxMemory();
 
 		// Explore the automaton until no new subset states can be reached
 		while (!toVisitStates.isEmpty()) {
 
-			long freeMemory = Runtime.getRuntime().freeMemory();
+			long freeMemory = availableMemory - runtime.totalMemory() + runtime.freeMemory();
 			if (freeMemory < 0.1 * availableMemory)
 				throw new TimeoutException("Out of memory");
 
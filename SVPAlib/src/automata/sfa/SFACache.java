@@ -0,0 +1,443 @@
+package automata.sfa;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sat4j.specs.TimeoutException;
+
+import serialization.AutomatonSerializer;
+import theory.BooleanAlgebra;
+
+/**
+ * A cache of the SFAs compiled from sources, such as regular expressions, and
+ * of the results of the operations applied to them. An entry is identified by
+ * a {@link Key}: the source it is compiled from followed by the operations
+ * applied to it, so that the same pipeline is only run once. Computing an
+ * entry goes through the cache for the entries it is computed from.
+ *
+ * The cache can be used by several threads: concurrent requests of an entry
+ * that is not cached wait for a single computation. The SFAs are kept while
+ * their estimated footprint fits in the bound of the cache, evicting the least
+ * recently used ones, and can also be saved in a directory, which is looked up
+ * before computing an entry that is not in memory. The SFAs returned are
+ * shared and must not be modified.
+ *
+ * The Boolean algebra is used by all the threads building entries, so it must
+ * be thread-safe if several threads use the cache.
+ */
+public class SFACache<P, S> {
+
+	/**
+	 * Compiles a source, such as a regular expression, to an SFA
+	 */
+	public interface Compiler<P, S> {
+		SFA<P, S> compile(String source) throws TimeoutException;
+	}
+
+	// The operations of a pipeline
+	private enum Operation {
+		DETERMINIZE, MINIMIZE, COMPLEMENT, MKTOTAL, INTERSECTION, UNION, MINUS, CONCATENATION
+	}
+
+	/**
+	 * Identifies an SFA by the source it is compiled from and the operations
+	 * applied to it
+	 */
+	public static final class Key {
+		// the source of a compiled SFA, null for the result of an operation
+		private final String source;
+		// the input and the argument of the operation
+		private final Key input;
+		private final Operation operation;
+		private final Key argument;
+		private final int hash;
+
+		private Key(String source, Key input, Operation operation, Key argument) {
+			this.source = source;
+			this.input = input;
+			this.operation = operation;
+			this.argument = argument;
+			this.hash = Objects.hash(source, input, operation, argument);
+		}
+
+		/**
+		 * The SFA compiled from <code>source</code>
+		 */
+		public static Key of(String source) {
+			return new Key(Objects.requireNonNull(source), null, null, null);
+		}
+
+		public Key determinize() {
+			return new Key(null, this, Operation.DETERMINIZE, null);
+		}
+
+		public Key minimize() {
+			return new Key(null, this, Operation.MINIMIZE, null);
+		}
+
+		public Key complement() {
+			return new Key(null, this, Operation.COMPLEMENT, null);
+		}
+
+		public Key mkTotal() {
+			return new Key(null, this, Operation.MKTOTAL, null);
+		}
+
+		public Key intersectionWith(Key other) {
+			return new Key(null, this, Operation.INTERSECTION, other);
+		}
+
+		public Key unionWith(Key other) {
+			return new Key(null, this, Operation.UNION, other);
+		}
+
+		public Key minus(Key other) {
+			return new Key(null, this, Operation.MINUS, other);
+		}
+
+		public Key concatenateWith(Key other) {
+			return new Key(null, this, Operation.CONCATENATION, other);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && Objects.equals(source, other.source) && Objects.equals(input, other.input)
+					&& operation == other.operation && Objects.equals(argument, other.argument);
+		}
+
+		/**
+		 * The pipeline, as the length of the source followed by the source and
+		 * the operations, which identifies the key
+		 */
+		@Override
+		public String toString() {
+			if (source != null)
+				return source.length() + ":" + source;
+			String name = input + "." + operation.name().toLowerCase();
+			return argument == null ? name : name + "(" + argument + ")";
+		}
+	}
+
+	private final BooleanAlgebra<P, S> ba;
+	private final Compiler<P, S> compiler;
+	private final long maxFootprint;
+
+	// the entries in memory, from the least recently used, and their total
+	// estimated footprint, guarded by this
+	private final LinkedHashMap<Key, SFA<P, S>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long footprint;
+
+	// the entries being computed
+	private final ConcurrentHashMap<Key, FutureTask<SFA<P, S>>> inFlight = new ConcurrentHashMap<>();
+
+	// the second tier
+	private File directory;
+	private AutomatonSerializer<P, ?, S> serializer;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong sharedBuilds = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong diskErrors = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * A cache of the SFAs compiled by <code>compiler</code>, keeping SFAs in
+	 * memory up to a total estimated footprint of <code>maxFootprint</code>
+	 * bytes
+	 */
+	public SFACache(BooleanAlgebra<P, S> ba, Compiler<P, S> compiler, long maxFootprint) {
+		this.ba = ba;
+		this.compiler = compiler;
+		this.maxFootprint = maxFootprint;
+	}
+
+	/**
+	 * Saves the SFAs that are computed in <code>directory</code> with
+	 * <code>serializer</code>, and looks them up there before computing them
+	 */
+	public synchronized void setDiskTier(File directory, AutomatonSerializer<P, ?, S> serializer) {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IllegalArgumentException("Cannot create the directory " + directory);
+		this.directory = directory;
+		this.serializer = serializer;
+	}
+
+	/**
+	 * @return the SFA compiled from <code>source</code>
+	 */
+	public SFA<P, S> get(String source) throws TimeoutException {
+		return get(Key.of(source));
+	}
+
+	/**
+	 * @return the SFA identified by <code>key</code>, computed if it is not
+	 *         cached
+	 */
+	public SFA<P, S> get(Key key) throws TimeoutException {
+		synchronized (this) {
+			SFA<P, S> cached = entries.get(key);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached;
+			}
+		}
+
+		FutureTask<SFA<P, S>> task = new FutureTask<>(() -> build(key));
+		FutureTask<SFA<P, S>> running = inFlight.putIfAbsent(key, task);
+		if (running == null) {
+			misses.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+			}
+		} else {
+			sharedBuilds.incrementAndGet();
+			task = running;
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while waiting for " + key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TimeoutException)
+				throw (TimeoutException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	// Loads or computes the SFA of key and caches it
+	private SFA<P, S> build(Key key) throws TimeoutException {
+		// the entry may have been added since it was looked up
+		synchronized (this) {
+			SFA<P, S> cached = entries.get(key);
+			if (cached != null)
+				return cached;
+		}
+
+		File file = file(key);
+		SFA<P, S> sfa = file == null ? null : load(file);
+		if (sfa != null)
+			diskHits.incrementAndGet();
+		else {
+			sfa = compute(key);
+			if (file != null)
+				save(sfa, file);
+		}
+		put(key, sfa);
+		return sfa;
+	}
+
+	private SFA<P, S> compute(Key key) throws TimeoutException {
+		if (key.source != null)
+			return compiler.compile(key.source);
+
+		SFA<P, S> input = get(key.input);
+		switch (key.operation) {
+		case DETERMINIZE:
+			return input.determinize(ba);
+		case MINIMIZE:
+			return input.minimize(ba);
+		case COMPLEMENT:
+			return input.complement(ba);
+		case MKTOTAL:
+			return input.mkTotal(ba);
+		case INTERSECTION:
+			return input.intersectionWith(get(key.argument), ba);
+		case UNION:
+			return input.unionWith(get(key.argument), ba);
+		case MINUS:
+			return input.minus(get(key.argument), ba);
+		default:
+			return input.concatenateWith(get(key.argument), ba);
+		}
+	}
+
+	// Adds an entry, evicting the least recently used ones that no longer
+	// fit
+	private synchronized void put(Key key, SFA<P, S> sfa) {
+		long size = estimateFootprint(sfa);
+		if (size > maxFootprint)
+			return;
+		SFA<P, S> old = entries.put(key, sfa);
+		if (old != null)
+			footprint -= estimateFootprint(old);
+		footprint += size;
+
+		Iterator<Map.Entry<Key, SFA<P, S>>> lru = entries.entrySet().iterator();
+		while (footprint > maxFootprint) {
+			Map.Entry<Key, SFA<P, S>> eldest = lru.next();
+			footprint -= estimateFootprint(eldest.getValue());
+			lru.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return an estimate of the memory used by <code>sfa</code>, in bytes
+	 */
+	public static long estimateFootprint(SFA<?, ?> sfa) {
+		// the objects of the automaton, then a state in the state set and the
+		// maps of moves, and a move with its guard in two maps
+		return 256L + 96L * sfa.stateCount() + 128L * sfa.getTransitionCount();
+	}
+
+	// ------------------------------------------------------
+	// Second tier
+	// ------------------------------------------------------
+
+	// The file of key in the directory, named by a hash of the key
+	private synchronized File file(Key key) {
+		if (directory == null)
+			return null;
+		try {
+			StringBuilder name = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8)))
+				name.append(String.format("%02x", b));
+			return new File(directory, name.append(".sfa").toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// The SFA saved in file, null if there is none or it cannot be read
+	private SFA<P, S> load(File file) throws TimeoutException {
+		if (!file.isFile())
+			return null;
+		try {
+			return serializer.readSFA(AutomatonSerializer.map(file), ba);
+		} catch (IOException | RuntimeException e) {
+			// a corrupt file can also fail in the codec or in building the SFA
+			diskErrors.incrementAndGet();
+			return null;
+		}
+	}
+
+	// Saves sfa to a temporary file first, so that a file that exists is
+	// complete
+	private void save(SFA<P, S> sfa, File file) {
+		File temporary = null;
+		try {
+			temporary = File.createTempFile("sfa", ".tmp", file.getParentFile());
+			try (OutputStream out = new FileOutputStream(temporary)) {
+				serializer.write(sfa, out);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			diskErrors.incrementAndGet();
+			if (temporary != null)
+				temporary.delete();
+		}
+	}
+
+	// ------------------------------------------------------
+	// Metrics
+	// ------------------------------------------------------
+
+	/**
+	 * @return the number of requests answered from memory
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that loaded or computed their SFA
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of requests that waited for the SFA another request
+	 *         was loading or computing
+	 */
+	public long getSharedBuildCount() {
+		return sharedBuilds.get();
+	}
+
+	/**
+	 * @return the number of misses answered from the directory
+	 */
+	public long getDiskHitCount() {
+		return diskHits.get();
+	}
+
+	/**
+	 * @return the number of files of the directory that could not be read or
+	 *         written
+	 */
+	public long getDiskErrorCount() {
+		return diskErrors.get();
+	}
+
+	/**
+	 * @return the number of SFAs evicted from memory
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the estimated footprint of the SFAs in memory, in bytes
+	 */
+	public synchronized long getFootprint() {
+		return footprint;
+	}
+
+	/**
+	 * @return the number of SFAs in memory
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Removes all the SFAs from memory
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		footprint = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d SFAs (%d bytes), %d hits, %d misses (%d from disk), %d shared, %d evictions",
+				size(), getFootprint(), getHitCount(), getMissCount(), getDiskHitCount(), getSharedBuildCount(),
+				getEvictionCount());
+	}
+}
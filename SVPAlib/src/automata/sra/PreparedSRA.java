@@ -0,0 +1,897 @@
+package automata.sra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * An SRA prepared for repeated decision procedures. The single-valued form,
+ * its completion, the predicates and the minterm tables are computed at most
+ * once and shared by every emptiness, inclusion, equivalence and simulation
+ * query issued against this object.
+ *
+ * Register abstractions are encoded as arrays of minterm indices, interned per
+ * minterm table, so normalised states hash and compare in time linear in the
+ * number of registers and never allocate a <code>HashMap</code>.
+ *
+ * @param <P> set of predicates over the domain S
+ * @param <S> domain of the automaton alphabet
+ */
+public class PreparedSRA<P, S> {
+
+	private final SRA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+
+	private final NormForm<P, S> singleValued;
+	private NormForm<P, S> completed;
+	private Boolean isEmpty;
+
+	/**
+	 * Prepares <code>aut</code> by computing its single-valued form; the
+	 * completion and the minterm tables are computed on first use
+	 *
+	 * @throws TimeoutException
+	 */
+	PreparedSRA(SRA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		this.aut = aut;
+		this.ba = ba;
+
+		SRA<P, S> svAut = aut.isSingleValued ? aut : aut.toSingleValuedSRA(ba, timeout);
+		singleValued = new NormForm<>(svAut, ba);
+	}
+
+	/**
+	 * @return the automaton this object was prepared from
+	 */
+	public SRA<P, S> getAutomaton() {
+		return aut;
+	}
+
+	/**
+	 * @return the single-valued automaton used by the decision procedures
+	 */
+	public SRA<P, S> getSingleValuedSRA() {
+		return singleValued.aut;
+	}
+
+	/**
+	 * @return the complete single-valued automaton used by the inclusion and
+	 *         equivalence checks
+	 * @throws TimeoutException
+	 */
+	public SRA<P, S> getCompletedSRA(long timeout) throws TimeoutException {
+		return getCompletedForm(timeout).aut;
+	}
+
+	/**
+	 * @return the number of minterms of the predicates of the single-valued
+	 *         automaton
+	 * @throws TimeoutException
+	 */
+	public int getMintermCount() throws TimeoutException {
+		return singleValued.getMinterms(Long.MAX_VALUE).size();
+	}
+
+	synchronized NormForm<P, S> getCompletedForm(long timeout) throws TimeoutException {
+		if (completed == null) {
+			// toSingleValuedSRA always returns a fresh copy, so completing it
+			// never touches the transitions of the original automaton
+			SRA<P, S> total = singleValued.aut.toSingleValuedSRA(ba, timeout);
+
+			if (!total.isTotal())
+				total.complete(ba);
+
+			completed = new NormForm<>(total, ba);
+		}
+
+		return completed;
+	}
+
+	NormForm<P, S> getSingleValuedForm() {
+		return singleValued;
+	}
+
+	BooleanAlgebra<P, S> getAlgebra() {
+		return ba;
+	}
+
+	// ------------------------------------------------------
+	// Decision procedures
+	// ------------------------------------------------------
+
+	/**
+	 * Checks if the language accepted by the SRA is empty.
+	 * @return true if empty, false if not empty.
+	 */
+	public synchronized boolean isLanguageEmpty(long timeout) throws TimeoutException {
+		if (isEmpty == null)
+			isEmpty = computeIsLanguageEmpty(timeout);
+
+		return isEmpty;
+	}
+
+	private boolean computeIsLanguageEmpty(long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		if (aut.isEmpty)
+			return true;
+
+		NormForm<P, S> form = singleValued;
+		MintermTable<P, S> table = form.getMinterms(timeout);
+
+		NormState initState = new NormState(form.initialState, form.getInitialRegAbs(table));
+
+		HashSet<NormState> reached = new HashSet<>();
+		LinkedList<NormState> toVisit = new LinkedList<>();
+
+		reached.add(initState);
+		toVisit.add(initState);
+
+		while (!toVisit.isEmpty()) {
+			NormState currentState = toVisit.removeFirst();
+
+			if (form.isFinal(currentState.stateId))
+				return false;
+
+			for (NormMove normMove : form.getNormMoves(table, currentState, null)) {
+				if (reached.add(normMove.to))
+					toVisit.add(normMove.to);
+			}
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks if the language of this SRA is equivalent to the language of <code>aut</code>.
+	 * @return true if it is equivalent, false if not.
+	 */
+	public boolean isLanguageEquivalent(PreparedSRA<P, S> aut, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		NormForm<P, S> form1 = getCompletedForm(timeout);
+		NormForm<P, S> form2 = aut.getCompletedForm(remaining(startTime, timeout));
+
+		return canSimulate(form1, form2, ba, true, remaining(startTime, timeout));
+	}
+
+	/**
+	 * Checks if the language of this SRA includes the language of <code>aut</code>.
+	 * @return true of it includes the language, false if not.
+	 */
+	public boolean languageIncludes(PreparedSRA<P, S> aut, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		NormForm<P, S> form1 = getCompletedForm(timeout);
+		NormForm<P, S> form2 = aut.getCompletedForm(remaining(startTime, timeout));
+
+		return canSimulate(form2, form1, ba, false, remaining(startTime, timeout));
+	}
+
+	/**
+	 * Checks if <code>aut1</code> can simulate <code>aut2</code>, checks for
+	 * bisimulation if <code>bisimulation</code> is set to true.
+	 * Same semantics as {@link SRA#canSimulate}.
+	 * @return true if it simulates, false otherwise.
+	 */
+	public static <P, S> boolean canSimulate(PreparedSRA<P, S> aut1, PreparedSRA<P, S> aut2, boolean bisimulation,
+			long timeout) throws TimeoutException {
+		return canSimulate(aut1.singleValued, aut2.singleValued, aut1.ba, bisimulation, timeout);
+	}
+
+	private static <P, S> boolean canSimulate(NormForm<P, S> aut1, NormForm<P, S> aut2, BooleanAlgebra<P, S> ba,
+			boolean bisimulation, long timeout) throws TimeoutException {
+		return new SRASimulationChecker<>(aut1, aut2, ba, bisimulation).check(timeout);
+	}
+
+	/**
+	 * Receives the successor triples discovered by a simulation step
+	 */
+	interface TripleSink {
+		void accept(SimTriple triple);
+	}
+
+	/**
+	 * @return the triple relating the initial normalised states of <code>aut1</code> and <code>aut2</code>
+	 */
+	static <P, S> SimTriple initialTriple(NormForm<P, S> aut1, NormForm<P, S> aut2, MintermTable<P, S> table)
+			throws TimeoutException {
+		int[] initRegMap = new int[aut1.registers.size()];
+		Arrays.fill(initRegMap, -1);
+
+		for (int r1 = 0; r1 < aut1.registers.size(); r1++) {
+			for (int r2 = 0; r2 < aut2.registers.size(); r2++) {
+				S r1Content = aut1.registers.get(r1);
+
+				if (r1Content != null && r1Content.equals(aut2.registers.get(r2)))
+					initRegMap[r1] = r2;
+			}
+		}
+
+		NormState initState1 = new NormState(aut1.initialState, aut1.getInitialRegAbs(table));
+		NormState initState2 = new NormState(aut2.initialState, aut2.getInitialRegAbs(table));
+
+		return new SimTriple(initState1, initState2, initRegMap, null, null);
+	}
+
+	/**
+	 * Checks the final states of <code>triple</code> and hands its successor
+	 * triples to <code>sink</code>.
+	 *
+	 * @return false iff <code>triple</code> is a witness that <code>aut1</code>
+	 *         cannot be simulated
+	 */
+	static <P, S> boolean simulationStep(NormForm<P, S> aut1, NormForm<P, S> aut2, MintermTable<P, S> table,
+			Map<NormState, List<NormMove>> aut1NormOut, Map<NormState, List<NormMove>> aut2NormOut,
+			SimTriple triple, boolean bisimulation, TripleSink sink) throws TimeoutException {
+		NormState state1 = triple.state1;
+		NormState state2 = triple.state2;
+
+		boolean isFinal1 = aut1.isFinal(state1.stateId);
+		boolean isFinal2 = aut2.isFinal(state2.stateId);
+
+		if (isFinal1 && !isFinal2)
+			return false;
+
+		if (bisimulation && isFinal2 && !isFinal1)
+			return false;
+
+		List<NormMove> normMoves1 = aut1.getNormMoves(table, state1, aut1NormOut);
+
+		if (!bisimulation && normMoves1.isEmpty()) // we don't need to find matching moves from aut2
+			return true;
+
+		List<NormMove> normMoves2 = aut2.getNormMoves(table, state2, aut2NormOut);
+
+		List<SimTriple> newTriples = normSimSucc(table, normMoves1, normMoves2, triple.regMap,
+				state1.regAbs, state2.regAbs);
+
+		if (newTriples == null)
+			return false;
+
+		if (bisimulation) {
+			if (normMoves2.isEmpty()) // we don't need to find matching moves from aut1
+				return true;
+
+			if (normSimSucc(table, normMoves2, normMoves1, invertRegMap(triple.regMap, state2.regAbs.size()),
+					state2.regAbs, state1.regAbs) == null)
+				return false;
+		}
+
+		for (SimTriple newTriple : newTriples) {
+			newTriple.previous = triple;
+			sink.accept(newTriple);
+		}
+
+		return true;
+	}
+
+	static int[] invertRegMap(int[] regMap, int regCount2) {
+		int[] inv = new int[regCount2];
+		Arrays.fill(inv, -1);
+
+		for (int r1 = 0; r1 < regMap.length; r1++)
+			if (regMap[r1] >= 0)
+				inv[regMap[r1]] = r1;
+
+		return inv;
+	}
+
+	private static int[] updateRegMap(int[] regMap, int r1, int r2) {
+		int[] newRegMap = regMap.clone();
+
+		// First remove pair (x, r2)
+		for (int r = 0; r < newRegMap.length; r++) {
+			if (newRegMap[r] == r2) {
+				newRegMap[r] = -1;
+				break;
+			}
+		}
+
+		newRegMap[r1] = r2;
+		return newRegMap;
+	}
+
+	// Returns all reduced bisimulation triples that need to be checked in
+	// subsequent steps, or null if some move in normMoves1 cannot be matched
+	static <P, S> List<SimTriple> normSimSucc(MintermTable<P, S> table, List<NormMove> normMoves1,
+			List<NormMove> normMoves2, int[] regMap, RegAbs regAbs1, RegAbs regAbs2) throws TimeoutException {
+
+		List<SimTriple> nextTriples = new ArrayList<>();
+
+		for (NormMove move1 : normMoves1) {
+			if (move1.isCheck) {
+				int r1 = move1.register;
+				NormMove matchingMove = null;
+				int[] newRegMap = null;
+
+				if (regMap[r1] >= 0) {
+					// Case 1(a) in the paper
+					int r2 = regMap[r1];
+
+					for (NormMove move2 : normMoves2) {
+						if (move2.isCheck && move2.register == r2) { // Guard is the same by construction
+							matchingMove = move2;
+							newRegMap = regMap;
+							break;
+						}
+					}
+				} else {
+					// Case 1(b) in the paper
+					for (NormMove move2 : normMoves2) {
+						if (!move2.isCheck && move2.guard == move1.guard) {
+							matchingMove = move2;
+							newRegMap = updateRegMap(regMap, move1.register, move2.register);
+							break;
+						}
+					}
+				}
+
+				if (matchingMove == null)
+					return null;
+
+				nextTriples.add(new SimTriple(move1.to, matchingMove.to, newRegMap, move1, matchingMove));
+			} else {
+				// Case 2(a)
+				int regNum2 = regAbs2.size();
+				boolean[] regInImg = new boolean[regNum2];
+
+				for (int r1 = 0; r1 < regMap.length; r1++)
+					if (regMap[r1] >= 0)
+						regInImg[regMap[r1]] = true;
+
+				for (int r2 = 0; r2 < regNum2; r2++) {
+					if (!regInImg[r2] && regAbs2.get(r2) == move1.guard) {
+						NormMove matchingMove = null;
+						int[] newRegMap = null;
+
+						for (NormMove move2 : normMoves2) {
+							if (move2.isCheck && move2.register == r2) { // Guard must be the same
+								matchingMove = move2;
+								newRegMap = updateRegMap(regMap, move1.register, move2.register);
+							}
+						}
+
+						if (matchingMove == null)
+							return null;
+
+						nextTriples.add(new SimTriple(move1.to, matchingMove.to, newRegMap, move1, matchingMove));
+					}
+				}
+
+				// Case 2(b)
+				int howManyEqualToGuard1 = 1 + regAbs1.count(move1.guard) + regAbs2.count(move1.guard);
+
+				if (table.hasNDistinctWitnesses(move1.guard, howManyEqualToGuard1)) {
+					NormMove matchingMove = null;
+					int[] newRegMap = null;
+
+					for (NormMove move2 : normMoves2) {
+						if (!move2.isCheck && move2.guard == move1.guard) { // Guard must be the same
+							matchingMove = move2;
+							newRegMap = updateRegMap(regMap, move1.register, move2.register);
+							break;
+						}
+					}
+
+					if (matchingMove == null)
+						return null;
+
+					nextTriples.add(new SimTriple(move1.to, matchingMove.to, newRegMap, move1, matchingMove));
+				}
+			}
+		}
+
+		return nextTriples;
+	}
+
+	private static long remaining(long startTime, long timeout) throws TimeoutException {
+		long left = timeout - (System.currentTimeMillis() - startTime);
+
+		if (left < 0)
+			throw new TimeoutException();
+
+		return left;
+	}
+
+	// ------------------------------------------------------
+	// Normalised forms
+	// ------------------------------------------------------
+
+	/**
+	 * A single-valued SRA whose moves are indexed by state, together with its
+	 * predicates, its minterm table and the joint minterm tables computed
+	 * against other forms
+	 */
+	static class NormForm<P, S> {
+		final SRA<P, S> aut;
+		final BooleanAlgebra<P, S> ba;
+		final int initialState;
+		final List<S> registers;
+
+		private final HashSet<Integer> finalStates;
+		private final HashMap<Integer, List<SRAMove<P, S>>> movesFrom;
+		private final LinkedHashSet<P> predicates;
+
+		private MintermTable<P, S> minterms;
+		private final Map<NormForm<P, S>, MintermTable<P, S>> jointMinterms = new WeakHashMap<>();
+
+		NormForm(SRA<P, S> aut, BooleanAlgebra<P, S> ba) {
+			this.aut = aut;
+			this.ba = ba;
+			this.initialState = aut.getInitialState();
+			this.registers = new ArrayList<>(aut.getRegisters());
+			this.finalStates = new HashSet<>(aut.getFinalStates());
+
+			movesFrom = new HashMap<>();
+			for (Integer state : aut.getStates())
+				movesFrom.put(state, new ArrayList<>(aut.getMovesFrom(state)));
+
+			predicates = new LinkedHashSet<>(aut.getAllPredicates(Long.MAX_VALUE));
+			for (S regVal : registers) // Add initial register values to predicates
+				if (regVal != null)
+					predicates.add(ba.MkAtom(regVal));
+		}
+
+		boolean isFinal(int state) {
+			return finalStates.contains(state);
+		}
+
+		List<SRAMove<P, S>> getMovesFrom(int state) {
+			List<SRAMove<P, S>> moves = movesFrom.get(state);
+			return moves == null ? new ArrayList<>() : moves;
+		}
+
+		/**
+		 * @return the minterms of the predicates of this form
+		 */
+		synchronized MintermTable<P, S> getMinterms(long timeout) throws TimeoutException {
+			if (minterms == null)
+				minterms = new MintermTable<P, S>(ba).refine(predicates, timeout);
+
+			return minterms;
+		}
+
+		/**
+		 * @return the minterms of the predicates of this form and of
+		 *         <code>other</code>, refined from the larger of the two
+		 *         cached tables
+		 */
+		MintermTable<P, S> getJointMinterms(NormForm<P, S> other, long timeout) throws TimeoutException {
+			if (other == this)
+				return getMinterms(timeout);
+
+			synchronized (this) {
+				MintermTable<P, S> table = jointMinterms.get(other);
+				if (table != null)
+					return table;
+			}
+
+			synchronized (other) {
+				MintermTable<P, S> table = other.jointMinterms.get(this);
+				if (table != null)
+					return table;
+			}
+
+			long startTime = System.currentTimeMillis();
+			MintermTable<P, S> mine = getMinterms(timeout);
+			MintermTable<P, S> theirs = other.getMinterms(remaining(startTime, timeout));
+
+			MintermTable<P, S> table = mine.size() >= theirs.size()
+					? mine.refine(other.predicates, remaining(startTime, timeout))
+					: theirs.refine(predicates, remaining(startTime, timeout));
+
+			synchronized (this) {
+				jointMinterms.put(other, table);
+			}
+
+			return table;
+		}
+
+		/**
+		 * @return the register abstraction of the initial register assignment
+		 */
+		RegAbs getInitialRegAbs(MintermTable<P, S> table) throws TimeoutException {
+			int[] regAbs = new int[registers.size()];
+
+			for (int r = 0; r < registers.size(); r++) {
+				S regVal = registers.get(r);
+				regAbs[r] = regVal == null ? -1 : table.getMinterms(ba.MkAtom(regVal))[0];
+			}
+
+			return table.intern(regAbs);
+		}
+
+		/**
+		 * Breaks down the moves leaving <code>from</code> into minterms,
+		 * memoizing the result in <code>cache</code> if it is not null
+		 */
+		List<NormMove> getNormMoves(MintermTable<P, S> table, NormState from, Map<NormState, List<NormMove>> cache)
+				throws TimeoutException {
+			if (cache != null) {
+				List<NormMove> cached = cache.get(from);
+				if (cached != null)
+					return cached;
+			}
+
+			List<NormMove> normMoves = new ArrayList<>();
+			RegAbs regAbs = from.regAbs;
+
+			for (SRAMove<P, S> move : getMovesFrom(from.stateId)) {
+				int[] minterms = table.getMinterms(move.guard);
+
+				if (move instanceof SRACheckMove) {
+					int register = move.E.iterator().next();
+					int registerMint = regAbs.get(register);
+
+					if (registerMint >= 0 && Arrays.binarySearch(minterms, registerMint) >= 0)
+						normMoves.add(new NormMove(new NormState(move.to, regAbs), registerMint, register, true));
+				} else {
+					for (int mint : minterms) {
+						int neededWitnessesForMint = 1 + regAbs.count(mint);
+
+						if (table.hasNDistinctWitnesses(mint, neededWitnessesForMint)) {
+							RegAbs newRegAbs = table.intern(regAbs.with(move.registerIndex, mint));
+							normMoves.add(new NormMove(new NormState(move.to, newRegAbs), mint, move.registerIndex, false));
+						}
+					}
+				}
+			}
+
+			if (cache != null)
+				cache.put(from, normMoves);
+
+			return normMoves;
+		}
+	}
+
+	/**
+	 * Minterms of a set of predicates. Minterms are identified by their index;
+	 * for every predicate the table stores the sorted indices of the minterms
+	 * in which it occurs positively.
+	 */
+	static class MintermTable<P, S> {
+		private final BooleanAlgebra<P, S> ba;
+		private final HashMap<P, Integer> predicateIndex;
+		private final ArrayList<P> minterms;
+		private final ArrayList<BitSet> signatures;
+		private final HashMap<P, int[]> mintermsOfPredicate;
+
+		// hasNDistinctWitnesses is monotone in n, so it is enough to remember
+		// the largest n known to hold and the smallest n known to fail
+		private AtomicIntegerArray witnessesAtLeast;
+		private AtomicIntegerArray witnessesBelow;
+
+		private final ConcurrentHashMap<RegAbs, RegAbs> regAbsPool = new ConcurrentHashMap<>();
+
+		MintermTable(BooleanAlgebra<P, S> ba) {
+			this.ba = ba;
+			predicateIndex = new HashMap<>();
+			minterms = new ArrayList<>();
+			signatures = new ArrayList<>();
+			mintermsOfPredicate = new HashMap<>();
+
+			minterms.add(ba.True());
+			signatures.add(new BitSet());
+			initWitnessBounds();
+		}
+
+		private MintermTable(MintermTable<P, S> base) {
+			ba = base.ba;
+			predicateIndex = new HashMap<>(base.predicateIndex);
+			minterms = new ArrayList<>();
+			signatures = new ArrayList<>();
+			mintermsOfPredicate = new HashMap<>();
+		}
+
+		private void initWitnessBounds() {
+			witnessesAtLeast = new AtomicIntegerArray(minterms.size());
+			witnessesBelow = new AtomicIntegerArray(minterms.size());
+
+			for (int m = 0; m < minterms.size(); m++)
+				witnessesBelow.set(m, Integer.MAX_VALUE);
+		}
+
+		/**
+		 * @return the number of minterms
+		 */
+		int size() {
+			return minterms.size();
+		}
+
+		/**
+		 * @return the predicate of minterm <code>m</code>
+		 */
+		P getPredicate(int m) {
+			return minterms.get(m);
+		}
+
+		/**
+		 * @return a table whose minterms also split on <code>newPredicates</code>;
+		 *         the existing minterms are refined instead of being recomputed
+		 * @throws TimeoutException
+		 */
+		MintermTable<P, S> refine(Collection<P> newPredicates, long timeout) throws TimeoutException {
+			long startTime = System.currentTimeMillis();
+
+			ArrayList<P> toAdd = new ArrayList<>();
+			for (P pred : newPredicates)
+				if (!predicateIndex.containsKey(pred) && !toAdd.contains(pred))
+					toAdd.add(pred);
+
+			if (toAdd.isEmpty() && !mintermsOfPredicate.isEmpty())
+				return this;
+
+			MintermTable<P, S> refined = new MintermTable<>(this);
+			ArrayList<P> currMinterms = new ArrayList<>();
+			ArrayList<BitSet> currSignatures = new ArrayList<>();
+
+			for (int m = 0; m < minterms.size(); m++)
+				if (ba.IsSatisfiable(minterms.get(m))) {
+					currMinterms.add(minterms.get(m));
+					currSignatures.add(signatures.get(m));
+				}
+
+			for (P pred : toAdd) {
+				int index = refined.predicateIndex.size();
+				refined.predicateIndex.put(pred, index);
+
+				ArrayList<P> nextMinterms = new ArrayList<>();
+				ArrayList<BitSet> nextSignatures = new ArrayList<>();
+				P notPred = ba.MkNot(pred);
+
+				for (int m = 0; m < currMinterms.size(); m++) {
+					P pos = ba.MkAnd(currMinterms.get(m), pred);
+					if (ba.IsSatisfiable(pos)) {
+						BitSet signature = (BitSet) currSignatures.get(m).clone();
+						signature.set(index);
+						nextMinterms.add(pos);
+						nextSignatures.add(signature);
+					}
+
+					P neg = ba.MkAnd(currMinterms.get(m), notPred);
+					if (ba.IsSatisfiable(neg)) {
+						nextMinterms.add(neg);
+						nextSignatures.add(currSignatures.get(m));
+					}
+
+					if (System.currentTimeMillis() - startTime > timeout)
+						throw new TimeoutException("Minterm construction timeout");
+				}
+
+				currMinterms = nextMinterms;
+				currSignatures = nextSignatures;
+			}
+
+			refined.minterms.addAll(currMinterms);
+			refined.signatures.addAll(currSignatures);
+			refined.initWitnessBounds();
+
+			for (P pred : refined.predicateIndex.keySet()) {
+				int index = refined.predicateIndex.get(pred);
+				int count = 0;
+
+				for (BitSet signature : refined.signatures)
+					if (signature.get(index))
+						count++;
+
+				int[] positive = new int[count];
+				count = 0;
+				for (int m = 0; m < refined.signatures.size(); m++)
+					if (refined.signatures.get(m).get(index))
+						positive[count++] = m;
+
+				refined.mintermsOfPredicate.put(pred, positive);
+			}
+
+			return refined;
+		}
+
+		/**
+		 * @return the sorted indices of the minterms in which <code>pred</code> is non-negated
+		 */
+		int[] getMinterms(P pred) {
+			int[] positive = mintermsOfPredicate.get(pred);
+
+			if (positive == null)
+				throw new IllegalArgumentException("Predicate " + pred + " is not part of the minterm table");
+
+			return positive;
+		}
+
+		/**
+		 * @return true iff minterm <code>m</code> has at least <code>n</code>
+		 *         distinct witnesses
+		 */
+		boolean hasNDistinctWitnesses(int m, int n) {
+			if (n <= witnessesAtLeast.get(m))
+				return true;
+			if (n >= witnessesBelow.get(m))
+				return false;
+
+			if (ba.hasNDistinctWitnesses(minterms.get(m), n)) {
+				witnessesAtLeast.accumulateAndGet(m, n, Math::max);
+				return true;
+			}
+
+			witnessesBelow.accumulateAndGet(m, n, Math::min);
+			return false;
+		}
+
+		/**
+		 * @return the canonical instance of the register abstraction <code>regAbs</code>
+		 */
+		RegAbs intern(int[] regAbs) {
+			RegAbs key = new RegAbs(regAbs);
+			RegAbs canonical = regAbsPool.putIfAbsent(key, key);
+			return canonical == null ? key : canonical;
+		}
+	}
+
+	/**
+	 * Register abstraction: the minterm index of the content of each register,
+	 * -1 for empty registers
+	 */
+	static final class RegAbs {
+		private final int[] minterms;
+		private final int hash;
+
+		RegAbs(int[] minterms) {
+			this.minterms = minterms;
+			this.hash = Arrays.hashCode(minterms);
+		}
+
+		int size() {
+			return minterms.length;
+		}
+
+		int get(int register) {
+			return minterms[register];
+		}
+
+		/**
+		 * @return how many registers contain minterm <code>m</code>
+		 */
+		int count(int m) {
+			int count = 0;
+			for (int mint : minterms)
+				if (mint == m)
+					count++;
+			return count;
+		}
+
+		int[] with(int register, int m) {
+			int[] updated = minterms.clone();
+			updated[register] = m;
+			return updated;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof RegAbs)) return false;
+			RegAbs that = (RegAbs) o;
+			return hash == that.hash && Arrays.equals(minterms, that.minterms);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(minterms);
+		}
+	}
+
+	/**
+	 * Normalised SRA state: an SRA state with a register abstraction
+	 */
+	static final class NormState {
+		final int stateId;
+		final RegAbs regAbs;
+		private final int hash;
+
+		NormState(int stateId, RegAbs regAbs) {
+			this.stateId = stateId;
+			this.regAbs = regAbs;
+			this.hash = 31 * stateId + regAbs.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof NormState)) return false;
+			NormState that = (NormState) o;
+			return stateId == that.stateId && (regAbs == that.regAbs || regAbs.equals(that.regAbs));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return "<" + stateId + " , " + regAbs + ">";
+		}
+	}
+
+	/**
+	 * Normalised SRA move reading minterm <code>guard</code>
+	 */
+	static final class NormMove {
+		final NormState to;
+		final int guard;
+		final int register;
+		final boolean isCheck;
+
+		NormMove(NormState to, int guard, int register, boolean isCheck) {
+			this.to = to;
+			this.guard = guard;
+			this.register = register;
+			this.isCheck = isCheck;
+		}
+	}
+
+	/**
+	 * Reduced bisimulation triple. <code>previous</code>, <code>move1</code>
+	 * and <code>move2</code> record how the triple was reached and are not
+	 * part of its identity.
+	 */
+	static final class SimTriple {
+		final NormState state1;
+		final NormState state2;
+		final int[] regMap;
+		final NormMove move1;
+		final NormMove move2;
+		SimTriple previous;
+		private final int hash;
+
+		SimTriple(NormState state1, NormState state2, int[] regMap, NormMove move1, NormMove move2) {
+			this.state1 = state1;
+			this.state2 = state2;
+			this.regMap = regMap;
+			this.move1 = move1;
+			this.move2 = move2;
+			this.hash = (31 * state1.hashCode() + state2.hashCode()) * 31 + Arrays.hashCode(regMap);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof SimTriple)) return false;
+			SimTriple that = (SimTriple) o;
+			return hash == that.hash && state1.equals(that.state1) && state2.equals(that.state2)
+					&& Arrays.equals(regMap, that.regMap);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return "[ " + state1 + ", " + state2 + ", " + Arrays.toString(regMap) + "]";
+		}
+	}
+}
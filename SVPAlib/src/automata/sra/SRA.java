@@ -571,7 +571,7 @@ public class SRA<P, S> {
 	/**
 	 * @return a list of predicates without duplicates
 	 */
-	private HashSet<P> getAllPredicates(long timeout) {
+	HashSet<P> getAllPredicates(long timeout) {
 		HashSet<P> predicatesSet = new HashSet<>();
 
 		HashMap<Integer, Integer> reached = new HashMap<>();
@@ -1062,29 +1062,26 @@ public class SRA<P, S> {
 		isTotal = true;
 	}
 
+	/**
+	 * Prepares <code>this</code> for repeated emptiness, inclusion and equivalence
+	 * queries, see {@link PreparedSRA}
+	 *
+	 * @throws TimeoutException
+	 */
+	public PreparedSRA<P, S> prepare(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		return new PreparedSRA<>(this, ba, timeout);
+	}
+
 	/**
 	 * Checks if the language of an SRA is equivalent to the language of another SRA.
 	 * @return true if it is equivalent, false if not.
 	 */
 	public boolean isLanguageEquivalent(SRA<P,S> aut, BooleanAlgebra<P,S> ba, long timeout) throws TimeoutException {
-		SRA<P,S> aut1 = (SRA<P,S>) this.clone();
-		SRA<P,S> aut2 = (SRA<P,S>) aut.clone();
-
-		if (!aut1.isSingleValued)
-			aut1 = aut1.toSingleValuedSRA(ba, timeout);
-
-		if (!aut2.isSingleValued)
-			aut2 = aut2.toSingleValuedSRA(ba, timeout);
-
-
-		if (!aut1.isTotal)
-			aut1.complete(ba);
-
-		if (!aut2.isTotal)
-			aut2.complete(ba);
-
+		long startTime = System.currentTimeMillis();
+		PreparedSRA<P,S> aut1 = prepare(ba, timeout);
+		PreparedSRA<P,S> aut2 = aut.prepare(ba, timeout - (System.currentTimeMillis() - startTime));
 
-		return canSimulate(aut1, aut2, ba, true, timeout);
+		return aut1.isLanguageEquivalent(aut2, timeout - (System.currentTimeMillis() - startTime));
 	}
 
 	/**
@@ -1092,24 +1089,11 @@ public class SRA<P, S> {
 	 * @return true of it includes the language, false if not.
 	 */
 	public boolean languageIncludes(SRA<P,S> aut, BooleanAlgebra<P,S> ba, long timeout) throws TimeoutException {
-		SRA<P,S> aut1 = (SRA<P,S>) this.clone();
-		SRA<P,S> aut2 = (SRA<P,S>) aut.clone();
-
-		if (!aut1.isSingleValued)
-			aut1 = aut1.toSingleValuedSRA(ba, timeout);
-
-		if (!aut2.isSingleValued)
-			aut2 = aut2.toSingleValuedSRA(ba, timeout);
-
-
-		if (!aut1.isTotal)
-			aut1.complete(ba);
-
-		if (!aut2.isTotal)
-			aut2.complete(ba);
-
+		long startTime = System.currentTimeMillis();
+		PreparedSRA<P,S> aut1 = prepare(ba, timeout);
+		PreparedSRA<P,S> aut2 = aut.prepare(ba, timeout - (System.currentTimeMillis() - startTime));
 
-		return canSimulate(aut2, aut1, ba, false, timeout);
+		return aut1.languageIncludes(aut2, timeout - (System.currentTimeMillis() - startTime));
 	}
 
 
@@ -0,0 +1,411 @@
+package automata.sra;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sra.PreparedSRA.MintermTable;
+import automata.sra.PreparedSRA.NormForm;
+import automata.sra.PreparedSRA.NormMove;
+import automata.sra.PreparedSRA.NormState;
+import automata.sra.PreparedSRA.SimTriple;
+import theory.BooleanAlgebra;
+
+/**
+ * On-the-fly (bi)simulation checker between two prepared SRAs. The
+ * synchronised normalised state space is generated lazily from the initial
+ * triple and the visit stops at the first triple violating the simulation,
+ * from which a data word leading to the violation is reconstructed.
+ *
+ * When a {@link ForkJoinPool} is given, the frontier of each breadth-first
+ * level is explored in parallel. This requires <code>ba</code> to be safe for
+ * concurrent use.
+ *
+ * @param <P> set of predicates over the domain S
+ * @param <S> domain of the automaton alphabet
+ */
+public class SRASimulationChecker<P, S> {
+
+	// Frontiers smaller than this are explored by a single task
+	private static final int SEQUENTIAL_THRESHOLD = 16;
+
+	private final NormForm<P, S> aut1;
+	private final NormForm<P, S> aut2;
+	private final BooleanAlgebra<P, S> ba;
+	private final boolean bisimulation;
+	private final ForkJoinPool pool;
+
+	private final AtomicInteger exploredTriples = new AtomicInteger();
+	private List<S> counterexample;
+
+	/**
+	 * Checker for whether <code>aut1</code> can be simulated by
+	 * <code>aut2</code> (bisimulation if <code>bisimulation</code> is true)
+	 * with the semantics of {@link SRA#canSimulate}, explored sequentially
+	 */
+	public SRASimulationChecker(PreparedSRA<P, S> aut1, PreparedSRA<P, S> aut2, boolean bisimulation) {
+		this(aut1, aut2, bisimulation, null);
+	}
+
+	/**
+	 * Checker for whether <code>aut1</code> can be simulated by
+	 * <code>aut2</code>, exploring each frontier on <code>pool</code>, or
+	 * sequentially if <code>pool</code> is null
+	 */
+	public SRASimulationChecker(PreparedSRA<P, S> aut1, PreparedSRA<P, S> aut2, boolean bisimulation,
+			ForkJoinPool pool) {
+		this(aut1.getSingleValuedForm(), aut2.getSingleValuedForm(), aut1.getAlgebra(), bisimulation, pool);
+	}
+
+	SRASimulationChecker(NormForm<P, S> aut1, NormForm<P, S> aut2, BooleanAlgebra<P, S> ba, boolean bisimulation) {
+		this(aut1, aut2, ba, bisimulation, null);
+	}
+
+	private SRASimulationChecker(NormForm<P, S> aut1, NormForm<P, S> aut2, BooleanAlgebra<P, S> ba,
+			boolean bisimulation, ForkJoinPool pool) {
+		this.aut1 = aut1;
+		this.aut2 = aut2;
+		this.ba = ba;
+		this.bisimulation = bisimulation;
+		this.pool = pool;
+	}
+
+	/**
+	 * @return a checker for whether the language of <code>includer</code>
+	 *         contains the language of <code>included</code>
+	 * @throws TimeoutException
+	 */
+	public static <P, S> SRASimulationChecker<P, S> forInclusion(PreparedSRA<P, S> includer,
+			PreparedSRA<P, S> included, ForkJoinPool pool, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		NormForm<P, S> form1 = included.getCompletedForm(timeout);
+		NormForm<P, S> form2 = includer.getCompletedForm(timeout - (System.currentTimeMillis() - startTime));
+
+		return new SRASimulationChecker<>(form1, form2, includer.getAlgebra(), false, pool);
+	}
+
+	/**
+	 * @return a checker for whether <code>aut1</code> and <code>aut2</code>
+	 *         accept the same language
+	 * @throws TimeoutException
+	 */
+	public static <P, S> SRASimulationChecker<P, S> forEquivalence(PreparedSRA<P, S> aut1, PreparedSRA<P, S> aut2,
+			ForkJoinPool pool, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		NormForm<P, S> form1 = aut1.getCompletedForm(timeout);
+		NormForm<P, S> form2 = aut2.getCompletedForm(timeout - (System.currentTimeMillis() - startTime));
+
+		return new SRASimulationChecker<>(form1, form2, aut1.getAlgebra(), true, pool);
+	}
+
+	/**
+	 * Runs the check.
+	 * @return true if the simulation holds, false otherwise; in the latter
+	 *         case {@link #getCounterexample()} returns a witness
+	 * @throws TimeoutException
+	 */
+	public boolean check(long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		counterexample = null;
+		exploredTriples.set(0);
+
+		if (aut1.aut.isEmpty) {
+			if (bisimulation && !aut2.aut.isEmpty) {
+				counterexample = Collections.emptyList();
+				return false;
+			}
+
+			return true;
+		}
+
+		MintermTable<P, S> table = aut1.getJointMinterms(aut2, timeout);
+		SimTriple initTriple = PreparedSRA.initialTriple(aut1, aut2, table);
+
+		SimTriple failure = pool == null
+				? visitSequential(table, initTriple, startTime, timeout)
+				: visitParallel(table, initTriple, startTime, timeout);
+
+		if (failure == null)
+			return true;
+
+		counterexample = buildCounterexample(table, failure);
+		return false;
+	}
+
+	/**
+	 * @return a data word leading both automata to a pair of states violating
+	 *         the simulation, extended with the input of the move that could
+	 *         not be matched, if any. Null if the last check succeeded.
+	 */
+	public List<S> getCounterexample() {
+		return counterexample;
+	}
+
+	/**
+	 * @return the number of triples explored by the last check
+	 */
+	public int getExploredTriples() {
+		return exploredTriples.get();
+	}
+
+	// ------------------------------------------------------
+	// Visits
+	// ------------------------------------------------------
+
+	private SimTriple visitSequential(MintermTable<P, S> table, SimTriple initTriple, long startTime, long timeout)
+			throws TimeoutException {
+		// reached contains the triples we have already discovered
+		HashSet<SimTriple> reached = new HashSet<>();
+		// toVisit contains the triples we have not explored yet
+		LinkedList<SimTriple> toVisit = new LinkedList<>();
+
+		reached.add(initTriple);
+		toVisit.add(initTriple);
+
+		Map<NormState, List<NormMove>> aut1NormOut = new ConcurrentHashMap<>();
+		Map<NormState, List<NormMove>> aut2NormOut = new ConcurrentHashMap<>();
+
+		PreparedSRA.TripleSink sink = triple -> {
+			if (reached.add(triple))
+				toVisit.add(triple);
+		};
+
+		while (!toVisit.isEmpty()) {
+			SimTriple currentTriple = toVisit.removeFirst(); // BFS visit
+			exploredTriples.incrementAndGet();
+
+			if (!PreparedSRA.simulationStep(aut1, aut2, table, aut1NormOut, aut2NormOut, currentTriple,
+					bisimulation, sink))
+				return currentTriple;
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+		}
+
+		return null;
+	}
+
+	private SimTriple visitParallel(MintermTable<P, S> table, SimTriple initTriple, long startTime, long timeout)
+			throws TimeoutException {
+		Set<SimTriple> reached = ConcurrentHashMap.newKeySet();
+		Map<NormState, List<NormMove>> aut1NormOut = new ConcurrentHashMap<>();
+		Map<NormState, List<NormMove>> aut2NormOut = new ConcurrentHashMap<>();
+
+		AtomicReference<SimTriple> failure = new AtomicReference<>();
+		AtomicBoolean timedOut = new AtomicBoolean(false);
+
+		reached.add(initTriple);
+		List<SimTriple> frontier = Collections.singletonList(initTriple);
+
+		while (!frontier.isEmpty()) {
+			ConcurrentLinkedQueue<SimTriple> next = new ConcurrentLinkedQueue<>();
+			PreparedSRA.TripleSink sink = triple -> {
+				if (reached.add(triple))
+					next.add(triple);
+			};
+
+			pool.invoke(new FrontierTask(frontier, 0, frontier.size(), table, aut1NormOut, aut2NormOut, sink,
+					failure, timedOut, startTime, timeout));
+
+			if (failure.get() != null)
+				return failure.get();
+
+			if (timedOut.get())
+				throw new TimeoutException();
+
+			frontier = new ArrayList<>(next);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Explores a slice of a frontier, splitting it in halves until it is
+	 * small enough
+	 */
+	private class FrontierTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<SimTriple> frontier;
+		private final int from;
+		private final int to;
+		private final MintermTable<P, S> table;
+		private final Map<NormState, List<NormMove>> aut1NormOut;
+		private final Map<NormState, List<NormMove>> aut2NormOut;
+		private final PreparedSRA.TripleSink sink;
+		private final AtomicReference<SimTriple> failure;
+		private final AtomicBoolean timedOut;
+		private final long startTime;
+		private final long timeout;
+
+		FrontierTask(List<SimTriple> frontier, int from, int to, MintermTable<P, S> table,
+				Map<NormState, List<NormMove>> aut1NormOut, Map<NormState, List<NormMove>> aut2NormOut,
+				PreparedSRA.TripleSink sink, AtomicReference<SimTriple> failure, AtomicBoolean timedOut,
+				long startTime, long timeout) {
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+			this.table = table;
+			this.aut1NormOut = aut1NormOut;
+			this.aut2NormOut = aut2NormOut;
+			this.sink = sink;
+			this.failure = failure;
+			this.timedOut = timedOut;
+			this.startTime = startTime;
+			this.timeout = timeout;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SEQUENTIAL_THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				invokeAll(slice(from, mid), slice(mid, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				if (failure.get() != null || timedOut.get())
+					return;
+
+				SimTriple triple = frontier.get(i);
+				exploredTriples.incrementAndGet();
+
+				try {
+					if (!PreparedSRA.simulationStep(aut1, aut2, table, aut1NormOut, aut2NormOut, triple,
+							bisimulation, sink))
+						failure.compareAndSet(null, triple);
+				} catch (TimeoutException e) {
+					timedOut.set(true);
+				}
+
+				if (System.currentTimeMillis() - startTime > timeout)
+					timedOut.set(true);
+			}
+		}
+
+		private FrontierTask slice(int sliceFrom, int sliceTo) {
+			return new FrontierTask(frontier, sliceFrom, sliceTo, table, aut1NormOut, aut2NormOut, sink,
+					failure, timedOut, startTime, timeout);
+		}
+	}
+
+	// ------------------------------------------------------
+	// Counterexamples
+	// ------------------------------------------------------
+
+	/**
+	 * Replays the moves leading to <code>failure</code> on concrete register
+	 * assignments of both automata and appends an input that cannot be
+	 * matched from <code>failure</code>, if the violation is not caused by
+	 * final states.
+	 */
+	private List<S> buildCounterexample(MintermTable<P, S> table, SimTriple failure) throws TimeoutException {
+		LinkedList<SimTriple> path = new LinkedList<>();
+		for (SimTriple triple = failure; triple.previous != null; triple = triple.previous)
+			path.addFirst(triple);
+
+		List<S> regs1 = new ArrayList<>(aut1.registers);
+		List<S> regs2 = new ArrayList<>(aut2.registers);
+		List<S> word = new ArrayList<>();
+
+		for (SimTriple triple : path) {
+			NormMove move1 = triple.move1;
+			NormMove move2 = triple.move2;
+			S value;
+
+			if (move1.isCheck)
+				value = regs1.get(move1.register);
+			else if (move2.isCheck)
+				value = regs2.get(move2.register);
+			else
+				value = freshWitness(table, move1.guard, regs1, regs2);
+
+			regs1.set(move1.register, value);
+			regs2.set(move2.register, value);
+			word.add(value);
+		}
+
+		boolean isFinal1 = aut1.isFinal(failure.state1.stateId);
+		boolean isFinal2 = aut2.isFinal(failure.state2.stateId);
+		if (isFinal1 != isFinal2)
+			return word;
+
+		// The violation is an unmatched move: try the inputs each unmatched
+		// move can read and prefer one on which the automata disagree
+		List<S> candidates = new ArrayList<>();
+		collectUnmatchedInputs(table, aut1, aut2, failure.state1, failure.state2, failure.regMap, regs1, regs2,
+				candidates);
+		if (bisimulation)
+			collectUnmatchedInputs(table, aut2, aut1, failure.state2, failure.state1,
+					PreparedSRA.invertRegMap(failure.regMap, regs2.size()), regs2, regs1, candidates);
+
+		for (S candidate : candidates) {
+			List<S> extended = new ArrayList<>(word);
+			extended.add(candidate);
+
+			if (aut1.aut.accepts(extended, ba) != aut2.aut.accepts(extended, ba))
+				return extended;
+		}
+
+		if (!candidates.isEmpty())
+			word.add(candidates.get(0));
+
+		return word;
+	}
+
+	private void collectUnmatchedInputs(MintermTable<P, S> table, NormForm<P, S> from, NormForm<P, S> other,
+			NormState state, NormState otherState, int[] regMap, List<S> regs, List<S> otherRegs, List<S> inputs)
+			throws TimeoutException {
+		List<NormMove> otherMoves = other.getNormMoves(table, otherState, null);
+
+		for (NormMove move : from.getNormMoves(table, state, null)) {
+			if (PreparedSRA.normSimSucc(table, Collections.singletonList(move), otherMoves, regMap,
+					state.regAbs, otherState.regAbs) != null)
+				continue;
+
+			if (move.isCheck) {
+				inputs.add(regs.get(move.register));
+				continue;
+			}
+
+			for (int r = 0; r < otherRegs.size(); r++)
+				if (otherState.regAbs.get(r) == move.guard && !regs.contains(otherRegs.get(r)))
+					inputs.add(otherRegs.get(r));
+
+			S fresh = freshWitness(table, move.guard, regs, otherRegs);
+			if (fresh != null)
+				inputs.add(fresh);
+		}
+	}
+
+	/**
+	 * @return an element of minterm <code>m</code> that is not stored in any
+	 *         of the given registers
+	 */
+	private S freshWitness(MintermTable<P, S> table, int m, List<S> regs1, List<S> regs2) throws TimeoutException {
+		P pred = table.getPredicate(m);
+
+		for (S value : regs1)
+			if (value != null)
+				pred = ba.MkAnd(pred, ba.MkNot(ba.MkAtom(value)));
+		for (S value : regs2)
+			if (value != null)
+				pred = ba.MkAnd(pred, ba.MkNot(ba.MkAtom(value)));
+
+		return ba.generateWitness(pred);
+	}
+}
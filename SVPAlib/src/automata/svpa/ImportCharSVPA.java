@@ -81,6 +81,17 @@ public class ImportCharSVPA {
 		}
 	}
 
+	/**
+	 * Builds a streaming validator for the SVPA imported from the specified file.
+	 * The file should contain the result of a call to VPAutomaton.toString().
+	 * @param inFile the file containing the data to import
+	 * @return the validator of the created SVPA
+	 */
+	public static SVPAValidator<ICharPred, Character> importValidator(File inFile)
+			throws AutomataException, IOException, TimeoutException {
+		return new SVPAValidator<ICharPred, Character>(importSVPA(inFile), new EqualitySolver());
+	}
+
 	/**
 	 * Builds an appropriate SVPA based on data imported from the specified file.
 	 * The file should contain the result of a call to VPAutomaton.toString().
@@ -16,7 +16,6 @@ import org.sat4j.specs.TimeoutException;
 
 import automata.AutomataException;
 import theory.BooleanAlgebra;
-import utilities.BitVecUtil;
 import utilities.Pair;
 
 public class SVPA<U, S> extends VPAutomaton<U, S> {
@@ -147,6 +146,16 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	}
 
 	public boolean accepts(List<TaggedSymbol<S>> input, BooleanAlgebra<U, S> ba) throws TimeoutException {
+		return new SVPASimulator<U, S>(this, ba).accepts(input);
+	}
+
+	/**
+	 * Decides membership like {@link #accepts} by keeping every configuration
+	 * with its own copy of the stack, which takes exponential time on
+	 * ambiguous SVPAs. Kept as a reference for testing {@link SVPASimulator}.
+	 */
+	public boolean acceptsWithExplicitStacks(List<TaggedSymbol<S>> input, BooleanAlgebra<U, S> ba)
+			throws TimeoutException {
 
 		Collection<Pair<Integer, Stack<Pair<Integer, S>>>> currConf = new HashSet<Pair<Integer, Stack<Pair<Integer, S>>>>();
 
@@ -747,331 +756,8 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		
 		if (aut1.isDeterministic(ba))
 			return aut1;
-		
-		SVPA<A, B> deter = new SVPA<A, B>();
-
-		HashMap<Collection<Pair<Integer, Integer>>, Integer> reachedStates = new HashMap<Collection<Pair<Integer, Integer>>, Integer>();
-		LinkedList<Collection<Pair<Integer, Integer>>> toVisitStates = new LinkedList<Collection<Pair<Integer, Integer>>>();
-
-		HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer> reachedStackStates = new HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer>();
-
-		// Add initial state
-		Collection<Pair<Integer, Integer>> currState = new HashSet<Pair<Integer, Integer>>();
-		for (Integer st : aut.initialStates)
-			currState.add(new Pair<Integer, Integer>(st, st));
-		deter.initialStates.add(0);
-		deter.states.add(0);
-
-		reachedStates.put(currState, 0);
-		toVisitStates.add(currState);
-
-		Collection<Collection<Pair<Integer, Integer>>> previouslyVisited = new HashSet<Collection<Pair<Integer, Integer>>>();
-
-		while (toVisitStates.size() > 0) {
-
-			// pop first state from tVisit and add to visited
-			currState = toVisitStates.removeFirst();
-			int currStateId = reachedStates.get(currState);
-			previouslyVisited.add(currState);
-
-			// for every stackState discovered so far, add (currState,
-			// stackState) to the those to be visited for creating the returns
-			Collection<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>> toVisitPairStateStackStates = new HashSet<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>>();
-			for (Pair<Collection<Pair<Integer, Integer>>, A> stackState : reachedStackStates
-					.keySet())
-				toVisitPairStateStackStates
-						.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-								currState, stackState));
-
-			// take all the second components of the pairs in currState
-			Collection<Integer> secondComp = projectSecondComponents(currState);
-
-			// if any pair has a final state as second component the current
-			// state is final
-			if (aut.isFinalConfiguration(secondComp))
-				deter.finalStates.add(currStateId);
-
-			// INTERNAL out of currState
-			ArrayList<Internal<A, B>> internalMovesFromCS = new ArrayList<Internal<A, B>>(
-					aut.getInternalsFrom(secondComp));
-
-			// Start at 1 to avoid case in which they are all false (we are not
-			// building a total SVPA
-			for (int i = 1; i < Math.pow(2, internalMovesFromCS.size()); i++) {
-				A guard = null;
-
-				Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-				for (int bit = 0; bit < internalMovesFromCS.size(); bit++) {
-					Internal<A, B> currMove = internalMovesFromCS.get(bit);
-
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						guard = intersectGuards(guard, currMove.guard, ba);
-
-						for (Pair<Integer, Integer> pair : secondIs(currState,
-								currMove.from))
-							toState.add(new Pair<Integer, Integer>(pair.first,
-									currMove.to));
-
-					} else {
-						guard = intersectGuards(guard,
-								ba.MkNot(currMove.guard), ba);
-					}
-				}
-
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
-					deter.addTransition(new Internal<A, B>(currStateId,
-							toStateId, guard), ba, true);
-				}
-			}
-
-			// RETURNBS out of currState
-			ArrayList<ReturnBS<A, B>> returnBSMovesFromCS = new ArrayList<ReturnBS<A, B>>(
-					aut.getReturnBSFrom(secondComp));
-
-			// Start at 1 to avoid case in which they are all false
-			for (int i = 1; i < Math.pow(2, returnBSMovesFromCS.size()); i++) {
-				A guard = null;
-
-				Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-				for (int bit = 0; bit < returnBSMovesFromCS.size(); bit++) {
-					ReturnBS<A, B> currMove = returnBSMovesFromCS.get(bit);
-
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						guard = intersectGuards(guard, currMove.guard, ba);
-
-						for (Pair<Integer, Integer> pair : secondIs(currState,
-								currMove.from))
-							toState.add(new Pair<Integer, Integer>(pair.first,
-									currMove.to));
-
-					} else {
-						guard = intersectGuards(guard,
-								ba.MkNot(currMove.guard), ba);
-					}
-				}
-
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
-					deter.addTransition(new ReturnBS<A, B>(currStateId,
-							toStateId, guard), ba, true);
-				}
-			}
-
-			// CALLS out of currState
-			ArrayList<Call<A, B>> callsFromCurrState = new ArrayList<Call<A, B>>(
-					aut.getCallsFrom(secondComp));
-
-			// Start at 1 to avoid case in which they are all false
-			for (int i = 1; i < Math.pow(2, callsFromCurrState.size()); i++) {
-				A a = null;
-
-				// delta_C(S,a)=(S',(S,a)) where
-				// S'={(q'',q'') | (q,q') in S and delta_c(q',a)=q'',p}
-
-				// Compute the guard of new move and target state
-				Collection<Pair<Integer, Integer>> sPrime = new HashSet<Pair<Integer, Integer>>();
-				for (int bit = 0; bit < callsFromCurrState.size(); bit++) {
-					// get the ith call in the list
-					Call<A, B> currMove = callsFromCurrState.get(bit);
-
-					// use the predicate positively if i-th bit of i is 1
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						a = intersectGuards(a, currMove.guard, ba);
-
-						sPrime.add(new Pair<Integer, Integer>(currMove.to,
-								currMove.to));
-					} else
-						a = intersectGuards(a, ba.MkNot(currMove.guard), ba);
-				}
-
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(a)) {
-
-					// Pick the state id
-					Integer toStateId = reachedStates.get(sPrime);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(sPrime, toStateId);
-						toVisitStates.add(sPrime);
-					}
-
-					// Add stack states to be visited by returns
-					Pair<Collection<Pair<Integer, Integer>>, A> currStackState = new Pair<Collection<Pair<Integer, Integer>>, A>(
-							currState, a);
-
-					Integer stackStateId = reachedStackStates
-							.get(currStackState);
-					if (stackStateId == null) {
-						stackStateId = reachedStackStates.size();
-						reachedStackStates.put(currStackState, stackStateId);
-
-						// Add new discovered stack states to those to be
-						// visited by returns
-						for (Collection<Pair<Integer, Integer>> visitedState : previouslyVisited)
-							toVisitPairStateStackStates
-									.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-											visitedState, currStackState));
-					}
-
-					deter.addTransition(new Call<A, B>(currStateId, toStateId,
-							stackStateId, a), ba, true);
-				}
-			}
-
-			// RETURNS out of every pair in to visit PairStateStackStates
-			for (Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>> stPair : toVisitPairStateStackStates) {				
-				
-				// adding delta_r(S,(S',a),b)
-				Collection<Pair<Integer, Integer>> S = stPair.first;
-				Pair<Collection<Pair<Integer, Integer>>, A> stackState = stPair.second;
-				Collection<Pair<Integer, Integer>> Sprime = stackState.first;
-				A a = stackState.second;
-				
-				//These transitions are independent from currStateId
-				currStateId = reachedStates.get(S);
-
-				// Calls and returns causing the match
-				// (q,q'') such that,
-				// 1) (q,q') in S',
-				// 2) delta_c(q',a)=(q1,p)
-				// 3) (q1,q2) in S,
-				// 4) delta_r(q2,b,p)=q''
-
-				HashSet<Pair<A, Pair<Call<A, B>, Return<A, B>>>> callRetGuardTripletHS = new HashSet<Pair<A, Pair<Call<A, B>, Return<A, B>>>>();
-				for (Call<A, B> call : aut
-						.getCallsFrom(projectSecondComponents(Sprime))) {
-					A callRetGuard = ba.MkAnd(a, call.guard);
-					//if I store all the calls in the stack triplet i can avoid this satisfiability check
-					if (ba.IsSatisfiable(callRetGuard))
-						for (Return<A, B> ret : aut.getReturnsFrom(
-								projectSecondComponents(firstIs(S, call.to)),
-								call.stackState))
-							if (ba.IsSatisfiable(ba.MkAnd(callRetGuard,
-									ret.guard)))
-								callRetGuardTripletHS
-										.add(new Pair<A, Pair<Call<A, B>, Return<A, B>>>(
-												ba.MkAnd(call.guard, ret.guard),
-												new Pair<Call<A, B>, Return<A, B>>(
-														call, ret)));
-				}
-
-				ArrayList<Pair<A, Pair<Call<A, B>, Return<A, B>>>> callRetGuardTriplet = new ArrayList<Pair<A, Pair<Call<A, B>, Return<A, B>>>>(callRetGuardTripletHS);
-				
-				// Start at 1 to avoid case in which they are all false
-				for (int i = 1; i < Math.pow(2, callRetGuardTriplet.size()); i++) {
-					A b = a;
-
-					Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-					for (int bit = 0; bit < callRetGuardTriplet.size(); bit++) {
-						Pair<A, Pair<Call<A, B>, Return<A, B>>> currTriplet = callRetGuardTriplet
-								.get(bit);
-
-						A callRetGuard = currTriplet.first;
-						Call<A, B> currCall = currTriplet.second.first;
-						Return<A, B> currRet = currTriplet.second.second;
-
-						if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-
-							b = intersectGuards(b, callRetGuard, ba);
-
-							for (Pair<Integer, Integer> fst : secondIs(Sprime,
-									currCall.from))
-								if (S.contains(new Pair<Integer, Integer>(
-										currCall.to, currRet.from)))
-									toState.add(new Pair<Integer, Integer>(
-											fst.first, currRet.to));
-						} else {
-							b = intersectGuards(b, ba.MkNot(callRetGuard), ba);
-						}
-					}
-
-					// If guard satisfiable add move to deterministic
-					// version
-					if (ba.IsSatisfiable(b)) {
-						
-						Integer toStateId = reachedStates.get(toState);
-						if (toStateId == null) {
-							toStateId = reachedStates.size();
-							reachedStates.put(toState, toStateId);
-							toVisitStates.add(toState);
-						}
-
-						Integer toStackStateId = reachedStackStates
-								.get(stackState);
-
-						if (toStackStateId == null)
-							System.out.println("shouldn't be null");
-
-						deter.addTransition(new Return<A, B>(currStateId,
-								toStateId, toStackStateId, b), ba, true);
-					}
-				}
-
-			}
-
-		}
-		
-		deter.isDeterministic = true;
-		return deter;
-	}
-
-	private static <A, B> A intersectGuards(A guard, A conjunct,
-			BooleanAlgebra<A, B> ba) throws TimeoutException {
-		if (guard == null)
-			return conjunct;
-		else
-			return ba.MkAnd(guard, conjunct);
-	}
-
-	@SuppressWarnings("unused")
-	private static Collection<Integer> projectFirstComponents(
-			Collection<Pair<Integer, Integer>> state) {
-		HashSet<Integer> fc = new HashSet<Integer>();
-		for (Pair<Integer, Integer> st : state)
-			fc.add(st.first);
-		return fc;
-	}
-
-	private static Collection<Integer> projectSecondComponents(
-			Collection<Pair<Integer, Integer>> state) {
-		HashSet<Integer> sc = new HashSet<Integer>();
-		for (Pair<Integer, Integer> st : state)
-			sc.add(st.second);
-		return sc;
-	}
-
-	private static Collection<Pair<Integer, Integer>> firstIs(
-			Collection<Pair<Integer, Integer>> state, Integer fst) {
-		HashSet<Pair<Integer, Integer>> sc = new HashSet<Pair<Integer, Integer>>();
-		for (Pair<Integer, Integer> st : state)
-			if (st.first == fst)
-				sc.add(st);
-		return sc;
-	}
 
-	private static Collection<Pair<Integer, Integer>> secondIs(
-			Collection<Pair<Integer, Integer>> state, Integer sec) {
-		HashSet<Pair<Integer, Integer>> sc = new HashSet<Pair<Integer, Integer>>();
-		for (Pair<Integer, Integer> st : state)
-			if (st.second == sec)
-				sc.add(st);
-		return sc;
+		return new SVPADeterminizer<A, B>(aut, ba).determinize();
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////
@@ -1602,7 +1288,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		return transitions;
 	}
 
-	private boolean isFinalConfiguration(Collection<Integer> conf) {
+	boolean isFinalConfiguration(Collection<Integer> conf) {
 		for (Integer state : conf)
 			if (isFinalState(state))
 				return true;
@@ -1617,7 +1303,7 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	 * Add Transition
 	 * @throws TimeoutException 
 	 */
-	private void addTransition(SVPAMove<U, S> transition,
+	void addTransition(SVPAMove<U, S> transition,
 			BooleanAlgebra<U, S> ba, boolean skipSatCheck) throws TimeoutException {
 
 		if (transition.isEpsilonTransition()) {
@@ -0,0 +1,395 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * Determinization of an epsilon-free SVPA by the summary construction.
+ * A state of the result is a summary, the set of pairs (q,q') such that q'
+ * is reachable from q since the last pending call, stored as a bitset. The
+ * moves out of a summary are built from the minterms of the guards of the
+ * corresponding moves, instead of from every subset of moves, and moves
+ * reaching the same summary are merged. A summary is only paired with the
+ * stack states whose calls reach one of its first components, as the other
+ * pairs have no return move.
+ *
+ * @param <A>
+ *            The type of predicates forming the Boolean algebra
+ * @param <B>
+ *            The domain of the Boolean algebra
+ */
+class SVPADeterminizer<A, B> {
+
+	private final SVPA<A, B> aut;
+	private final BooleanAlgebra<A, B> ba;
+
+	// dense ids of the states of aut
+	private final Map<Integer, Integer> stateIds = new HashMap<Integer, Integer>();
+	private final Integer[] states;
+	private final int stateCount;
+
+	private final List<Summary> summaries = new ArrayList<Summary>();
+	private final Map<BitSet, Integer> summaryIds = new HashMap<BitSet, Integer>();
+	private final LinkedList<Integer> toVisit = new LinkedList<Integer>();
+	// summaries already visited, by the dense id of their first components
+	private final List<List<Integer>> visitedByFirst = new ArrayList<List<Integer>>();
+
+	private final List<StackState> stackStates = new ArrayList<StackState>();
+	// stack states, by the dense id of the targets of their calls
+	private final List<List<Integer>> stackStatesByCallTarget = new ArrayList<List<Integer>>();
+
+	private final SVPA<A, B> deter = new SVPA<A, B>();
+
+	/**
+	 * A determinizer for the epsilon-free SVPA <code>aut</code>
+	 */
+	SVPADeterminizer(SVPA<A, B> aut, BooleanAlgebra<A, B> ba) {
+		this.aut = aut;
+		this.ba = ba;
+
+		stateCount = aut.states.size();
+		states = new Integer[stateCount];
+		for (Integer state : aut.states) {
+			states[stateIds.size()] = state;
+			stateIds.put(state, stateIds.size());
+			visitedByFirst.add(new ArrayList<Integer>());
+			stackStatesByCallTarget.add(new ArrayList<Integer>());
+		}
+	}
+
+	/**
+	 * @return the deterministic SVPA equivalent to the one of this determinizer
+	 */
+	SVPA<A, B> determinize() throws TimeoutException {
+		BitSet initial = new BitSet();
+		for (Integer state : aut.initialStates)
+			initial.set(pairIndex(stateIds.get(state), stateIds.get(state)));
+
+		deter.initialStates.add(getSummaryId(initial));
+		deter.states.add(0);
+
+		while (!toVisit.isEmpty()) {
+			int summaryId = toVisit.removeFirst();
+			Summary summary = summaries.get(summaryId);
+
+			for (int first : summary.secondsByFirst.keySet())
+				visitedByFirst.get(first).add(summaryId);
+
+			if (aut.isFinalConfiguration(summary.secondStates()))
+				deter.finalStates.add(summaryId);
+
+			int oldStackStateCount = stackStates.size();
+
+			addInternals(summaryId, summary);
+			addReturnBSs(summaryId, summary);
+			addCalls(summaryId, summary);
+
+			// the stack states created by addCalls were already paired with
+			// this summary
+			BitSet paired = new BitSet();
+			for (int first : summary.secondsByFirst.keySet())
+				for (int stackStateId : stackStatesByCallTarget.get(first))
+					if (stackStateId < oldStackStateCount && !paired.get(stackStateId)) {
+						paired.set(stackStateId);
+						addReturns(summaryId, stackStateId);
+					}
+		}
+
+		deter.isDeterministic = true;
+		return deter;
+	}
+
+	// delta_I(S,a)={(q,q'') | (q,q') in S and delta_i(q',a)=q''}
+	private void addInternals(int summaryId, Summary summary) throws TimeoutException {
+		List<Internal<A, B>> moves = new ArrayList<Internal<A, B>>();
+		for (Integer second : summary.secondStates())
+			moves.addAll(aut.getInternalsFrom(second));
+
+		Map<BitSet, A> targets = new LinkedHashMap<BitSet, A>();
+		List<A> guards = new ArrayList<A>();
+		int[] guardOf = guardIndexes(moves, guards);
+		for (Pair<A, BitSet> minterm : getMinterms(guards, ba.True())) {
+			BitSet target = new BitSet();
+			for (int m = 0; m < moves.size(); m++)
+				if (minterm.second.get(guardOf[m]))
+					addStep(summary, moves.get(m).from, moves.get(m).to, target);
+			mergeTarget(targets, target, minterm.first);
+		}
+
+		for (Map.Entry<BitSet, A> target : targets.entrySet())
+			deter.addTransition(new Internal<A, B>(summaryId, getSummaryId(target.getKey()), target.getValue()), ba,
+					true);
+	}
+
+	// Same as the internal moves
+	private void addReturnBSs(int summaryId, Summary summary) throws TimeoutException {
+		List<ReturnBS<A, B>> moves = new ArrayList<ReturnBS<A, B>>();
+		for (Integer second : summary.secondStates())
+			moves.addAll(aut.getReturnBSFrom(second));
+
+		Map<BitSet, A> targets = new LinkedHashMap<BitSet, A>();
+		List<A> guards = new ArrayList<A>();
+		int[] guardOf = guardIndexes(moves, guards);
+		for (Pair<A, BitSet> minterm : getMinterms(guards, ba.True())) {
+			BitSet target = new BitSet();
+			for (int m = 0; m < moves.size(); m++)
+				if (minterm.second.get(guardOf[m]))
+					addStep(summary, moves.get(m).from, moves.get(m).to, target);
+			mergeTarget(targets, target, minterm.first);
+		}
+
+		for (Map.Entry<BitSet, A> target : targets.entrySet())
+			deter.addTransition(new ReturnBS<A, B>(summaryId, getSummaryId(target.getKey()), target.getValue()), ba,
+					true);
+	}
+
+	// delta_C(S,a)=(S',(S,a)) where S'={(q'',q'') | (q,q') in S and
+	// delta_c(q',a)=q'',p}. Every minterm a gives a different stack state.
+	private void addCalls(int summaryId, Summary summary) throws TimeoutException {
+		List<Call<A, B>> moves = new ArrayList<Call<A, B>>();
+		for (Integer second : summary.secondStates())
+			moves.addAll(aut.getCallsFrom(second));
+
+		List<A> guards = new ArrayList<A>();
+		int[] guardOf = guardIndexes(moves, guards);
+		for (Pair<A, BitSet> minterm : getMinterms(guards, ba.True())) {
+			List<Call<A, B>> calls = new ArrayList<Call<A, B>>();
+			BitSet target = new BitSet();
+			BitSet callTargets = new BitSet();
+			for (int m = 0; m < moves.size(); m++)
+				if (minterm.second.get(guardOf[m])) {
+					Call<A, B> call = moves.get(m);
+					int to = stateIds.get(call.to);
+					calls.add(call);
+					target.set(pairIndex(to, to));
+					callTargets.set(to);
+				}
+
+			if (calls.isEmpty())
+				continue;
+
+			int stackStateId = stackStates.size();
+			stackStates.add(new StackState(summaryId, minterm.first, calls));
+
+			// pair the new stack state with the visited summaries it can
+			// return to, including this one
+			BitSet paired = new BitSet();
+			for (int to = callTargets.nextSetBit(0); to >= 0; to = callTargets.nextSetBit(to + 1)) {
+				stackStatesByCallTarget.get(to).add(stackStateId);
+				for (int visited : visitedByFirst.get(to))
+					paired.set(visited);
+			}
+
+			deter.addTransition(new Call<A, B>(summaryId, getSummaryId(target), stackStateId, minterm.first), ba,
+					true);
+
+			for (int visited = paired.nextSetBit(0); visited >= 0; visited = paired.nextSetBit(visited + 1))
+				addReturns(visited, stackStateId);
+		}
+	}
+
+	// delta_R(S,(S',a),b)={(q,q'') | (q,q') in S', delta_c(q',a)=(q1,p),
+	// (q1,q2) in S and delta_r(q2,b,p)=q''}
+	private void addReturns(int summaryId, int stackStateId) throws TimeoutException {
+		Summary summary = summaries.get(summaryId);
+		StackState stackState = stackStates.get(stackStateId);
+
+		List<A> guards = new ArrayList<A>();
+		List<Call<A, B>> calls = new ArrayList<Call<A, B>>();
+		List<Return<A, B>> returns = new ArrayList<Return<A, B>>();
+		for (Call<A, B> call : stackState.calls) {
+			A callGuard = ba.MkAnd(stackState.guard, call.guard);
+			for (int second : summary.secondsOf(stateIds.get(call.to)))
+				for (Return<A, B> ret : aut.getReturnsFrom(states[second], call.stackState))
+					if (ba.IsSatisfiable(ba.MkAnd(callGuard, ret.guard))) {
+						guards.add(ba.MkAnd(call.guard, ret.guard));
+						calls.add(call);
+						returns.add(ret);
+					}
+		}
+
+		if (guards.isEmpty())
+			return;
+
+		Summary caller = summaries.get(stackState.summary);
+		Map<BitSet, A> targets = new LinkedHashMap<BitSet, A>();
+		for (Pair<A, BitSet> minterm : getMinterms(guards, stackState.guard)) {
+			BitSet target = new BitSet();
+			for (int t = minterm.second.nextSetBit(0); t >= 0; t = minterm.second.nextSetBit(t + 1))
+				addStep(caller, calls.get(t).from, returns.get(t).to, target);
+			mergeTarget(targets, target, minterm.first);
+		}
+
+		for (Map.Entry<BitSet, A> target : targets.entrySet())
+			deter.addTransition(new Return<A, B>(summaryId, getSummaryId(target.getKey()), stackStateId,
+					target.getValue()), ba, true);
+	}
+
+	// ------------------------------------------------------
+	// Auxiliary methods
+	// ------------------------------------------------------
+
+	// Adds to target the pairs (q,to) such that (q,from) is in summary
+	private void addStep(Summary summary, Integer from, Integer to, BitSet target) {
+		int toId = stateIds.get(to);
+		for (int first : summary.firstsOf(stateIds.get(from)))
+			target.set(pairIndex(first, toId));
+	}
+
+	// Merges the minterm reaching target with the previous ones reaching it
+	private void mergeTarget(Map<BitSet, A> targets, BitSet target, A guard) throws TimeoutException {
+		if (target.isEmpty())
+			return;
+		A previous = targets.get(target);
+		targets.put(target, previous == null ? guard : ba.MkOr(previous, guard));
+	}
+
+	// Lists the distinct guards of moves and returns the index of the guard of
+	// each move
+	private int[] guardIndexes(List<? extends SVPAMove<A, B>> moves, List<A> guards) {
+		Map<A, Integer> indexes = new HashMap<A, Integer>();
+		int[] guardOf = new int[moves.size()];
+		for (int m = 0; m < moves.size(); m++) {
+			A guard = guardOf(moves.get(m));
+			Integer index = indexes.get(guard);
+			if (index == null) {
+				index = guards.size();
+				indexes.put(guard, index);
+				guards.add(guard);
+			}
+			guardOf[m] = index;
+		}
+		return guardOf;
+	}
+
+	private A guardOf(SVPAMove<A, B> move) {
+		switch (move.type) {
+		case Internal:
+			return ((Internal<A, B>) move).guard;
+		case ReturnBS:
+			return ((ReturnBS<A, B>) move).guard;
+		case Call:
+			return ((Call<A, B>) move).guard;
+		default:
+			return ((Return<A, B>) move).guard;
+		}
+	}
+
+	/**
+	 * Refines <code>start</code> by every predicate in turn and returns the
+	 * satisfiable minterms, each with the set of predicates it implies
+	 */
+	private List<Pair<A, BitSet>> getMinterms(List<A> predicates, A start) throws TimeoutException {
+		List<Pair<A, BitSet>> minterms = new ArrayList<Pair<A, BitSet>>();
+		if (predicates.isEmpty())
+			return minterms;
+
+		minterms.add(new Pair<A, BitSet>(start, new BitSet()));
+		for (int p = 0; p < predicates.size(); p++) {
+			A predicate = predicates.get(p);
+			A negated = ba.MkNot(predicate);
+
+			List<Pair<A, BitSet>> refined = new ArrayList<Pair<A, BitSet>>();
+			for (Pair<A, BitSet> minterm : minterms) {
+				A pos = ba.MkAnd(minterm.first, predicate);
+				if (ba.IsSatisfiable(pos)) {
+					BitSet bits = new BitSet();
+					bits.or(minterm.second);
+					bits.set(p);
+					refined.add(new Pair<A, BitSet>(pos, bits));
+				}
+				A neg = ba.MkAnd(minterm.first, negated);
+				if (ba.IsSatisfiable(neg))
+					refined.add(new Pair<A, BitSet>(neg, minterm.second));
+			}
+			minterms = refined;
+		}
+		return minterms;
+	}
+
+	private int pairIndex(int first, int second) {
+		return first * stateCount + second;
+	}
+
+	// Returns the id of summary, adding it to those to visit if new
+	private int getSummaryId(BitSet pairs) {
+		Integer id = summaryIds.get(pairs);
+		if (id == null) {
+			id = summaries.size();
+			summaryIds.put(pairs, id);
+			summaries.add(new Summary(pairs));
+			toVisit.add(id);
+		}
+		return id;
+	}
+
+	/**
+	 * A state of the determinized SVPA, with its pairs indexed by both
+	 * components
+	 */
+	private class Summary {
+		final Map<Integer, List<Integer>> firstsBySecond = new HashMap<Integer, List<Integer>>();
+		final Map<Integer, List<Integer>> secondsByFirst = new LinkedHashMap<Integer, List<Integer>>();
+
+		Summary(BitSet pairs) {
+			for (int pair = pairs.nextSetBit(0); pair >= 0; pair = pairs.nextSetBit(pair + 1)) {
+				int first = pair / stateCount, second = pair % stateCount;
+				add(firstsBySecond, second, first);
+				add(secondsByFirst, first, second);
+			}
+		}
+
+		private void add(Map<Integer, List<Integer>> index, int key, int value) {
+			List<Integer> values = index.get(key);
+			if (values == null) {
+				values = new ArrayList<Integer>();
+				index.put(key, values);
+			}
+			values.add(value);
+		}
+
+		List<Integer> firstsOf(int second) {
+			List<Integer> firsts = firstsBySecond.get(second);
+			return firsts == null ? new ArrayList<Integer>() : firsts;
+		}
+
+		List<Integer> secondsOf(int first) {
+			List<Integer> seconds = secondsByFirst.get(first);
+			return seconds == null ? new ArrayList<Integer>() : seconds;
+		}
+
+		// the states of aut that are second components
+		List<Integer> secondStates() {
+			List<Integer> result = new ArrayList<Integer>();
+			for (int second : firstsBySecond.keySet())
+				result.add(states[second]);
+			return result;
+		}
+	}
+
+	/**
+	 * A stack state of the determinized SVPA: the summary and minterm of the
+	 * call that pushed it, with the calls of aut enabled by the minterm
+	 */
+	private class StackState {
+		final int summary;
+		final A guard;
+		final List<Call<A, B>> calls;
+
+		StackState(int summary, A guard, List<Call<A, B>> calls) {
+			this.summary = summary;
+			this.guard = guard;
+			this.calls = calls;
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Simulates a nondeterministic SVPA on a nested word without determinizing
+ * it. Configurations are kept in a graph-structured stack: after every symbol
+ * there is at most one node per state, and a node stores the set of its
+ * possible stack tops as edges labeled by a stack state and a call symbol,
+ * pointing to the node the call was read from. Configurations sharing a stack
+ * suffix share the nodes of that suffix, so ambiguous runs never copy stacks.
+ *
+ * Every step creates at most one node per state and an edge set whose size is
+ * bounded by the number of stack states times the number of nodes created so
+ * far, which makes membership polynomial in the length of the input. Nodes
+ * that no configuration can return to any more are no longer referenced and
+ * are reclaimed by the garbage collector.
+ *
+ * @param <U>
+ *            The type of predicates forming the Boolean algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SVPASimulator<U, S> {
+
+	private final BooleanAlgebra<U, S> ba;
+	private final SVPA<U, S> aut;
+
+	private final Map<Integer, Integer> stateIds;
+	private final Integer[] states;
+	private final int[] initialStates;
+	private final boolean[] isFinal;
+	// states reachable from q through epsilon moves, q included
+	private final int[][] epsClosures;
+	// moves of state q: guards[q][i] -> targets[q][i], compiled the first time
+	// q is reached
+	private final Object[][] internalGuards;
+	private final int[][] internalTargets;
+	private final Object[][] returnBSGuards;
+	private final int[][] returnBSTargets;
+	private final Object[][] callGuards;
+	private final int[][] callTargets;
+	private final int[][] callStackStates;
+	private final Object[][] returnGuards;
+	private final int[][] returnTargets;
+	private final int[][] returnStackStates;
+
+	// tops[q] is the node of state q, null if q is not reached
+	private Node[] tops;
+	private boolean rejected;
+
+	/**
+	 * A simulator for <code>svpa</code>
+	 */
+	public SVPASimulator(SVPA<U, S> svpa, BooleanAlgebra<U, S> ba) {
+		this.ba = ba;
+		this.aut = svpa;
+
+		stateIds = new HashMap<Integer, Integer>();
+		for (Integer st : aut.states)
+			stateIds.put(st, stateIds.size());
+
+		int stateCount = stateIds.size();
+		isFinal = new boolean[stateCount];
+		epsClosures = new int[stateCount][];
+		internalGuards = new Object[stateCount][];
+		internalTargets = new int[stateCount][];
+		returnBSGuards = new Object[stateCount][];
+		returnBSTargets = new int[stateCount][];
+		callGuards = new Object[stateCount][];
+		callTargets = new int[stateCount][];
+		callStackStates = new int[stateCount][];
+		returnGuards = new Object[stateCount][];
+		returnTargets = new int[stateCount][];
+		returnStackStates = new int[stateCount][];
+
+		states = new Integer[stateCount];
+		for (Integer st : aut.states) {
+			int q = stateIds.get(st);
+			states[q] = st;
+			isFinal[q] = aut.finalStates.contains(st);
+		}
+
+		initialStates = toIds(aut.initialStates, stateIds);
+		reset();
+	}
+
+	// Builds the move arrays of state q
+	private void compile(int q) {
+		Integer st = states[q];
+
+		List<Internal<U, S>> internals = new ArrayList<Internal<U, S>>(aut.getInternalsFrom(st));
+		internalGuards[q] = new Object[internals.size()];
+		internalTargets[q] = new int[internals.size()];
+		for (int i = 0; i < internals.size(); i++) {
+			internalGuards[q][i] = internals.get(i).guard;
+			internalTargets[q][i] = stateIds.get(internals.get(i).to);
+		}
+
+		List<ReturnBS<U, S>> returnBSs = new ArrayList<ReturnBS<U, S>>(aut.getReturnBSFrom(st));
+		returnBSGuards[q] = new Object[returnBSs.size()];
+		returnBSTargets[q] = new int[returnBSs.size()];
+		for (int i = 0; i < returnBSs.size(); i++) {
+			returnBSGuards[q][i] = returnBSs.get(i).guard;
+			returnBSTargets[q][i] = stateIds.get(returnBSs.get(i).to);
+		}
+
+		List<Call<U, S>> calls = new ArrayList<Call<U, S>>(aut.getCallsFrom(st));
+		callGuards[q] = new Object[calls.size()];
+		callTargets[q] = new int[calls.size()];
+		callStackStates[q] = new int[calls.size()];
+		for (int i = 0; i < calls.size(); i++) {
+			callGuards[q][i] = calls.get(i).guard;
+			callTargets[q][i] = stateIds.get(calls.get(i).to);
+			callStackStates[q][i] = calls.get(i).stackState;
+		}
+
+		List<Return<U, S>> returns = new ArrayList<Return<U, S>>(aut.getReturnsFrom(st));
+		returnGuards[q] = new Object[returns.size()];
+		returnTargets[q] = new int[returns.size()];
+		returnStackStates[q] = new int[returns.size()];
+		for (int i = 0; i < returns.size(); i++) {
+			returnGuards[q][i] = returns.get(i).guard;
+			returnTargets[q][i] = stateIds.get(returns.get(i).to);
+			returnStackStates[q][i] = returns.get(i).stackState;
+		}
+
+		epsClosures[q] = toIds(epsClosure(st), stateIds);
+	}
+
+	private Set<Integer> epsClosure(Integer state) {
+		Set<Integer> reached = new HashSet<Integer>();
+		LinkedList<Integer> toVisit = new LinkedList<Integer>();
+		reached.add(state);
+		toVisit.add(state);
+		while (!toVisit.isEmpty())
+			for (SVPAEpsilon<U, S> t : aut.getEpsilonsFrom(toVisit.removeFirst()))
+				if (reached.add(t.to))
+					toVisit.add(t.to);
+		return reached;
+	}
+
+	private static int[] toIds(Iterable<Integer> states, Map<Integer, Integer> stateIds) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Integer st : states)
+			ids.add(stateIds.get(st));
+		int[] result = new int[ids.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = ids.get(i);
+		return result;
+	}
+
+	/**
+	 * @return the simulated SVPA
+	 */
+	public SVPA<U, S> getSVPA() {
+		return aut;
+	}
+
+	/**
+	 * Restarts the simulation on a new nested word
+	 */
+	public void reset() {
+		Pending[] pending = new Pending[isFinal.length];
+		for (int q : initialStates)
+			pending(pending, q).bottom = true;
+		tops = close(pending);
+		rejected = isEmpty(tops);
+	}
+
+	/**
+	 * Reads <code>symbol</code> in all the current configurations
+	 *
+	 * @return false if no configuration can read it, i.e. the input is
+	 *         rejected
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean read(TaggedSymbol<S> symbol) throws TimeoutException {
+		if (rejected)
+			return false;
+
+		S input = symbol.input;
+		Pending[] pending = new Pending[tops.length];
+
+		for (int q = 0; q < tops.length; q++) {
+			Node node = tops[q];
+			if (node == null)
+				continue;
+			if (internalGuards[q] == null)
+				compile(q);
+
+			switch (symbol.tag) {
+			case Call:
+				for (int i = 0; i < callGuards[q].length; i++)
+					if (ba.HasModel((U) callGuards[q][i], input))
+						pending(pending, callTargets[q][i]).add(new Edge(callStackStates[q][i], input, node));
+				break;
+
+			case Internal:
+				for (int i = 0; i < internalGuards[q].length; i++)
+					if (ba.HasModel((U) internalGuards[q][i], input))
+						pending(pending, internalTargets[q][i]).addAll(node);
+				break;
+
+			case Return:
+				if (node.bottom)
+					for (int i = 0; i < returnBSGuards[q].length; i++)
+						if (ba.HasModel((U) returnBSGuards[q][i], input))
+							pending(pending, returnBSTargets[q][i]).bottom = true;
+
+				for (Edge edge : node.edges)
+					for (int i = 0; i < returnGuards[q].length; i++)
+						if (returnStackStates[q][i] == edge.stackState
+								&& ba.HasModel((U) returnGuards[q][i], (S) edge.callSymbol, input))
+							pending(pending, returnTargets[q][i]).addAll(edge.target);
+				break;
+			}
+		}
+
+		tops = close(pending);
+		rejected = isEmpty(tops);
+		return !rejected;
+	}
+
+	/**
+	 * @return true if the nested word read so far is accepted
+	 */
+	public boolean isAccepting() {
+		for (int q = 0; q < tops.length; q++)
+			if (tops[q] != null && isFinal[q])
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true if the nested word read so far was rejected
+	 */
+	public boolean isRejected() {
+		return rejected;
+	}
+
+	/**
+	 * @return the number of states of the current configurations
+	 */
+	public int getStateCount() {
+		int count = 0;
+		for (Node node : tops)
+			if (node != null)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Runs the simulation on <code>input</code>, stopping as soon as it is
+	 * rejected
+	 *
+	 * @return true if the nested word is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(Iterable<TaggedSymbol<S>> input) throws TimeoutException {
+		reset();
+		for (TaggedSymbol<S> symbol : input)
+			if (!read(symbol))
+				return false;
+		return isAccepting();
+	}
+
+	// Adds the epsilon moves and builds the nodes of the next step
+	private Node[] close(Pending[] pending) {
+		Pending[] closed = new Pending[pending.length];
+		for (int q = 0; q < pending.length; q++)
+			if (pending[q] != null) {
+				if (epsClosures[q] == null)
+					compile(q);
+				for (int r : epsClosures[q]) {
+					Pending p = pending(closed, r);
+					p.addAll(pending[q].edges(), pending[q].bottom);
+				}
+			}
+
+		Node[] next = new Node[pending.length];
+		for (int q = 0; q < closed.length; q++)
+			if (closed[q] != null && (closed[q].bottom || !closed[q].edges().isEmpty()))
+				next[q] = new Node(closed[q].edges(), closed[q].bottom);
+		return next;
+	}
+
+	private static Pending pending(Pending[] pending, int q) {
+		if (pending[q] == null)
+			pending[q] = new Pending();
+		return pending[q];
+	}
+
+	private static boolean isEmpty(Node[] nodes) {
+		for (Node node : nodes)
+			if (node != null)
+				return false;
+		return true;
+	}
+
+	// ------------------------------------------------------
+	// Graph-structured stack
+	// ------------------------------------------------------
+
+	/**
+	 * The configurations of one state after a step: the stack is either empty,
+	 * if bottom is set, or one of the edges followed by a stack of the edge
+	 * target. Edge sets are never modified once the node is built, so nodes
+	 * reached through internal or epsilon moves share them.
+	 */
+	private static class Node {
+		final Set<Edge> edges;
+		final boolean bottom;
+
+		Node(Set<Edge> edges, boolean bottom) {
+			this.edges = edges;
+			this.bottom = bottom;
+		}
+	}
+
+	/**
+	 * A stack top: the stack state and call symbol pushed when reading a call
+	 * from the configurations of target. Edges are equal when they push the
+	 * same stack state from the same node, the call symbol being the one read
+	 * right after that node was built.
+	 */
+	private static class Edge {
+		final int stackState;
+		final Object callSymbol;
+		final Node target;
+
+		Edge(int stackState, Object callSymbol, Node target) {
+			this.stackState = stackState;
+			this.callSymbol = callSymbol;
+			this.target = target;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Edge))
+				return false;
+			Edge edge = (Edge) other;
+			return stackState == edge.stackState && target == edge.target;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * stackState + System.identityHashCode(target);
+		}
+	}
+
+	/**
+	 * The node of a state being built, reusing the edge set of a single
+	 * source until a second one is merged in
+	 */
+	private static class Pending {
+		private Set<Edge> shared;
+		private Set<Edge> own;
+		boolean bottom;
+
+		void addAll(Node node) {
+			addAll(node.edges, node.bottom);
+		}
+
+		void addAll(Set<Edge> edges, boolean bottom) {
+			this.bottom |= bottom;
+			if (edges.isEmpty() || edges == shared)
+				return;
+			if (own == null && shared == null)
+				shared = edges;
+			else
+				mutable().addAll(edges);
+		}
+
+		void add(Edge edge) {
+			mutable().add(edge);
+		}
+
+		Set<Edge> edges() {
+			if (own != null)
+				return own;
+			return shared != null ? shared : Collections.<Edge>emptySet();
+		}
+
+		private Set<Edge> mutable() {
+			if (own == null) {
+				own = shared == null ? new HashSet<Edge>() : new HashSet<Edge>(shared);
+				shared = null;
+			}
+			return own;
+		}
+	}
+}
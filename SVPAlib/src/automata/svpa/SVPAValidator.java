@@ -0,0 +1,308 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * A streaming validator of nested words (for example XML or JSON documents)
+ * against an SVPA. Events are pushed one at a time through
+ * {@link #call}, {@link #internal} and {@link #ret}, or pulled from an
+ * iterator with {@link #validate}, so the document is never materialized.
+ *
+ * The SVPA is determinized once when the validator is created, so a single
+ * run is kept. Its stack is an int array of stack states with the matching
+ * call symbols, and the memory used is proportional to the nesting depth of
+ * the document.
+ *
+ * @param <U>
+ *            The type of predicates forming the Boolean algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SVPAValidator<U, S> {
+
+	private final BooleanAlgebra<U, S> ba;
+	private final SVPA<U, S> aut;
+
+	private final int initialState;
+	private final boolean[] isFinal;
+	// moves of state q: guards[q][i] -> targets[q][i]
+	private final Object[][] internalGuards;
+	private final int[][] internalTargets;
+	private final Object[][] returnBSGuards;
+	private final int[][] returnBSTargets;
+	private final Object[][] callGuards;
+	private final int[][] callTargets;
+	private final int[][] callStackStates;
+	private final Object[][] returnGuards;
+	private final int[][] returnTargets;
+	private final int[][] returnStackStates;
+
+	// current configuration, state is -1 once the input is rejected
+	private int state;
+	private int depth;
+	private int[] stackStates = new int[16];
+	private Object[] callSymbols = new Object[16];
+
+	/**
+	 * A validator for the nested words accepted by <code>svpa</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SVPAValidator(SVPA<U, S> svpa, BooleanAlgebra<U, S> ba) throws TimeoutException {
+		this.ba = ba;
+		this.aut = svpa.determinize(ba);
+
+		Map<Integer, Integer> stateIds = new HashMap<Integer, Integer>();
+		for (Integer st : aut.states)
+			stateIds.put(st, stateIds.size());
+		Map<Integer, Integer> stackStateIds = new HashMap<Integer, Integer>();
+
+		int stateCount = stateIds.size();
+		isFinal = new boolean[stateCount];
+		internalGuards = new Object[stateCount][];
+		internalTargets = new int[stateCount][];
+		returnBSGuards = new Object[stateCount][];
+		returnBSTargets = new int[stateCount][];
+		callGuards = new Object[stateCount][];
+		callTargets = new int[stateCount][];
+		callStackStates = new int[stateCount][];
+		returnGuards = new Object[stateCount][];
+		returnTargets = new int[stateCount][];
+		returnStackStates = new int[stateCount][];
+
+		for (Integer st : aut.states) {
+			int q = stateIds.get(st);
+			isFinal[q] = aut.finalStates.contains(st);
+
+			List<Internal<U, S>> internals = new ArrayList<Internal<U, S>>(aut.getInternalsFrom(st));
+			internalGuards[q] = new Object[internals.size()];
+			internalTargets[q] = new int[internals.size()];
+			for (int i = 0; i < internals.size(); i++) {
+				internalGuards[q][i] = internals.get(i).guard;
+				internalTargets[q][i] = stateIds.get(internals.get(i).to);
+			}
+
+			List<ReturnBS<U, S>> returnBSs = new ArrayList<ReturnBS<U, S>>(aut.getReturnBSFrom(st));
+			returnBSGuards[q] = new Object[returnBSs.size()];
+			returnBSTargets[q] = new int[returnBSs.size()];
+			for (int i = 0; i < returnBSs.size(); i++) {
+				returnBSGuards[q][i] = returnBSs.get(i).guard;
+				returnBSTargets[q][i] = stateIds.get(returnBSs.get(i).to);
+			}
+
+			List<Call<U, S>> calls = new ArrayList<Call<U, S>>(aut.getCallsFrom(st));
+			callGuards[q] = new Object[calls.size()];
+			callTargets[q] = new int[calls.size()];
+			callStackStates[q] = new int[calls.size()];
+			for (int i = 0; i < calls.size(); i++) {
+				callGuards[q][i] = calls.get(i).guard;
+				callTargets[q][i] = stateIds.get(calls.get(i).to);
+				callStackStates[q][i] = stackStateId(stackStateIds, calls.get(i).stackState);
+			}
+
+			List<Return<U, S>> returns = new ArrayList<Return<U, S>>(aut.getReturnsFrom(st));
+			returnGuards[q] = new Object[returns.size()];
+			returnTargets[q] = new int[returns.size()];
+			returnStackStates[q] = new int[returns.size()];
+			for (int i = 0; i < returns.size(); i++) {
+				returnGuards[q][i] = returns.get(i).guard;
+				returnTargets[q][i] = stateIds.get(returns.get(i).to);
+				returnStackStates[q][i] = stackStateId(stackStateIds, returns.get(i).stackState);
+			}
+		}
+
+		initialState = aut.initialStates.isEmpty() ? -1 : stateIds.get(aut.initialStates.iterator().next());
+		reset();
+	}
+
+	private static int stackStateId(Map<Integer, Integer> ids, Integer stackState) {
+		Integer id = ids.get(stackState);
+		if (id == null) {
+			id = ids.size();
+			ids.put(stackState, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return the deterministic SVPA used by this validator
+	 */
+	public SVPA<U, S> getSVPA() {
+		return aut;
+	}
+
+	/**
+	 * Restarts the validation of a new nested word, keeping the stack storage
+	 */
+	public void reset() {
+		state = initialState;
+		depth = 0;
+		Arrays.fill(callSymbols, null);
+	}
+
+	/**
+	 * Reads the call (opening) symbol <code>symbol</code>
+	 *
+	 * @return false if the nested word read so far has no accepting extension
+	 *         in the automaton, i.e. the input is rejected
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean call(S symbol) throws TimeoutException {
+		if (state < 0)
+			return false;
+
+		Object[] guards = callGuards[state];
+		for (int i = 0; i < guards.length; i++)
+			if (ba.HasModel((U) guards[i], symbol)) {
+				push(callStackStates[state][i], symbol);
+				state = callTargets[state][i];
+				return true;
+			}
+
+		return reject();
+	}
+
+	/**
+	 * Reads the internal symbol <code>symbol</code>
+	 *
+	 * @return false if the input is rejected
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean internal(S symbol) throws TimeoutException {
+		if (state < 0)
+			return false;
+
+		Object[] guards = internalGuards[state];
+		for (int i = 0; i < guards.length; i++)
+			if (ba.HasModel((U) guards[i], symbol)) {
+				state = internalTargets[state][i];
+				return true;
+			}
+
+		return reject();
+	}
+
+	/**
+	 * Reads the return (closing) symbol <code>symbol</code>, matched with the
+	 * innermost pending call if there is one
+	 *
+	 * @return false if the input is rejected
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean ret(S symbol) throws TimeoutException {
+		if (state < 0)
+			return false;
+
+		if (depth == 0) {
+			Object[] guards = returnBSGuards[state];
+			for (int i = 0; i < guards.length; i++)
+				if (ba.HasModel((U) guards[i], symbol)) {
+					state = returnBSTargets[state][i];
+					return true;
+				}
+			return reject();
+		}
+
+		int stackState = stackStates[depth - 1];
+		S callSymbol = (S) callSymbols[depth - 1];
+		Object[] guards = returnGuards[state];
+		for (int i = 0; i < guards.length; i++)
+			if (returnStackStates[state][i] == stackState && ba.HasModel((U) guards[i], callSymbol, symbol)) {
+				callSymbols[--depth] = null;
+				state = returnTargets[state][i];
+				return true;
+			}
+
+		return reject();
+	}
+
+	/**
+	 * Reads <code>symbol</code> according to its tag
+	 *
+	 * @return false if the input is rejected
+	 * @throws TimeoutException
+	 */
+	public boolean read(TaggedSymbol<S> symbol) throws TimeoutException {
+		switch (symbol.tag) {
+		case Call:
+			return call(symbol.input);
+		case Return:
+			return ret(symbol.input);
+		default:
+			return internal(symbol.input);
+		}
+	}
+
+	/**
+	 * @return true if the nested word read so far is accepted
+	 */
+	public boolean isAccepting() {
+		return state >= 0 && isFinal[state];
+	}
+
+	/**
+	 * @return true if the nested word read so far was rejected
+	 */
+	public boolean isRejected() {
+		return state < 0;
+	}
+
+	/**
+	 * @return the number of pending calls
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Validates the nested word produced by <code>events</code>, stopping at
+	 * the first event that makes it rejected
+	 *
+	 * @return true if the nested word is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean validate(Iterator<TaggedSymbol<S>> events) throws TimeoutException {
+		reset();
+		while (events.hasNext())
+			if (!read(events.next()))
+				return false;
+		return isAccepting();
+	}
+
+	/**
+	 * Validates <code>word</code>
+	 *
+	 * @return true if the nested word is accepted
+	 * @throws TimeoutException
+	 */
+	public boolean validate(Iterable<TaggedSymbol<S>> word) throws TimeoutException {
+		return validate(word.iterator());
+	}
+
+	private void push(int stackState, S symbol) {
+		if (depth == stackStates.length) {
+			stackStates = Arrays.copyOf(stackStates, 2 * depth);
+			callSymbols = Arrays.copyOf(callSymbols, 2 * depth);
+		}
+		stackStates[depth] = stackState;
+		callSymbols[depth] = symbol;
+		depth++;
+	}
+
+	private boolean reject() {
+		state = -1;
+		return false;
+	}
+}
@@ -0,0 +1,56 @@
+package learning.sfa;
+
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import utilities.QueryCache;
+
+/**
+ * Answers repeated membership queries from a {@link QueryCache}, forwarding
+ * only the unknown words to the wrapped oracle. The cache can be shared with
+ * other oracles and learning runs.
+ */
+public class CachedOracle<P, S> extends Oracle<P, S> {
+
+	private final Oracle<P, S> oracle;
+	private final QueryCache<S> cache;
+
+	public CachedOracle(Oracle<P, S> oracle) {
+		this(oracle, new QueryCache<S>());
+	}
+
+	public CachedOracle(Oracle<P, S> oracle, QueryCache<S> cache) {
+		this.oracle = oracle;
+		this.cache = cache;
+	}
+
+	public QueryCache<S> getCache() {
+		return cache;
+	}
+
+	@Override
+	protected List<S> checkEquivalenceImpl(SFA<P, S> compareTo) throws TimeoutException {
+		return oracle.checkEquivalenceImpl(compareTo);
+	}
+
+	@Override
+	protected boolean checkMembershipImpl(List<S> w) throws TimeoutException {
+		Boolean answer = cache.lookup(w);
+		if (answer == null) {
+			answer = oracle.checkMembershipImpl(w);
+			cache.put(w, answer);
+		}
+		return answer;
+	}
+
+	@Override
+	protected List<Boolean> checkMembershipsImpl(List<List<S>> words) throws TimeoutException {
+		return cache.answerAll(words, new QueryCache.Batch<S>() {
+			public List<Boolean> answer(List<List<S>> missing) throws TimeoutException {
+				return oracle.checkMembershipsImpl(missing);
+			}
+		});
+	}
+}
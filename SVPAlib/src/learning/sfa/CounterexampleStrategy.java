@@ -0,0 +1,20 @@
+package learning.sfa;
+
+/**
+ * How a learner adds the information of a counterexample to its observation
+ * table
+ */
+public enum CounterexampleStrategy {
+	/**
+	 * Adds every prefix of the counterexample to R
+	 */
+	ALL_PREFIXES,
+	/**
+	 * Finds by binary search a single position where the counterexample
+	 * disagrees with the hypothesis (Rivest and Schapire). The suffix after
+	 * that position is added to E and the evidence of the wrong transition
+	 * to R, so the table grows logarithmically in the length of the
+	 * counterexample.
+	 */
+	RIVEST_SCHAPIRE
+}
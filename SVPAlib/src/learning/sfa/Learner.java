@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -24,6 +26,10 @@ public class Learner<P, S> {
 
 	public boolean debugOutput; //controls whether to write intermediary steps to System.out
 	
+	//membership queries issued while processing counterexamples in the last run,
+	//including the ones filling the rows and columns they add
+	protected int numCounterexampleMembership;
+	
 	public Learner() {
 		this.debugOutput = false;
 	}
@@ -39,8 +45,17 @@ public class Learner<P, S> {
 		}
 	}
 	
+	public int getNumCounterexampleMembership() {
+		return numCounterexampleMembership;
+	}
+	
 	public SFA<P, S> learn(Oracle<P, S> o, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		return learn(o, ba, CounterexampleStrategy.ALL_PREFIXES);
+	}
+	
+	public SFA<P, S> learn(Oracle<P, S> o, BooleanAlgebra<P, S> ba, CounterexampleStrategy strategy) throws TimeoutException {
 		ObsTable table = new ObsTable(ba.generateWitness(ba.True()));
+		numCounterexampleMembership = 0;
 		
 		SFA<P, S> conjecture = null;
 		List<S> cx = null;
@@ -99,14 +114,27 @@ public class Learner<P, S> {
 			if (cx == null) {
 				this.log("statistics", 
 						"# equiv: " + o.getNumEquivalence() + 
-						"\n# mem: " + o.getNumMembership());
+						"\n# mem: " + o.getNumMembership() +
+						"\n# mem for counterexamples: " + numCounterexampleMembership);
 				return conjecture;
 			}
 
 			this.log("counterex", (cx == null ? "none" : cx));
 			
 			//process the counterexample
-			table.process(cx);
+			int queries = o.getNumMembership();
+			if (strategy == CounterexampleStrategy.RIVEST_SCHAPIRE) {
+				boolean addedSuffix = table.processRivestSchapire(cx, o, ba);
+				//a new suffix in E is handled as in make_consistent
+				if (addedSuffix) {
+					table.fill(o);
+					table.distribute();
+				}
+			} else {
+				table.process(cx);
+			}
+			table.fill(o);
+			numCounterexampleMembership += o.getNumMembership() - queries;
 			
 			//this.log("TBLpostCX", table);
 
@@ -119,6 +147,10 @@ public class Learner<P, S> {
 		public List<List<S>> S, R, E, SUR;
 		public Map<List<S>, Boolean> f;
 		public S arbchar;
+		//the elements of SUR, for constant-time membership checks
+		private Set<List<S>> SURSet;
+		//guards of the last hypothesis: state i moves to j on hypothesis.get(i).get(j)
+		private List<List<P>> hypothesis;
 		
 		public ObsTable(S arbchar) {
 			S = new ArrayList<List<S>>();
@@ -126,17 +158,36 @@ public class Learner<P, S> {
 			SUR = new ArrayList<List<S>>();
 			E = new ArrayList<List<S>>();
 			f = new HashMap<List<S>, Boolean>();
+			SURSet = new HashSet<List<S>>();
 			this.arbchar = arbchar;
 			
 			S.add(new ArrayList<S>());
 			SUR.add(new ArrayList<S>());
+			SURSet.add(new ArrayList<S>());
 			List<S> r = new ArrayList<S>();
 			r.add(arbchar);
-			R.add(r);
-			SUR.add(r);
+			addToR(r);
 			E.add(new ArrayList<S>());
 		}
 		
+		//adds w to R unless it is already in SUR
+		private boolean addToR(List<S> w) {
+			if (!SURSet.add(w))
+				return false;
+			R.add(w);
+			SUR.add(w);
+			return true;
+		}
+		
+		//the rows of the words in ws, computed once
+		private Map<List<S>, List<Boolean>> rows(List<List<S>> ws) {
+			Map<List<S>, List<Boolean>> rows = new HashMap<List<S>, List<Boolean>>();
+			for (List<S> w : ws)
+				if (!rows.containsKey(w))
+					rows.put(w, row(w));
+			return rows;
+		}
+		
 		//auxiliary method that checks whether
 		//w is a strict prefix of we
 		private boolean isPrefix(List<S> w, List<S> we) {
@@ -165,12 +216,73 @@ public class Learner<P, S> {
 				prefixes.add(prefix);
 			}
 			
-			for (List<S> p : prefixes) {
-				if (!SUR.contains(p)) {
-					R.add(p);
-					SUR.add(p);
+			for (List<S> p : prefixes)
+				addToR(p);
+		}
+
+		//finds by binary search a position i where the answers on
+		//access(cx[0..i)) cx[i..] and access(cx[0..i+1)) cx[i+1..] differ,
+		//adds access(cx[0..i)) cx[i] to R and cx[i+1..] to E;
+		//returns true if E changed
+		public boolean processRivestSchapire(List<S> cx, Oracle<P, S> o, BooleanAlgebra<P, S> ba) throws TimeoutException {
+			List<S> access = access(cx, cx.size(), ba);
+			if (cx.isEmpty() || access == null) {
+				process(cx);
+				return false;
+			}
+			
+			//the hypothesis answers f(access(cx)) on cx, the target the opposite
+			boolean lowAnswer = !f.get(access);
+			int low = 0, high = cx.size();
+			while (high - low > 1) {
+				int mid = (low + high) / 2;
+				List<S> w = new ArrayList<S>(access(cx, mid, ba));
+				w.addAll(cx.subList(mid, cx.size()));
+				Boolean answer = f.get(w);
+				if (answer == null) {
+					answer = o.checkMembership(w);
+					f.put(w, answer);
 				}
+				if (answer == lowAnswer)
+					low = mid;
+				else
+					high = mid;
+			}
+			
+			List<S> evidence = new ArrayList<S>(access(cx, low, ba));
+			evidence.add(cx.get(low));
+			addToR(evidence);
+			
+			List<S> e = new ArrayList<S>(cx.subList(low + 1, cx.size()));
+			if (E.contains(e))
+				return false;
+			E.add(e);
+			//handle evidence-closure
+			for (List<S> s : S) {
+				List<S> se = new ArrayList<S>(s);
+				se.addAll(e);
+				addToR(se);
 			}
+			return true;
+		}
+		
+		//the word of S reached by the last hypothesis on the first
+		//length characters of w, null if a character has no move
+		private List<S> access(List<S> w, int length, BooleanAlgebra<P, S> ba) throws TimeoutException {
+			if (hypothesis == null)
+				return null;
+			int state = 0;
+			for (int k = 0; k < length; k++) {
+				List<P> guards = hypothesis.get(state);
+				int next = -1;
+				for (int j = 0; j < guards.size() && next < 0; j++)
+					if (ba.HasModel(guards.get(j), w.get(k)))
+						next = j;
+				if (next < 0)
+					return null;
+				state = next;
+			}
+			return S.get(state);
 		}
 
 		//sanity check to verify a conjectured automaton
@@ -210,6 +322,7 @@ public class Learner<P, S> {
 			
 			//now generalize the evidence into predicates
 			List<SFAMove<P, S>> moves = new ArrayList<SFAMove<P, S>>();
+			hypothesis = new ArrayList<List<P>>();
 			for (int i = 0; i < S.size(); i++) {
 				List<Boolean> sb = row(S.get(i));
 				ArrayList<Collection<S>> groups_arr = new ArrayList<Collection<S>>();
@@ -218,6 +331,7 @@ public class Learner<P, S> {
 				}
 				ArrayList<P> sepPreds = ba.GetSeparatingPredicates(groups_arr, Long.MAX_VALUE);
 				checkArgument(sepPreds.size() == S.size());
+				hypothesis.add(sepPreds);
 				for (int j = 0; j < sepPreds.size(); j++)
 					moves.add(new SFAInputMove<P, S>(i, j, sepPreds.get(j)));
 			}
@@ -255,30 +369,37 @@ public class Learner<P, S> {
 			return ret;
 		}
 		
+		//gathers the missing cells and queries them as one batch
 		public void fill(Oracle<P, S> o) throws TimeoutException { 
+			Set<List<S>> missing = new LinkedHashSet<List<S>>();
 			for (List<S> w : SUR) {
 				for (List<S> e : E) {
 					List<S> we = new ArrayList<S>(w);
 					we.addAll(e);
 					if (!f.containsKey(we))
-						f.put(we, o.checkMembership(we));
+						missing.add(we);
 				}
 			}
+			List<List<S>> queries = new ArrayList<List<S>>(missing);
+			List<Boolean> answers = o.checkMemberships(queries);
+			for (int i = 0; i < queries.size(); i++)
+				f.put(queries.get(i), answers.get(i));
 		}
 		
 		//returns true if makes a change, needs to be applied until returns false
 		public boolean close() {
+			Map<List<S>, List<Boolean>> rows = rows(SUR);
 			Set<List<Boolean>> sigs = new HashSet<List<Boolean>>();
 			for (List<S> s : S)
-				sigs.add(row(s));
+				sigs.add(rows.get(s));
 			List<S> best_r = null;
 			for (List<S> r : R) {
-				if (!sigs.contains(row(r))) {
+				if (!sigs.contains(rows.get(r))) {
 					//for membership query efficiency,
 					//instead of just moving r to S, move the shortest r' with row(r) = row(r')
 					best_r = r;
 					for (List<S> rp : R) {
-						if (!row(r).equals(row(rp)))
+						if (!rows.get(r).equals(rows.get(rp)))
 							continue;
 						if (r.equals(rp))
 							continue;
@@ -299,10 +420,7 @@ public class Learner<P, S> {
 			for (List<S> e : E) { 
 				List<S> re = new ArrayList<S>(r);
 				re.addAll(e);
-				if (!SUR.contains(re)) {
-					R.add(re);
-					SUR.add(re);
-				}
+				addToR(re);
 			}
 			
 			//in case all the e in E are more than single char,
@@ -319,8 +437,7 @@ public class Learner<P, S> {
 			if (!cont) {
 				List<S> ra = new ArrayList<S>(r);
 				ra.add(arbchar);
-				R.add(ra);
-				SUR.add(ra);
+				addToR(ra);
 			}
 			
 			return true;
@@ -328,28 +445,32 @@ public class Learner<P, S> {
 		
 		//returns true if makes a change, needs to be applied until returns false
 		public boolean make_consistent() { 
+			//only pairs with the same row are compared: index SUR by row,
+			//and compute rows and continuations once
+			Map<List<S>, List<Boolean>> rows = rows(SUR);
+			Map<List<Boolean>, List<Integer>> sameRow = new HashMap<List<Boolean>, List<Integer>>();
+			for (int i = 0; i < SUR.size(); i++) {
+				List<Boolean> r = rows.get(SUR.get(i));
+				if (!sameRow.containsKey(r))
+					sameRow.put(r, new ArrayList<Integer>());
+				sameRow.get(r).add(i);
+			}
+			Map<List<S>, Map<List<S>, List<S>>> conts = new HashMap<List<S>, Map<List<S>, List<S>>>();
 			for (int i = 0; i < SUR.size(); i++) {
-				for (int j = i + 1; j < SUR.size(); j++) {
+				for (int j : sameRow.get(rows.get(SUR.get(i)))) {
+					if (j <= i)
+						continue;
 					List<S> w1 = SUR.get(i);
 					List<S> w2 = SUR.get(j);
-					if (!row(w1).equals(row(w2)))
-						continue;
-					Set<List<S>> cont1 = new HashSet<List<S>>();
-					Set<List<S>> cont2 = new HashSet<List<S>>();
-					for (List<S> wa : SUR) {
-						if (isPrefix(w1, wa))
-							cont1.add(wa);
-						if (isPrefix(w2, wa))
-							cont2.add(wa);
-					}
-					for (List<S> w1a : cont1) {
-						List<S> suffix1 = getSuffix(w1, w1a);
-						for (List<S> w2a : cont2) {
-							List<S> suffix2 = getSuffix(w2, w2a);
-							if (!suffix1.equals(suffix2))
-								continue;
-							List<Boolean> r1 = row(w1a);
-							List<Boolean> r2 = row(w2a);
+					Map<List<S>, List<S>> cont1 = continuations(w1, conts);
+					Map<List<S>, List<S>> cont2 = continuations(w2, conts);
+					for (Map.Entry<List<S>, List<S>> c1 : cont1.entrySet()) {
+						List<S> suffix1 = c1.getKey();
+						List<S> w1a = c1.getValue();
+						List<S> w2a = cont2.get(suffix1);
+						if (w2a != null) {
+							List<Boolean> r1 = rows.get(w1a);
+							List<Boolean> r2 = rows.get(w2a);
 							if (!r1.equals(r2)) {
 								//at this point,
 								//row(w1) == row(w2) but row(w1e) != row(w2e)
@@ -370,10 +491,7 @@ public class Learner<P, S> {
 								for (List<S> s : S) {
 									List<S> se = new ArrayList<S>(s);
 									se.addAll(e);
-									if (!SUR.contains(se)) {
-										R.add(se);
-										SUR.add(se);
-									}
+									addToR(se);
 								}
 								return true;
 							}
@@ -384,6 +502,23 @@ public class Learner<P, S> {
 			return false;
 		}
 		
+		//the words of SUR having w as a strict prefix, keyed by their suffix,
+		//in the order of a hash set of the words
+		private Map<List<S>, List<S>> continuations(List<S> w, Map<List<S>, Map<List<S>, List<S>>> conts) {
+			Map<List<S>, List<S>> cont = conts.get(w);
+			if (cont == null) {
+				Set<List<S>> was = new HashSet<List<S>>();
+				for (List<S> wa : SUR)
+					if (isPrefix(w, wa))
+						was.add(wa);
+				cont = new LinkedHashMap<List<S>, List<S>>();
+				for (List<S> wa : was)
+					cont.put(getSuffix(w, wa), wa);
+				conts.put(w, cont);
+			}
+			return cont;
+		}
+		
 		//this is called assuming that make_consistent added an element (exactly one element) to E
 		public boolean distribute() {
 			List<S> e = E.get(E.size() - 1);
@@ -393,12 +528,22 @@ public class Learner<P, S> {
 			//find pairs u1,u2 in SUR with row(u1) = row(u2) but f(u1e) != f(u2e)
 			//(where row does not include the e index)
 			List<S> u1, u2, u1e, u2e;
+			Map<List<S>, List<Boolean>> rows = rows(SUR);
+			Map<List<S>, List<Boolean>> rowsWithoutE = new HashMap<List<S>, List<Boolean>>();
+			Map<List<Boolean>, List<Integer>> sameRow = new HashMap<List<Boolean>, List<Integer>>();
+			for (int i = 0; i < SUR.size(); i++) {
+				List<Boolean> r = row(SUR.get(i), e);
+				rowsWithoutE.put(SUR.get(i), r);
+				if (!sameRow.containsKey(r))
+					sameRow.put(r, new ArrayList<Integer>());
+				sameRow.get(r).add(i);
+			}
 			for (int i = 0; i < SUR.size(); i++) {
-				for (int j = i + 1; j < SUR.size(); j++) {
+				for (int j : sameRow.get(rowsWithoutE.get(SUR.get(i)))) {
+					if (j <= i)
+						continue;
 					u1 = SUR.get(i);
 					u2 = SUR.get(j);
-					if (!row(u1,e).equals(row(u2,e)))
-						continue;
 					u1e = new ArrayList<S>(u1);
 					u1e.addAll(e);
 					u2e = new ArrayList<S>(u2);
@@ -414,11 +559,11 @@ public class Learner<P, S> {
 							//there already exists wb with row(w) = row(u2)
 							addFlag = true;
 							for (List<S> w : SUR) {
-								if (!row(w).equals(row(u2)))
+								if (!rows.get(w).equals(rows.get(u2)))
 									continue;
 								List<S> wb = new ArrayList<S>(w);
 								wb.addAll(b);
-								if (SUR.contains(wb) || toAdd.contains(wb)) {
+								if (SURSet.contains(wb) || toAdd.contains(wb)) {
 									addFlag = false;
 									break;
 								}
@@ -426,7 +571,7 @@ public class Learner<P, S> {
 							if (addFlag) {
 								List<S> u2b = new ArrayList<S>(u2);
 								u2b.addAll(b);
-								if (!SUR.contains(u2b))
+								if (!SURSet.contains(u2b))
 									toAdd.add(u2b);
 							}
 						}
@@ -434,11 +579,11 @@ public class Learner<P, S> {
 							List<S> b = getSuffix(u2,unb);
 							addFlag = true;
 							for (List<S> w : SUR) {
-								if (!row(w).equals(row(u1)))
+								if (!rows.get(w).equals(rows.get(u1)))
 									continue;
 								List<S> wb = new ArrayList<S>(w);
 								wb.addAll(b);
-								if (SUR.contains(wb) || toAdd.contains(wb)) {
+								if (SURSet.contains(wb) || toAdd.contains(wb)) {
 									addFlag = false;
 									break;
 								}
@@ -446,7 +591,7 @@ public class Learner<P, S> {
 							if (addFlag) {
 								List<S> u1b = new ArrayList<S>(u1);
 								u1b.addAll(b);
-								if (!SUR.contains(u1b))
+								if (!SURSet.contains(u1b))
 									toAdd.add(u1b);
 							}
 						}
@@ -458,8 +603,8 @@ public class Learner<P, S> {
 			//	System.out.println(w.toString());
 			//Scanner scanner = new Scanner(System.in);
 			//scanner.nextLine();
-			R.addAll(toAdd);
-			SUR.addAll(toAdd);
+			for (List<S> w : toAdd)
+				addToR(w);
 			return toAdd.size() > 0;
 		}
 		
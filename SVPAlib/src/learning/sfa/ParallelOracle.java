@@ -0,0 +1,48 @@
+package learning.sfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import utilities.ParallelQueries;
+
+/**
+ * Answers the membership queries of a batch concurrently on an executor,
+ * delegating every query to an oracle that must be safe to call from
+ * several threads. Queries are counted by this oracle only.
+ */
+public class ParallelOracle<P, S> extends Oracle<P, S> {
+
+	private final Oracle<P, S> oracle;
+	private final ExecutorService executor;
+
+	public ParallelOracle(Oracle<P, S> oracle, ExecutorService executor) {
+		this.oracle = oracle;
+		this.executor = executor;
+	}
+
+	@Override
+	protected List<S> checkEquivalenceImpl(SFA<P, S> compareTo) throws TimeoutException {
+		return oracle.checkEquivalenceImpl(compareTo);
+	}
+
+	@Override
+	protected boolean checkMembershipImpl(List<S> w) throws TimeoutException {
+		return oracle.checkMembershipImpl(w);
+	}
+
+	@Override
+	protected List<Boolean> checkMembershipsImpl(List<List<S>> words) throws TimeoutException {
+		List<ParallelQueries.Query> queries = new ArrayList<ParallelQueries.Query>(words.size());
+		for (final List<S> w : words)
+			queries.add(new ParallelQueries.Query() {
+				public boolean answer() throws TimeoutException {
+					return oracle.checkMembershipImpl(w);
+				}
+			});
+		return ParallelQueries.answerAll(executor, queries);
+	}
+}
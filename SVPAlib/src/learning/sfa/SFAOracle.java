@@ -24,7 +24,15 @@ public class SFAOracle<P, S> extends Oracle<P, S> {
 		SFA<P, S> sdiff = SFA.union(SFA.difference(toLearn, compareTo, ba, Long.MAX_VALUE),
 									SFA.difference(compareTo, toLearn, ba, Long.MAX_VALUE), 
 									ba);
-		return sdiff.getWitness(ba);
+		return witness(sdiff);
+	}
+	
+	/**
+	 * @return the counterexample picked among the words of <code>difference</code>,
+	 * a shortest one by default
+	 */
+	protected List<S> witness(SFA<P, S> difference) throws TimeoutException {
+		return difference.getWitness(ba);
 	}
 	
 	@Override
@@ -42,13 +42,21 @@ public class SinglePathSFAOracle<P, S> extends SymbolicOracle<P, S> {
 			} 
 	}
 	
+	/**
+	 * @return the word of <code>difference</code> the counterexample is built
+	 * from, a shortest one by default
+	 */
+	protected List<S> witness(SFA<P, S> difference) throws TimeoutException {
+		return difference.getWitness(ba);
+	}
+	
 	@Override
 	protected List<P> checkEquivalenceImpl(SFA<P, S> compareTo) throws TimeoutException {
 		SFA<P,S> d1 = SFA.difference(toLearn, compareTo, ba, Long.MAX_VALUE);
 		SFA<P,S> d2 = SFA.difference(compareTo, toLearn, ba, Long.MAX_VALUE);
 		SFA<P,S> sdiff = SFA.union(d1,d2,ba);
 
-		List<S> wit = sdiff.getWitness(ba);
+		List<S> wit = witness(sdiff);
 		if(wit == null) { //learned correct automaton.
 			printStats();
 			return null;
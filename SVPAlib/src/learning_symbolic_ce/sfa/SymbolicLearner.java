@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,9 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 
 	public boolean debugOutput; //controls whether to write intermediary steps to System.out
 	
+	//counterexamples of the last run whose prefixes were all added to R
+	private int numPrefixCounterexamples;
+	
 	public SymbolicLearner() {
 		super();
 	}
@@ -41,6 +45,10 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 		super(debugOutput);
 	}
 	
+	public int getNumPrefixCounterexamples() {
+		return numPrefixCounterexamples;
+	}
+	
 	private void log(String heading, Object value) {
 		if (this.debugOutput) {
 			System.out.println("========" + heading + "========");
@@ -49,7 +57,13 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 	}
 
 	public SFA<P, S> learn(SymbolicOracle<P, S> o, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		return learn(o, ba, CounterexampleStrategy.ALL_PREFIXES);
+	}
+	
+	public SFA<P, S> learn(SymbolicOracle<P, S> o, BooleanAlgebra<P, S> ba, CounterexampleStrategy strategy) throws TimeoutException {
 		ObsTable table = new ObsTable(ba.generateWitness(ba.True()), ba);
+		numCounterexampleMembership = 0;
+		numPrefixCounterexamples = 0;
 		long fulltime = System.nanoTime();
 		
 		SFA<P, S> conjecture = null;
@@ -144,14 +158,18 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 				System.out.println(String.valueOf(System.nanoTime() - fulltime));
 				this.log("statistics", 
 						"# equiv: " + o.getNumEquivalence() + 
-						"\n# mem: " + o.getNumMembership());
+						"\n# mem: " + o.getNumMembership() +
+						"\n# mem for counterexamples: " + numCounterexampleMembership);
 				return conjecture;
 			}
 
 			this.log("counterex", (cx == null ? "none" : cx));
 			
 			//process the counterexample
-			table.process(cx, ba, table, o);
+			int queries = o.getNumMembership();
+			table.process(cx, ba, table, o, strategy);
+			table.fill(o);
+			numCounterexampleMembership += o.getNumMembership() - queries;
 			Boolean b = false;
 			b = !b;
 			//this.log("TBLpostCX", table);
@@ -174,6 +192,8 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 		//observed partition is a list of predicate/state pairs
 		HashMap<List<S>, ArrayList<Triple<P, List<S>, S>>> partitions;
 		HashMap<List<S>, P> nullMap;
+		//moves of the last hypothesis, by source state
+		List<List<SFAInputMove<P, S>>> hypothesis;
 		
 		//returns the string in S with the same row as aString. 
 		//returns null if no such state exists.  
@@ -264,7 +284,7 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 		}
 		*/
 
-		public void process(List<P> cx, BooleanAlgebra<P,S> ba, ObsTable table, SymbolicOracle<P,S> o) throws TimeoutException{
+		public void process(List<P> cx, BooleanAlgebra<P,S> ba, ObsTable table, SymbolicOracle<P,S> o, CounterexampleStrategy strategy) throws TimeoutException{
 			//HashMap<List<S>, ArrayList<Triple<P, List<S>, S>>> newPartitions = new HashMap<List<S>, ArrayList<Triple<P, List<S>, S>>>(partitions);
  			//HashMap<List<S>, P> newNullMap = new HashMap<List<S>, P>(nullMap);
  			//System.out.println(String.valueOf(this.S.size()));
@@ -314,6 +334,14 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 			if(!changedPred) {
 				assert false : "no difference was found between counter-example and hypothesis";
 			}
+			if (strategy == CounterexampleStrategy.RIVEST_SCHAPIRE) {
+				List<S> witness = new ArrayList<S>();
+				for (P p : cx)
+					witness.add(ba.generateWitness(p));
+				if (processRivestSchapire(witness, o))
+					return;
+			}
+			numPrefixCounterexamples++;
 			List<S> newR = new ArrayList<S>();
 			//!! changed to add all prefixes to R 
 			for(int i=0; i < cx.size(); i++) {
@@ -325,6 +353,70 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 			
 		}
 		
+		//if the hypothesis is wrong on w, finds by binary search a position i
+		//where the answers on access(w[0..i)) w[i..] and access(w[0..i+1)) w[i+1..]
+		//differ, adds access(w[0..i)) w[i] to R and w[i+1..] to E;
+		//returns false if the hypothesis is right on w
+		private boolean processRivestSchapire(List<S> w, SymbolicOracle<P,S> o) throws TimeoutException {
+			List<S> access = access(w, w.size());
+			if (w.isEmpty() || access == null || f.get(access) == null)
+				return false;
+			boolean lowAnswer = membership(w, o);
+			if (lowAnswer == f.get(access))
+				return false;
+			
+			int low = 0, high = w.size();
+			while (high - low > 1) {
+				int mid = (low + high) / 2;
+				List<S> wmid = new ArrayList<S>(access(w, mid));
+				wmid.addAll(w.subList(mid, w.size()));
+				if (membership(wmid, o) == lowAnswer)
+					low = mid;
+				else
+					high = mid;
+			}
+			
+			List<S> evidence = new ArrayList<S>(access(w, low));
+			evidence.add(w.get(low));
+			if (!SUR.contains(evidence)) {
+				R.add(evidence);
+				SUR.add(evidence);
+			}
+			List<S> e = new ArrayList<S>(w.subList(low + 1, w.size()));
+			if (!E.contains(e))
+				addExperiment(e);
+			return true;
+		}
+		
+		//the word of S reached by the last hypothesis on the first
+		//length characters of w, null if a character has no move
+		private List<S> access(List<S> w, int length) throws TimeoutException {
+			if (hypothesis == null)
+				return null;
+			int state = 0;
+			for (int k = 0; k < length; k++) {
+				Integer next = null;
+				for (SFAInputMove<P, S> move : hypothesis.get(state))
+					if (ba.HasModel(move.guard, w.get(k))) {
+						next = move.to;
+						break;
+					}
+				if (next == null)
+					return null;
+				state = next;
+			}
+			return S.get(state);
+		}
+		
+		private boolean membership(List<S> w, SymbolicOracle<P,S> o) throws TimeoutException {
+			Boolean answer = f.get(w);
+			if (answer == null) {
+				answer = o.checkMembership(w);
+				f.put(w, answer);
+			}
+			return answer;
+		}
+		
 		//!! make more efficient in terms of new elements added to R
 		//Ensures that accessString is extended in R by a representative element from each partition.  
 		public void extendByPartitions(List<S> accessString,  ArrayList<Triple<P, List<S>, S>> newPart) throws TimeoutException{
@@ -522,8 +614,10 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 			}
 			
 			List<SFAMove<P, S>> moves = new ArrayList<SFAMove<P, S>>();
+			hypothesis = new ArrayList<List<SFAInputMove<P, S>>>();
 			for(int i=0; i < S.size(); i++) {
 				List<S> accessString = S.get(i);
+				hypothesis.add(new ArrayList<SFAInputMove<P, S>>());
 				HashMap<List<S>, P> sepPred = new HashMap<List<S>, P>();
 				ArrayList<Triple<P, List<S>, S>> test = partitions.get(accessString);
 				assert test != null;
@@ -539,7 +633,9 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 				}
 				for(List<S> s : S) {
 					if(sepPred.get(s) != null) {
-						moves.add(new SFAInputMove<P,S>(i, S.indexOf(s), sepPred.get(s)));
+						SFAInputMove<P, S> move = new SFAInputMove<P,S>(i, S.indexOf(s), sepPred.get(s));
+						moves.add(move);
+						hypothesis.get(i).add(move);
 					}
 				}
 			}
@@ -648,18 +744,26 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 		
 		//returns a row of w when it is not guaranteed that f contains we
 		public List<Boolean> safeRow(List<S> w, SymbolicOracle<P,S> o) throws TimeoutException {
-			List<Boolean> ret = new ArrayList<Boolean>();
+			//query the missing cells of the row as one batch
+			Set<List<S>> missing = new LinkedHashSet<List<S>>();
 			for(List<S> e : E) {
 				List<S> we = new ArrayList<S>(w);
 				we.addAll(e);
-				if(f.get(we) != null) {
-					ret.add(f.get(we));
-				} else {
-					Boolean mem = o.checkMembership(we);
-					f.put(we, mem);
-					ret.add(mem);
+				if(f.get(we) == null) {
+					missing.add(we);
 				}
 			}
+			List<List<S>> queries = new ArrayList<List<S>>(missing);
+			List<Boolean> answers = o.checkMemberships(queries);
+			for (int i = 0; i < queries.size(); i++)
+				f.put(queries.get(i), answers.get(i));
+			
+			List<Boolean> ret = new ArrayList<Boolean>();
+			for(List<S> e : E) {
+				List<S> we = new ArrayList<S>(w);
+				we.addAll(e);
+				ret.add(f.get(we));
+			}
 			if (ret.contains(null)) {
 				return null;
 			}
@@ -685,6 +789,8 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 			if(f.containsKey(new ArrayList<S>())) {
 				assert true;
 			}
+			//gather the missing cells and query them as one batch
+			Set<List<S>> missing = new LinkedHashSet<List<S>>();
 			for (List<S> w : SUR) {
 				//System.out.println(w);
 				for (List<S> e : E) {
@@ -692,31 +798,32 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 					we.addAll(e);
 					if(!f.containsKey(we)){
 						//System.out.println(we);
-						if(!we.isEmpty() && we.get(0) == null) {
-							assert true;
-							assert true;
-						}
-						fillMems++;
-						f.put(we, o.checkMembership(we));
+						missing.add(we);
 					}
 				}
 			}
+			List<List<S>> queries = new ArrayList<List<S>>(missing);
+			fillMems += queries.size();
+			List<Boolean> answers = o.checkMemberships(queries);
+			for (int i = 0; i < queries.size(); i++)
+				f.put(queries.get(i), answers.get(i));
 		}
 		
 		//returns true if makes a change, needs to be applied until returns false
 		public boolean close(SymbolicOracle<P,S> o) throws TimeoutException{
+			Map<List<S>, List<Boolean>> rows = rows(SUR);
 			Set<List<Boolean>> sigs = new HashSet<List<Boolean>>();
 			for (List<S> s : S)
-				sigs.add(row(s));
+				sigs.add(cachedRow(s, rows));
 			List<S> best_r = null;
 			for (List<S> r : R) {
-				List<Boolean> rRow = row(r);
+				List<Boolean> rRow = cachedRow(r, rows);
 				if (!sigs.contains(rRow)) {
 					//for membership query efficiency,
 					//instead of just moving r to S, move the shortest r' with row(r) = row(r')
 					best_r = r;
 					for (List<S> rp : R) {
-						if (!row(r).equals(row(rp)))
+						if (!rRow.equals(cachedRow(rp, rows)))
 							continue;
 						if (r.equals(rp))
 							continue;
@@ -739,30 +846,33 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 		
 		//returns true if makes a change, needs to be applied until returns false
 		public boolean make_consistent() { 
+			//only pairs with the same row are compared: index SUR by row,
+			//and compute rows and continuations once
+			Map<List<S>, List<Boolean>> rows = rows(SUR);
+			Map<List<Boolean>, List<Integer>> sameRow = new HashMap<List<Boolean>, List<Integer>>();
 			for (int i = 0; i < SUR.size(); i++) {
-				for (int j = i + 1; j < SUR.size(); j++) {
-					List<S> w1 = SUR.get(i);
-					List<S> w2 = SUR.get(j);
-					if (!row(w1).equals(row(w2))) {
+				List<Boolean> r = rows.get(SUR.get(i));
+				if (!sameRow.containsKey(r))
+					sameRow.put(r, new ArrayList<Integer>());
+				sameRow.get(r).add(i);
+			}
+			Map<List<S>, Map<List<S>, List<S>>> conts = new HashMap<List<S>, Map<List<S>, List<S>>>();
+			for (int i = 0; i < SUR.size(); i++) {
+				for (int j : sameRow.get(rows.get(SUR.get(i)))) {
+					if (j <= i) {
 						continue;
 					}
-					Set<List<S>> cont1 = new HashSet<List<S>>();
-					Set<List<S>> cont2 = new HashSet<List<S>>();
-					for (List<S> wa : SUR) {
-						if (isPrefix(w1, wa))
-							cont1.add(wa);
-						if (isPrefix(w2, wa))
-							cont2.add(wa);
-					}
-					for (List<S> w1a : cont1) {
-						List<S> suffix1 = getSuffix(w1, w1a);
-						for (List<S> w2a : cont2) {
-							List<S> suffix2 = getSuffix(w2, w2a);
-							if (!suffix1.equals(suffix2)) {
-								continue;
-							}
-							List<Boolean> r1 = row(w1a);
-							List<Boolean> r2 = row(w2a);
+					List<S> w1 = SUR.get(i);
+					List<S> w2 = SUR.get(j);
+					Map<List<S>, List<S>> cont1 = continuations(w1, conts);
+					Map<List<S>, List<S>> cont2 = continuations(w2, conts);
+					for (Map.Entry<List<S>, List<S>> c1 : cont1.entrySet()) {
+						List<S> suffix1 = c1.getKey();
+						List<S> w1a = c1.getValue();
+						List<S> w2a = cont2.get(suffix1);
+						if (w2a != null) {
+							List<Boolean> r1 = rows.get(w1a);
+							List<Boolean> r2 = rows.get(w2a);
 							if (!r1.equals(r2)) {
 								//at this point,
 								//row(w1) == row(w2) but row(w1e) != row(w2e)
@@ -798,6 +908,39 @@ public class SymbolicLearner<P, S> extends Learner<P, S>{
 			return false;
 		}
 		
+		//the rows of the words in ws, computed once
+		private Map<List<S>, List<Boolean>> rows(List<List<S>> ws) {
+			Map<List<S>, List<Boolean>> rows = new HashMap<List<S>, List<Boolean>>();
+			for (List<S> w : ws)
+				if (!rows.containsKey(w))
+					rows.put(w, row(w));
+			return rows;
+		}
+		
+		//the row of w, from rows if computed already
+		private List<Boolean> cachedRow(List<S> w, Map<List<S>, List<Boolean>> rows) {
+			if (!rows.containsKey(w))
+				rows.put(w, row(w));
+			return rows.get(w);
+		}
+		
+		//the words of SUR having w as a strict prefix, keyed by their suffix,
+		//in the order of a hash set of the words
+		private Map<List<S>, List<S>> continuations(List<S> w, Map<List<S>, Map<List<S>, List<S>>> conts) {
+			Map<List<S>, List<S>> cont = conts.get(w);
+			if (cont == null) {
+				Set<List<S>> was = new HashSet<List<S>>();
+				for (List<S> wa : SUR)
+					if (isPrefix(w, wa))
+						was.add(wa);
+				cont = new LinkedHashMap<List<S>, List<S>>();
+				for (List<S> wa : was)
+					cont.put(getSuffix(w, wa), wa);
+				conts.put(w, cont);
+			}
+			return cont;
+		}
+		
 		//this is called assuming that make_consistent added an element (exactly one element) to E
 		public boolean distribute() {
 			List<S> e = E.get(E.size() - 1);
@@ -1,5 +1,6 @@
 package learning_symbolic_ce.sfa;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.sat4j.specs.TimeoutException;
 import automata.sfa.SFA;
@@ -14,6 +15,18 @@ public abstract class SymbolicOracle<P, S>{
 	
 	protected abstract boolean checkMembershipImpl(List<S> w) throws TimeoutException;
 	
+	/**
+	 * Answers the membership queries of a batch, by default one at a time.
+	 * Oracles backed by an expensive system override it to answer a batch
+	 * at once.
+	 */
+	protected List<Boolean> checkMembershipsImpl(List<List<S>> words) throws TimeoutException {
+		List<Boolean> answers = new ArrayList<Boolean>(words.size());
+		for (List<S> w : words)
+			answers.add(checkMembershipImpl(w));
+		return answers;
+	}
+	
 	/**
 	 * 
 	 * @param compareTo The guessed SFA
@@ -30,6 +43,18 @@ public abstract class SymbolicOracle<P, S>{
 		return checkMembershipImpl(w);
 	}
 	
+	/**
+	 * @param words The words to query
+	 * @return the answers to the membership queries, in the order of words
+	 * @throws TimeoutException 
+	 */
+	public final List<Boolean> checkMemberships(List<List<S>> words) throws TimeoutException {
+		if (words.isEmpty())
+			return new ArrayList<Boolean>();
+		numMembership += words.size();
+		return checkMembershipsImpl(words);
+	}
+	
 	public int getNumEquivalence() { 
 		return numEquivalence;
 	}
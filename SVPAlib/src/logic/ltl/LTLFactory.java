@@ -0,0 +1,133 @@
+package logic.ltl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Builds hash-consed LTL formulas: structurally equal formulas built by the
+ * same factory are the same object, so large formulas share their
+ * subformulas and their hash codes are computed once.
+ *
+ * Nested conjunctions and disjunctions are flattened and their duplicate
+ * operands removed. A conjunction with false is false, and false is removed
+ * from disjunctions. True is kept, because it does not hold on the empty
+ * string.
+ */
+public class LTLFactory<P, S> {
+
+	private final HashMap<LTLFormula<P, S>, LTLFormula<P, S>> formulas = new HashMap<>();
+	// the negation normal forms of formulas and of their negations
+	private final HashMap<LTLFormula<P, S>, LTLFormula<P, S>> positive = new HashMap<>();
+	private final HashMap<LTLFormula<P, S>, LTLFormula<P, S>> negative = new HashMap<>();
+
+	/**
+	 * @return the formula of this factory equal to <code>phi</code>, which
+	 *         becomes that formula if there is none. The subformulas of
+	 *         <code>phi</code> are not interned.
+	 */
+	public LTLFormula<P, S> intern(LTLFormula<P, S> phi) {
+		LTLFormula<P, S> old = formulas.putIfAbsent(phi, phi);
+		return old == null ? phi : old;
+	}
+
+	/**
+	 * @return the number of distinct formulas built by this factory
+	 */
+	public int size() {
+		return formulas.size();
+	}
+
+	public LTLFormula<P, S> True() {
+		return intern(new True<P, S>());
+	}
+
+	public LTLFormula<P, S> False() {
+		return intern(new False<P, S>());
+	}
+
+	public LTLFormula<P, S> MkLast() {
+		return intern(new Last<P, S>());
+	}
+
+	public LTLFormula<P, S> MkPredicate(P predicate) {
+		return intern(new Predicate<P, S>(predicate));
+	}
+
+	public LTLFormula<P, S> MkNot(LTLFormula<P, S> phi) {
+		return intern(new Not<P, S>(phi));
+	}
+
+	public LTLFormula<P, S> MkNext(LTLFormula<P, S> phi) {
+		return intern(new Next<P, S>(phi));
+	}
+
+	public LTLFormula<P, S> MkEventually(LTLFormula<P, S> phi) {
+		return intern(new Eventually<P, S>(phi));
+	}
+
+	public LTLFormula<P, S> MkGlobally(LTLFormula<P, S> phi) {
+		return intern(new Globally<P, S>(phi));
+	}
+
+	public LTLFormula<P, S> MkUntil(LTLFormula<P, S> left, LTLFormula<P, S> right) {
+		return intern(new Until<P, S>(left, right));
+	}
+
+	public LTLFormula<P, S> MkWeakUntil(LTLFormula<P, S> left, LTLFormula<P, S> right) {
+		return intern(new WeakUntil<P, S>(left, right));
+	}
+
+	@SuppressWarnings("unchecked")
+	public LTLFormula<P, S> MkAnd(LTLFormula<P, S> left, LTLFormula<P, S> right) {
+		return MkAnd(Arrays.asList(left, right));
+	}
+
+	public LTLFormula<P, S> MkAnd(List<LTLFormula<P, S>> conjuncts) {
+		LinkedHashSet<LTLFormula<P, S>> flat = new LinkedHashSet<>();
+		for (LTLFormula<P, S> phi : conjuncts) {
+			if (phi instanceof False)
+				return False();
+			if (phi instanceof And)
+				flat.addAll(((And<P, S>) phi).conjuncts);
+			else
+				flat.add(phi);
+		}
+		if (flat.size() == 1)
+			return flat.iterator().next();
+		return intern(new And<P, S>(new ArrayList<>(flat)));
+	}
+
+	@SuppressWarnings("unchecked")
+	public LTLFormula<P, S> MkOr(LTLFormula<P, S> left, LTLFormula<P, S> right) {
+		return MkOr(Arrays.asList(left, right));
+	}
+
+	public LTLFormula<P, S> MkOr(List<LTLFormula<P, S>> disjuncts) {
+		LinkedHashSet<LTLFormula<P, S>> flat = new LinkedHashSet<>();
+		for (LTLFormula<P, S> phi : disjuncts) {
+			if (phi instanceof Or)
+				flat.addAll(((Or<P, S>) phi).disjuncts);
+			else if (!(phi instanceof False))
+				flat.add(phi);
+		}
+		if (flat.isEmpty())
+			return False();
+		if (flat.size() == 1)
+			return flat.iterator().next();
+		return intern(new Or<P, S>(new ArrayList<>(flat)));
+	}
+
+	// The negation normal form of phi, or of its negation, if already computed
+	LTLFormula<P, S> getNormalForm(LTLFormula<P, S> phi, boolean isPositive) {
+		return (isPositive ? positive : negative).get(phi);
+	}
+
+	// Remembers the negation normal form of phi, or of its negation
+	LTLFormula<P, S> putNormalForm(LTLFormula<P, S> phi, boolean isPositive, LTLFormula<P, S> normalForm) {
+		(isPositive ? positive : negative).put(phi, normalForm);
+		return normalForm;
+	}
+}
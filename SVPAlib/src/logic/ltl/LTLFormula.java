@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 
 import automata.safa.SAFAMove;
 import org.sat4j.specs.TimeoutException;
@@ -35,12 +36,36 @@ public abstract class LTLFormula<P,S> {
 	
 	// Checks whether a formula should be a final state in the automaton
 	public LTLFormula<P,S> pushNegations(BooleanAlgebra<P, S> ba) throws TimeoutException{
-		return pushNegations(true,ba, new HashMap<>(), new HashMap<>());
+		return pushNegations(ba, new LTLFactory<P, S>());
 	}
-	
-	// Checks whether a formula should be a final state in the automaton
-	protected abstract LTLFormula<P,S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, HashMap<String, LTLFormula<P,S>> posHash, HashMap<String, LTLFormula<P,S>> negHash) throws TimeoutException;	
-	
+
+	/**
+	 * @return the negation normal form of this formula, built and hash-consed
+	 *         by <code>factory</code>
+	 */
+	public LTLFormula<P,S> pushNegations(BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory) throws TimeoutException{
+		return pushNegations(true, ba, factory);
+	}
+
+	// The negation normal form of this formula if isPositive, of its negation
+	// otherwise
+	protected abstract LTLFormula<P,S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory) throws TimeoutException;
+
+	/**
+	 * @return true if some string is a model of this formula, exploring the
+	 *         SAFA of its negation normal form up to the first accepting run
+	 */
+	public boolean isSatisfiable(BooleanAlgebra<P, S> ba) throws TimeoutException{
+		return getWitness(ba) != null;
+	}
+
+	/**
+	 * @return a model of this formula, null if there is none
+	 */
+	public List<S> getWitness(BooleanAlgebra<P, S> ba) throws TimeoutException{
+		return pushNegations(ba).getSAFA(ba).getWitness(ba);
+	}
+
 	// returns set of disjoint predicates that are the triggers of transitions out of this state
 	protected abstract PositiveBooleanExpression accumulateSAFAStatesTransitions(
 			HashMap<LTLFormula<P, S>, PositiveBooleanExpression> formulaToInitState,
@@ -51,8 +76,17 @@ public abstract class LTLFormula<P,S> {
 	
 	public abstract int getSize();	
 	
+	// the hash code, computed the first time it is needed
+	private int hash;
+
 	@Override
-	public abstract int hashCode();
+	public final int hashCode() {
+		if (hash == 0)
+			hash = computeHashCode();
+		return hash;
+	}
+
+	protected abstract int computeHashCode();
 
 	@Override
 	public abstract boolean equals(Object obj);
@@ -20,7 +20,7 @@ public class Last<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = prime *prime;
 		return result;
@@ -33,7 +33,9 @@ public class Last<P, S> extends LTLFormula<P, S> {
 		if (obj == null)
 			return false;
 		if (!(obj instanceof Last))
-			return false;		
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		return true;
 	}
 
@@ -68,9 +70,8 @@ public class Last<P, S> extends LTLFormula<P, S> {
 
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash)
-					throws TimeoutException {
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
 		throw new IllegalArgumentException("This shouldn't happen");
 	}
 
@@ -23,7 +23,7 @@ public class Next<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((phi == null) ? 0 : phi.hashCode());
@@ -38,6 +38,8 @@ public class Next<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof Next))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		@SuppressWarnings("unchecked")
 		Next<P, S> other = (Next<P, S>) obj;
 		if (phi == null) {
@@ -75,26 +77,15 @@ public class Next<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		String key = this.toString();
-
-		LTLFormula<P, S> out = new False<>();
-
-		if (isPositive) {
-			if (posHash.containsKey(key)) {
-				return posHash.get(key);
-			}
-			out = new Next<>(phi.pushNegations(isPositive, ba, posHash, negHash));
-			posHash.put(key, out);
-			return out;
-		} else {
-			if (negHash.containsKey(key))
-				return negHash.get(key);
-			out = new Or<>(new Next<>(phi.pushNegations(isPositive, ba, posHash, negHash)), new Last<>());
-			negHash.put(key, out);
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		LTLFormula<P, S> out = factory.getNormalForm(this, isPositive);
+		if (out != null)
 			return out;
-		}
+		LTLFormula<P, S> phiNeg = phi.pushNegations(isPositive, ba, factory);
+		// not (X phi) == (X not phi) \/ last
+		out = isPositive ? factory.MkNext(phiNeg) : factory.MkOr(factory.MkNext(phiNeg), factory.MkLast());
+		return factory.putNormalForm(this, isPositive, out);
 	}
 
 	@Override
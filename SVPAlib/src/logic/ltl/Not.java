@@ -21,7 +21,7 @@ public class Not<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((phi == null) ? 0 : phi.hashCode());
@@ -36,6 +36,8 @@ public class Not<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof Not))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		@SuppressWarnings("unchecked")
 		Not<P, S> other = (Not<P, S>) obj;
 		if (phi == null) {
@@ -59,9 +61,9 @@ public class Not<P, S> extends LTLFormula<P, S> {
 	}
 	
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		return phi.pushNegations(!isPositive, ba, posHash, negHash);
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		return phi.pushNegations(!isPositive, ba, factory);
 	}
 
 	@Override
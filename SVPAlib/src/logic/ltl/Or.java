@@ -32,7 +32,7 @@ public class Or<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((disjuncts == null) ? 0 : disjuncts.hashCode());
@@ -47,6 +47,8 @@ public class Or<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof Or))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		Or<?, ?> other = (Or<?, ?>) obj;
 		if (disjuncts == null) {
 			if (other.disjuncts != null)
@@ -82,32 +84,16 @@ public class Or<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		String key = this.toString();
-
-		LTLFormula<P, S> out = new False<>();
-
-		if (isPositive) {
-			if (posHash.containsKey(key)) {
-				return posHash.get(key);
-			}
-			List<LTLFormula<P, S>> newPhis = new ArrayList<>();
-			for (LTLFormula<P, S> phi : disjuncts)
-				newPhis.add(phi.pushNegations(isPositive, ba, posHash, negHash));
-			out = new Or<>(newPhis);
-			posHash.put(key, out);
-			return out;
-		} else {
-			if (negHash.containsKey(key))
-				return negHash.get(key);
-			List<LTLFormula<P, S>> newPhis = new ArrayList<>();
-			for (LTLFormula<P, S> phi : disjuncts)
-				newPhis.add(phi.pushNegations(isPositive, ba, posHash, negHash));
-			out = new And<>(newPhis);
-			negHash.put(key, out);
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		LTLFormula<P, S> out = factory.getNormalForm(this, isPositive);
+		if (out != null)
 			return out;
-		}
+		List<LTLFormula<P, S>> newPhis = new ArrayList<>();
+		for (LTLFormula<P, S> phi : disjuncts)
+			newPhis.add(phi.pushNegations(isPositive, ba, factory));
+		out = isPositive ? factory.MkOr(newPhis) : factory.MkAnd(newPhis);
+		return factory.putNormalForm(this, isPositive, out);
 	}
 
 	@Override
@@ -23,7 +23,7 @@ public class Predicate<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((predicate == null) ? 0 : predicate.hashCode());
@@ -38,6 +38,8 @@ public class Predicate<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof Predicate))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		@SuppressWarnings("unchecked")
 		Predicate<P, S> other = (Predicate<P, S>) obj;
 		if (predicate == null) {
@@ -70,12 +72,13 @@ public class Predicate<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		if (isPositive)
-			return this;
-		else
-			return new Predicate<>(ba.MkNot(this.predicate));
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		LTLFormula<P, S> out = factory.getNormalForm(this, isPositive);
+		if (out != null)
+			return out;
+		out = factory.MkPredicate(isPositive ? predicate : ba.MkNot(predicate));
+		return factory.putNormalForm(this, isPositive, out);
 	}
 
 	@Override
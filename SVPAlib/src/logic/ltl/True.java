@@ -18,7 +18,7 @@ public class True<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		return 11;
 	}
 
@@ -30,6 +30,8 @@ public class True<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof True))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		return true;
 	}
 
@@ -56,20 +58,8 @@ public class True<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) {
-		if (isPositive) {
-			return this;
-		} else {
-			String key = this.toString();
-			if (negHash.containsKey(key)) {
-				return negHash.get(key);
-			} else {
-				LTLFormula<P, S> out = new False<>();
-				negHash.put(key, out);
-				return out;
-			}
-		}
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory) {
+		return isPositive ? factory.True() : factory.False();
 	}
 
 	@Override
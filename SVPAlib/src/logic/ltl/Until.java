@@ -24,7 +24,7 @@ public class Until<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((left == null) ? 0 : left.hashCode());
@@ -40,6 +40,8 @@ public class Until<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof Until))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		@SuppressWarnings("unchecked")
 		Until<P, S> other = (Until<P, S>) obj;
 		if (left == null) {
@@ -82,30 +84,19 @@ public class Until<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		String key = this.toString();
-
-		LTLFormula<P, S> out = new False<>();
-
-		if (isPositive) {
-			if (posHash.containsKey(key)) {
-				return posHash.get(key);
-			}
-			out = new Until<>(left.pushNegations(isPositive, ba, posHash, negHash),
-					right.pushNegations(isPositive, ba, posHash, negHash));
-			posHash.put(key, out);
-			return out;
-		} else {
-			if (negHash.containsKey(key))
-				return negHash.get(key);
-			
-			// not (A U B) == (not B) W (not A /\ not B) 
-			LTLFormula<P, S> rightNeg = right.pushNegations(isPositive, ba, posHash, negHash);
-			out = new WeakUntil<>(rightNeg, new And<>(left.pushNegations(isPositive, ba, posHash, negHash), rightNeg));
-			negHash.put(key, out);
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		LTLFormula<P, S> out = factory.getNormalForm(this, isPositive);
+		if (out != null)
 			return out;
-		}
+		LTLFormula<P, S> leftNeg = left.pushNegations(isPositive, ba, factory);
+		LTLFormula<P, S> rightNeg = right.pushNegations(isPositive, ba, factory);
+		if (isPositive)
+			out = factory.MkUntil(leftNeg, rightNeg);
+		else
+			// not (A U B) == (not B) W (not A /\ not B)
+			out = factory.MkWeakUntil(rightNeg, factory.MkAnd(leftNeg, rightNeg));
+		return factory.putNormalForm(this, isPositive, out);
 	}
 
 	@Override
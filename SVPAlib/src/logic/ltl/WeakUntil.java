@@ -24,7 +24,7 @@ public class WeakUntil<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	public int hashCode() {
+	protected int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((left == null) ? 0 : left.hashCode());
@@ -40,6 +40,8 @@ public class WeakUntil<P, S> extends LTLFormula<P, S> {
 			return false;
 		if (!(obj instanceof WeakUntil))
 			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
 		@SuppressWarnings("unchecked")
 		WeakUntil<P, S> other = (WeakUntil<P, S>) obj;
 		if (left == null) {
@@ -85,28 +87,19 @@ public class WeakUntil<P, S> extends LTLFormula<P, S> {
 	}
 
 	@Override
-	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba,
-			HashMap<String, LTLFormula<P, S>> posHash, HashMap<String, LTLFormula<P, S>> negHash) throws TimeoutException {
-		String key = this.toString();
-
-		LTLFormula<P, S> out = new False<>();
-
-		if (isPositive) {
-			if (posHash.containsKey(key)) {
-				return posHash.get(key);
-			}
-			out = new WeakUntil<>(left.pushNegations(isPositive, ba, posHash, negHash),
-					right.pushNegations(isPositive, ba, posHash, negHash));
-			posHash.put(key, out);
-			return out;
-		} else {
-			if (negHash.containsKey(key))
-				return negHash.get(key);
-			LTLFormula<P, S> rightNeg = right.pushNegations(isPositive, ba, posHash, negHash);
-			out = new Until<>(rightNeg, new And<>(left.pushNegations(isPositive, ba, posHash, negHash), rightNeg));
-			negHash.put(key, out);
+	protected LTLFormula<P, S> pushNegations(boolean isPositive, BooleanAlgebra<P, S> ba, LTLFactory<P, S> factory)
+			throws TimeoutException {
+		LTLFormula<P, S> out = factory.getNormalForm(this, isPositive);
+		if (out != null)
 			return out;
-		}
+		LTLFormula<P, S> leftNeg = left.pushNegations(isPositive, ba, factory);
+		LTLFormula<P, S> rightNeg = right.pushNegations(isPositive, ba, factory);
+		if (isPositive)
+			out = factory.MkWeakUntil(leftNeg, rightNeg);
+		else
+			// not (A W B) == (not B) U (not A /\ not B)
+			out = factory.MkUntil(rightNeg, factory.MkAnd(leftNeg, rightNeg));
+		return factory.putNormalForm(this, isPositive, out);
 	}
 
 	@Override
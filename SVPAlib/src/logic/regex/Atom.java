@@ -0,0 +1,61 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Matches the characters satisfying a predicate
+ */
+public class Atom<P, S> extends Regex<P, S> {
+
+	protected P predicate;
+
+	Atom(P predicate) {
+		super(false);
+		this.predicate = predicate;
+	}
+
+	public P getPredicate() {
+		return predicate;
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException {
+		return ba.HasModel(predicate, a) ? factory.Epsilon() : factory.Empty();
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+		predicates.add(predicate);
+	}
+
+	@Override
+	public int getSize() {
+		return 1;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return 31 + predicate.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Atom))
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
+		return predicate.equals(((Atom<?, ?>) obj).predicate);
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append(predicate);
+	}
+}
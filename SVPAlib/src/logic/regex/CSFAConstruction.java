@@ -0,0 +1,152 @@
+package logic.regex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import automata.csfa.CSFA;
+import automata.csfa.CSFAMove;
+
+/**
+ * The Glushkov automaton of a regular expression, without epsilon moves:
+ * state 0 is the initial state and every other state is an occurrence of an
+ * atom, entered by reading a character satisfying its predicate. A bounded
+ * repetition of an atom is a single counting state; the repetitions of other
+ * regular expressions are unfolded.
+ */
+class CSFAConstruction<P, S> {
+
+	// the predicate of every state but the initial one
+	private final List<P> predicates = new ArrayList<>();
+	private final Collection<CSFAMove<P, S>> moves = new ArrayList<>();
+	private final Map<Integer, CSFA.Counter> counters = new HashMap<>();
+	// the pairs of states already linked, as from * 2^32 + to
+	private final Set<Long> linked = new HashSet<>();
+
+	// The states a regular expression starts and ends with, and whether it
+	// matches the empty string
+	private static class Fragment {
+		final Set<Integer> first = new LinkedHashSet<>();
+		final Set<Integer> last = new LinkedHashSet<>();
+		boolean nullable;
+
+		Fragment(boolean nullable) {
+			this.nullable = nullable;
+		}
+	}
+
+	CSFA<P, S> build(Regex<P, S> regex) {
+		predicates.add(null);
+		Fragment fragment = fragment(regex);
+		Set<Integer> initial = new LinkedHashSet<>();
+		initial.add(0);
+		link(initial, fragment.first);
+
+		Collection<Integer> finalStates = new ArrayList<>(fragment.last);
+		if (fragment.nullable)
+			finalStates.add(0);
+		return CSFA.MkCSFA(moves, 0, finalStates, counters);
+	}
+
+	private Fragment fragment(Regex<P, S> regex) {
+		if (regex instanceof Atom)
+			return position(((Atom<P, S>) regex).predicate, null);
+
+		if (regex instanceof Concat) {
+			Concat<P, S> concat = (Concat<P, S>) regex;
+			return concat(fragment(concat.first), fragment(concat.rest));
+		}
+
+		if (regex instanceof Union) {
+			Fragment union = new Fragment(false);
+			for (Regex<P, S> operand : ((Union<P, S>) regex).operands) {
+				Fragment fragment = fragment(operand);
+				union.first.addAll(fragment.first);
+				union.last.addAll(fragment.last);
+				union.nullable |= fragment.nullable;
+			}
+			return union;
+		}
+
+		if (regex instanceof Star) {
+			Fragment star = fragment(((Star<P, S>) regex).operand);
+			link(star.last, star.first);
+			star.nullable = true;
+			return star;
+		}
+
+		if (regex instanceof Repeat) {
+			Repeat<P, S> repeat = (Repeat<P, S>) regex;
+			if (repeat.operand instanceof Atom) {
+				int max = repeat.max == RegexFactory.UNBOUNDED ? CSFA.UNBOUNDED : repeat.max;
+				Fragment counting = position(((Atom<P, S>) repeat.operand).predicate,
+						new CSFA.Counter(Math.max(repeat.min, 1), max));
+				counting.nullable = repeat.min == 0;
+				return counting;
+			}
+
+			Fragment unfolded = new Fragment(true);
+			for (int i = 0; i < repeat.min; i++)
+				unfolded = concat(unfolded, fragment(repeat.operand));
+			if (repeat.max == RegexFactory.UNBOUNDED) {
+				Fragment star = fragment(repeat.operand);
+				link(star.last, star.first);
+				star.nullable = true;
+				return concat(unfolded, star);
+			}
+			return concat(unfolded, optional(repeat.operand, repeat.max - repeat.min));
+		}
+
+		// the empty string and the empty language have no states
+		return new Fragment(regex.isNullable());
+	}
+
+	// Up to count repetitions of regex, nested as (r(r(r)?)?)? so that every
+	// repetition is only followed by the next one
+	private Fragment optional(Regex<P, S> regex, int count) {
+		if (count == 0)
+			return new Fragment(true);
+		Fragment optional = concat(fragment(regex), optional(regex, count - 1));
+		optional.nullable = true;
+		return optional;
+	}
+
+	// A new state reading predicate, counting if counter is not null
+	private Fragment position(P predicate, CSFA.Counter counter) {
+		int state = predicates.size();
+		predicates.add(predicate);
+		if (counter != null) {
+			counters.put(state, counter);
+			moves.add(new CSFAMove<P, S>(state, state, predicate, true));
+		}
+		Fragment fragment = new Fragment(false);
+		fragment.first.add(state);
+		fragment.last.add(state);
+		return fragment;
+	}
+
+	private Fragment concat(Fragment left, Fragment right) {
+		link(left.last, right.first);
+		Fragment concat = new Fragment(left.nullable && right.nullable);
+		concat.first.addAll(left.first);
+		if (left.nullable)
+			concat.first.addAll(right.first);
+		concat.last.addAll(right.last);
+		if (right.nullable)
+			concat.last.addAll(left.last);
+		return concat;
+	}
+
+	// Adds the moves from every state of from to every state of to
+	private void link(Set<Integer> from, Set<Integer> to) {
+		for (Integer source : from)
+			for (Integer target : to)
+				if (linked.add(((long) source << 32) + target))
+					moves.add(new CSFAMove<P, S>(source, target, predicates.get(target)));
+	}
+}
@@ -0,0 +1,70 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * The concatenation of first and rest, where first is not itself a
+ * concatenation
+ */
+public class Concat<P, S> extends Regex<P, S> {
+
+	protected Regex<P, S> first, rest;
+
+	Concat(Regex<P, S> first, Regex<P, S> rest) {
+		super(first.isNullable() && rest.isNullable());
+		this.first = first;
+		this.rest = rest;
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException {
+		Regex<P, S> derivative = factory.MkConcat(first.derivative(a, ba, factory), rest);
+		if (first.isNullable())
+			return factory.MkUnion(derivative, rest.derivative(a, ba, factory));
+		return derivative;
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+		first.collectFirst(predicates);
+		if (first.isNullable())
+			rest.collectFirst(predicates);
+	}
+
+	@Override
+	public int getSize() {
+		return 1 + first.getSize() + rest.getSize();
+	}
+
+	@Override
+	protected int computeHashCode() {
+		final int prime = 31;
+		int result = 17;
+		result = prime * result + first.hashCode();
+		result = prime * result + rest.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Concat))
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
+		Concat<?, ?> other = (Concat<?, ?>) obj;
+		return first.equals(other.first) && rest.equals(other.rest);
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		first.toString(sb);
+		rest.toString(sb);
+	}
+}
@@ -0,0 +1,153 @@
+package logic.regex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * The deterministic automaton of a regular expression whose states are its
+ * derivatives. A state and its moves are only built when they are reached,
+ * either by matching a string or by materializing the automaton as an SFA.
+ *
+ * The moves of a state are guarded by the minterms of the predicates its
+ * first character is tested against, merged when they lead to the same
+ * derivative. The state of the empty language is left out, so the automaton
+ * is not complete.
+ */
+public class DerivativeAutomaton<P, S> {
+
+	private final BooleanAlgebra<P, S> ba;
+	private final RegexFactory<P, S> factory;
+
+	private final List<Regex<P, S>> states = new ArrayList<>();
+	private final Map<Regex<P, S>, Integer> stateIds = new HashMap<>();
+	// the moves of every state, null until they are built
+	private final List<List<Pair<P, Integer>>> moves = new ArrayList<>();
+
+	/**
+	 * The automaton of <code>regex</code>, whose derivatives are built by
+	 * <code>factory</code>
+	 */
+	public DerivativeAutomaton(Regex<P, S> regex, RegexFactory<P, S> factory, BooleanAlgebra<P, S> ba) {
+		this.ba = ba;
+		this.factory = factory;
+		getStateId(regex);
+	}
+
+	/**
+	 * @return true if the regular expression matches <code>input</code>
+	 */
+	public boolean accepts(List<S> input) throws TimeoutException {
+		int state = 0;
+		for (S a : input) {
+			Integer next = null;
+			for (Pair<P, Integer> move : getMovesFrom(state, Long.MAX_VALUE))
+				if (ba.HasModel(move.first, a)) {
+					next = move.second;
+					break;
+				}
+			if (next == null)
+				return false;
+			state = next;
+		}
+		return states.get(state).isNullable();
+	}
+
+	/**
+	 * @return the number of states built so far
+	 */
+	public int stateCount() {
+		return states.size();
+	}
+
+	/**
+	 * @return the regular expression of a state
+	 */
+	public Regex<P, S> getState(int state) {
+		return states.get(state);
+	}
+
+	/**
+	 * Builds all the states reachable from the initial one
+	 *
+	 * @return a deterministic SFA equivalent to the regular expression
+	 */
+	public SFA<P, S> toSFA() throws TimeoutException {
+		return toSFA(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Builds all the states reachable from the initial one
+	 *
+	 * @return a deterministic SFA equivalent to the regular expression
+	 */
+	public SFA<P, S> toSFA(long timeout) throws TimeoutException {
+		long deadline = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+		Collection<SFAMove<P, S>> transitions = new LinkedList<>();
+		Collection<Integer> finalStates = new LinkedList<>();
+
+		// the states are numbered in the order they are reached
+		for (int state = 0; state < states.size(); state++) {
+			if (states.get(state).isNullable())
+				finalStates.add(state);
+			for (Pair<P, Integer> move : getMovesFrom(state, deadline))
+				transitions.add(new SFAInputMove<P, S>(state, move.second, move.first));
+		}
+		return SFA.MkSFA(transitions, 0, finalStates, ba, false, false, true);
+	}
+
+	// The id of the state of regex, a new one if it was not reached yet
+	private int getStateId(Regex<P, S> regex) {
+		Integer id = stateIds.get(regex);
+		if (id == null) {
+			id = states.size();
+			stateIds.put(regex, id);
+			states.add(regex);
+			moves.add(null);
+		}
+		return id;
+	}
+
+	// The moves of a state, built the first time they are needed
+	private List<Pair<P, Integer>> getMovesFrom(int state, long deadline) throws TimeoutException {
+		List<Pair<P, Integer>> stateMoves = moves.get(state);
+		if (stateMoves != null)
+			return stateMoves;
+
+		Regex<P, S> regex = states.get(state);
+		LinkedHashSet<P> first = new LinkedHashSet<>();
+		regex.collectFirst(first);
+
+		// the guards of the moves to every derivative
+		Map<Integer, P> guards = new LinkedHashMap<>();
+		if (!first.isEmpty())
+			for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(new ArrayList<>(first),
+					deadline - System.currentTimeMillis())) {
+				Regex<P, S> derivative = regex.derivative(ba.generateWitness(minterm.first), ba, factory);
+				if (derivative instanceof Empty)
+					continue;
+				int target = getStateId(derivative);
+				P guard = guards.get(target);
+				guards.put(target, guard == null ? minterm.first : ba.MkOr(guard, minterm.first));
+			}
+
+		stateMoves = new ArrayList<>();
+		for (Map.Entry<Integer, P> guard : guards.entrySet())
+			stateMoves.add(new Pair<>(guard.getValue(), guard.getKey()));
+		moves.set(state, stateMoves);
+		return stateMoves;
+	}
+}
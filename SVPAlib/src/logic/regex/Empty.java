@@ -0,0 +1,41 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import theory.BooleanAlgebra;
+
+public class Empty<P, S> extends Regex<P, S> {
+
+	Empty() {
+		super(false);
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory) {
+		return this;
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+	}
+
+	@Override
+	public int getSize() {
+		return 1;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return 11;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Empty;
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append("[]");
+	}
+}
@@ -0,0 +1,41 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import theory.BooleanAlgebra;
+
+public class Epsilon<P, S> extends Regex<P, S> {
+
+	Epsilon() {
+		super(true);
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory) {
+		return factory.Empty();
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+	}
+
+	@Override
+	public int getSize() {
+		return 1;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return 13;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Epsilon;
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append("()");
+	}
+}
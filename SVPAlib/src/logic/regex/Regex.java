@@ -0,0 +1,77 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.csfa.CSFA;
+import theory.BooleanAlgebra;
+
+/**
+ * A regular expression over the predicates of a Boolean algebra. Regular
+ * expressions are built by a {@link RegexFactory}, which keeps them in a
+ * canonical form, so that every regular expression has finitely many distinct
+ * derivatives.
+ */
+public abstract class Regex<P, S> {
+
+	// whether the regular expression matches the empty string
+	private final boolean nullable;
+
+	protected Regex(boolean nullable) {
+		this.nullable = nullable;
+	}
+
+	/**
+	 * @return true if the regular expression matches the empty string
+	 */
+	public boolean isNullable() {
+		return nullable;
+	}
+
+	/**
+	 * @return the regular expression matching the strings w such that
+	 *         <code>a</code>w matches this one, built by <code>factory</code>
+	 */
+	public abstract Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException;
+
+	/**
+	 * @return the counting automaton of the regular expression, where every
+	 *         bounded repetition of an atom is a single counting state
+	 */
+	public CSFA<P, S> getCSFA() {
+		return new CSFAConstruction<P, S>().build(this);
+	}
+
+	// Adds the predicates the first character of a string is tested against.
+	// Two characters satisfying the same of these predicates have the same
+	// derivative.
+	protected abstract void collectFirst(Collection<P> predicates);
+
+	public abstract int getSize();
+
+	// the hash code, computed the first time it is needed
+	private int hash;
+
+	@Override
+	public final int hashCode() {
+		if (hash == 0)
+			hash = computeHashCode();
+		return hash;
+	}
+
+	protected abstract int computeHashCode();
+
+	@Override
+	public abstract boolean equals(Object obj);
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		this.toString(sb);
+		return sb.toString();
+	}
+
+	public abstract void toString(StringBuilder sb);
+}
@@ -0,0 +1,157 @@
+package logic.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Builds hash-consed regular expressions: structurally equal regular
+ * expressions built by the same factory are the same object.
+ *
+ * Regular expressions are kept in a canonical form: concatenations are
+ * associated to the right, unions are flattened sets of operands, and the
+ * empty language and the empty string are simplified away. With these rules
+ * a regular expression has finitely many distinct derivatives.
+ */
+public class RegexFactory<P, S> {
+
+	/**
+	 * The upper bound of an unbounded repetition
+	 */
+	public static final int UNBOUNDED = -1;
+
+	private final HashMap<Regex<P, S>, Regex<P, S>> regexes = new HashMap<>();
+	private final Regex<P, S> empty = intern(new Empty<P, S>());
+	private final Regex<P, S> epsilon = intern(new Epsilon<P, S>());
+
+	/**
+	 * @return the regular expression of this factory equal to
+	 *         <code>regex</code>, which becomes that regular expression if
+	 *         there is none
+	 */
+	public Regex<P, S> intern(Regex<P, S> regex) {
+		Regex<P, S> old = regexes.putIfAbsent(regex, regex);
+		return old == null ? regex : old;
+	}
+
+	/**
+	 * @return the number of distinct regular expressions built by this factory
+	 */
+	public int size() {
+		return regexes.size();
+	}
+
+	/**
+	 * @return the regular expression matching no string
+	 */
+	public Regex<P, S> Empty() {
+		return empty;
+	}
+
+	/**
+	 * @return the regular expression matching only the empty string
+	 */
+	public Regex<P, S> Epsilon() {
+		return epsilon;
+	}
+
+	public Regex<P, S> MkAtom(P predicate) {
+		return intern(new Atom<P, S>(predicate));
+	}
+
+	public Regex<P, S> MkConcat(Regex<P, S> left, Regex<P, S> right) {
+		if (left instanceof Empty || right instanceof Empty)
+			return empty;
+		if (left instanceof Epsilon)
+			return right;
+		if (right instanceof Epsilon)
+			return left;
+		if (left instanceof Concat) {
+			Concat<P, S> concat = (Concat<P, S>) left;
+			return MkConcat(concat.first, MkConcat(concat.rest, right));
+		}
+		return intern(new Concat<P, S>(left, right));
+	}
+
+	public Regex<P, S> MkConcat(List<Regex<P, S>> regexes) {
+		Regex<P, S> concat = epsilon;
+		for (ListIterator<Regex<P, S>> it = regexes.listIterator(regexes.size()); it.hasPrevious();)
+			concat = MkConcat(it.previous(), concat);
+		return concat;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Regex<P, S> MkUnion(Regex<P, S> left, Regex<P, S> right) {
+		return MkUnion(Arrays.asList(left, right));
+	}
+
+	public Regex<P, S> MkUnion(List<Regex<P, S>> regexes) {
+		LinkedHashSet<Regex<P, S>> flat = new LinkedHashSet<>();
+		boolean nullable = false;
+		for (Regex<P, S> regex : regexes) {
+			if (regex instanceof Union)
+				flat.addAll(((Union<P, S>) regex).operands);
+			else if (!(regex instanceof Empty))
+				flat.add(regex);
+		}
+		for (Regex<P, S> regex : flat)
+			nullable |= regex.isNullable() && !(regex instanceof Epsilon);
+		// the empty string is already matched by another operand
+		if (nullable)
+			flat.remove(epsilon);
+
+		if (flat.isEmpty())
+			return empty;
+		if (flat.size() == 1)
+			return flat.iterator().next();
+		return intern(new Union<P, S>(flat));
+	}
+
+	public Regex<P, S> MkStar(Regex<P, S> regex) {
+		if (regex instanceof Empty || regex instanceof Epsilon)
+			return epsilon;
+		if (regex instanceof Star)
+			return regex;
+		// (()|r)* is r*
+		if (regex instanceof Union && ((Union<P, S>) regex).operands.contains(epsilon)) {
+			List<Regex<P, S>> operands = new ArrayList<>(((Union<P, S>) regex).operands);
+			operands.remove(epsilon);
+			return MkStar(MkUnion(operands));
+		}
+		return intern(new Star<P, S>(regex));
+	}
+
+	public Regex<P, S> MkPlus(Regex<P, S> regex) {
+		return MkRepeat(regex, 1, UNBOUNDED);
+	}
+
+	public Regex<P, S> MkOptional(Regex<P, S> regex) {
+		return MkUnion(epsilon, regex);
+	}
+
+	/**
+	 * @return the regular expression matching between min and max
+	 *         repetitions of <code>regex</code>, at least min if max is
+	 *         {@link #UNBOUNDED}
+	 */
+	public Regex<P, S> MkRepeat(Regex<P, S> regex, int min, int max) {
+		if (min < 0 || (max != UNBOUNDED && max < min))
+			throw new IllegalArgumentException("Invalid repetition bounds {" + min + "," + max + "}");
+
+		if (regex instanceof Empty)
+			return min == 0 ? epsilon : empty;
+		if (regex instanceof Epsilon || max == 0)
+			return epsilon;
+		// the repetitions matching the empty string can be skipped
+		if (regex.isNullable())
+			min = 0;
+		if (min == 0 && max == UNBOUNDED)
+			return MkStar(regex);
+		if (min == 1 && max == 1)
+			return regex;
+		return intern(new Repeat<P, S>(regex, min, max));
+	}
+}
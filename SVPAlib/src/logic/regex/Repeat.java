@@ -0,0 +1,85 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * The bounded repetition operand{min,max}, where max is
+ * {@link RegexFactory#UNBOUNDED} for operand{min,}. The counters are
+ * decremented by the derivatives, so the repetition is never unfolded.
+ */
+public class Repeat<P, S> extends Regex<P, S> {
+
+	protected Regex<P, S> operand;
+	protected int min, max;
+
+	Repeat(Regex<P, S> operand, int min, int max) {
+		super(min == 0);
+		this.operand = operand;
+		this.min = min;
+		this.max = max;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException {
+		// the factory makes min 0 when the operand is nullable, so the first
+		// character is always read by the first repetition
+		int newMax = max == RegexFactory.UNBOUNDED ? max : max - 1;
+		return factory.MkConcat(operand.derivative(a, ba, factory),
+				factory.MkRepeat(operand, Math.max(min - 1, 0), newMax));
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+		operand.collectFirst(predicates);
+	}
+
+	@Override
+	public int getSize() {
+		return 1 + operand.getSize();
+	}
+
+	@Override
+	protected int computeHashCode() {
+		final int prime = 31;
+		int result = 29;
+		result = prime * result + operand.hashCode();
+		result = prime * result + min;
+		result = prime * result + max;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Repeat))
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
+		Repeat<?, ?> other = (Repeat<?, ?>) obj;
+		return min == other.min && max == other.max && operand.equals(other.operand);
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append("(");
+		operand.toString(sb);
+		sb.append("){").append(min).append(",");
+		if (max != RegexFactory.UNBOUNDED)
+			sb.append(max);
+		sb.append("}");
+	}
+}
@@ -0,0 +1,56 @@
+package logic.regex;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+public class Star<P, S> extends Regex<P, S> {
+
+	protected Regex<P, S> operand;
+
+	Star(Regex<P, S> operand) {
+		super(true);
+		this.operand = operand;
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException {
+		return factory.MkConcat(operand.derivative(a, ba, factory), this);
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+		operand.collectFirst(predicates);
+	}
+
+	@Override
+	public int getSize() {
+		return 1 + operand.getSize();
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return 23 * 31 + operand.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Star))
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
+		return operand.equals(((Star<?, ?>) obj).operand);
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append("(");
+		operand.toString(sb);
+		sb.append(")*");
+	}
+}
@@ -0,0 +1,76 @@
+package logic.regex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * The union of a set of regular expressions, none of which is a union. Two
+ * unions of the same operands are equal whatever the order of the operands.
+ */
+public class Union<P, S> extends Regex<P, S> {
+
+	protected Set<Regex<P, S>> operands;
+
+	Union(Set<Regex<P, S>> operands) {
+		super(operands.stream().anyMatch(Regex::isNullable));
+		this.operands = operands;
+	}
+
+	@Override
+	public Regex<P, S> derivative(S a, BooleanAlgebra<P, S> ba, RegexFactory<P, S> factory)
+			throws TimeoutException {
+		List<Regex<P, S>> derivatives = new ArrayList<>();
+		for (Regex<P, S> operand : operands)
+			derivatives.add(operand.derivative(a, ba, factory));
+		return factory.MkUnion(derivatives);
+	}
+
+	@Override
+	protected void collectFirst(Collection<P> predicates) {
+		for (Regex<P, S> operand : operands)
+			operand.collectFirst(predicates);
+	}
+
+	@Override
+	public int getSize() {
+		int size = 1;
+		for (Regex<P, S> operand : operands)
+			size += operand.getSize();
+		return size;
+	}
+
+	@Override
+	protected int computeHashCode() {
+		return 19 + operands.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Union))
+			return false;
+		if (hashCode() != obj.hashCode())
+			return false;
+		return operands.equals(((Union<?, ?>) obj).operands);
+	}
+
+	@Override
+	public void toString(StringBuilder sb) {
+		sb.append("(");
+		boolean isFirst = true;
+		for (Regex<P, S> operand : operands) {
+			if (!isFirst)
+				sb.append("|");
+			operand.toString(sb);
+			isFirst = false;
+		}
+		sb.append(")");
+	}
+}
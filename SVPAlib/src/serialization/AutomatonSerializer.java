@@ -0,0 +1,776 @@
+package serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.safa.BooleanExpressionFactory;
+import automata.safa.SAFA;
+import automata.safa.SAFAEpsilon;
+import automata.safa.SAFAInputMove;
+import automata.safa.SAFAMove;
+import automata.safa.booleanexpression.PositiveAnd;
+import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.safa.booleanexpression.PositiveId;
+import automata.safa.booleanexpression.PositiveOr;
+import automata.safa.booleanexpression.PositiveTrue;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebra;
+import theory.BooleanAlgebraSubst;
+import transducers.sft.SFT;
+import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTInputMove;
+import transducers.sft.SFTMove;
+import transducers.sst.CharConstant;
+import transducers.sst.CharFunction;
+import transducers.sst.ConstantToken;
+import transducers.sst.FunctionalVariableUpdate;
+import transducers.sst.OutputUpdate;
+import transducers.sst.SST;
+import transducers.sst.SSTEpsilon;
+import transducers.sst.SSTInputMove;
+import transducers.sst.SSTMove;
+import transducers.sst.SSTVariable;
+import transducers.sst.SimpleVariableUpdate;
+import transducers.sst.Token;
+
+/**
+ * Writes SFAs, SAFAs, SFTs and SSTs in a compact binary format and reads them
+ * back, so that an automaton is built once and loaded at every start. The
+ * predicates, functions and symbols are written by codecs, once each however
+ * many moves use them.
+ *
+ * A file starts with a header: a magic number, the version of the format, the
+ * kind of automaton and its flags. Then come the pools of predicates,
+ * functions and symbols, each as its length in bytes followed by the bytes
+ * of its codec, padded to a multiple of 4 bytes. Everything else is a 4-byte
+ * big-endian integer, so that a mapped file can be read as an
+ * {@link java.nio.IntBuffer}:
+ * <ul>
+ * <li>the table of lists: their number, the offset of every list and of the
+ * end in the array of their elements, then that array. Lists hold the
+ * expressions of SAFAs, the outputs of SFTs and the updates of SSTs;</li>
+ * <li>the number of states and their ids, sorted. A state is then referred
+ * to by its index in that array;</li>
+ * <li>the initial state, the final states and the other components of the
+ * automaton;</li>
+ * <li>the dense tables of input and epsilon moves: the offset of the moves of
+ * every state and of the end, then one fixed-size record per move.</li>
+ * </ul>
+ *
+ * @param <P>
+ *            The type of predicates
+ * @param <F>
+ *            The type of functions, for transducers
+ * @param <S>
+ *            The domain of the predicates
+ */
+public class AutomatonSerializer<P, F, S> {
+
+	public static final int MAGIC = 0x53415554; // "SAUT"
+	public static final short VERSION = 1;
+
+	private static final byte SFA_KIND = 1;
+	private static final byte SAFA_KIND = 2;
+	private static final byte SFT_KIND = 3;
+	private static final byte SST_KIND = 4;
+
+	// flags
+	private static final byte DETERMINISTIC = 1;
+
+	// the tags of the nodes of SAFA expressions
+	private static final int FALSE = 0;
+	private static final int TRUE = 1;
+	private static final int ID = 2;
+	private static final int AND = 3;
+	private static final int OR = 4;
+
+	// the tags of SST tokens, in their two lowest bits
+	private static final int VARIABLE = 0;
+	private static final int CONSTANT = 1;
+	private static final int FUNCTION = 2;
+
+	private final Codec<P> predicateCodec;
+	private final Codec<F> functionCodec;
+	private final Codec<S> symbolCodec;
+
+	/**
+	 * A serializer of SFAs and SAFAs
+	 */
+	public AutomatonSerializer(Codec<P> predicateCodec) {
+		this(predicateCodec, null, null);
+	}
+
+	/**
+	 * A serializer of automata and transducers
+	 */
+	public AutomatonSerializer(Codec<P> predicateCodec, Codec<F> functionCodec, Codec<S> symbolCodec) {
+		this.predicateCodec = predicateCodec;
+		this.functionCodec = functionCodec;
+		this.symbolCodec = symbolCodec;
+	}
+
+	/**
+	 * Maps <code>file</code> in memory, to be read by one of the
+	 * <code>read</code> methods without copying it first
+	 */
+	public static ByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			FileChannel channel = in.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	// ------------------------------------------------------
+	// SFA
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>, which is not closed
+	 */
+	public void write(SFA<P, S> aut, OutputStream out) throws IOException {
+		Writer writer = new Writer();
+		writer.states(aut.getStates());
+		writer.body.add(writer.state(aut.getInitialState()));
+		writer.stateSet(aut.getFinalStates());
+		writer.table(aut::getInputMovesFrom, (SFAInputMove<P, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+			record.add(writer.predicate(move.guard));
+		});
+		writer.table(aut::getEpsilonFrom, (SFAEpsilon<P, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+		});
+		writer.finish(SFA_KIND, aut.isDeterministic() ? DETERMINISTIC : 0, out);
+	}
+
+	/**
+	 * @return the SFA written in <code>buffer</code>, from its position
+	 */
+	public SFA<P, S> readSFA(ByteBuffer buffer, BooleanAlgebra<P, S> ba) throws IOException, TimeoutException {
+		Reader reader = new Reader(buffer, SFA_KIND);
+		Integer initialState = reader.state();
+		Collection<Integer> finalStates = reader.stateSet();
+		Collection<SFAMove<P, S>> transitions = new LinkedList<>();
+		reader.table(2, (from, records, i) -> transitions
+				.add(new SFAInputMove<P, S>(from, reader.state(records[i]), reader.predicate(records[i + 1]))));
+		reader.table(1, (from, records, i) -> transitions.add(new SFAEpsilon<P, S>(from, reader.state(records[i]))));
+
+		SFA<P, S> aut = SFA.MkSFA(transitions, initialState, finalStates, ba, false, false, true);
+		if ((reader.flags & DETERMINISTIC) != 0)
+			aut.setIsDet(true);
+		return aut;
+	}
+
+	// ------------------------------------------------------
+	// SAFA
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>aut</code> to <code>out</code>, which is not closed
+	 */
+	public void write(SAFA<P, S> aut, OutputStream out) throws IOException {
+		Writer writer = new Writer();
+		writer.states(aut.getStates());
+		writer.body.add(writer.expression(aut.getInitialState()));
+		writer.stateSet(aut.getFinalStates());
+		writer.stateSet(aut.getLookaheadFinalStates());
+		writer.table(aut::getInputMovesFrom, (SAFAInputMove<P, S> move, IntArray record) -> {
+			record.add(writer.expression(move.to));
+			record.add(writer.predicate(move.guard));
+		});
+		writer.table(aut::getEpsilonFrom, (SAFAEpsilon<P, S> move, IntArray record) -> {
+			record.add(writer.expression(move.to));
+		});
+		writer.finish(SAFA_KIND, (byte) 0, out);
+	}
+
+	/**
+	 * @return the SAFA written in <code>buffer</code>, from its position
+	 */
+	public SAFA<P, S> readSAFA(ByteBuffer buffer, BooleanAlgebra<P, S> ba) throws IOException, TimeoutException {
+		Reader reader = new Reader(buffer, SAFA_KIND);
+		PositiveBooleanExpression[] expressions = new PositiveBooleanExpression[reader.lists.length];
+		PositiveBooleanExpression initialState = reader.expression(reader.nextInt(), expressions);
+		Collection<Integer> finalStates = reader.stateSet();
+		Collection<Integer> lookaheadFinalStates = reader.stateSet();
+		Collection<SAFAMove<P, S>> transitions = new LinkedList<>();
+		reader.table(2, (from, records, i) -> transitions.add(new SAFAInputMove<P, S>(from,
+				reader.expression(records[i], expressions), reader.predicate(records[i + 1]))));
+		reader.table(1, (from, records, i) -> transitions
+				.add(new SAFAEpsilon<P, S>(from, reader.expression(records[i], expressions))));
+
+		return SAFA.MkSAFA(transitions, initialState, finalStates, lookaheadFinalStates, ba, false, false, false);
+	}
+
+	// ------------------------------------------------------
+	// SFT
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>sft</code> to <code>out</code>, which is not closed
+	 */
+	public void write(SFT<P, F, S> sft, OutputStream out) throws IOException {
+		Writer writer = new Writer();
+		writer.states(sft.getStates());
+		writer.body.add(writer.state(sft.getInitialState()));
+		Map<Integer, Set<List<S>>> finalStatesAndTails = sft.getFinalStatesAndTails();
+		writer.body.add(finalStatesAndTails.size());
+		for (Map.Entry<Integer, Set<List<S>>> finalState : finalStatesAndTails.entrySet()) {
+			writer.body.add(writer.state(finalState.getKey()));
+			writer.body.add(finalState.getValue().size());
+			for (List<S> tail : finalState.getValue())
+				writer.body.add(writer.symbols(tail));
+		}
+		writer.table(sft::getInputMovesFrom, (SFTInputMove<P, F, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+			record.add(writer.predicate(move.guard));
+			IntArray outputs = new IntArray();
+			for (F function : move.outputFunctions)
+				outputs.add(writer.function(function));
+			record.add(writer.list(outputs));
+		});
+		writer.table(sft::getEpsilonMovesFrom, (SFTEpsilon<P, F, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+			record.add(writer.symbols(move.outputs));
+		});
+		writer.finish(SFT_KIND, (byte) 0, out);
+	}
+
+	/**
+	 * @return the SFT written in <code>buffer</code>, from its position
+	 */
+	public SFT<P, F, S> readSFT(ByteBuffer buffer, BooleanAlgebraSubst<P, F, S> ba)
+			throws IOException, TimeoutException {
+		Reader reader = new Reader(buffer, SFT_KIND);
+		Integer initialState = reader.state();
+		Map<Integer, Set<List<S>>> finalStatesAndTails = new HashMap<>();
+		int finalCount = reader.nextInt();
+		for (int i = 0; i < finalCount; i++) {
+			Integer state = reader.state();
+			int tailCount = reader.nextInt();
+			Set<List<S>> tails = new HashSet<>();
+			for (int j = 0; j < tailCount; j++)
+				tails.add(reader.symbols(reader.nextInt()));
+			finalStatesAndTails.put(state, tails);
+		}
+		Collection<SFTMove<P, F, S>> transitions = new LinkedList<>();
+		reader.table(3, (from, records, i) -> {
+			List<F> outputs = new ArrayList<>();
+			for (int function : reader.list(records[i + 2]))
+				outputs.add(reader.function(function));
+			transitions.add(new SFTInputMove<P, F, S>(from, reader.state(records[i]),
+					reader.predicate(records[i + 1]), outputs));
+		});
+		reader.table(2, (from, records, i) -> transitions
+				.add(new SFTEpsilon<P, F, S>(from, reader.state(records[i]), reader.symbols(records[i + 1]))));
+
+		return SFT.MkSFT(transitions, initialState, finalStatesAndTails, ba);
+	}
+
+	// ------------------------------------------------------
+	// SST
+	// ------------------------------------------------------
+
+	/**
+	 * Writes <code>sst</code> to <code>out</code>, which is not closed
+	 */
+	public void write(SST<P, F, S> sst, OutputStream out) throws IOException {
+		Writer writer = new Writer();
+		writer.states(sst.getStates());
+		writer.body.add(writer.state(sst.getInitialState()));
+		writer.body.add(sst.getVariableCount());
+		Map<Integer, OutputUpdate<P, F, S>> outputFunction = sst.getOutputFunction();
+		writer.body.add(outputFunction.size());
+		for (Map.Entry<Integer, OutputUpdate<P, F, S>> output : outputFunction.entrySet()) {
+			writer.body.add(writer.state(output.getKey()));
+			IntArray tokens = new IntArray();
+			writer.tokens(output.getValue().update, tokens);
+			writer.body.add(writer.list(tokens));
+		}
+		writer.table(sst::getInputMovesFrom, (SSTInputMove<P, F, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+			record.add(writer.predicate(move.guard));
+			record.add(writer.update(move.variableUpdate.variableUpdate));
+		});
+		writer.table(sst::getEpsilonMovesFrom, (SSTEpsilon<P, F, S> move, IntArray record) -> {
+			record.add(writer.state(move.to));
+			record.add(writer.update(move.variableUpdate.variableUpdate));
+		});
+		writer.finish(SST_KIND, (byte) 0, out);
+	}
+
+	/**
+	 * @return the SST written in <code>buffer</code>, from its position
+	 */
+	public SST<P, F, S> readSST(ByteBuffer buffer, BooleanAlgebraSubst<P, F, S> ba) throws IOException {
+		Reader reader = new Reader(buffer, SST_KIND);
+		Integer initialState = reader.state();
+		int variableCount = reader.nextInt();
+		if (variableCount < 0)
+			throw new IOException("Corrupt automaton");
+		reader.variableCount = variableCount;
+		Map<Integer, OutputUpdate<P, F, S>> outputFunction = new HashMap<>();
+		int outputCount = reader.nextInt();
+		for (int i = 0; i < outputCount; i++) {
+			Integer state = reader.state();
+			int[] tokens = reader.list(reader.nextInt());
+			outputFunction.put(state, new OutputUpdate<P, F, S>(reader.constantTokens(tokens, 0, tokens.length)));
+		}
+		Collection<SSTMove<P, F, S>> transitions = new LinkedList<>();
+		reader.table(3, (from, records, i) -> {
+			ArrayList<List<Token<P, F, S>>> update = new ArrayList<>();
+			int[] list = reader.list(records[i + 2]);
+			for (int start = 1; start < list.length; start += list[start] + 1)
+				update.add(reader.tokens(list, start + 1, list[start]));
+			transitions.add(new SSTInputMove<P, F, S>(from, reader.state(records[i]),
+					reader.predicate(records[i + 1]), new FunctionalVariableUpdate<P, F, S>(update)));
+		});
+		reader.table(2, (from, records, i) -> {
+			ArrayList<List<ConstantToken<P, F, S>>> update = new ArrayList<>();
+			int[] list = reader.list(records[i + 1]);
+			for (int start = 1; start < list.length; start += list[start] + 1)
+				update.add(reader.constantTokens(list, start + 1, list[start]));
+			transitions.add(new SSTEpsilon<P, F, S>(from, reader.state(records[i]),
+					new SimpleVariableUpdate<P, F, S>(update)));
+		});
+
+		return SST.MkSST(transitions, initialState, variableCount, outputFunction, ba);
+	}
+
+	// ------------------------------------------------------
+	// Writing
+	// ------------------------------------------------------
+
+	// A growable array of ints
+	private static class IntArray {
+		int[] data = new int[16];
+		int size;
+
+		void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, 2 * size);
+			data[size++] = value;
+		}
+
+		void addAll(IntArray other) {
+			for (int i = 0; i < other.size; i++)
+				add(other.data[i]);
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			for (int i = 0; i < size; i++)
+				out.writeInt(data[i]);
+		}
+	}
+
+	// The pools and tables of an automaton being written
+	private class Writer {
+		final Map<P, Integer> predicates = new LinkedHashMap<>();
+		final Map<F, Integer> functions = new LinkedHashMap<>();
+		final Map<S, Integer> symbols = new LinkedHashMap<>();
+		// the lists, numbered in the order they are first used
+		final Map<List<Integer>, Integer> lists = new LinkedHashMap<>();
+		final Map<PositiveBooleanExpression, Integer> expressions = new HashMap<>();
+		// the index of every state
+		final Map<Integer, Integer> stateIndex = new HashMap<>();
+		final List<Integer> states = new ArrayList<>();
+		final IntArray body = new IntArray();
+
+		void states(Collection<Integer> stateSet) {
+			states.addAll(stateSet);
+			states.sort(null);
+			body.add(states.size());
+			for (int i = 0; i < states.size(); i++) {
+				stateIndex.put(states.get(i), i);
+				body.add(states.get(i));
+			}
+		}
+
+		int state(Integer state) {
+			return stateIndex.get(state);
+		}
+
+		void stateSet(Collection<Integer> stateSet) {
+			body.add(stateSet.size());
+			for (Integer state : stateSet)
+				body.add(state(state));
+		}
+
+		int predicate(P predicate) {
+			return index(predicates, predicate);
+		}
+
+		int function(F function) {
+			return index(functions, function);
+		}
+
+		<T> int index(Map<T, Integer> pool, T value) {
+			Integer index = pool.get(value);
+			if (index == null) {
+				index = pool.size();
+				pool.put(value, index);
+			}
+			return index;
+		}
+
+		int list(IntArray values) {
+			List<Integer> list = new ArrayList<>(values.size);
+			for (int i = 0; i < values.size; i++)
+				list.add(values.data[i]);
+			return index(lists, list);
+		}
+
+		int symbols(List<S> values) {
+			IntArray list = new IntArray();
+			for (S symbol : values)
+				list.add(index(symbols, symbol));
+			return list(list);
+		}
+
+		// An expression is the list of its tag and the indices of its
+		// operands, which are added before it
+		int expression(PositiveBooleanExpression expression) {
+			Integer index = expressions.get(expression);
+			if (index != null)
+				return index;
+
+			IntArray node = new IntArray();
+			if (expression instanceof PositiveId) {
+				node.add(ID);
+				node.add(state(((PositiveId) expression).state));
+			} else if (expression instanceof PositiveAnd || expression instanceof PositiveOr) {
+				boolean and = expression instanceof PositiveAnd;
+				PositiveBooleanExpression left = and ? ((PositiveAnd) expression).left
+						: ((PositiveOr) expression).left;
+				PositiveBooleanExpression right = and ? ((PositiveAnd) expression).right
+						: ((PositiveOr) expression).right;
+				node.add(and ? AND : OR);
+				node.add(expression(left));
+				node.add(expression(right));
+			} else
+				node.add(expression instanceof PositiveTrue ? TRUE : FALSE);
+			index = list(node);
+			expressions.put(expression, index);
+			return index;
+		}
+
+		// An update is the list of the number of variables followed by the
+		// length and the tokens of the value of every variable
+		<T extends Token<P, F, S>> int update(List<List<T>> update) {
+			IntArray list = new IntArray();
+			list.add(update.size());
+			for (List<T> value : update) {
+				list.add(value.size());
+				tokens(value, list);
+			}
+			return list(list);
+		}
+
+		void tokens(List<? extends Token<P, F, S>> tokens, IntArray list) {
+			for (Token<P, F, S> token : tokens) {
+				if (token instanceof SSTVariable)
+					list.add(((SSTVariable<P, F, S>) token).getId() << 2 | VARIABLE);
+				else if (token instanceof CharConstant)
+					list.add(index(symbols, ((CharConstant<P, F, S>) token).constant) << 2 | CONSTANT);
+				else if (token instanceof CharFunction)
+					list.add(function(((CharFunction<P, F, S>) token).getFunction()) << 2 | FUNCTION);
+				else
+					throw new IllegalArgumentException("Unsupported token " + token);
+			}
+		}
+
+		// Adds the offsets of the moves of every state and their records
+		<M> void table(Function<Integer, Collection<M>> movesFrom, BiConsumer<M, IntArray> encoder) {
+			IntArray records = new IntArray();
+			int count = 0;
+			body.add(0);
+			for (Integer state : states) {
+				for (M move : movesFrom.apply(state)) {
+					encoder.accept(move, records);
+					count++;
+				}
+				body.add(count);
+			}
+			body.addAll(records);
+		}
+
+		void finish(byte kind, byte flags, OutputStream out) throws IOException {
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(MAGIC);
+			data.writeShort(VERSION);
+			data.writeByte(kind);
+			data.writeByte(flags);
+
+			pool(predicateCodec, predicates.keySet(), data);
+			if (kind == SFT_KIND || kind == SST_KIND) {
+				pool(functionCodec, functions.keySet(), data);
+				pool(symbolCodec, symbols.keySet(), data);
+			}
+
+			IntArray elements = new IntArray();
+			data.writeInt(lists.size());
+			data.writeInt(0);
+			for (List<Integer> list : lists.keySet()) {
+				for (int element : list)
+					elements.add(element);
+				data.writeInt(elements.size);
+			}
+			elements.writeTo(data);
+			body.writeTo(data);
+			data.flush();
+		}
+
+		<T> void pool(Codec<T> codec, Collection<T> values, DataOutputStream data) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream encoded = new DataOutputStream(bytes);
+			codec.write(new ArrayList<>(values), encoded);
+			encoded.flush();
+			data.writeInt(bytes.size());
+			bytes.writeTo(data);
+			for (int i = bytes.size(); i % 4 != 0; i++)
+				data.writeByte(0);
+		}
+	}
+
+	// ------------------------------------------------------
+	// Reading
+	// ------------------------------------------------------
+
+	// Decodes the record of a move starting at records[i]
+	private interface RecordDecoder {
+		void decode(Integer from, int[] records, int i) throws IOException;
+	}
+
+	// The pools and tables of an automaton being read
+	private class Reader {
+		final ByteBuffer buffer;
+		final byte flags;
+		List<P> predicates;
+		List<F> functions;
+		List<S> symbols;
+		final int[][] lists;
+		final Integer[] states;
+		int variableCount;
+
+		Reader(ByteBuffer source, byte kind) throws IOException {
+			buffer = source.slice().order(ByteOrder.BIG_ENDIAN);
+			require(8);
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("Not a serialized automaton");
+			short version = buffer.getShort();
+			if (version != VERSION)
+				throw new IOException("Unsupported format version " + version);
+			byte actualKind = buffer.get();
+			if (actualKind != kind)
+				throw new IOException("Expected an automaton of kind " + kind + ", found " + actualKind);
+			flags = buffer.get();
+
+			predicates = pool(predicateCodec);
+			if (kind == SFT_KIND || kind == SST_KIND) {
+				functions = pool(functionCodec);
+				symbols = pool(symbolCodec);
+			}
+
+			int listCount = nextInt();
+			int[] offsets = offsets(listCount);
+			int[] elements = ints(offsets[listCount]);
+			lists = new int[listCount][];
+			for (int i = 0; i < listCount; i++)
+				lists[i] = Arrays.copyOfRange(elements, offsets[i], offsets[i + 1]);
+
+			int[] ids = ints(nextInt());
+			states = new Integer[ids.length];
+			for (int i = 0; i < ids.length; i++)
+				states[i] = ids[i];
+		}
+
+		void require(long bytes) throws IOException {
+			if (bytes < 0 || buffer.remaining() < bytes)
+				throw new IOException("Truncated automaton");
+		}
+
+		int nextInt() throws IOException {
+			require(4);
+			return buffer.getInt();
+		}
+
+		int[] ints(int count) throws IOException {
+			require(4L * count);
+			int[] values = new int[count];
+			buffer.asIntBuffer().get(values);
+			buffer.position(buffer.position() + 4 * count);
+			return values;
+		}
+
+		// Reads count + 1 offsets, which must be non-decreasing from 0
+		int[] offsets(int count) throws IOException {
+			if (count < 0 || count == Integer.MAX_VALUE)
+				throw new IOException("Corrupt automaton");
+			int[] offsets = ints(count + 1);
+			if (offsets[0] != 0)
+				throw new IOException("Corrupt automaton");
+			for (int i = 0; i < count; i++)
+				if (offsets[i] > offsets[i + 1])
+					throw new IOException("Corrupt automaton");
+			return offsets;
+		}
+
+		// Checks that index refers to one of size elements
+		int index(int index, int size) throws IOException {
+			if (index < 0 || index >= size)
+				throw new IOException("Corrupt automaton");
+			return index;
+		}
+
+		<T> List<T> pool(Codec<T> codec) throws IOException {
+			int length = nextInt();
+			require(length);
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			buffer.position(buffer.position() + (4 - length % 4) % 4);
+			return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		}
+
+		Integer state() throws IOException {
+			return state(nextInt());
+		}
+
+		Integer state(int index) throws IOException {
+			return states[index(index, states.length)];
+		}
+
+		P predicate(int index) throws IOException {
+			return predicates.get(index(index, predicates.size()));
+		}
+
+		F function(int index) throws IOException {
+			return functions.get(index(index, functions.size()));
+		}
+
+		S symbol(int index) throws IOException {
+			return symbols.get(index(index, symbols.size()));
+		}
+
+		Collection<Integer> stateSet() throws IOException {
+			int count = nextInt();
+			Collection<Integer> stateSet = new HashSet<>();
+			for (int i = 0; i < count; i++)
+				stateSet.add(state());
+			return stateSet;
+		}
+
+		int[] list(int index) throws IOException {
+			return lists[index(index, lists.length)];
+		}
+
+		List<S> symbols(int index) throws IOException {
+			List<S> values = new ArrayList<>();
+			for (int symbol : list(index))
+				values.add(symbol(symbol));
+			return values;
+		}
+
+		// The children of a node are written before it, which rules out cycles
+		PositiveBooleanExpression expression(int index, PositiveBooleanExpression[] expressions) throws IOException {
+			int[] node = list(index);
+			if (expressions[index] != null)
+				return expressions[index];
+
+			BooleanExpressionFactory<PositiveBooleanExpression> factory = SAFA.getBooleanExpressionFactory();
+			int arity = node.length == 0 ? -1 : node[0] == ID ? 1 : node[0] == AND || node[0] == OR ? 2
+					: node[0] == TRUE || node[0] == FALSE ? 0 : -1;
+			if (node.length != arity + 1)
+				throw new IOException("Corrupt automaton");
+			PositiveBooleanExpression expression;
+			switch (node[0]) {
+			case ID:
+				expression = factory.MkState(state(node[1]));
+				break;
+			case AND:
+				expression = factory.MkAnd(expression(index(node[1], index), expressions),
+						expression(index(node[2], index), expressions));
+				break;
+			case OR:
+				expression = factory.MkOr(expression(index(node[1], index), expressions),
+						expression(index(node[2], index), expressions));
+				break;
+			case TRUE:
+				expression = factory.True();
+				break;
+			default:
+				expression = factory.False();
+			}
+			expressions[index] = expression;
+			return expression;
+		}
+
+		List<Token<P, F, S>> tokens(int[] list, int start, int length) throws IOException {
+			checkRange(list, start, length);
+			List<Token<P, F, S>> tokens = new ArrayList<>(length);
+			for (int i = start; i < start + length; i++) {
+				if ((list[i] & 3) == FUNCTION)
+					tokens.add(new CharFunction<P, F, S>(function(list[i] >>> 2)));
+				else
+					tokens.add(constantToken(list[i]));
+			}
+			return tokens;
+		}
+
+		List<ConstantToken<P, F, S>> constantTokens(int[] list, int start, int length) throws IOException {
+			checkRange(list, start, length);
+			List<ConstantToken<P, F, S>> tokens = new ArrayList<>(length);
+			for (int i = start; i < start + length; i++)
+				tokens.add(constantToken(list[i]));
+			return tokens;
+		}
+
+		ConstantToken<P, F, S> constantToken(int token) throws IOException {
+			if ((token & 3) == VARIABLE)
+				return new SSTVariable<P, F, S>(index(token >>> 2, variableCount));
+			if ((token & 3) == CONSTANT)
+				return new CharConstant<P, F, S>(symbol(token >>> 2));
+			throw new IOException("Corrupt automaton");
+		}
+
+		void checkRange(int[] list, int start, int length) throws IOException {
+			if (start < 0 || length < 0 || length > list.length - start)
+				throw new IOException("Corrupt automaton");
+		}
+
+		// Decodes the moves of every state, whose records have width ints
+		void table(int width, RecordDecoder decoder) throws IOException {
+			int[] offsets = offsets(states.length);
+			if (offsets[states.length] > Integer.MAX_VALUE / 4 / width)
+				throw new IOException("Truncated automaton");
+			int[] records = ints(width * offsets[states.length]);
+			for (int state = 0; state < states.length; state++)
+				for (int move = offsets[state]; move < offsets[state + 1]; move++)
+					decoder.decode(states[state], records, width * move);
+		}
+	}
+}
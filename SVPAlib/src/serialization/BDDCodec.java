@@ -0,0 +1,34 @@
+package serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+
+/**
+ * Writes BDDs in the binary format of {@link BDDFactory#saveBinary}, so that
+ * the nodes shared by several predicates are written once, and reads them
+ * back into <code>factory</code>
+ */
+public class BDDCodec implements Codec<BDD> {
+
+	private final BDDFactory factory;
+
+	public BDDCodec(BDDFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public void write(List<BDD> values, DataOutputStream out) throws IOException {
+		factory.saveBinary(out, values.toArray(new BDD[values.size()]));
+	}
+
+	@Override
+	public List<BDD> read(DataInputStream in) throws IOException {
+		return Arrays.asList(factory.loadBinary(in));
+	}
+}
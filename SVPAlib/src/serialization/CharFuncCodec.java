@@ -0,0 +1,51 @@
+package serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import theory.characters.CharConstant;
+import theory.characters.CharFunc;
+import theory.characters.CharOffset;
+
+/**
+ * Writes every character function as a constant or an offset
+ */
+public class CharFuncCodec implements Codec<CharFunc> {
+
+	private static final byte CONSTANT = 0;
+	private static final byte OFFSET = 1;
+
+	@Override
+	public void write(List<CharFunc> values, DataOutputStream out) throws IOException {
+		out.writeInt(values.size());
+		for (CharFunc function : values) {
+			if (function instanceof CharConstant) {
+				out.writeByte(CONSTANT);
+				out.writeChar(((CharConstant) function).c);
+			} else if (function instanceof CharOffset) {
+				out.writeByte(OFFSET);
+				out.writeLong(((CharOffset) function).increment);
+			} else
+				throw new IllegalArgumentException("Unsupported character function " + function);
+		}
+	}
+
+	@Override
+	public List<CharFunc> read(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<CharFunc> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			byte kind = in.readByte();
+			if (kind == CONSTANT)
+				values.add(new CharConstant(in.readChar()));
+			else if (kind == OFFSET)
+				values.add(new CharOffset(in.readLong()));
+			else
+				throw new IOException("Unknown character function kind " + kind);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,47 @@
+package serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import com.google.common.collect.ImmutableList;
+
+import theory.characters.CharPred;
+
+/**
+ * Writes every character predicate as the array of its intervals
+ */
+public class CharPredCodec implements Codec<CharPred> {
+
+	@Override
+	public void write(List<CharPred> values, DataOutputStream out) throws IOException {
+		out.writeInt(values.size());
+		for (CharPred predicate : values) {
+			out.writeInt(predicate.intervals.size());
+			out.writeBoolean(predicate.isReturn());
+			for (ImmutablePair<Character, Character> interval : predicate.intervals) {
+				out.writeChar(interval.left);
+				out.writeChar(interval.right);
+			}
+		}
+	}
+
+	@Override
+	public List<CharPred> read(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<CharPred> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int intervalCount = in.readInt();
+			boolean isReturn = in.readBoolean();
+			ImmutableList.Builder<ImmutablePair<Character, Character>> intervals = ImmutableList.builder();
+			for (int j = 0; j < intervalCount; j++)
+				intervals.add(ImmutablePair.of(in.readChar(), in.readChar()));
+			values.add(new CharPred(intervals.build(), isReturn));
+		}
+		return values;
+	}
+}
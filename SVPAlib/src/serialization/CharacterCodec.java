@@ -0,0 +1,29 @@
+package serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes characters as two bytes each
+ */
+public class CharacterCodec implements Codec<Character> {
+
+	@Override
+	public void write(List<Character> values, DataOutputStream out) throws IOException {
+		out.writeInt(values.size());
+		for (Character c : values)
+			out.writeChar(c);
+	}
+
+	@Override
+	public List<Character> read(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<Character> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			values.add(in.readChar());
+		return values;
+	}
+}
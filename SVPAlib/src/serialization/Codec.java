@@ -0,0 +1,27 @@
+package serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes the predicates, functions or symbols of the automata written by an
+ * {@link AutomatonSerializer}. The values are written together, so that an
+ * encoding can share the structure of several values.
+ *
+ * @param <T>
+ *            The type of the values
+ */
+public interface Codec<T> {
+
+	/**
+	 * Writes <code>values</code> to <code>out</code>
+	 */
+	void write(List<T> values, DataOutputStream out) throws IOException;
+
+	/**
+	 * @return the values written by <code>write</code>, in the same order
+	 */
+	List<T> read(DataInputStream in) throws IOException;
+}
@@ -0,0 +1,223 @@
+package strings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+
+/**
+ * Decides whether a string is within edit distance k of the language of an
+ * SFA, with the same distance as {@link EditDistanceStrToSFA}.
+ *
+ * The matcher follows Wu and Manber: it keeps, for every number of errors
+ * e up to k, the set of states reachable reading the input with at most e
+ * edits, as a bitset of words. Reading a character moves every set on the
+ * character, then adds the deletions, substitutions and insertions coming
+ * from the set with one error less; the last three are unions of
+ * precomputed successor bitsets. Characters are mapped to the classes of
+ * the guard interval boundaries, so a move of the automaton is an array
+ * lookup.
+ *
+ * The automaton is determinized if needed. A matcher keeps no state
+ * between calls and can be shared by several threads.
+ */
+public class BoundedEditDistanceMatcher {
+
+	// let -1 represent positive infinity, as in EditDistanceStrToSFA
+	private static final int INFINITY = -1;
+
+	private final int maxDistance;
+	private final int stateCount;
+	private final int words;
+	private final int initialState;
+	private final long[] finalStates;
+	// the first character of every class, sorted
+	private final char[] classStart;
+	// target[c][q] is the state reached from q on class c, -1 if none
+	private final int[][] target;
+	// successors[q] is the bitset of the states reached from q on any character
+	private final long[][] successors;
+
+	/**
+	 * Prepares the matching of strings against <code>sfa</code> with at most
+	 * <code>maxDistance</code> edits
+	 *
+	 * @param sfa
+	 *            given symbolic finite automaton
+	 * @param ba
+	 *            the algebra of the guards
+	 * @param maxDistance
+	 *            the largest number of edits
+	 * @throws TimeoutException
+	 */
+	public BoundedEditDistanceMatcher(SFA<CharPred, Character> sfa, BooleanAlgebra<CharPred, Character> ba,
+			int maxDistance) throws TimeoutException {
+		if (maxDistance < 0)
+			throw new IllegalArgumentException("The maximum distance must not be negative: " + maxDistance);
+		this.maxDistance = maxDistance;
+
+		SFA<CharPred, Character> aut = sfa.isDeterministic(ba) ? sfa : sfa.determinize(ba);
+		Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		for (Integer state : aut.getStates())
+			ids.put(state, ids.size());
+		stateCount = ids.size();
+		words = (stateCount + 63) >>> 6;
+
+		initialState = ids.get(aut.getInitialState());
+		finalStates = new long[words];
+		for (Integer state : aut.getFinalStates())
+			set(finalStates, 0, ids.get(state));
+
+		// the classes start at the bounds of the intervals of the guards
+		TreeSet<Character> starts = new TreeSet<Character>();
+		starts.add(Character.MIN_VALUE);
+		for (SFAInputMove<CharPred, Character> move : aut.getInputMovesFrom(aut.getStates()))
+			for (ImmutablePair<Character, Character> interval : move.guard.intervals) {
+				starts.add(interval.left);
+				if (interval.right != Character.MAX_VALUE)
+					starts.add((char) (interval.right + 1));
+			}
+		classStart = new char[starts.size()];
+		int count = 0;
+		for (Character c : starts)
+			classStart[count++] = c;
+
+		target = new int[classStart.length][stateCount];
+		for (int[] row : target)
+			Arrays.fill(row, -1);
+		successors = new long[stateCount][words];
+		for (Integer state : aut.getStates()) {
+			int q = ids.get(state);
+			for (SFAInputMove<CharPred, Character> move : aut.getInputMovesFrom(state)) {
+				int t = ids.get(move.to);
+				boolean reached = false;
+				for (int c = 0; c < classStart.length; c++)
+					if (move.guard.isSatisfiedBy(classStart[c])) {
+						target[c][q] = t;
+						reached = true;
+					}
+				if (reached)
+					set(successors[q], 0, t);
+			}
+		}
+	}
+
+	/**
+	 * @return the largest number of edits
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * @return true if some string accepted by the SFA is within the maximum
+	 *         distance of <code>inpStr</code>
+	 */
+	public boolean matches(String inpStr) {
+		return distance(inpStr) != INFINITY;
+	}
+
+	/**
+	 * Find the lowest edit distance from input string to a string that is accepted
+	 * by the SFA
+	 *
+	 * @param inpStr
+	 *            input string
+	 * @return result edit distance, -1 if it is larger than the maximum distance
+	 */
+	public int distance(String inpStr) {
+		int size = (maxDistance + 1) * words;
+		long[] cur = new long[size];
+		long[] next = new long[size];
+
+		// the states reached inserting e characters into the empty string
+		set(cur, 0, initialState);
+		for (int e = 1; e <= maxDistance; e++) {
+			System.arraycopy(cur, (e - 1) * words, cur, e * words, words);
+			orSuccessors(cur, (e - 1) * words, cur, e * words);
+		}
+
+		for (int j = 0; j < inpStr.length(); j++) {
+			int c = classOf(inpStr.charAt(j));
+			Arrays.fill(next, 0L);
+			for (int e = 0; e <= maxDistance; e++) {
+				int off = e * words;
+				move(cur, off, c, next, off);
+				if (e > 0) {
+					int below = off - words;
+					// deletion of the character
+					for (int i = 0; i < words; i++)
+						next[off + i] |= cur[below + i];
+					// substitution of the character
+					orSuccessors(cur, below, next, off);
+					// insertion after the character
+					orSuccessors(next, below, next, off);
+				}
+			}
+			// the sets grow with e, so the last one is empty only if all are
+			if (isEmpty(next, maxDistance * words))
+				return INFINITY;
+			long[] swap = cur;
+			cur = next;
+			next = swap;
+		}
+
+		for (int e = 0; e <= maxDistance; e++)
+			for (int i = 0; i < words; i++)
+				if ((cur[e * words + i] & finalStates[i]) != 0)
+					return e;
+		return INFINITY;
+	}
+
+	// the class of the intervals containing c
+	private int classOf(char c) {
+		int i = Arrays.binarySearch(classStart, c);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	// adds to dst the states reached from src on class c
+	private void move(long[] src, int srcOff, int c, long[] dst, int dstOff) {
+		int[] to = target[c];
+		for (int i = 0; i < words; i++) {
+			long bits = src[srcOff + i];
+			while (bits != 0) {
+				int t = to[(i << 6) + Long.numberOfTrailingZeros(bits)];
+				if (t >= 0)
+					dst[dstOff + (t >>> 6)] |= 1L << t;
+				bits &= bits - 1;
+			}
+		}
+	}
+
+	// adds to dst the states reached from src on any character
+	private void orSuccessors(long[] src, int srcOff, long[] dst, int dstOff) {
+		for (int i = 0; i < words; i++) {
+			long bits = src[srcOff + i];
+			while (bits != 0) {
+				long[] succ = successors[(i << 6) + Long.numberOfTrailingZeros(bits)];
+				for (int k = 0; k < words; k++)
+					dst[dstOff + k] |= succ[k];
+				bits &= bits - 1;
+			}
+		}
+	}
+
+	private boolean isEmpty(long[] set, int off) {
+		for (int i = 0; i < words; i++)
+			if (set[off + i] != 0)
+				return false;
+		return true;
+	}
+
+	private static void set(long[] set, int off, int q) {
+		set[off + (q >>> 6)] |= 1L << q;
+	}
+}
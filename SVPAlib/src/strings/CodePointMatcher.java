@@ -0,0 +1,250 @@
+package strings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.CodePointSolver;
+import theory.intervals.IntPred;
+
+/**
+ * Decides whether a string belongs to the language of an SFA over Unicode
+ * code points, decoding the input on the fly. Strings can be given as UTF-16
+ * character sequences or as UTF-8 bytes, so a supplementary character is a
+ * single step of the automaton and no list of characters is built.
+ *
+ * The automaton is determinized if needed, and code points are mapped to the
+ * classes of the guard interval boundaries, so a move is an array lookup.
+ * Code points below 128 are mapped through a table. A matcher keeps no state
+ * between calls and can be shared by several threads.
+ *
+ * {@link #fromCharSFA} converts an SFA over UTF-16 characters into an SFA
+ * over code points accepting the same strings.
+ */
+public class CodePointMatcher {
+
+	private static final int ASCII = 128;
+
+	private final int initialState;
+	private final boolean[] isFinal;
+	// the first code point of every class, sorted
+	private final int[] classStart;
+	// the class of every code point below ASCII
+	private final int[] asciiClass;
+	// target[c][q] is the state reached from q on class c, -1 if none
+	private final int[][] target;
+
+	/**
+	 * Prepares the matching of strings against <code>sfa</code>
+	 *
+	 * @param sfa
+	 *            given symbolic finite automaton over code points
+	 * @param ba
+	 *            the algebra of the guards
+	 * @throws TimeoutException
+	 */
+	public CodePointMatcher(SFA<IntPred, Integer> sfa, CodePointSolver ba) throws TimeoutException {
+		SFA<IntPred, Integer> aut = sfa.isDeterministic(ba) ? sfa : sfa.determinize(ba);
+		Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		for (Integer state : aut.getStates())
+			ids.put(state, ids.size());
+		int stateCount = ids.size();
+
+		initialState = ids.get(aut.getInitialState());
+		isFinal = new boolean[stateCount];
+		for (Integer state : aut.getFinalStates())
+			isFinal[ids.get(state)] = true;
+
+		// the classes start at the bounds of the intervals of the guards
+		TreeSet<Integer> starts = new TreeSet<Integer>();
+		starts.add(CodePointSolver.MIN_CODE_POINT);
+		for (SFAInputMove<IntPred, Integer> move : aut.getInputMovesFrom(aut.getStates()))
+			for (ImmutablePair<Integer, Integer> interval : move.guard.getIntervals()) {
+				if (interval.left != null)
+					starts.add(Math.max(interval.left, CodePointSolver.MIN_CODE_POINT));
+				if (interval.right != null && interval.right < CodePointSolver.MAX_CODE_POINT)
+					starts.add(interval.right + 1);
+			}
+		classStart = new int[starts.size()];
+		int count = 0;
+		for (Integer c : starts)
+			classStart[count++] = c;
+		asciiClass = new int[ASCII];
+		for (int c = 0; c < ASCII; c++)
+			asciiClass[c] = search(c);
+
+		target = new int[classStart.length][stateCount];
+		for (int[] row : target)
+			Arrays.fill(row, -1);
+		for (Integer state : aut.getStates()) {
+			int q = ids.get(state);
+			for (SFAInputMove<IntPred, Integer> move : aut.getInputMovesFrom(state)) {
+				int t = ids.get(move.to);
+				for (int c = 0; c < classStart.length; c++)
+					if (move.guard.isSatisfiedBy(classStart[c]))
+						target[c][q] = t;
+			}
+		}
+	}
+
+	/**
+	 * Converts an SFA over UTF-16 characters into an SFA over code points
+	 * that accepts the same strings, once decoded as by
+	 * {@link Character#codePointAt(CharSequence, int)}: a move reading a high
+	 * surrogate followed by a move reading a low surrogate becomes a single
+	 * move on the supplementary code points of the pair, and unpaired
+	 * surrogates are read as themselves.
+	 *
+	 * @param sfa
+	 *            given symbolic finite automaton over characters
+	 * @param ba
+	 *            the algebra of the guards of <code>sfa</code>
+	 * @param cpba
+	 *            the algebra of the guards of the result
+	 * @throws TimeoutException
+	 */
+	public static SFA<IntPred, Integer> fromCharSFA(SFA<CharPred, Character> sfa,
+			BooleanAlgebra<CharPred, Character> ba, CodePointSolver cpba) throws TimeoutException {
+		SFA<CharPred, Character> aut = sfa.isEpsilonFree() ? sfa : sfa.removeEpsilonMoves(ba);
+
+		Collection<SFAMove<IntPred, Integer>> transitions = new ArrayList<SFAMove<IntPred, Integer>>();
+		for (Integer state : aut.getStates())
+			for (SFAInputMove<CharPred, Character> move : aut.getInputMovesFrom(state)) {
+				transitions.add(new SFAInputMove<IntPred, Integer>(state, move.to,
+						CodePointSolver.fromCharPred(move.guard)));
+				if (!hasHighSurrogate(move.guard))
+					continue;
+				for (SFAInputMove<CharPred, Character> next : aut.getInputMovesFrom(move.to)) {
+					IntPred pairs = CodePointSolver.fromSurrogatePairs(move.guard, next.guard);
+					if (cpba.IsSatisfiable(pairs))
+						transitions.add(new SFAInputMove<IntPred, Integer>(state, next.to, pairs));
+				}
+			}
+
+		return SFA.MkSFA(transitions, aut.getInitialState(), aut.getFinalStates(), cpba);
+	}
+
+	private static boolean hasHighSurrogate(CharPred p) {
+		for (ImmutablePair<Character, Character> interval : p.intervals)
+			if (interval.left <= Character.MAX_HIGH_SURROGATE && interval.right >= Character.MIN_HIGH_SURROGATE)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true if the code points of <code>s</code> are accepted by the
+	 *         SFA; unpaired surrogates are read as themselves
+	 */
+	public boolean matches(CharSequence s) {
+		int q = initialState;
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			int c = s.charAt(i);
+			if (Character.isHighSurrogate((char) c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)))
+				c = Character.toCodePoint((char) c, s.charAt(++i));
+			q = target[classOf(c)][q];
+			if (q < 0)
+				return false;
+		}
+		return isFinal[q];
+	}
+
+	/**
+	 * @return true if <code>utf8</code> is well-formed UTF-8 and its code
+	 *         points are accepted by the SFA
+	 */
+	public boolean matches(byte[] utf8) {
+		return matches(utf8, 0, utf8.length);
+	}
+
+	/**
+	 * @return true if the <code>length</code> bytes of <code>utf8</code>
+	 *         starting at <code>offset</code> are well-formed UTF-8 and their
+	 *         code points are accepted by the SFA. Overlong encodings, encoded
+	 *         surrogates and truncated sequences are not well-formed.
+	 */
+	public boolean matches(byte[] utf8, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > utf8.length - length)
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length);
+		int q = initialState;
+		int end = offset + length;
+		for (int i = offset; i < end; ) {
+			int b = utf8[i++] & 0xFF;
+			int c;
+			if (b < 0x80) {
+				q = target[asciiClass[b]][q];
+				if (q < 0)
+					return false;
+				continue;
+			}
+			int more, min;
+			if (b >= 0xC2 && b <= 0xDF) {
+				c = b & 0x1F;
+				more = 1;
+				min = 0x80;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				c = b & 0x0F;
+				more = 2;
+				min = 0x800;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				c = b & 0x07;
+				more = 3;
+				min = 0x10000;
+			} else
+				return false;
+			if (end - i < more)
+				return false;
+			for (; more > 0; more--) {
+				int cont = utf8[i++] & 0xFF;
+				if ((cont & 0xC0) != 0x80)
+					return false;
+				c = (c << 6) | (cont & 0x3F);
+			}
+			if (c < min || c > CodePointSolver.MAX_CODE_POINT
+					|| (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE))
+				return false;
+			q = target[classOf(c)][q];
+			if (q < 0)
+				return false;
+		}
+		return isFinal[q];
+	}
+
+	/**
+	 * @return true if the code points of <code>codePoints</code> are accepted
+	 *         by the SFA
+	 */
+	public boolean matches(List<Integer> codePoints) {
+		int q = initialState;
+		for (Integer c : codePoints) {
+			if (c < CodePointSolver.MIN_CODE_POINT || c > CodePointSolver.MAX_CODE_POINT)
+				return false;
+			q = target[classOf(c)][q];
+			if (q < 0)
+				return false;
+		}
+		return isFinal[q];
+	}
+
+	// the class of the intervals containing the code point c
+	private int classOf(int c) {
+		return c < ASCII ? asciiClass[c] : search(c);
+	}
+
+	private int search(int c) {
+		int i = Arrays.binarySearch(classStart, c);
+		return i >= 0 ? i : -i - 2;
+	}
+}
@@ -0,0 +1,314 @@
+package strings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+
+/**
+ * Finds the shortest edit distance from a string to the language of an SFA
+ * and a string of the language at that distance. Insertions, deletions and
+ * substitutions cost 1.
+ *
+ * Unlike {@link EditDistanceStrToSFA}, the automaton is compiled once into
+ * arrays and every call keeps its tables local, so the same instance can
+ * repair many strings and be shared by several threads. The table is filled
+ * row by row, one row per character of the input: reading a character
+ * follows a move or deletes the character, and insertions inside a row are
+ * closed with a shortest path search over the states.
+ *
+ * If a maximum distance is given, the search stops as soon as no state can
+ * be reached within it.
+ */
+public class EditDistanceRepair {
+
+	// let -1 represent positive infinity, as in EditDistanceStrToSFA
+	private static final int INFINITY = -1;
+	private static final int UNREACHED = Integer.MAX_VALUE;
+
+	// how a cell of the table was reached
+	private static final byte START = 0;
+	private static final byte READ = 1;
+	private static final byte DELETE = 2;
+	private static final byte INSERT = 3;
+
+	private final int stateCount;
+	private final int initialState;
+	private final boolean[] isFinal;
+	// the i-th move of state q goes to to[q][i] on guard[q][i], and
+	// witness[q][i] is a character satisfying the guard
+	private final int[][] to;
+	private final CharPred[][] guard;
+	private final char[][] witness;
+	private final int maxDistance;
+
+	/**
+	 * Prepares the repair of strings with respect to <code>sfa</code>
+	 *
+	 * @param sfa
+	 *            given symbolic finite automaton
+	 * @param ba
+	 *            the algebra of the guards
+	 * @throws TimeoutException
+	 */
+	public EditDistanceRepair(SFA<CharPred, Character> sfa, BooleanAlgebra<CharPred, Character> ba)
+			throws TimeoutException {
+		this(sfa, ba, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Prepares the repair of strings with respect to <code>sfa</code>, giving up
+	 * on strings farther than <code>maxDistance</code> from its language
+	 *
+	 * @param sfa
+	 *            given symbolic finite automaton
+	 * @param ba
+	 *            the algebra of the guards
+	 * @param maxDistance
+	 *            the largest distance of interest
+	 * @throws TimeoutException
+	 */
+	public EditDistanceRepair(SFA<CharPred, Character> sfa, BooleanAlgebra<CharPred, Character> ba,
+			int maxDistance) throws TimeoutException {
+		if (maxDistance < 0)
+			throw new IllegalArgumentException("The maximum distance must not be negative: " + maxDistance);
+		this.maxDistance = maxDistance;
+
+		SFA<CharPred, Character> aut = sfa.isEpsilonFree() ? sfa : sfa.removeEpsilonMoves(ba);
+		Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		for (Integer state : aut.getStates())
+			ids.put(state, ids.size());
+
+		stateCount = ids.size();
+		initialState = ids.get(aut.getInitialState());
+		isFinal = new boolean[stateCount];
+		for (Integer state : aut.getFinalStates())
+			isFinal[ids.get(state)] = true;
+
+		to = new int[stateCount][];
+		guard = new CharPred[stateCount][];
+		witness = new char[stateCount][];
+		for (Integer state : aut.getStates()) {
+			int q = ids.get(state);
+			Collection<SFAInputMove<CharPred, Character>> moves = aut.getInputMovesFrom(state);
+			int[] qTo = new int[moves.size()];
+			CharPred[] qGuard = new CharPred[moves.size()];
+			char[] qWitness = new char[moves.size()];
+			int count = 0;
+			for (SFAInputMove<CharPred, Character> move : moves) {
+				if (!ba.IsSatisfiable(move.guard))
+					continue;
+				qTo[count] = ids.get(move.to);
+				qGuard[count] = move.guard;
+				qWitness[count] = ba.generateWitness(move.guard);
+				count++;
+			}
+			to[q] = Arrays.copyOf(qTo, count);
+			guard[q] = Arrays.copyOf(qGuard, count);
+			witness[q] = Arrays.copyOf(qWitness, count);
+		}
+	}
+
+	/**
+	 * @return the largest distance of interest
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Find the lowest edit distance from input string to a string that is accepted
+	 * by the SFA
+	 *
+	 * @param inpStr
+	 *            input string
+	 * @return result edit distance, -1 if no accepted string is within the
+	 *         maximum distance
+	 */
+	public int distance(String inpStr) {
+		int[] prev = new int[stateCount];
+		int[] cur = new int[stateCount];
+		Search search = new Search();
+		start(cur, search, null);
+		for (int j = 1; j <= inpStr.length(); j++) {
+			int[] swap = prev;
+			prev = cur;
+			cur = swap;
+			if (!read(prev, cur, inpStr.charAt(j - 1), search, null))
+				return INFINITY;
+		}
+		int best = best(cur);
+		return best < 0 ? INFINITY : cur[best];
+	}
+
+	/**
+	 * Find the string which is accepted by the SFA and has lowest edit distance
+	 * to the input string
+	 *
+	 * @param inpStr
+	 *            input string
+	 * @return result string, null if no accepted string is within the maximum
+	 *         distance
+	 */
+	public String repair(String inpStr) {
+		int m = inpStr.length();
+		Trace[] trace = new Trace[m + 1];
+		int[][] dist = new int[m + 1][];
+		Search search = new Search();
+		dist[0] = new int[stateCount];
+		trace[0] = new Trace();
+		start(dist[0], search, trace[0]);
+		for (int j = 1; j <= m; j++) {
+			dist[j] = new int[stateCount];
+			trace[j] = new Trace();
+			if (!read(dist[j - 1], dist[j], inpStr.charAt(j - 1), search, trace[j]))
+				return null;
+		}
+		int q = best(dist[m]);
+		if (q < 0)
+			return null;
+
+		// follow the operations back to the start of the table
+		StringBuilder sb = new StringBuilder();
+		int j = m;
+		while (trace[j].op[q] != START) {
+			int p = trace[j].from[q];
+			int i = trace[j].move[q];
+			switch (trace[j].op[q]) {
+			case READ:
+				char c = inpStr.charAt(j - 1);
+				sb.append(guard[p][i].isSatisfiedBy(c) ? c : witness[p][i]);
+				j--;
+				break;
+			case DELETE:
+				j--;
+				break;
+			default:
+				sb.append(witness[p][i]);
+				break;
+			}
+			q = p;
+		}
+		return sb.reverse().toString();
+	}
+
+	// the final state of least distance in row, -1 if none is reached
+	private int best(int[] row) {
+		int best = -1;
+		for (int q = 0; q < stateCount; q++)
+			if (isFinal[q] && row[q] != UNREACHED && (best < 0 || row[q] < row[best]))
+				best = q;
+		return best;
+	}
+
+	// the row of the empty prefix
+	private void start(int[] cur, Search search, Trace trace) {
+		Arrays.fill(cur, UNREACHED);
+		cur[initialState] = 0;
+		if (trace != null)
+			trace.op[initialState] = START;
+		insertions(cur, search, trace);
+	}
+
+	// fills cur from prev reading c; returns false if no state is reached
+	// within the maximum distance
+	private boolean read(int[] prev, int[] cur, char c, Search search, Trace trace) {
+		boolean reached = false;
+		for (int q = 0; q < stateCount; q++) {
+			cur[q] = prev[q] == UNREACHED || prev[q] >= maxDistance ? UNREACHED : prev[q] + 1;
+			if (trace != null) {
+				trace.op[q] = DELETE;
+				trace.from[q] = q;
+			}
+		}
+		for (int p = 0; p < stateCount; p++) {
+			if (prev[p] == UNREACHED)
+				continue;
+			int[] pTo = to[p];
+			CharPred[] pGuard = guard[p];
+			for (int i = 0; i < pTo.length; i++) {
+				int d = pGuard[i].isSatisfiedBy(c) ? prev[p] : prev[p] + 1;
+				int t = pTo[i];
+				if (d <= maxDistance && d < cur[t]) {
+					cur[t] = d;
+					if (trace != null) {
+						trace.op[t] = READ;
+						trace.from[t] = p;
+						trace.move[t] = i;
+					}
+				}
+			}
+		}
+		for (int q = 0; q < stateCount && !reached; q++)
+			reached = cur[q] != UNREACHED;
+		if (reached)
+			insertions(cur, search, trace);
+		return reached;
+	}
+
+	// lowers the distances of cur by inserting characters; all insertions cost
+	// 1, so the states reached by them are discovered in order of distance by
+	// merging the sorted distances of the row with a queue
+	private void insertions(int[] cur, Search search, Trace trace) {
+		long[] sorted = search.sorted;
+		int size = 0;
+		for (int q = 0; q < stateCount; q++)
+			if (cur[q] != UNREACHED)
+				sorted[size++] = ((long) cur[q] << 32) | q;
+		Arrays.sort(sorted, 0, size);
+
+		boolean[] done = search.done;
+		Arrays.fill(done, false);
+		int[] queue = search.queue;
+		int head = 0, tail = 0, next = 0;
+		while (next < size || head < tail) {
+			int q;
+			if (head < tail && (next == size || cur[queue[head]] <= (int) (sorted[next] >>> 32)))
+				q = queue[head++];
+			else
+				q = (int) sorted[next++];
+			if (done[q])
+				continue;
+			done[q] = true;
+
+			int d = cur[q] + 1;
+			if (d > maxDistance)
+				continue;
+			int[] qTo = to[q];
+			for (int i = 0; i < qTo.length; i++) {
+				int t = qTo[i];
+				if (!done[t] && d < cur[t]) {
+					cur[t] = d;
+					queue[tail++] = t;
+					if (trace != null) {
+						trace.op[t] = INSERT;
+						trace.from[t] = q;
+						trace.move[t] = i;
+					}
+				}
+			}
+		}
+	}
+
+	// work arrays of a call, reused across rows
+	private class Search {
+		final long[] sorted = new long[stateCount];
+		final boolean[] done = new boolean[stateCount];
+		final int[] queue = new int[stateCount];
+	}
+
+	// the operation reaching every state of a row, with the previous state and
+	// the move taken
+	private class Trace {
+		final byte[] op = new byte[stateCount];
+		final int[] from = new int[stateCount];
+		final int[] move = new int[stateCount];
+	}
+}
@@ -15,7 +15,9 @@ import utilities.Triple;
 import utilities.Quadruple;
 /**
  * This class helps to find the shortest edit distance from a given string to
- * an SFA and the corresponding string accepted by SFA. 
+ * an SFA and the corresponding string accepted by SFA. The memo tables are
+ * static, so calls must not overlap; see {@link EditDistanceRepair} for an
+ * engine that can be shared by several threads.
  */
 public class EditDistanceStrToSFA {
 	// save computed p, l, v, f values for later use
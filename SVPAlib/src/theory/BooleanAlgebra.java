@@ -73,6 +73,15 @@ public abstract class BooleanAlgebra<P, S> {
 	 */
 	public abstract boolean AreEquivalent(P p1, P p2) throws TimeoutException;
 
+	/**
+	 * @return true iff equivalent predicates are always equal objects, so that
+	 *         predicates can be grouped by <code>equals</code> and
+	 *         <code>hashCode</code> instead of <code>AreEquivalent</code>
+	 */
+	public boolean hasCanonicalPredicates() {
+		return false;
+	}
+
 	/**
 	 * @return true iff <code>p1</code> is satisfiable
 	 */
@@ -8,16 +8,29 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.sat4j.specs.TimeoutException;
 
 import theory.cartesian.CartesianProduct;
 import utilities.Pair;
 
+/**
+ * The Boolean algebra of finite unions of cartesian products of the
+ * predicates of <code>ba1</code> and <code>ba2</code>, over pairs.
+ *
+ * Disjunctions only concatenate the products. The normal form of a
+ * predicate, see {@link CartesianProduct#normalize}, is computed when a
+ * complement or an equivalence needs it, and remembered for each predicate
+ * object.
+ */
 public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProduct<P1, P2>, Pair<S1, S2>> {
 
 	private BooleanAlgebra<P1,S1> ba1;
 	private BooleanAlgebra<P2,S2> ba2;
+	// the normal form of every predicate, by identity
+	private final Map<CartesianProduct<P1, P2>, CartesianProduct<P1, P2>> normalForms =
+			new WeakHashMap<CartesianProduct<P1, P2>, CartesianProduct<P1, P2>>();
 	
 	public ProductAlgebra(BooleanAlgebra<P1,S1> ba1, BooleanAlgebra<P2,S2> ba2) {
 		this.ba1 = ba1;
@@ -29,25 +42,44 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 		return new CartesianProduct<>(ba1.MkAtom(s.first), ba2.MkAtom(s.second));
 	}
 
+	// The normal form of p, without changing p
+	private CartesianProduct<P1, P2> normalized(CartesianProduct<P1, P2> p) throws TimeoutException {
+		if (p.isNormalized())
+			return p;
+		CartesianProduct<P1, P2> normal = normalForms.get(p);
+		if (normal == null) {
+			normal = new CartesianProduct<P1, P2>(new ArrayList<Pair<P1, P2>>(p.getProducts()));
+			normal.normalize(ba1, ba2);
+			normalForms.put(p, normal);
+		}
+		return normal;
+	}
+
 	@Override
-	public CartesianProduct<P1, P2> MkNot(CartesianProduct<P1, P2> p) throws TimeoutException {						
-		ArrayList<CartesianProduct<P1, P2>> conjuncts = new ArrayList<>();
-		for (Pair<P1, P2> pair : p.getProducts()) {
-			List<Pair<P1, P2>> temp = new ArrayList<Pair<P1, P2>>();
-			temp.add(new Pair<P1, P2>(ba1.MkNot(pair.first), ba2.True()));
-			temp.add(new Pair<P1, P2>(ba1.True(), ba2.MkNot(pair.second)));
-			conjuncts.add(new CartesianProduct<P1, P2>(temp));
+	public CartesianProduct<P1, P2> MkNot(CartesianProduct<P1, P2> p) throws TimeoutException {
+		// the first components of the normal form are disjoint, so the
+		// complement is the complement of the second components on each of
+		// them, and everything outside of them
+		List<Pair<P1, P2>> products = new ArrayList<Pair<P1, P2>>();
+		List<P1> firsts = new ArrayList<P1>();
+		for (Pair<P1, P2> pair : normalized(p).getProducts()) {
+			firsts.add(pair.first);
+			P2 second = ba2.MkNot(pair.second);
+			if (ba2.IsSatisfiable(second))
+				products.add(new Pair<P1, P2>(pair.first, second));
 		}
-		return MkAnd(conjuncts);
+		P1 outside = ba1.MkNot(ba1.MkOr(firsts));
+		if (ba1.IsSatisfiable(outside))
+			products.add(new Pair<P1, P2>(outside, ba2.True()));
+		return new CartesianProduct<P1, P2>(products);
 	}
 
 	@Override
 	public CartesianProduct<P1, P2> MkOr(Collection<CartesianProduct<P1, P2>> pset) throws TimeoutException {
-		CartesianProduct<P1, P2> or = False();
-		for (CartesianProduct<P1, P2> a : pset) {
-			or = MkOr(or, a);
-		}
-		return or;
+		ArrayList<Pair<P1, P2>> newProducts = new ArrayList<>();
+		for (CartesianProduct<P1, P2> a : pset)
+			newProducts.addAll(a.getProducts());
+		return new CartesianProduct<>(newProducts);
 	}
 
 	@Override
@@ -56,9 +88,7 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 			
 		ArrayList<Pair<P1, P2>> newProducts = new ArrayList<>(p1.getProducts());
 		newProducts.addAll(p2.getProducts());
-		CartesianProduct<P1, P2> pp= new CartesianProduct<>(newProducts);
-		pp.normalize(ba1, ba2);
-		return pp;
+		return new CartesianProduct<>(newProducts);
 	}
 
 	@Override
@@ -100,7 +130,33 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 
 	@Override
 	public boolean AreEquivalent(CartesianProduct<P1, P2> p1, CartesianProduct<P1, P2> p2) throws TimeoutException {
-		return IsSatisfiable(MkAnd(p1, MkNot(p2))) || IsSatisfiable(MkAnd(MkNot(p1), p2));
+		// equivalent predicates have the same normal form, up to the
+		// equivalence of the components
+		List<Pair<P1, P2>> products1 = normalized(p1).getProducts();
+		List<Pair<P1, P2>> products2 = normalized(p2).getProducts();
+		if (products1.size() != products2.size())
+			return false;
+
+		Map<P2, P1> bySecond = null;
+		if (ba2.hasCanonicalPredicates()) {
+			bySecond = new HashMap<P2, P1>();
+			for (Pair<P1, P2> pair : products2)
+				bySecond.put(pair.second, pair.first);
+		}
+		for (Pair<P1, P2> pair : products1) {
+			P1 first = null;
+			if (bySecond != null)
+				first = bySecond.get(pair.second);
+			else
+				for (Pair<P1, P2> other : products2)
+					if (ba2.AreEquivalent(pair.second, other.second)) {
+						first = other.first;
+						break;
+					}
+			if (first == null || !ba1.AreEquivalent(pair.first, first))
+				return false;
+		}
+		return true;
 	}
 
 	@Override
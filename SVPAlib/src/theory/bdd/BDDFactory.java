@@ -3,15 +3,27 @@
 // Licensed under the terms of the GNU LGPL; see COPYING for details.
 package theory.bdd;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.security.AccessControlException;
 import java.util.Arrays;
 import java.util.Collection;
@@ -671,6 +683,349 @@ public abstract class BDDFactory {
         return v;
     }
     
+    /**** BINARY SERIALIZATION ****/
+
+    /**
+     * Magic number of the compact binary format written by saveBinary().
+     */
+    protected static final int BINARY_MAGIC = 0x42444442; // "BDDB"
+
+    /**
+     * Magic number of the snapshot format written by saveSnapshot().
+     */
+    protected static final int SNAPSHOT_MAGIC = 0x42444453; // "BDDS"
+
+    /**
+     * Version of both binary formats.
+     */
+    protected static final int BINARY_VERSION = 1;
+
+    /**
+     * <p>Saves the given BDDs to a file in the compact binary format.</p>
+     * 
+     * @see #saveBinary(OutputStream, BDD[])
+     */
+    public void saveBinary(String filename, BDD... roots) throws IOException {
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(filename));
+            saveBinary(out, roots);
+        } finally {
+            if (out != null) try { out.close(); } catch (IOException _) { }
+        }
+    }
+
+    /**
+     * <p>Saves the given BDDs in a compact binary format.  Nodes shared by
+     * several roots are written once, children before their parents, and
+     * every number is varint-encoded; references to other nodes are stored
+     * as the distance from the referring node.</p>
+     * 
+     * <p>The format is: magic, version, number of variables, the level of
+     * each variable, number of nodes, number of roots, (variable, low, high)
+     * for each node and the reference of each root.  References 0 and 1
+     * denote the constants false and true.</p>
+     * 
+     * @param out  output stream, not closed by this method
+     * @param roots  BDDs to save
+     */
+    public void saveBinary(OutputStream out, BDD... roots) throws IOException {
+        int[] nodes = exportNodes(roots);
+        int nodeCount = (nodes.length - roots.length) / 3;
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BINARY_MAGIC);
+        writeVarint(data, BINARY_VERSION);
+        writeVarint(data, varNum());
+        for (int x = 0; x < varNum(); x++)
+            writeVarint(data, var2Level(x));
+        writeVarint(data, nodeCount);
+        writeVarint(data, roots.length);
+
+        for (int n = 0; n < nodeCount; n++) {
+            writeVarint(data, nodes[3 * n]);
+            writeVarint(data, encodeRef(nodes[3 * n + 1], n));
+            writeVarint(data, encodeRef(nodes[3 * n + 2], n));
+        }
+        for (int r = 0; r < roots.length; r++)
+            writeVarint(data, encodeRef(nodes[3 * nodeCount + r], nodeCount));
+        data.flush();
+    }
+
+    /**
+     * <p>Loads the BDDs saved in a file by saveBinary().</p>
+     * 
+     * @see #loadBinary(InputStream)
+     */
+    public BDD[] loadBinary(String filename) throws IOException {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(filename));
+            return loadBinary(in);
+        } finally {
+            if (in != null) try { in.close(); } catch (IOException _) { }
+        }
+    }
+
+    /**
+     * <p>Loads the BDDs saved by saveBinary(), in the order they were
+     * given.  The number of variables is increased if needed.</p>
+     * 
+     * @param in  input stream, not closed by this method
+     * @return the loaded BDDs
+     */
+    public BDD[] loadBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != BINARY_MAGIC || readVarint(data) != BINARY_VERSION)
+            throw new BDDException("Incorrect file format");
+
+        readVarNum(readVarint(data), data, null);
+        int nodeCount = readVarint(data);
+        int rootCount = readVarint(data);
+        checkCounts(nodeCount, rootCount);
+
+        int[] nodes = new int[3 * nodeCount + rootCount];
+        for (int n = 0; n < nodeCount; n++) {
+            nodes[3 * n] = readVarint(data);
+            nodes[3 * n + 1] = decodeRef(readVarint(data), n);
+            nodes[3 * n + 2] = decodeRef(readVarint(data), n);
+        }
+        for (int r = 0; r < rootCount; r++)
+            nodes[3 * nodeCount + r] = decodeRef(readVarint(data), nodeCount);
+
+        return importNodes(nodes, nodeCount, rootCount);
+    }
+
+    /**
+     * <p>Saves the given BDDs and all the nodes they use as a snapshot of
+     * the node table.  Unlike saveBinary(), every number takes four bytes so
+     * that loadSnapshot() can map the file in memory and read it with bulk
+     * operations.</p>
+     * 
+     * @param filename  file to write
+     * @param roots  BDDs to save
+     */
+    public void saveSnapshot(String filename, BDD... roots) throws IOException {
+        int[] nodes = exportNodes(roots);
+        int nodeCount = (nodes.length - roots.length) / 3;
+
+        DataOutputStream data = null;
+        try {
+            data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(BINARY_VERSION);
+            data.writeInt(varNum());
+            for (int x = 0; x < varNum(); x++)
+                data.writeInt(var2Level(x));
+            data.writeInt(nodeCount);
+            data.writeInt(roots.length);
+            for (int i = 0; i < nodes.length; i++)
+                data.writeInt(nodes[i]);
+        } finally {
+            if (data != null) try { data.close(); } catch (IOException _) { }
+        }
+    }
+
+    /**
+     * <p>Loads a snapshot written by saveSnapshot().  The file is mapped in
+     * memory and its node table is inserted in a single pass, growing the
+     * node table of this factory once if needed.</p>
+     * 
+     * @param filename  file to read
+     * @return the saved BDDs, in the order they were given
+     */
+    public BDD[] loadSnapshot(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            IntBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            if (data.get() != SNAPSHOT_MAGIC || data.get() != BINARY_VERSION)
+                throw new BDDException("Incorrect file format");
+
+            readVarNum(data.get(), null, data);
+            int nodeCount = data.get();
+            int rootCount = data.get();
+            checkCounts(nodeCount, rootCount);
+
+            int[] nodes = new int[3 * nodeCount + rootCount];
+            data.get(nodes);
+            return importNodes(nodes, nodeCount, rootCount);
+        } catch (BufferUnderflowException e) {
+            throw new BDDException("Incorrect file format");
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * <p>Lists the nodes of the given BDDs, children before parents.  The
+     * result holds (variable, low, high) for each node followed by the
+     * reference of each root, where references 0 and 1 denote the constants
+     * and reference i+2 the i-th node.</p>
+     * 
+     * <p>Factories with direct access to their node table override this.</p>
+     */
+    protected int[] exportNodes(BDD[] roots) {
+        Map refs = new HashMap();
+        int[] nodes = new int[3 * 16];
+        int nodeCount = 0;
+        int[] rootRefs = new int[roots.length];
+
+        LinkedList toVisit = new LinkedList();
+        for (int r = 0; r < roots.length; r++) {
+            toVisit.addFirst(roots[r].id());
+            while (!toVisit.isEmpty()) {
+                BDD b = (BDD) toVisit.getFirst();
+                if (b.isZero() || b.isOne() || refs.containsKey(b)) {
+                    toVisit.removeFirst();
+                    b.free();
+                    continue;
+                }
+
+                BDD l = b.low(), h = b.high();
+                Integer lo = exportRef(refs, l), hi = exportRef(refs, h);
+                if (lo != null && hi != null) {
+                    if (3 * nodeCount + 3 > nodes.length)
+                        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                    nodes[3 * nodeCount] = b.var();
+                    nodes[3 * nodeCount + 1] = lo.intValue();
+                    nodes[3 * nodeCount + 2] = hi.intValue();
+                    refs.put(toVisit.removeFirst(), new Integer(nodeCount + 2));
+                    nodeCount++;
+                    l.free();
+                    h.free();
+                } else {
+                    if (hi == null) toVisit.addFirst(h); else h.free();
+                    if (lo == null) toVisit.addFirst(l); else l.free();
+                }
+            }
+            rootRefs[r] = exportRef(refs, roots[r]).intValue();
+        }
+
+        for (Iterator it = refs.keySet().iterator(); it.hasNext(); )
+            ((BDD) it.next()).free();
+
+        int[] result = Arrays.copyOf(nodes, 3 * nodeCount + roots.length);
+        System.arraycopy(rootRefs, 0, result, 3 * nodeCount, roots.length);
+        return result;
+    }
+
+    /**
+     * Helper function for exportNodes(), null if b was not exported yet.
+     */
+    private static Integer exportRef(Map refs, BDD b) {
+        if (b.isZero()) return new Integer(0);
+        if (b.isOne()) return new Integer(1);
+        return (Integer) refs.get(b);
+    }
+
+    /**
+     * <p>Builds the nodes listed by exportNodes() and returns the roots.
+     * The variables of the nodes must already be defined.</p>
+     * 
+     * <p>Factories with direct access to their node table override this.</p>
+     */
+    protected BDD[] importNodes(int[] nodes, int nodeCount, int rootCount) {
+        BDD[] built = new BDD[nodeCount + 2];
+        built[0] = zero();
+        built[1] = one();
+
+        for (int n = 0; n < nodeCount; n++) {
+            checkNode(nodes, n);
+            BDD v = ithVar(nodes[3 * n]);
+            built[n + 2] = v.ite(built[nodes[3 * n + 2]], built[nodes[3 * n + 1]]);
+            v.free();
+        }
+
+        BDD[] roots = new BDD[rootCount];
+        for (int r = 0; r < rootCount; r++)
+            roots[r] = built[checkRef(nodes[3 * nodeCount + r], nodeCount)].id();
+
+        for (int n = 0; n < built.length; n++)
+            built[n].free();
+        return roots;
+    }
+
+    /**
+     * Checks that the n-th node listed by exportNodes() only refers to
+     * defined variables and previous nodes.
+     */
+    protected void checkNode(int[] nodes, int n) {
+        int var = nodes[3 * n];
+        if (var < 0 || var >= varNum())
+            throw new BDDException("Incorrect file format");
+        checkRef(nodes[3 * n + 1], n);
+        checkRef(nodes[3 * n + 2], n);
+    }
+
+    /**
+     * Helper function for checkNode().
+     */
+    protected static int checkRef(int ref, int nodeCount) {
+        if (ref < 0 || ref >= nodeCount + 2)
+            throw new BDDException("Incorrect file format");
+        return ref;
+    }
+
+    /**
+     * Checks the node and root counts of a saved file before the node list
+     * is allocated.
+     */
+    private static void checkCounts(int nodeCount, int rootCount) throws IOException {
+        if (nodeCount < 0 || rootCount < 0 || nodeCount > (Integer.MAX_VALUE - rootCount) / 3)
+            throw new IOException("Incorrect file format");
+    }
+
+    /**
+     * Reads the variable levels of a saved file and adds missing variables.
+     * The levels are only used to check the file.
+     */
+    private void readVarNum(int vnum, DataInputStream in, IntBuffer buffer) throws IOException {
+        if (vnum < 0)
+            throw new BDDException("Incorrect file format");
+        for (int x = 0; x < vnum; x++) {
+            int level = in != null ? readVarint(in) : buffer.get();
+            if (level < 0 || level >= vnum)
+                throw new BDDException("Incorrect file format");
+        }
+        if (vnum > varNum())
+            setVarNum(vnum);
+    }
+
+    // References are stored relative to the node n referring to them
+    private static int encodeRef(int ref, int n) {
+        return ref < 2 ? ref : n + 3 - ref;
+    }
+
+    private static int decodeRef(int code, int n) {
+        return code < 2 ? code : n + 3 - code;
+    }
+
+    /**
+     * Writes a non-negative int in 1 to 5 bytes.
+     */
+    protected static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an int written by writeVarint().
+     */
+    protected static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new BDDException("Incorrect file format");
+    }
+
     // TODO: bdd_blockfile_hook
     // TODO: bdd_versionnum, bdd_versionstr
     
@@ -1137,6 +1492,13 @@ public abstract class BDDFactory {
         
         protected CacheStats() { }
         
+        /**
+         * Sets all the counters back to zero.
+         */
+        public void reset() {
+            copyFrom(new CacheStats());
+        }
+        
         void copyFrom(CacheStats that) {
             this.uniqueAccess = that.uniqueAccess;
             this.uniqueChain = that.uniqueChain;
@@ -1210,6 +1572,25 @@ public abstract class BDDFactory {
         return cachestats;
     }
     
+    /**
+     * Whether cache statistics are collected.
+     */
+    protected boolean cacheStatsEnabled;
+    
+    /**
+     * <p>Enables or disables the collection of cache statistics.  They are
+     * off by default, as counting costs a little on every operation, and
+     * factories that do not keep them ignore this setting.</p>
+     * 
+     * @param enabled  whether to collect cache statistics
+     * @return  the previous setting
+     */
+    public boolean setCacheStatsEnabled(boolean enabled) {
+        boolean old = cacheStatsEnabled;
+        cacheStatsEnabled = enabled;
+        return old;
+    }
+    
     // TODO: bdd_sizeprobe_hook
     // TODO: bdd_reorder_probe
     
@@ -609,51 +609,24 @@ public class JFactory extends BDDFactory {
             throw new InternalError();
     }
 
-    private abstract static class BddCacheData {
-        int a, b, c;
-        abstract BddCacheData copy();
-    }
-
-    private static class BddCacheDataI extends BddCacheData {
-        int res;
-        BddCacheData copy() {
-            BddCacheDataI that = new BddCacheDataI();
-            that.a = this.a;
-            that.b = this.b;
-            that.c = this.c;
-            that.res = this.res;
-            return that;
-        }
-    }
-
-    private static class BddCacheDataD extends BddCacheData {
-        double dres;
-        BddCacheData copy() {
-            BddCacheDataD that = new BddCacheDataD();
-            that.a = this.a;
-            that.b = this.b;
-            that.c = this.c;
-            that.dres = this.dres;
-            return that;
-        }
-    }
-
+    /**
+     * Operator cache with the entries packed in one array: the entry of
+     * slot n is table[4n..4n+3] = {a, b, c, res}, so a lookup touches a
+     * single cache line and the cache holds no object per slot. Caches of
+     * double results keep the result of slot n in dres[n] instead.
+     */
     private static class BddCache {
-        BddCacheData table[];
+        static final int ENTRY_SIZE = 4;
+
+        int table[];
+        double dres[];
         int tablesize;
         
         BddCache copy() {
             BddCache that = new BddCache();
-            boolean is_d = this.table instanceof BddCacheDataD[];
-            if (is_d) {
-                that.table = new BddCacheDataD[this.table.length];
-            } else {
-                that.table = new BddCacheDataI[this.table.length];
-            }
+            that.table = this.table.clone();
+            that.dres = this.dres == null ? null : this.dres.clone();
             that.tablesize = this.tablesize;
-            for (int i = 0; i < table.length; ++i) {
-                that.table[i] = this.table[i].copy();
-            }
             return that;
         }
     }
@@ -982,7 +955,7 @@ public class JFactory extends BDDFactory {
     	 if(Timers.fullTO())
          	throw new TimeoutException("timeout");
     	
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISZERO(r))
@@ -992,12 +965,12 @@ public class JFactory extends BDDFactory {
 
         entry = BddCache_lookupI(applycache, NOTHASH(r));
 
-        if (entry.a == r && entry.c == bddop_not) {
-            if (CACHESTATS)
+        if (applycache.table[entry] == r && applycache.table[entry + 2] == bddop_not) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return applycache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         PUSHREF(not_rec(LOW(r)));
@@ -1005,9 +978,7 @@ public class JFactory extends BDDFactory {
         res = bdd_makenode(LEVEL(r), READREF(2), READREF(1));
         POPREF(2);
 
-        entry.a = r;
-        entry.c = bddop_not;
-        entry.res = res;
+        BddCache_storeI(applycache, entry, r, 0, bddop_not, res);
 
         return res;
     }
@@ -1048,7 +1019,7 @@ public class JFactory extends BDDFactory {
     }
 
     int ite_rec(int f, int g, int h) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISONE(f))
@@ -1063,12 +1034,12 @@ public class JFactory extends BDDFactory {
             return not_rec(f);
 
         entry = BddCache_lookupI(itecache, ITEHASH(f, g, h));
-        if (entry.a == f && entry.b == g && entry.c == h) {
-            if (CACHESTATS)
+        if (itecache.table[entry] == f && itecache.table[entry + 1] == g && itecache.table[entry + 2] == h) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return itecache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(f) == LEVEL(g)) {
@@ -1117,10 +1088,7 @@ public class JFactory extends BDDFactory {
 
         POPREF(2);
 
-        entry.a = f;
-        entry.b = g;
-        entry.c = h;
-        entry.res = res;
+        BddCache_storeI(itecache, entry, f, g, h, res);
 
         return res;
     }
@@ -1161,19 +1129,19 @@ public class JFactory extends BDDFactory {
     }
 
     int replace_rec(int r) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISCONST(r) || LEVEL(r) > replacelast)
             return r;
 
         entry = BddCache_lookupI(replacecache, REPLACEHASH(r));
-        if (entry.a == r && entry.c == replaceid) {
-            if (CACHESTATS)
+        if (replacecache.table[entry] == r && replacecache.table[entry + 2] == replaceid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return replacecache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         PUSHREF(replace_rec(LOW(r)));
@@ -1186,9 +1154,7 @@ public class JFactory extends BDDFactory {
                 READREF(1));
         POPREF(2);
 
-        entry.a = r;
-        entry.c = replaceid;
-        entry.res = res;
+        BddCache_storeI(replacecache, entry, r, 0, replaceid, res);
 
         return res;
     }
@@ -1268,7 +1234,7 @@ public class JFactory extends BDDFactory {
     }
 
     int apply_rec(int l, int r) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (VERIFY_ASSERTIONS) _assert(applyop != bddop_and && applyop != bddop_or);
@@ -1305,12 +1271,12 @@ public class JFactory extends BDDFactory {
         else {
             entry = BddCache_lookupI(applycache, APPLYHASH(l, r, applyop));
 
-            if (entry.a == l && entry.b == r && entry.c == applyop) {
-                if (CACHESTATS)
+            if (applycache.table[entry] == l && applycache.table[entry + 1] == r && applycache.table[entry + 2] == applyop) {
+                if (cacheStatsEnabled)
                     cachestats.opHit++;
-                return entry.res;
+                return applycache.table[entry + 3];
             }
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.opMiss++;
 
             if (LEVEL(l) == LEVEL(r)) {
@@ -1329,17 +1295,14 @@ public class JFactory extends BDDFactory {
 
             POPREF(2);
 
-            entry.a = l;
-            entry.b = r;
-            entry.c = applyop;
-            entry.res = res;
+            BddCache_storeI(applycache, entry, l, r, applyop, res);
         }
 
         return res;
     }
 
     int and_rec(int l, int r) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if(Timers.fullTO())
@@ -1355,12 +1318,12 @@ public class JFactory extends BDDFactory {
             return l;
         entry = BddCache_lookupI(applycache, APPLYHASH(l, r, bddop_and));
 
-        if (entry.a == l && entry.b == r && entry.c == bddop_and) {
-            if (CACHESTATS)
+        if (applycache.table[entry] == l && applycache.table[entry + 1] == r && applycache.table[entry + 2] == bddop_and) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return applycache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(l) == LEVEL(r)) {
@@ -1379,16 +1342,13 @@ public class JFactory extends BDDFactory {
 
         POPREF(2);
 
-        entry.a = l;
-        entry.b = r;
-        entry.c = bddop_and;
-        entry.res = res;
+        BddCache_storeI(applycache, entry, l, r, bddop_and, res);
 
         return res;
     }
     
     int or_rec(int l, int r) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (l == r)
@@ -1401,12 +1361,12 @@ public class JFactory extends BDDFactory {
             return l;
         entry = BddCache_lookupI(applycache, APPLYHASH(l, r, bddop_or));
 
-        if (entry.a == l && entry.b == r && entry.c == bddop_or) {
-            if (CACHESTATS)
+        if (applycache.table[entry] == l && applycache.table[entry + 1] == r && applycache.table[entry + 2] == bddop_or) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return applycache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(l) == LEVEL(r)) {
@@ -1425,16 +1385,13 @@ public class JFactory extends BDDFactory {
 
         POPREF(2);
 
-        entry.a = l;
-        entry.b = r;
-        entry.c = bddop_or;
-        entry.res = res;
+        BddCache_storeI(applycache, entry, l, r, bddop_or, res);
 
         return res;
     }
 
     int relprod_rec(int l, int r) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (l == 0 || r == 0)
@@ -1454,12 +1411,12 @@ public class JFactory extends BDDFactory {
             applyop = bddop_or;
         } else {
             entry = BddCache_lookupI(appexcache, APPEXHASH(l, r, bddop_and));
-            if (entry.a == l && entry.b == r && entry.c == appexid) {
-                if (CACHESTATS)
+            if (appexcache.table[entry] == l && appexcache.table[entry + 1] == r && appexcache.table[entry + 2] == appexid) {
+                if (cacheStatsEnabled)
                     cachestats.opHit++;
-                return entry.res;
+                return appexcache.table[entry + 3];
             }
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.opMiss++;
 
             if (LEVEL_l == LEVEL_r) {
@@ -1487,10 +1444,7 @@ public class JFactory extends BDDFactory {
 
             POPREF(2);
 
-            entry.a = l;
-            entry.b = r;
-            entry.c = appexid;
-            entry.res = res;
+            BddCache_storeI(appexcache, entry, l, r, appexid, res);
         }
 
         return res;
@@ -1608,7 +1562,7 @@ public class JFactory extends BDDFactory {
     }
 
     int appquant_rec(int l, int r) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (VERIFY_ASSERTIONS) _assert(appexop != bddop_and);
@@ -1655,12 +1609,12 @@ public class JFactory extends BDDFactory {
             applyop = oldop;
         } else {
             entry = BddCache_lookupI(appexcache, APPEXHASH(l, r, appexop));
-            if (entry.a == l && entry.b == r && entry.c == appexid) {
-                if (CACHESTATS)
+            if (appexcache.table[entry] == l && appexcache.table[entry + 1] == r && appexcache.table[entry + 2] == appexid) {
+                if (cacheStatsEnabled)
                     cachestats.opHit++;
-                return entry.res;
+                return appexcache.table[entry + 3];
             }
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.opMiss++;
 
             int lev;
@@ -1690,17 +1644,14 @@ public class JFactory extends BDDFactory {
 
             POPREF(2);
 
-            entry.a = l;
-            entry.b = r;
-            entry.c = appexid;
-            entry.res = res;
+            BddCache_storeI(appexcache, entry, l, r, appexid, res);
         }
 
         return res;
     }
 
     int appuni_rec(int l, int r, int var) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         int LEVEL_l, LEVEL_r, LEVEL_var;
@@ -1726,12 +1677,12 @@ public class JFactory extends BDDFactory {
             applyop = oldop;
         } else {
             entry = BddCache_lookupI(appexcache, APPEXHASH(l, r, appexop));
-            if (entry.a == l && entry.b == r && entry.c == appexid) {
-                if (CACHESTATS)
+            if (appexcache.table[entry] == l && appexcache.table[entry + 1] == r && appexcache.table[entry + 2] == appexid) {
+                if (cacheStatsEnabled)
                     cachestats.opHit++;
-                return entry.res;
+                return appexcache.table[entry + 3];
             }
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.opMiss++;
 
             int lev;
@@ -1777,17 +1728,14 @@ public class JFactory extends BDDFactory {
 
             POPREF(2);
 
-            entry.a = l;
-            entry.b = r;
-            entry.c = appexid;
-            entry.res = res;
+            BddCache_storeI(appexcache, entry, l, r, appexid, res);
         }
 
         return res;
     }
     
     int unique_rec(int r, int q) {
-        BddCacheDataI entry;
+        int entry;
         int res;
         int LEVEL_r, LEVEL_q;
 
@@ -1802,12 +1750,12 @@ public class JFactory extends BDDFactory {
             return r;
         
         entry = BddCache_lookupI(quantcache, QUANTHASH(r));
-        if (entry.a == r && entry.c == quantid) {
-            if (CACHESTATS)
+        if (quantcache.table[entry] == r && quantcache.table[entry + 2] == quantid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return quantcache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL_r == LEVEL_q) {
@@ -1822,27 +1770,25 @@ public class JFactory extends BDDFactory {
 
         POPREF(2);
 
-        entry.a = r;
-        entry.c = quantid;
-        entry.res = res;
+        BddCache_storeI(quantcache, entry, r, 0, quantid, res);
 
         return res;
     }
     
     int quant_rec(int r) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (r < 2 || LEVEL(r) > quantlast)
             return r;
 
         entry = BddCache_lookupI(quantcache, QUANTHASH(r));
-        if (entry.a == r && entry.c == quantid) {
-            if (CACHESTATS)
+        if (quantcache.table[entry] == r && quantcache.table[entry + 2] == quantid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return quantcache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         PUSHREF(quant_rec(LOW(r)));
@@ -1861,9 +1807,7 @@ public class JFactory extends BDDFactory {
 
         POPREF(2);
 
-        entry.a = r;
-        entry.c = quantid;
-        entry.res = res;
+        BddCache_storeI(quantcache, entry, r, 0, quantid, res);
 
         return res;
     }
@@ -1903,7 +1847,7 @@ public class JFactory extends BDDFactory {
     }
 
     int constrain_rec(int f, int c) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISONE(c))
@@ -1916,12 +1860,12 @@ public class JFactory extends BDDFactory {
             return BDDZERO;
 
         entry = BddCache_lookupI(misccache, CONSTRAINHASH(f, c));
-        if (entry.a == f && entry.b == c && entry.c == miscid) {
-            if (CACHESTATS)
+        if (misccache.table[entry] == f && misccache.table[entry + 1] == c && misccache.table[entry + 2] == miscid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return misccache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(f) == LEVEL(c)) {
@@ -1953,10 +1897,7 @@ public class JFactory extends BDDFactory {
             }
         }
 
-        entry.a = f;
-        entry.b = c;
-        entry.c = miscid;
-        entry.res = res;
+        BddCache_storeI(misccache, entry, f, c, miscid, res);
 
         return res;
     }
@@ -2002,19 +1943,19 @@ public class JFactory extends BDDFactory {
     }
 
     int compose_rec(int f, int g) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (LEVEL(f) > composelevel)
             return f;
 
         entry = BddCache_lookupI(replacecache, COMPOSEHASH(f, g));
-        if (entry.a == f && entry.b == g && entry.c == replaceid) {
-            if (CACHESTATS)
+        if (replacecache.table[entry] == f && replacecache.table[entry + 1] == g && replacecache.table[entry + 2] == replaceid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return replacecache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(f) < composelevel) {
@@ -2037,10 +1978,7 @@ public class JFactory extends BDDFactory {
             res = ite_rec(g, HIGH(f), LOW(f));
         }
 
-        entry.a = f;
-        entry.b = g;
-        entry.c = replaceid;
-        entry.res = res;
+        BddCache_storeI(replacecache, entry, f, g, replaceid, res);
 
         return res;
     }
@@ -2083,19 +2021,19 @@ public class JFactory extends BDDFactory {
     }
 
     int veccompose_rec(int f) throws TimeoutException {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (LEVEL(f) > replacelast)
             return f;
 
         entry = BddCache_lookupI(replacecache, VECCOMPOSEHASH(f));
-        if (entry.a == f && entry.c == replaceid) {
-            if (CACHESTATS)
+        if (replacecache.table[entry] == f && replacecache.table[entry + 2] == replaceid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return replacecache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         PUSHREF(veccompose_rec(LOW(f)));
@@ -2103,9 +2041,7 @@ public class JFactory extends BDDFactory {
         res = ite_rec(replacepair[LEVEL(f)], READREF(1), READREF(2));
         POPREF(2);
 
-        entry.a = f;
-        entry.c = replaceid;
-        entry.res = res;
+        BddCache_storeI(replacecache, entry, f, 0, replaceid, res);
 
         return res;
     }
@@ -2272,19 +2208,19 @@ public class JFactory extends BDDFactory {
     }
 
     int restrict_rec(int r) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISCONST(r) || LEVEL(r) > quantlast)
             return r;
 
         entry = BddCache_lookupI(misccache, RESTRHASH(r, miscid));
-        if (entry.a == r && entry.c == miscid) {
-            if (CACHESTATS)
+        if (misccache.table[entry] == r && misccache.table[entry + 2] == miscid) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return misccache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (INSVARSET(LEVEL(r))) {
@@ -2300,9 +2236,7 @@ public class JFactory extends BDDFactory {
             POPREF(2);
         }
 
-        entry.a = r;
-        entry.c = miscid;
-        entry.res = res;
+        BddCache_storeI(misccache, entry, r, 0, miscid, res);
 
         return res;
     }
@@ -2342,7 +2276,7 @@ public class JFactory extends BDDFactory {
     }
 
     int simplify_rec(int f, int d) {
-        BddCacheDataI entry;
+        int entry;
         int res;
 
         if (ISONE(d) || ISCONST(f))
@@ -2354,12 +2288,12 @@ public class JFactory extends BDDFactory {
 
         entry = BddCache_lookupI(applycache, APPLYHASH(f, d, bddop_simplify));
 
-        if (entry.a == f && entry.b == d && entry.c == bddop_simplify) {
-            if (CACHESTATS)
+        if (applycache.table[entry] == f && applycache.table[entry + 1] == d && applycache.table[entry + 2] == bddop_simplify) {
+            if (cacheStatsEnabled)
                 cachestats.opHit++;
-            return entry.res;
+            return applycache.table[entry + 3];
         }
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.opMiss++;
 
         if (LEVEL(f) == LEVEL(d)) {
@@ -2384,10 +2318,7 @@ public class JFactory extends BDDFactory {
             POPREF(1);
         }
 
-        entry.a = f;
-        entry.b = d;
-        entry.c = bddop_simplify;
-        entry.res = res;
+        BddCache_storeI(applycache, entry, f, d, bddop_simplify, res);
 
         return res;
     }
@@ -2810,7 +2741,7 @@ public class JFactory extends BDDFactory {
     }
 
     double bdd_pathcount_rec(int r) {
-        BddCacheDataD entry;
+        int entry;
         double size;
 
         if (ISZERO(r))
@@ -2819,14 +2750,12 @@ public class JFactory extends BDDFactory {
             return 1.0;
 
         entry = BddCache_lookupD(countcache, PATHCOUHASH(r));
-        if (entry.a == r && entry.c == miscid)
-            return entry.dres;
+        if (countcache.table[entry] == r && countcache.table[entry + 2] == miscid)
+            return countcache.dres[entry / BddCache.ENTRY_SIZE];
 
         size = bdd_pathcount_rec(LOW(r)) + bdd_pathcount_rec(HIGH(r));
 
-        entry.a = r;
-        entry.c = miscid;
-        entry.dres = size;
+        BddCache_storeD(countcache, entry, r, 0, miscid, size);
 
         return size;
     }
@@ -2914,15 +2843,15 @@ public class JFactory extends BDDFactory {
     }
 
     double satcount_rec(int root) {
-        BddCacheDataD entry;
+        int entry;
         double size, s;
 
         if (root < 2)
             return root;
 
         entry = BddCache_lookupD(countcache, SATCOUHASH(root));
-        if (entry.a == root && entry.c == miscid)
-            return entry.dres;
+        if (countcache.table[entry] == root && countcache.table[entry + 2] == miscid)
+            return countcache.dres[entry / BddCache.ENTRY_SIZE];
 
         size = 0;
         s = 1;
@@ -2934,9 +2863,7 @@ public class JFactory extends BDDFactory {
         s *= Math.pow(2.0, (float) (LEVEL(HIGH(root)) - LEVEL(root) - 1));
         size += s * satcount_rec(HIGH(root));
 
-        entry.a = root;
-        entry.c = miscid;
-        entry.dres = size;
+        BddCache_storeD(countcache, entry, root, 0, miscid, size);
 
         return size;
     }
@@ -3084,13 +3011,11 @@ public class JFactory extends BDDFactory {
         bdd_unmark(HIGH(i));
     }
 
-    public static final boolean CACHESTATS = false;
-
     int bdd_makenode(int level, int low, int high) {
         int hash2;
         int res;
 
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.uniqueAccess++;
 
         /* check whether childs are equal */
@@ -3103,18 +3028,18 @@ public class JFactory extends BDDFactory {
 
         while (res != 0) {
             if (LEVEL(res) == level && LOW(res) == low && HIGH(res) == high) {
-                if (CACHESTATS)
+                if (cacheStatsEnabled)
                     cachestats.uniqueHit++;
                 return res;
             }
 
             res = NEXT(res);
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.uniqueChain++;
         }
 
         /* No existing node => build one */
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.uniqueMiss++;
 
         /* Any free nodes to use ? */
@@ -3279,7 +3204,7 @@ public class JFactory extends BDDFactory {
 
         bdderrorcond = 0;
 
-        if (CACHESTATS) {
+        if (cacheStatsEnabled) {
             //cachestats = new CacheStats();
         }
 
@@ -3440,6 +3365,7 @@ public class JFactory extends BDDFactory {
         BddCache_resize(replacecache, newcachesize);
         BddCache_resize(misccache, newcachesize);
         BddCache_resize(countcache, newcachesize);
+        cachesize = newcachesize;
         return old;
     }
     
@@ -3458,37 +3384,25 @@ public class JFactory extends BDDFactory {
     }
 
     BddCache BddCacheI_init(int size) {
-        int n;
-
-        size = bdd_prime_gte(size);
-
         BddCache cache = new BddCache();
-        cache.table = new BddCacheDataI[size];
-
-        for (n = 0; n < size; n++) {
-            cache.table[n] = new BddCacheDataI();
-            cache.table[n].a = -1;
-        }
-        cache.tablesize = size;
-
+        BddCache_alloc(cache, size, false);
         return cache;
     }
 
     BddCache BddCacheD_init(int size) {
-        int n;
-
-        size = bdd_prime_gte(size);
-
         BddCache cache = new BddCache();
-        cache.table = new BddCacheDataD[size];
+        BddCache_alloc(cache, size, true);
+        return cache;
+    }
 
-        for (n = 0; n < size; n++) {
-            cache.table[n] = new BddCacheDataD();
-            cache.table[n].a = -1;
-        }
+    // allocates the slots of cache, all empty
+    void BddCache_alloc(BddCache cache, int size, boolean is_d) {
+        // the prime search needs a start above 2
+        size = bdd_prime_gte(Math.max(size, 3));
+        cache.table = new int[size * BddCache.ENTRY_SIZE];
+        cache.dres = is_d ? new double[size] : null;
         cache.tablesize = size;
-
-        return cache;
+        BddCache_reset(cache);
     }
 
     void BddCache_done(BddCache cache) {
@@ -3496,101 +3410,110 @@ public class JFactory extends BDDFactory {
         
         free(cache.table);
         cache.table = null;
+        cache.dres = null;
         cache.tablesize = 0;
     }
 
     int BddCache_resize(BddCache cache, int newsize) {
         if (cache == null) return 0;
-        int n;
 
-        boolean is_d = cache.table instanceof BddCacheDataD[];
+        boolean is_d = cache.dres != null;
 
         free(cache.table);
         cache.table = null;
 
-        newsize = bdd_prime_gte(newsize);
+        BddCache_alloc(cache, newsize, is_d);
 
-        if (is_d)
-            cache.table = new BddCacheDataD[newsize];
-        else
-            cache.table = new BddCacheDataI[newsize];
+        return 0;
+    }
 
-        for (n = 0; n < newsize; n++) {
-            if (is_d)
-                cache.table[n] = new BddCacheDataD();
-            else
-                cache.table[n] = new BddCacheDataI();
-            cache.table[n].a = -1;
-        }
-        cache.tablesize = newsize;
+    /**
+     * Returns the index in cache.table of the entry of the slot of hash.
+     */
+    int BddCache_lookupI(BddCache cache, int hash) {
+        return Math.abs(hash % cache.tablesize) * BddCache.ENTRY_SIZE;
+    }
 
-        return 0;
+    int BddCache_lookupD(BddCache cache, int hash) {
+        return Math.abs(hash % cache.tablesize) * BddCache.ENTRY_SIZE;
     }
 
-    BddCacheDataI BddCache_lookupI(BddCache cache, int hash) {
-        return (BddCacheDataI) cache.table[Math.abs(hash % cache.tablesize)];
+    // the cache may have been resized since the lookup of entry; the entry
+    // is then stored in another slot, where lookups compare its key anyway
+    void BddCache_storeI(BddCache cache, int entry, int a, int b, int c, int res) {
+        int[] table = cache.table;
+        if (entry >= table.length) return;
+        table[entry] = a;
+        table[entry + 1] = b;
+        table[entry + 2] = c;
+        table[entry + 3] = res;
     }
 
-    BddCacheDataD BddCache_lookupD(BddCache cache, int hash) {
-        return (BddCacheDataD) cache.table[Math.abs(hash % cache.tablesize)];
+    void BddCache_storeD(BddCache cache, int entry, int a, int b, int c, double res) {
+        int[] table = cache.table;
+        if (entry >= table.length) return;
+        table[entry] = a;
+        table[entry + 1] = b;
+        table[entry + 2] = c;
+        cache.dres[entry / BddCache.ENTRY_SIZE] = res;
     }
 
     void BddCache_reset(BddCache cache) {
         if (cache == null) return;
-        int n;
-        for (n = 0; n < cache.tablesize; n++)
-            cache.table[n].a = -1;
+        int[] table = cache.table;
+        for (int n = 0; n < table.length; n += BddCache.ENTRY_SIZE)
+            table[n] = -1;
     }
 
     void BddCache_clean_d(BddCache cache) {
         if (cache == null) return;
-        int n;
-        for (n = 0; n < cache.tablesize; n++) {
-            int a = cache.table[n].a;
+        int[] table = cache.table;
+        for (int n = 0; n < table.length; n += BddCache.ENTRY_SIZE) {
+            int a = table[n];
             if (a >= 0 && LOW(a) == INVALID_BDD) {
-                cache.table[n].a = -1;
+                table[n] = -1;
             }
         }
     }
     
     void BddCache_clean_a(BddCache cache) {
         if (cache == null) return;
-        int n;
-        for (n = 0; n < cache.tablesize; n++) {
-            int a = cache.table[n].a;
+        int[] table = cache.table;
+        for (int n = 0; n < table.length; n += BddCache.ENTRY_SIZE) {
+            int a = table[n];
             if (a < 0) continue;
             if (LOW(a) == INVALID_BDD ||
-                LOW(((BddCacheDataI)cache.table[n]).res) == INVALID_BDD) {
-                cache.table[n].a = -1;
+                LOW(table[n + 3]) == INVALID_BDD) {
+                table[n] = -1;
             }
         }
     }
     
     void BddCache_clean_ab(BddCache cache) {
         if (cache == null) return;
-        int n;
-        for (n = 0; n < cache.tablesize; n++) {
-            int a = cache.table[n].a;
+        int[] table = cache.table;
+        for (int n = 0; n < table.length; n += BddCache.ENTRY_SIZE) {
+            int a = table[n];
             if (a < 0) continue;
             if (LOW(a) == INVALID_BDD ||
-                (cache.table[n].b != 0 && LOW(cache.table[n].b) == INVALID_BDD) ||
-                LOW(((BddCacheDataI)cache.table[n]).res) == INVALID_BDD) {
-                cache.table[n].a = -1;
+                (table[n + 1] != 0 && LOW(table[n + 1]) == INVALID_BDD) ||
+                LOW(table[n + 3]) == INVALID_BDD) {
+                table[n] = -1;
             }
         }
     }
     
     void BddCache_clean_abc(BddCache cache) {
         if (cache == null) return;
-        int n;
-        for (n = 0; n < cache.tablesize; n++) {
-            int a = cache.table[n].a;
+        int[] table = cache.table;
+        for (int n = 0; n < table.length; n += BddCache.ENTRY_SIZE) {
+            int a = table[n];
             if (a < 0) continue;
             if (LOW(a) == -1 ||
-                LOW(cache.table[n].b) == INVALID_BDD ||
-                LOW(cache.table[n].c) == INVALID_BDD ||
-                LOW(((BddCacheDataI)cache.table[n]).res) == INVALID_BDD) {
-                cache.table[n].a = -1;
+                LOW(table[n + 1]) == INVALID_BDD ||
+                LOW(table[n + 2]) == INVALID_BDD ||
+                LOW(table[n + 3]) == INVALID_BDD) {
+                table[n] = -1;
             }
         }
     }
@@ -4353,6 +4276,7 @@ public class JFactory extends BDDFactory {
             int v;
 
             /* Accumulate number of nodes for each block */
+            p[n] = new sizePair();
             p[n].val = 0;
             for (v = dis.first; v <= dis.last; v++)
                 p[n].val -= levels[v].nodenum;
@@ -4846,6 +4770,97 @@ public class JFactory extends BDDFactory {
         bdd_save(out, x);
     }
 
+    /* (non-Javadoc)
+     * @see theory.bdd.BDDFactory#exportNodes(theory.bdd.BDD[])
+     */
+    protected int[] exportNodes(BDD[] roots) {
+        // refs[n] is 0 until node n is listed
+        int[] refs = new int[bddnodesize];
+        int[] nodes = new int[3 * 64];
+        int nodeCount = 0;
+        int[] rootRefs = new int[roots.length];
+        int[] stack = new int[2 * bddvarnum + 2];
+
+        for (int r = 0; r < roots.length; r++) {
+            // the hash code of a node is its index
+            int root = roots[r].hashCode();
+            int top = 0;
+            stack[top++] = root;
+
+            while (top > 0) {
+                int n = stack[top - 1];
+                if (n < 2 || refs[n] != 0) {
+                    top--;
+                    continue;
+                }
+
+                int lo = LOW(n), hi = HIGH(n);
+                boolean loDone = lo < 2 || refs[lo] != 0;
+                boolean hiDone = hi < 2 || refs[hi] != 0;
+                if (loDone && hiDone) {
+                    if (3 * nodeCount + 3 > nodes.length)
+                        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                    nodes[3 * nodeCount] = bddlevel2var[LEVEL(n)];
+                    nodes[3 * nodeCount + 1] = lo < 2 ? lo : refs[lo];
+                    nodes[3 * nodeCount + 2] = hi < 2 ? hi : refs[hi];
+                    refs[n] = nodeCount + 2;
+                    nodeCount++;
+                    top--;
+                } else {
+                    if (top + 2 > stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    if (!hiDone) stack[top++] = hi;
+                    if (!loDone) stack[top++] = lo;
+                }
+            }
+            rootRefs[r] = root < 2 ? root : refs[root];
+        }
+
+        int[] result = Arrays.copyOf(nodes, 3 * nodeCount + roots.length);
+        System.arraycopy(rootRefs, 0, result, 3 * nodeCount, roots.length);
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see theory.bdd.BDDFactory#importNodes(int[], int, int)
+     */
+    protected BDD[] importNodes(int[] nodes, int nodeCount, int rootCount) {
+        // grow the node table once instead of on every garbage collection
+        if (bddfreenum < nodeCount)
+            setNodeTableSize(bddnodesize + nodeCount);
+
+        int[] built = new int[nodeCount + 2];
+        built[1] = bddtrue;
+        try {
+            for (int n = 0; n < nodeCount; n++) {
+                checkNode(nodes, n);
+                int var = nodes[3 * n];
+                int low = built[nodes[3 * n + 1]];
+                int high = built[nodes[3 * n + 2]];
+                int level = bddvar2level[var];
+
+                // nodes saved with the current variable order are inserted
+                // directly in the unique table
+                int res;
+                if (level < LEVEL(low) && level < LEVEL(high))
+                    res = bdd_makenode(level, low, high);
+                else
+                    res = bdd_ite(bdd_ithvar(var), high, low);
+                built[n + 2] = bdd_addref(res);
+            }
+
+            BDD[] roots = new BDD[rootCount];
+            for (int r = 0; r < rootCount; r++)
+                roots[r] = makeBDD(built[checkRef(nodes[3 * nodeCount + r], nodeCount)]);
+            return roots;
+        } catch (TimeoutException e) {
+            return null;
+        } finally {
+            for (int n = 2; n < built.length; n++)
+                bdd_delref(built[n]);
+        }
+    }
+
     /* (non-Javadoc)
      * @see net.sf.javabdd.BDDFactory#level2Var(int)
      */
@@ -5436,7 +5451,7 @@ public class JFactory extends BDDFactory {
         int hash;
         int res;
 
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.uniqueAccess++;
 
         /* Note: We know that low,high has a refcou greater than zero, so
@@ -5454,19 +5469,19 @@ public class JFactory extends BDDFactory {
 
         while (res != 0) {
             if (LOW(res) == low && HIGH(res) == high) {
-                if (CACHESTATS)
+                if (cacheStatsEnabled)
                     cachestats.uniqueHit++;
                 INCREF(res);
                 return res;
             }
             res = NEXT(res);
 
-            if (CACHESTATS)
+            if (cacheStatsEnabled)
                 cachestats.uniqueChain++;
         }
 
         /* No existing node -> build one */
-        if (CACHESTATS)
+        if (cacheStatsEnabled)
             cachestats.uniqueMiss++;
 
         /* Any free nodes to use ? */
@@ -4645,6 +4645,7 @@ public class MicroFactory extends BDDFactory {
             int v;
 
             /* Accumulate number of nodes for each block */
+            p[n] = new sizePair();
             p[n].val = 0;
             for (v = dis.first; v <= dis.last; v++)
                 p[n].val -= levels[v].nodenum;
@@ -5121,6 +5122,94 @@ public class MicroFactory extends BDDFactory {
         bdd_save(out, x);
     }
 
+    /* (non-Javadoc)
+     * @see theory.bdd.BDDFactory#exportNodes(theory.bdd.BDD[])
+     */
+    protected int[] exportNodes(BDD[] roots) {
+        // refs[n] is 0 until node n is listed
+        int[] refs = new int[bddnodesize];
+        int[] nodes = new int[3 * 64];
+        int nodeCount = 0;
+        int[] rootRefs = new int[roots.length];
+        int[] stack = new int[2 * bddvarnum + 2];
+
+        for (int r = 0; r < roots.length; r++) {
+            int root = ((bdd) roots[r])._index;
+            int top = 0;
+            stack[top++] = root;
+
+            while (top > 0) {
+                int n = stack[top - 1];
+                if (n < 2 || refs[n] != 0) {
+                    top--;
+                    continue;
+                }
+
+                int lo = LOW(n), hi = HIGH(n);
+                boolean loDone = lo < 2 || refs[lo] != 0;
+                boolean hiDone = hi < 2 || refs[hi] != 0;
+                if (loDone && hiDone) {
+                    if (3 * nodeCount + 3 > nodes.length)
+                        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+                    nodes[3 * nodeCount] = bddlevel2var[LEVEL(n)];
+                    nodes[3 * nodeCount + 1] = lo < 2 ? lo : refs[lo];
+                    nodes[3 * nodeCount + 2] = hi < 2 ? hi : refs[hi];
+                    refs[n] = nodeCount + 2;
+                    nodeCount++;
+                    top--;
+                } else {
+                    if (top + 2 > stack.length)
+                        stack = Arrays.copyOf(stack, 2 * stack.length);
+                    if (!hiDone) stack[top++] = hi;
+                    if (!loDone) stack[top++] = lo;
+                }
+            }
+            rootRefs[r] = root < 2 ? root : refs[root];
+        }
+
+        int[] result = Arrays.copyOf(nodes, 3 * nodeCount + roots.length);
+        System.arraycopy(rootRefs, 0, result, 3 * nodeCount, roots.length);
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see theory.bdd.BDDFactory#importNodes(int[], int, int)
+     */
+    protected BDD[] importNodes(int[] nodes, int nodeCount, int rootCount) {
+        // grow the node table once instead of on every garbage collection
+        if (bddfreenum < nodeCount)
+            setNodeTableSize(bddnodesize + nodeCount);
+
+        int[] built = new int[nodeCount + 2];
+        built[1] = bddtrue;
+        try {
+            for (int n = 0; n < nodeCount; n++) {
+                checkNode(nodes, n);
+                int var = nodes[3 * n];
+                int low = built[nodes[3 * n + 1]];
+                int high = built[nodes[3 * n + 2]];
+                int level = bddvar2level[var];
+
+                // nodes saved with the current variable order are inserted
+                // directly in the unique table
+                int res;
+                if (level < LEVEL(low) && level < LEVEL(high))
+                    res = bdd_makenode(level, low, high);
+                else
+                    res = bdd_ite(bdd_ithvar(var), high, low);
+                built[n + 2] = bdd_addref(res);
+            }
+
+            BDD[] roots = new BDD[rootCount];
+            for (int r = 0; r < rootCount; r++)
+                roots[r] = makeBDD(built[checkRef(nodes[3 * nodeCount + r], nodeCount)]);
+            return roots;
+        } finally {
+            for (int n = 2; n < built.length; n++)
+                bdd_delref(built[n]);
+        }
+    }
+
     /* (non-Javadoc)
      * @see net.sf.javabdd.BDDFactory#level2Var(int)
      */
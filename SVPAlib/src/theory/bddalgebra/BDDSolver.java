@@ -7,6 +7,12 @@
  */
 package theory.bddalgebra;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Collection;
 
 import java.lang.UnsupportedOperationException;
@@ -21,6 +27,28 @@ import utilities.Pair;
 public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 
 	public BDDFactory factory;
+
+	// initial sizes of the tables of an auto-sized factory
+	private static final int INITIAL_NODES = 10000;
+	private static final int INITIAL_CACHE = 2500;
+	// the operator cache is kept to a quarter of the node table
+	private static final int NODES_PER_CACHE_ENTRY = 4;
+
+	// true if the tables and the variable order are watched after every
+	// operation
+	private boolean monitored;
+	private boolean autoSize;
+	private int tableSize;
+
+	// automatic reordering: the nodes in use starting the next reordering,
+	// the time left for reordering and the file keeping the best order
+	private boolean autoReorder;
+	private int minReorderNodes;
+	private int nextReorder;
+	private long reorderBudget;
+	private String orderFile;
+	private int reorderCount;
+	private long reorderTime;
 	
 	public BDDSolver(int numVars) {
 		super();		
@@ -34,9 +62,158 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		factory.setVarNum(numVars);
 	}
 
+	/**
+	 * A solver over a factory of the package <code>bddPackage</code> (see
+	 * {@link BDDFactory#init(String, int, int)}) whose node table starts small
+	 * and doubles when it fills up, with the operator cache growing along.
+	 * The "java" and "micro" packages also support automatic reordering.
+	 */
+	public BDDSolver(int numVars, String bddPackage) {
+		super();
+		factory = BDDFactory.init(bddPackage, INITIAL_NODES, INITIAL_CACHE);
+		factory.setVarNum(numVars);
+		factory.setMaxIncrease(0);
+		monitored = true;
+		autoSize = true;
+		tableSize = factory.getNodeTableSize();
+	}
+
+	/**
+	 * Reorders the variables by sifting whenever the nodes in use reach twice
+	 * the number left by the previous reordering, and at least
+	 * <code>minNodes</code>. Reordering stops once it has taken
+	 * <code>budgetMillis</code> milliseconds in total. The factory must
+	 * support reordering.
+	 * 
+	 * @param orderFile
+	 *            if not null, the variable order saved in this file, if any,
+	 *            is applied now, and the order is saved to it after every
+	 *            reordering
+	 * @throws IOException
+	 */
+	public void setAutoReorder(int minNodes, long budgetMillis, String orderFile) throws IOException {
+		// the order cannot be set once there are variable blocks
+		if (orderFile != null)
+			loadVarOrder(orderFile);
+		factory.varBlockAll();
+		this.orderFile = orderFile;
+		monitored = true;
+		autoReorder = true;
+		minReorderNodes = minNodes;
+		nextReorder = Math.max(minNodes, 2 * factory.getNodeNum());
+		reorderBudget = budgetMillis;
+	}
+
+	/**
+	 * Stops automatic reordering
+	 */
+	public void disableAutoReorder() {
+		autoReorder = false;
+	}
+
+	/**
+	 * @return the number of automatic reorderings
+	 */
+	public int getReorderCount() {
+		return reorderCount;
+	}
+
+	/**
+	 * @return the time taken by automatic reorderings, in milliseconds
+	 */
+	public long getReorderTime() {
+		return reorderTime;
+	}
+
+	/**
+	 * @return the variable order, the variable of every level from the top
+	 */
+	public int[] getVarOrder() {
+		int[] order = new int[factory.varNum()];
+		for (int level = 0; level < order.length; level++)
+			order[level] = factory.level2Var(level);
+		return order;
+	}
+
+	/**
+	 * Saves the variable order to <code>fileName</code>
+	 * 
+	 * @throws IOException
+	 */
+	public void saveVarOrder(String fileName) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		try {
+			for (int var : getVarOrder())
+				out.println(var);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Applies the variable order saved in <code>fileName</code>
+	 * 
+	 * @return false if the file does not exist or is for a different number of
+	 *         variables
+	 * @throws IOException
+	 */
+	public boolean loadVarOrder(String fileName) throws IOException {
+		if (!new File(fileName).exists())
+			return false;
+		int[] order = new int[factory.varNum()];
+		int count = 0;
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				if (line.trim().isEmpty())
+					continue;
+				if (count == order.length)
+					return false;
+				order[count++] = Integer.parseInt(line.trim());
+			}
+		} finally {
+			in.close();
+		}
+		if (count != order.length)
+			return false;
+		factory.setVarOrder(order);
+		return true;
+	}
+
+	// grows the cache with the node table and reorders when due
+	private BDD watch(BDD result) {
+		if (!monitored)
+			return result;
+		if (autoSize && factory.getNodeTableSize() != tableSize) {
+			tableSize = factory.getNodeTableSize();
+			factory.setCacheSize(Math.max(INITIAL_CACHE, tableSize / NODES_PER_CACHE_ENTRY));
+		}
+		if (autoReorder && factory.getNodeNum() >= nextReorder)
+			reorder();
+		return result;
+	}
+
+	private void reorder() {
+		long start = System.currentTimeMillis();
+		factory.reorder(BDDFactory.REORDER_SIFT);
+		reorderTime += System.currentTimeMillis() - start;
+		reorderCount++;
+		nextReorder = Math.max(minReorderNodes, 2 * factory.getNodeNum());
+		if (reorderTime >= reorderBudget)
+			autoReorder = false;
+		if (orderFile != null) {
+			try {
+				saveVarOrder(orderFile);
+			} catch (IOException e) {
+				// keep working with the order in memory
+				orderFile = null;
+			}
+		}
+	}
+
 	@Override
 	public BDD MkNot(BDD p) {
-		return p.not();
+		return watch(p.not());
 	}
 
 	@Override
@@ -44,12 +221,12 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		BDD acc = factory.zero();
 		for(BDD bdd:pset)
 			acc=acc.or(bdd);
-		return acc;
+		return watch(acc);
 	}
 
 	@Override
 	public BDD MkOr(BDD p1, BDD p2) {
-		return p1.or(p2);
+		return watch(p1.or(p2));
 	}
 
 	@Override
@@ -57,12 +234,12 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		BDD acc = factory.one();
 		for(BDD bdd:pset)
 			acc=acc.and(bdd);
-		return acc;
+		return watch(acc);
 	}
 
 	@Override
 	public BDD MkAnd(BDD p1, BDD p2) {
-		return p1.and(p2);
+		return watch(p1.and(p2));
 	}
 
 	@Override
@@ -80,6 +257,11 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		return p1.equals(p2);
 	}
 
+	@Override
+	public boolean hasCanonicalPredicates() {
+		return true;
+	}
+
 	@Override
 	public boolean IsSatisfiable(BDD p1) {
 		return !p1.isZero();
@@ -1,7 +1,7 @@
 package theory.cartesian;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
@@ -12,6 +12,7 @@ import utilities.Pair;
 public class CartesianProduct<P1,P2> {
 	
 	List<Pair<P1,P2>> products;
+	boolean normalized;
 	
 	public CartesianProduct(){
 		products = new ArrayList<>();
@@ -30,60 +31,107 @@ public class CartesianProduct<P1,P2> {
 		this.products = products;
 	}
 	
+	/**
+	 * Rewrites the products in normal form: the first components are disjoint
+	 * and satisfiable, and the second components are satisfiable and pairwise
+	 * not equivalent. Two equivalent cartesian products have the same normal
+	 * form, up to the equivalence of the components.
+	 */
 	public <S1,S2> void normalize(BooleanAlgebra<P1,S1> ba1,BooleanAlgebra<P2,S2> ba2) throws TimeoutException{
-		ArrayList<Pair<P1,P2>> newProducts = new ArrayList<Pair<P1,P2>>();
-		
-		ArrayList<P1> firstProj = new ArrayList<>();
-		for(Pair<P1,P2> pair: products)
-			firstProj.add(pair.first);
-		
-		Collection<Pair<P1, ArrayList<Integer>>> minterms = ba1.GetMinterms(firstProj);		
-		for(Pair<P1, ArrayList<Integer>> minterm:minterms){
-			P1 currA = minterm.first;
-			P2 currB = ba2.False();
-			boolean addflag = false;
-			for (int bit = 0; bit < products.size(); bit++) {
-				if (minterm.second.get(bit) == 1) {
-					addflag = true;
-					currB = ba2.MkOr(currB, products.get(bit).second);
+		if (normalized)
+			return;
+
+		// refine the first components into disjoint cells, each one with the
+		// union of the second components of the products containing it
+		List<Pair<P1,P2>> cells = new ArrayList<Pair<P1,P2>>();
+		for (Pair<P1,P2> pair : products) {
+			if (!ba1.IsSatisfiable(pair.first) || !ba2.IsSatisfiable(pair.second))
+				continue;
+			P1 rest = pair.first;
+			boolean restSat = true;
+			List<Pair<P1,P2>> next = new ArrayList<Pair<P1,P2>>(cells.size() + 2);
+			for (Pair<P1,P2> cell : cells) {
+				P1 inside = restSat ? ba1.MkAnd(cell.first, rest) : null;
+				if (!restSat || !ba1.IsSatisfiable(inside)) {
+					next.add(cell);
+					continue;
 				}
+				P1 outside = ba1.MkAnd(cell.first, ba1.MkNot(rest));
+				if (ba1.IsSatisfiable(outside))
+					next.add(new Pair<P1,P2>(outside, cell.second));
+				next.add(new Pair<P1,P2>(inside, ba2.MkOr(cell.second, pair.second)));
+				rest = ba1.MkAnd(rest, ba1.MkNot(cell.first));
+				restSat = ba1.IsSatisfiable(rest);
 			}
-
-			if (addflag) //avoid adding unsat regions
-				newProducts.add(new Pair<>(currA, currB));
+			if (restSat)
+				next.add(new Pair<P1,P2>(rest, pair.second));
+			cells = next;
 		}
-		
-		products = newProducts;
-		reduce(ba1, ba2);
+
+		// the first components are disjoint, so merging the cells with the
+		// same second component keeps them disjoint and pairwise different
+		products = mergeEquivalent(cells, ba1, ba2, false);
+		normalized = true;
 	}
-	
+
+	/**
+	 * Merges the products with equivalent second components, then the
+	 * products with equivalent first components
+	 */
 	public <S1,S2> void reduce(BooleanAlgebra<P1, S1> ba1, BooleanAlgebra<P2, S2> ba2) throws TimeoutException {
-		List<Pair<P1,P2>> newProducts = new ArrayList<Pair<P1, P2>>();
+		products = mergeEquivalent(products, ba1, ba2, false);
+		products = mergeEquivalent(products, ba1, ba2, true);
+	}
 
-		//consolidate based on y-component
-		List<Pair<P1,P2>> consolid = new ArrayList<Pair<P1, P2>>();
-		while (products.size() > 0) {
-			Pair<P1, P2> curr = products.remove(0);
-			for (int i = products.size() - 1; i >= 0; i--) {
-				if (ba2.AreEquivalent(curr.second, products.get(i).second)) {
-					curr.setFirst(ba1.MkOr(curr.first, products.get(i).first));
-					products.remove(i);
-				}
-			}
-			consolid.add(curr);
+	// Merges the pairs with equivalent first (if byFirst) or second
+	// components, taking the union of the other components. Equal components
+	// are grouped by hashing, and only the representatives of the groups are
+	// compared with AreEquivalent, when the algebra is not canonical.
+	private static <P1,P2,S1,S2> List<Pair<P1,P2>> mergeEquivalent(List<Pair<P1,P2>> pairs,
+			BooleanAlgebra<P1,S1> ba1, BooleanAlgebra<P2,S2> ba2, boolean byFirst) throws TimeoutException {
+		LinkedHashMap<Object, Pair<P1,P2>> groups = new LinkedHashMap<Object, Pair<P1,P2>>();
+		for (Pair<P1,P2> pair : pairs) {
+			Object key = byFirst ? pair.first : pair.second;
+			Pair<P1,P2> group = groups.get(key);
+			groups.put(key, group == null ? pair : union(group, pair, ba1, ba2, byFirst));
 		}
-		//consolidate based on x-component
-		while (consolid.size() > 0) {
-			Pair<P1, P2> curr = consolid.remove(0);
-			for (int i = consolid.size() - 1; i >= 0; i--) {
-				if (ba1.AreEquivalent(curr.first, consolid.get(i).first)) {
-					curr.setSecond(ba2.MkOr(curr.second, consolid.get(i).second));
-					consolid.remove(i);
+		List<Pair<P1,P2>> merged = new ArrayList<Pair<P1,P2>>(groups.values());
+		if (byFirst ? ba1.hasCanonicalPredicates() : ba2.hasCanonicalPredicates())
+			return merged;
+
+		List<Pair<P1,P2>> result = new ArrayList<Pair<P1,P2>>(merged.size());
+		boolean[] done = new boolean[merged.size()];
+		for (int i = 0; i < merged.size(); i++) {
+			if (done[i])
+				continue;
+			Pair<P1,P2> curr = merged.get(i);
+			for (int j = i + 1; j < merged.size(); j++) {
+				Pair<P1,P2> other = merged.get(j);
+				if (!done[j] && (byFirst ? ba1.AreEquivalent(curr.first, other.first)
+						: ba2.AreEquivalent(curr.second, other.second))) {
+					curr = union(curr, other, ba1, ba2, byFirst);
+					done[j] = true;
 				}
 			}
-			newProducts.add(curr);
+			result.add(curr);
 		}
-		products = newProducts;
+		return result;
+	}
+
+	// The pair with the component of a and the union of the other components
+	private static <P1,P2,S1,S2> Pair<P1,P2> union(Pair<P1,P2> a, Pair<P1,P2> b,
+			BooleanAlgebra<P1,S1> ba1, BooleanAlgebra<P2,S2> ba2, boolean byFirst) throws TimeoutException {
+		if (byFirst)
+			return new Pair<P1,P2>(a.first, ba2.MkOr(a.second, b.second));
+		return new Pair<P1,P2>(ba1.MkOr(a.first, b.first), a.second);
+	}
+
+	/**
+	 * @return true if the products are in the normal form computed by
+	 *         {@link #normalize}
+	 */
+	public boolean isNormalized() {
+		return normalized;
 	}
 
 	public List<Pair<P1,P2>> getProducts(){
@@ -53,12 +53,12 @@ public class BoundedIntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public IntPred True() {
-		return ba.MkAnd(domain, ba.True());
+		return domain;
 	}
 
 	@Override
 	public IntPred False() {
-		return ba.MkAnd(domain, ba.False());
+		return ba.False();
 	}
 
 	@Override
@@ -69,12 +69,12 @@ public class BoundedIntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public boolean IsSatisfiable(IntPred p1) throws TimeoutException {
-		return ba.IsSatisfiable(ba.MkAnd(domain, p1));
+		return IntPred.intersects(domain.bounds, p1.bounds);
 	}
 
 	@Override
 	public boolean HasModel(IntPred p1, Integer el) throws TimeoutException {
-		return ba.HasModel(ba.MkAnd(domain, p1), el);
+		return domain.isSatisfiedBy(el) && ba.HasModel(p1, el);
 	}
 
 	@Override
@@ -94,6 +94,16 @@ public class BoundedIntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 		return ba.generateWitnesses(p1);
 	}
 	
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates) {
+		return IntPred.minterms(predicates, domain);
+	}
+
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates, long timeout) {
+		return IntPred.minterms(predicates, domain);
+	}
+	
 	@Override
 	public ArrayList<IntPred> GetSeparatingPredicates(
 			ArrayList<Collection<Integer>> groups, long timeout) throws TimeoutException {
@@ -0,0 +1,68 @@
+package theory.intervals;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import theory.characters.CharPred;
+
+/**
+ * An interval based solver for the theory of Unicode code points, the
+ * integers from {@link #MIN_CODE_POINT} to {@link #MAX_CODE_POINT}.
+ *
+ * Unlike {@link UnaryCharIntervalSolver}, a supplementary character is a
+ * single element of the domain rather than a pair of UTF-16 surrogates.
+ * Surrogate code points are part of the domain and stand for unpaired
+ * surrogates, as returned by {@link Character#codePointAt(CharSequence, int)}.
+ */
+public class CodePointSolver extends BoundedIntegerSolver {
+
+	public static final int MIN_CODE_POINT = Character.MIN_CODE_POINT;
+	public static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+	public CodePointSolver() {
+		super(MIN_CODE_POINT, MAX_CODE_POINT);
+	}
+
+	/**
+	 * @return the set of the code points of the characters of <code>p</code>
+	 */
+	public static IntPred fromCharPred(CharPred p) {
+		// the intervals of a CharPred are already sorted and not adjacent
+		int[] bounds = new int[2 * p.intervals.size()];
+		int size = 0;
+		for (ImmutablePair<Character, Character> interval : p.intervals) {
+			bounds[size++] = interval.left;
+			bounds[size++] = interval.right;
+		}
+		return new IntPred(bounds);
+	}
+
+	/**
+	 * @return the set of the supplementary code points encoded by a high
+	 *         surrogate in <code>high</code> followed by a low surrogate in
+	 *         <code>low</code>
+	 */
+	public static IntPred fromSurrogatePairs(CharPred high, CharPred low) {
+		int[] lows = fromCharPred(low).bounds;
+		lows = IntPred.intersect(lows, new int[] { Character.MIN_LOW_SURROGATE, Character.MAX_LOW_SURROGATE });
+		IntPred.Builder builder = new IntPred.Builder(4);
+		if (lows.length == 0)
+			return new IntPred(builder.build());
+		boolean allLows = lows[0] == Character.MIN_LOW_SURROGATE && lows[1] == Character.MAX_LOW_SURROGATE;
+		for (ImmutablePair<Character, Character> interval : high.intervals) {
+			int a = Math.max(interval.left, Character.MIN_HIGH_SURROGATE);
+			int b = Math.min(interval.right, Character.MAX_HIGH_SURROGATE);
+			if (allLows) {
+				// the pairs of consecutive high surrogates are contiguous
+				if (a <= b)
+					builder.add(Character.toCodePoint((char) a, Character.MIN_LOW_SURROGATE),
+							Character.toCodePoint((char) b, Character.MAX_LOW_SURROGATE));
+				continue;
+			}
+			for (int h = a; h <= b; h++)
+				for (int i = 0; i < lows.length; i += 2)
+					builder.add(Character.toCodePoint((char) h, (char) lows[i]),
+							Character.toCodePoint((char) h, (char) lows[i + 1]));
+		}
+		return new IntPred(builder.build());
+	}
+}
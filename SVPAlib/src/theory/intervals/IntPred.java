@@ -6,24 +6,30 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
+import utilities.Pair;
+
 public class IntPred {
-	
-	public final ImmutableList<ImmutablePair<Integer, Integer>> intervals;
-	
+
+	// the intervals [bounds[2i],bounds[2i+1]], sorted, disjoint and not
+	// adjacent; Integer.MIN_VALUE and Integer.MAX_VALUE stand for unbounded ends
+	final int[] bounds;
+
 	/**
 	 * The set containing only the integer <code>n</code>
 	 */
 	public IntPred(int n) {
 		this(n, n);
 	}
-	
+
 	/**
 	 * The set containing only the interval <code>[bot,top]</code> (extremes
 	 * included)
@@ -31,148 +37,272 @@ public class IntPred {
 	 * indicates the interval is unbounded for that value
 	 */
 	public IntPred(Integer bot, Integer top) {
-		this(ImmutableList.of(ImmutablePair.of(bot, top)));
+		checkArgument(bot == null || top == null || bot <= top);
+		this.bounds = new int[] { bot == null ? Integer.MIN_VALUE : bot, top == null ? Integer.MAX_VALUE : top };
 	}
-	
+
 	public IntPred(ImmutableList<ImmutablePair<Integer, Integer>> intervals) {
+		List<ImmutablePair<Integer, Integer>> sortLeft = new ArrayList<ImmutablePair<Integer, Integer>>();
 		for (ImmutablePair<Integer, Integer> interval : checkNotNull(intervals)) {
 			checkArgument(interval.left == null || interval.right == null ||
 					interval.left <= interval.right);
+			sortLeft.add(interval);
 		}
+		sortLeft.sort(new Comparator<ImmutablePair<Integer, Integer>>() {
+			public int compare(ImmutablePair<Integer, Integer> o1, ImmutablePair<Integer, Integer> o2) {
+				return Integer.compare(lo(o1), lo(o2));
+			}
+		});
+
+		Builder builder = new Builder(2 * sortLeft.size());
+		for (ImmutablePair<Integer, Integer> interval : sortLeft)
+			builder.add(lo(interval), interval.right == null ? Integer.MAX_VALUE : interval.right);
+		this.bounds = builder.build();
+	}
+
+	// takes bounds already in normal form
+	IntPred(int[] bounds) {
+		this.bounds = bounds;
+	}
 
-		this.intervals = sortIntervals(checkNotNull(intervals));
+	private static int lo(ImmutablePair<Integer, Integer> interval) {
+		return interval.left == null ? Integer.MIN_VALUE : interval.left;
 	}
-	
-	private static ImmutableList<ImmutablePair<Integer, Integer>> sortIntervals(
+
+	/**
+	 * @return the intervals of the set, sorted; <code>null</code> extremes
+	 *         indicate unbounded intervals
+	 */
+	public ImmutableList<ImmutablePair<Integer, Integer>> getIntervals() {
+		ImmutableList.Builder<ImmutablePair<Integer, Integer>> ans = ImmutableList.builder();
+		for (int i = 0; i < bounds.length; i += 2)
+			ans.add(ImmutablePair.of(bounds[i] == Integer.MIN_VALUE ? null : bounds[i],
+					bounds[i + 1] == Integer.MAX_VALUE ? null : bounds[i + 1]));
+		return ans.build();
+	}
+
+	public static ImmutableList<ImmutablePair<Integer, Integer>> invertIntervals(
 			ImmutableList<ImmutablePair<Integer, Integer>> intervals) {
-		
-		for (ImmutablePair<Integer, Integer> interval : checkNotNull(intervals)) {
-			checkArgument(interval.left == null || interval.right == null ||
-					interval.left <= interval.right);
+		return new IntPred(complement(new IntPred(intervals).bounds)).getIntervals();
+	}
+
+	public boolean isSatisfiedBy(int n) {
+		// the last interval starting at or before n
+		int lo = 0, hi = bounds.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (bounds[2 * mid] <= n)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
 		}
-		
-		List<ImmutablePair<Integer, Integer>> sortLeft = new ArrayList<ImmutablePair<Integer, Integer>>(intervals);
-		Collections.sort(sortLeft, new Comparator<ImmutablePair<Integer, Integer>>() {
-			public int compare(ImmutablePair<Integer, Integer> o1,
-					ImmutablePair<Integer, Integer> o2) {
-				if (checkNotNull(o1).left == null)
-					return -1;
-				if (checkNotNull(o2).left == null)
-					return 1;
-				return o1.left - o2.left;
-			}
-		});
-		
-		ImmutableList.Builder<ImmutablePair<Integer, Integer>> ansBuilder = ImmutableList.builder();
-		for (int i = 0; i < sortLeft.size(); i++) {
-			Integer left = sortLeft.get(i).left;
-			Integer right = sortLeft.get(i).right;
-			for (int j = i + 1; j < sortLeft.size() && 
-					(right == null || sortLeft.get(j).left == null || sortLeft.get(j).left <= right + 1)
-					; j++) {
-				if (right != null) {
-					if (sortLeft.get(j).right == null)
-						right = null;
-					else
-						right = Math.max(right,  sortLeft.get(j).right);
-				}
-				i++;
+		return hi >= 0 && n <= bounds[2 * hi + 1];
+	}
+
+	/**
+	 * The union of two sets in normal form, merging their intervals in order
+	 */
+	static int[] union(int[] a, int[] b) {
+		Builder builder = new Builder(a.length + b.length);
+		int i = 0, j = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] <= b[j])) {
+				builder.add(a[i], a[i + 1]);
+				i += 2;
+			} else {
+				builder.add(b[j], b[j + 1]);
+				j += 2;
 			}
-			ansBuilder.add(ImmutablePair.of(left,  right));
 		}
-		
-		ImmutableList<ImmutablePair<Integer, Integer>> ans = ansBuilder.build();
-		for (int i = 1; i < ans.size(); i++) { 
-			ImmutablePair<Integer, Integer> curr = ans.get(i);
-			ImmutablePair<Integer, Integer> prev = ans.get(i - 1);
-			checkArgument(checkNotNull(prev.right) < checkNotNull(curr.left));
-			checkArgument(prev.right + 1 < curr.left);
+		return builder.build();
+	}
+
+	/**
+	 * The union of the sets of <code>preds</code>, merged pairwise as a
+	 * balanced tree
+	 */
+	static int[] union(List<IntPred> preds, int from, int to) {
+		if (to - from == 0)
+			return new int[0];
+		if (to - from == 1)
+			return preds.get(from).bounds;
+		int mid = (from + to) >>> 1;
+		return union(union(preds, from, mid), union(preds, mid, to));
+	}
+
+	/**
+	 * The intersection of two sets in normal form
+	 */
+	static int[] intersect(int[] a, int[] b) {
+		Builder builder = new Builder(a.length + b.length);
+		for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+			int lo = Math.max(a[i], b[j]);
+			int hi = Math.min(a[i + 1], b[j + 1]);
+			if (lo <= hi)
+				builder.add(lo, hi);
+			if (a[i + 1] < b[j + 1])
+				i += 2;
+			else
+				j += 2;
 		}
-		
-		return ans;
+		return builder.build();
 	}
-	
-	public static ImmutableList<ImmutablePair<Integer, Integer>> invertIntervals(
-			ImmutableList<ImmutablePair<Integer, Integer>> intervals) {
-		
-		List<ImmutablePair<Integer, Integer>> ret = 
-			new ArrayList<ImmutablePair<Integer, Integer>>();
-		
-		intervals = sortIntervals(intervals);
-		if (intervals.isEmpty())
-			return ImmutableList.copyOf(StdIntPred.TRUE.intervals);
-		
-		Integer end_point = null;
-		for (int i = 0; i < intervals.size(); i++) {
-			ImmutablePair<Integer, Integer> interval = intervals.get(i);
-			if (interval.left != null) {
-				ret.add(ImmutablePair.of(end_point,  interval.left - 1));
-				if (interval.right == null)
-					break;
-			}
-			if (interval.right != null) {
-				end_point = interval.right + 1;
+
+	/**
+	 * @return true if the two sets in normal form intersect
+	 */
+	static boolean intersects(int[] a, int[] b) {
+		for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if (Math.max(a[i], b[j]) <= Math.min(a[i + 1], b[j + 1]))
+				return true;
+			if (a[i + 1] < b[j + 1])
+				i += 2;
+			else
+				j += 2;
+		}
+		return false;
+	}
+
+	/**
+	 * The complement of a set in normal form
+	 */
+	static int[] complement(int[] a) {
+		Builder builder = new Builder(a.length + 2);
+		int next = Integer.MIN_VALUE;
+		for (int i = 0; i < a.length; i += 2) {
+			if (a[i] != Integer.MIN_VALUE)
+				builder.add(next, a[i] - 1);
+			if (a[i + 1] == Integer.MAX_VALUE)
+				return builder.build();
+			next = a[i + 1] + 1;
+		}
+		builder.add(next, Integer.MAX_VALUE);
+		return builder.build();
+	}
+
+	/**
+	 * The satisfiable Boolean combinations of <code>preds</code> inside
+	 * <code>universe</code>, in the format of
+	 * {@link theory.BooleanAlgebra#GetMinterms}. The integers are cut at every
+	 * bound of the intervals, every segment between two cuts is labelled with
+	 * the predicates containing it, and segments with the same label are
+	 * joined.
+	 */
+	static Collection<Pair<IntPred, ArrayList<Integer>>> minterms(List<IntPred> preds, IntPred universe) {
+		int n = preds.size();
+		int count = universe.bounds.length;
+		for (IntPred p : preds)
+			count += p.bounds.length;
+
+		// segment s covers [cuts[s-1], cuts[s]-1]
+		long[] cuts = new long[count];
+		int m = 0;
+		for (int k = -1; k < n; k++) {
+			int[] b = k < 0 ? universe.bounds : preds.get(k).bounds;
+			for (int i = 0; i < b.length; i += 2) {
+				if (b[i] != Integer.MIN_VALUE)
+					cuts[m++] = b[i];
+				if (b[i + 1] != Integer.MAX_VALUE)
+					cuts[m++] = (long) b[i + 1] + 1;
 			}
-			if (i == intervals.size() - 1 && interval.right != null) { 
-				ret.add(ImmutablePair.of(interval.right + 1,  null));
+		}
+		Arrays.sort(cuts, 0, m);
+		int unique = 0;
+		for (int i = 0; i < m; i++)
+			if (unique == 0 || cuts[unique - 1] != cuts[i])
+				cuts[unique++] = cuts[i];
+		m = unique;
+
+		boolean[] inUniverse = new boolean[m + 1];
+		mark(universe.bounds, cuts, m, inUniverse, 0, 1);
+		boolean[] member = new boolean[(m + 1) * n];
+		for (int k = 0; k < n; k++)
+			mark(preds.get(k).bounds, cuts, m, member, k, n);
+
+		Map<ArrayList<Integer>, Builder> minterms = new LinkedHashMap<ArrayList<Integer>, Builder>();
+		for (int s = 0; s <= m; s++) {
+			if (!inUniverse[s])
+				continue;
+			ArrayList<Integer> setBits = new ArrayList<Integer>(n);
+			for (int k = 0; k < n; k++)
+				setBits.add(member[s * n + k] ? 1 : 0);
+			Builder builder = minterms.get(setBits);
+			if (builder == null) {
+				builder = new Builder(4);
+				minterms.put(setBits, builder);
 			}
+			builder.add(s == 0 ? Integer.MIN_VALUE : (int) cuts[s - 1],
+					s == m ? Integer.MAX_VALUE : (int) (cuts[s] - 1));
 		}
-		return ImmutableList.copyOf(ret);
+
+		List<Pair<IntPred, ArrayList<Integer>>> ans = new ArrayList<Pair<IntPred, ArrayList<Integer>>>(minterms.size());
+		for (Map.Entry<ArrayList<Integer>, Builder> minterm : minterms.entrySet())
+			ans.add(new Pair<IntPred, ArrayList<Integer>>(new IntPred(minterm.getValue().build()), minterm.getKey()));
+		return ans;
 	}
-	
-	public boolean isSatisfiedBy(int n) {
-		for (ImmutablePair<Integer, Integer> interval : intervals) {
-			if (inInterval(interval, n)) 
-				return true;
+
+	// sets flags[s * stride + offset] for every segment s inside the intervals of b
+	private static void mark(int[] b, long[] cuts, int m, boolean[] flags, int offset, int stride) {
+		for (int i = 0; i < b.length; i += 2) {
+			int first = b[i] == Integer.MIN_VALUE ? 0 : Arrays.binarySearch(cuts, 0, m, b[i]) + 1;
+			int last = b[i + 1] == Integer.MAX_VALUE ? m : Arrays.binarySearch(cuts, 0, m, (long) b[i + 1] + 1);
+			for (int s = first; s <= last; s++)
+				flags[s * stride + offset] = true;
+		}
+	}
+
+	// collects intervals given in order of lower bound into normal form
+	static class Builder {
+		private int[] bounds;
+		private int size;
+
+		Builder(int capacity) {
+			bounds = new int[Math.max(capacity, 2)];
+		}
+
+		void add(int lo, int hi) {
+			if (size > 0 && (bounds[size - 1] == Integer.MAX_VALUE || lo <= bounds[size - 1] + 1)) {
+				bounds[size - 1] = Math.max(bounds[size - 1], hi);
+				return;
+			}
+			if (size == bounds.length)
+				bounds = Arrays.copyOf(bounds, 2 * size);
+			bounds[size++] = lo;
+			bounds[size++] = hi;
+		}
+
+		int[] build() {
+			return size == bounds.length ? bounds : Arrays.copyOf(bounds, size);
 		}
-		return false;
 	}
-	
-	private static boolean inInterval(ImmutablePair<Integer, Integer> interval, int n) {
-		if (interval.left == null && interval.right == null)
-			return true;
-		if (interval.left == null)
-			return n <= interval.right;
-		if (interval.right == null)
-			return n >= interval.left;
-		return interval.left <= n && n <= interval.right;
-	}
-	
+
 	@Override
 	public String toString() {
-		if (intervals.isEmpty())
+		if (bounds.length == 0)
 			return "empty";
-		List<String> retArr = new ArrayList<String>();
-		for (ImmutablePair<Integer, Integer> pair : intervals) { 
-			String temp = "[";
-			if (pair.left == null)
-				temp += "-inf";
-			else 
-				temp += pair.left.toString();
-			temp += ",";
-			if (pair.right == null) 
-				temp += "inf";
-			else
-				temp += pair.right.toString();
-			temp += "]";
-			retArr.add(temp);
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < bounds.length; i += 2) {
+			if (i > 0)
+				ret.append("U");
+			ret.append("[");
+			ret.append(bounds[i] == Integer.MIN_VALUE ? "-inf" : Integer.toString(bounds[i]));
+			ret.append(",");
+			ret.append(bounds[i + 1] == Integer.MAX_VALUE ? "inf" : Integer.toString(bounds[i + 1]));
+			ret.append("]");
 		}
-		String ret = retArr.get(0);
-		for(int i = 1; i < retArr.size(); i++)
-			ret += "U" + retArr.get(i);
-		return ret;
+		return ret.toString();
 	}
-	
+
 	@Override
-	public boolean equals(Object obj) { 
-		if (obj instanceof IntPred) 
-			return Objects.equals(intervals, ((IntPred)obj).intervals);
+	public boolean equals(Object obj) {
+		if (obj instanceof IntPred)
+			return Arrays.equals(bounds, ((IntPred)obj).bounds);
 		return false;
 	}
-	
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(IntPred.class, intervals);
+		return Arrays.hashCode(bounds);
 	}
 
 }
@@ -2,11 +2,8 @@ package theory.intervals;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.sat4j.specs.TimeoutException;
 
-import com.google.common.collect.ImmutableList;
-
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,21 +23,17 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public IntPred MkNot(IntPred p) {
-		return new IntPred(IntPred.invertIntervals(p.intervals));
+		return new IntPred(IntPred.complement(checkNotNull(p).bounds));
 	}
 
 	@Override
 	public IntPred MkOr(Collection<IntPred> pset) {
-		IntPred or = StdIntPred.FALSE;
-		for (IntPred a : pset) {
-			or = MkOr(or, a);
-		}
-		return or;
+		return new IntPred(IntPred.union(new ArrayList<IntPred>(pset), 0, pset.size()));
 	}
 
 	@Override
 	public IntPred MkOr(IntPred p1, IntPred p2) {
-		return MkNot(MkAnd(MkNot(p1), MkNot(p2)));
+		return new IntPred(IntPred.union(checkNotNull(p1).bounds, checkNotNull(p2).bounds));
 	}
 
 	@Override
@@ -54,50 +47,7 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public IntPred MkAnd(IntPred p1, IntPred p2) {
-		if(checkNotNull(p1).intervals.isEmpty() || checkNotNull(p2).intervals.isEmpty())
-			return False();
-		
-		List<ImmutablePair<Integer, Integer>> newIntervals = 
-				new ArrayList<ImmutablePair<Integer, Integer>>();
-		
-		for (int i = 0, j = 0; i < p1.intervals.size() && j < p2.intervals.size(); ) {
-			ImmutablePair<Integer, Integer> cur1, cur2;
-			cur1 = p1.intervals.get(i);
-			cur2 = p2.intervals.get(j);
-			
-			Integer lo = null;
-			if (cur1.left != null) { 
-				if (cur2.left != null) 
-					lo = Math.max(cur1.left, cur2.left);
-				else
-					lo = cur1.left;
-			}
-			else
-				lo = cur2.left;
-			Integer hi = null;
-			if (cur1.right != null) { 
-				if (cur2.right != null)
-					hi = Math.min(cur1.right, cur2.right);
-				else
-					hi = cur1.right;
-			}
-			else
-				hi = cur2.right;
-			
-			if (lo == null || hi == null || lo <= hi)
-				newIntervals.add(ImmutablePair.of(lo,  hi));
-			
-			if (hi == null && cur1.right == null)
-				i++;
-			else if (hi == null)
-				j++;
-			else if (hi.equals(cur1.right))
-				i++;
-			else
-				j++;
-		}
-		
-		return new IntPred(ImmutableList.copyOf(newIntervals));
+		return new IntPred(IntPred.intersect(checkNotNull(p1).bounds, checkNotNull(p2).bounds));
 	}
 
 	@Override
@@ -112,16 +62,18 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public boolean AreEquivalent(IntPred p1, IntPred p2) {
-		checkNotNull(p1);
-		checkNotNull(p2);
+		// the intervals are kept in normal form
+		return checkNotNull(p1).equals(checkNotNull(p2));
+	}
 
-		boolean nonEquivalent = IsSatisfiable(MkAnd(p1, MkNot(p2))) || IsSatisfiable(MkAnd(MkNot(p1), p2));
-		return !nonEquivalent;
+	@Override
+	public boolean hasCanonicalPredicates() {
+		return true;
 	}
 
 	@Override
 	public boolean IsSatisfiable(IntPred p) {
-		return !checkNotNull(p).intervals.isEmpty();
+		return checkNotNull(p).bounds.length > 0;
 	}
 
 	@Override
@@ -136,15 +88,14 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 
 	@Override
 	public Integer generateWitness(IntPred p) {
-		if (checkNotNull(p).intervals.isEmpty()) {
+		int[] bounds = checkNotNull(p).bounds;
+		if (bounds.length == 0)
 			return null;
-		} else {
-			if (p.intervals.get(0).left != null)
-				return p.intervals.get(0).left;
-			if (p.intervals.get(0).right != null)
-				return p.intervals.get(0).right;
-			return 0;
-		}
+		if (bounds[0] != Integer.MIN_VALUE)
+			return bounds[0];
+		if (bounds[1] != Integer.MAX_VALUE)
+			return bounds[1];
+		return 0;
 	}
 
 	@Override
@@ -152,6 +103,16 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
 	
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates) {
+		return IntPred.minterms(predicates, True());
+	}
+
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates, long timeout) {
+		return IntPred.minterms(predicates, True());
+	}
+	
 	/**
 	 * Returns a list of disjoint predicates [p1,...,pn] that accepts the elements [S1...SN] and that has union equal to true.
 	 */
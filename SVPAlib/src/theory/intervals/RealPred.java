@@ -6,25 +6,31 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
-import utilities.Quadruple;
+import java.util.Map;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
+import utilities.Pair;
+import utilities.Quadruple;
 
 public class RealPred {
-	
-	public final ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> intervals;
-	
+
+	// the intervals from bounds[2i] to bounds[2i+1], sorted, disjoint and not
+	// touching; open[k] tells whether bounds[k] is excluded. Infinite bounds
+	// stand for unbounded ends and are marked open
+	final double[] bounds;
+	final boolean[] open;
+
 	/**
 	 * The set containing only the integer <code>n</code>
 	 */
 	public RealPred(Double n) {
 		this(n,false, n, false);
 	}
-	
+
 	/**
 	 * The set containing only the interval <code>[bot,top]</code> (extremes
 	 * included)
@@ -32,187 +38,314 @@ public class RealPred {
 	 * indicates the interval is unbounded for that value
 	 */
 	public RealPred(Double bot, Boolean open1, Double top, Boolean open2) {
-		this(ImmutableList.of(new Quadruple(bot,open1,top,open2)));
+		this(ImmutableList.of(new Quadruple<Double, Boolean, Double, Boolean>(bot, open1, top, open2)));
 	}
-	
+
 	public RealPred(ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> intervals) {
+		List<Quadruple<Double,Boolean,Double,Boolean>> sortLeft = new ArrayList<Quadruple<Double,Boolean,Double,Boolean>>();
 		for (Quadruple<Double,Boolean,Double,Boolean> interval : checkNotNull(intervals)) {
-			checkArgument(interval.first == null || interval.second == null || interval.third == null || interval.fourth == null ||
-					interval.first <= interval.third);
-		}
-
-		this.intervals = sortIntervals(checkNotNull(intervals));
-	}
-	
-	private static ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> sortIntervals(
-			ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> intervals) {
-		
-		for (Quadruple<Double,Boolean,Double,Boolean>  interval : checkNotNull(intervals)) {
 			checkArgument(interval.first == null || interval.third == null ||
 					interval.first <= interval.third);
+			sortLeft.add(interval);
 		}
-		
-		List<Quadruple<Double,Boolean,Double,Boolean>>  sortLeft = new ArrayList<Quadruple<Double,Boolean,Double,Boolean>>(intervals);
-		Collections.sort(sortLeft, new Comparator<Quadruple<Double,Boolean,Double,Boolean>>() {
+		sortLeft.sort(new Comparator<Quadruple<Double,Boolean,Double,Boolean>>() {
 			public int compare(Quadruple<Double,Boolean,Double,Boolean> o1,
 					Quadruple<Double,Boolean,Double,Boolean> o2) {
-				if (checkNotNull(o1).first == null)
-					return -1;
-				if (checkNotNull(o2).first == null)
-					return 1;
-				if(o1.first.equals(o2.first) && (!o1.second) && o2.second)
-					return -1;
-				if(o1.first.equals(o2.first) && o1.second && !o2.second)
-					return 1;
-				if(o1.first > o2.first)
-					return 1;
-				if(o1.first < o2.first)
-					return -1;
-				if(o1.first == o2.first)
-					return 0;
-				assert false;
-				return 0;
+				int c = Double.compare(lo(o1), lo(o2));
+				if (c != 0)
+					return c;
+				return Boolean.compare(loOpen(o1), loOpen(o2));
 			}
 		});
-		
-		ImmutableList.Builder<Quadruple<Double,Boolean,Double,Boolean>> ansBuilder = ImmutableList.builder();
-		for (int i = 0; i < sortLeft.size(); i++) {
-			Double left = sortLeft.get(i).first;
-			Boolean leftOpen = sortLeft.get(i).second;
-			Double right = sortLeft.get(i).third;
-			Boolean rightOpen = sortLeft.get(i).fourth;
-			for (int j = i + 1; j < sortLeft.size(); j++){
-				//checks if sortLeft.get(j) overlaps (or touches) with sortLeft.get(i) at all
-				if (!(right == null ||
-					sortLeft.get(j).first == null || 
-					sortLeft.get(j).first < right ||
-					sortLeft.get(j).first.equals(right) && 
-						(!sortLeft.get(j).second || !rightOpen)))
-						break;
-				if (right != null) {
-					if (sortLeft.get(j).third == null)
-						right = null;
-					else if(right < sortLeft.get(j).third) {
-						right = sortLeft.get(j).third;
-						rightOpen = sortLeft.get(j).fourth;
-					}
-					else if(right.equals(sortLeft.get(j).third)) //if either is closed, right interval is closed
-						rightOpen = sortLeft.get(j).fourth && rightOpen;
-				}
-				i++;
-			}
-			Quadruple<Double,Boolean,Double,Boolean> newInterval = new Quadruple<Double,Boolean,Double,Boolean>(left, leftOpen, right, rightOpen);
-			ansBuilder.add(newInterval);
-		}
-		
-		ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> ans = ansBuilder.build();
-		for (int i = 1; i < ans.size(); i++) { 
-			Quadruple<Double,Boolean,Double,Boolean> curr = ans.get(i);
-			Quadruple<Double,Boolean,Double,Boolean> prev = ans.get(i - 1);
-			checkArgument(checkNotNull(prev.third) < checkNotNull(curr.first) ||
-						(prev.third.equals(curr.first) && prev.fourth && curr.second));
-		}
-		
-		return ans;
+
+		Builder builder = new Builder(2 * sortLeft.size());
+		for (Quadruple<Double,Boolean,Double,Boolean> interval : sortLeft)
+			builder.add(lo(interval), loOpen(interval),
+					interval.third == null ? Double.POSITIVE_INFINITY : interval.third,
+					interval.third == null || Boolean.TRUE.equals(interval.fourth));
+		this.bounds = builder.bounds();
+		this.open = builder.open();
+	}
+
+	// takes bounds already in normal form
+	RealPred(double[] bounds, boolean[] open) {
+		this.bounds = bounds;
+		this.open = open;
+	}
+
+	private static double lo(Quadruple<Double,Boolean,Double,Boolean> interval) {
+		// -0.0 is sorted as 0.0, as the Builder stores it
+		return interval.first == null ? Double.NEGATIVE_INFINITY : interval.first + 0.0;
+	}
+
+	private static boolean loOpen(Quadruple<Double,Boolean,Double,Boolean> interval) {
+		return interval.first == null || Boolean.TRUE.equals(interval.second);
+	}
+
+	/**
+	 * @return the intervals of the set, sorted; <code>null</code> extremes
+	 *         indicate unbounded intervals
+	 */
+	public ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> getIntervals() {
+		ImmutableList.Builder<Quadruple<Double,Boolean,Double,Boolean>> ans = ImmutableList.builder();
+		for (int i = 0; i < bounds.length; i += 2)
+			ans.add(new Quadruple<Double,Boolean,Double,Boolean>(
+					bounds[i] == Double.NEGATIVE_INFINITY ? null : bounds[i], open[i],
+					bounds[i + 1] == Double.POSITIVE_INFINITY ? null : bounds[i + 1], open[i + 1]));
+		return ans.build();
 	}
-	
-	
+
 	public static ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> invertIntervals(
 			ImmutableList<Quadruple<Double,Boolean,Double,Boolean>> intervals) {
-		
-		List<Quadruple<Double,Boolean,Double,Boolean>> ret = 
-			new ArrayList<Quadruple<Double,Boolean,Double,Boolean>>();
-		
-		intervals = sortIntervals(intervals);
-		if (intervals.isEmpty())
-			return ImmutableList.copyOf(StdRealPred.TRUE.intervals);
-		
-		Double end_point = null;
-		Boolean end_open = true;
-		for (int i = 0; i < intervals.size(); i++) {
-			Quadruple<Double,Boolean,Double,Boolean> interval = intervals.get(i);
-			
-			if (interval.first != null) {
-				ret.add(new Quadruple<Double,Boolean,Double,Boolean>(end_point, end_open, interval.first, !interval.second));
-				if (interval.third == null)
-					break;
+		return complement(new RealPred(intervals)).getIntervals();
+	}
+
+	public boolean isSatisfiedBy(double n) {
+		// the last interval starting at or before n
+		int lo = 0, hi = bounds.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (bounds[2 * mid] <= n)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		if (hi < 0)
+			return false;
+		int k = 2 * hi;
+		return (bounds[k] == Double.NEGATIVE_INFINITY || n > bounds[k] || !open[k])
+				&& (bounds[k + 1] == Double.POSITIVE_INFINITY || n < bounds[k + 1] || (n == bounds[k + 1] && !open[k + 1]));
+	}
+
+	// true if the lower bound (lo1, open1) comes before (lo2, open2)
+	private static boolean startsBefore(double lo1, boolean open1, double lo2, boolean open2) {
+		return lo1 < lo2 || (lo1 == lo2 && !open1 && open2);
+	}
+
+	// true if the upper bound (hi1, open1) comes before (hi2, open2)
+	private static boolean endsBefore(double hi1, boolean open1, double hi2, boolean open2) {
+		return hi1 < hi2 || (hi1 == hi2 && open1 && !open2);
+	}
+
+	/**
+	 * The union of two sets, merging their intervals in order
+	 */
+	static RealPred union(RealPred a, RealPred b) {
+		Builder builder = new Builder(a.bounds.length + b.bounds.length);
+		int i = 0, j = 0;
+		while (i < a.bounds.length || j < b.bounds.length) {
+			if (j == b.bounds.length || (i < a.bounds.length
+					&& !startsBefore(b.bounds[j], b.open[j], a.bounds[i], a.open[i]))) {
+				builder.add(a.bounds[i], a.open[i], a.bounds[i + 1], a.open[i + 1]);
+				i += 2;
+			} else {
+				builder.add(b.bounds[j], b.open[j], b.bounds[j + 1], b.open[j + 1]);
+				j += 2;
 			}
-			
-			if(interval.third != null) {
-				end_point = interval.third;
-				end_open = ! interval.fourth;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * The union of the sets of <code>preds</code>, merged pairwise as a
+	 * balanced tree
+	 */
+	static RealPred union(List<RealPred> preds, int from, int to) {
+		if (to - from == 0)
+			return StdRealPred.FALSE;
+		if (to - from == 1)
+			return preds.get(from);
+		int mid = (from + to) >>> 1;
+		return union(union(preds, from, mid), union(preds, mid, to));
+	}
+
+	/**
+	 * The intersection of two sets
+	 */
+	static RealPred intersect(RealPred a, RealPred b) {
+		Builder builder = new Builder(a.bounds.length + b.bounds.length);
+		for (int i = 0, j = 0; i < a.bounds.length && j < b.bounds.length; ) {
+			boolean fromA = startsBefore(b.bounds[j], b.open[j], a.bounds[i], a.open[i]);
+			double lo = fromA ? a.bounds[i] : b.bounds[j];
+			boolean loOpen = fromA ? a.open[i] : b.open[j];
+			boolean aEnds = endsBefore(a.bounds[i + 1], a.open[i + 1], b.bounds[j + 1], b.open[j + 1]);
+			double hi = aEnds ? a.bounds[i + 1] : b.bounds[j + 1];
+			boolean hiOpen = aEnds ? a.open[i + 1] : b.open[j + 1];
+			builder.add(lo, loOpen, hi, hiOpen);
+			if (aEnds)
+				i += 2;
+			else
+				j += 2;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * The complement of a set
+	 */
+	static RealPred complement(RealPred a) {
+		Builder builder = new Builder(a.bounds.length + 2);
+		double next = Double.NEGATIVE_INFINITY;
+		boolean nextOpen = true;
+		for (int i = 0; i < a.bounds.length; i += 2) {
+			if (a.bounds[i] != Double.NEGATIVE_INFINITY)
+				builder.add(next, nextOpen, a.bounds[i], !a.open[i]);
+			if (a.bounds[i + 1] == Double.POSITIVE_INFINITY)
+				return builder.build();
+			next = a.bounds[i + 1];
+			nextOpen = !a.open[i + 1];
+		}
+		builder.add(next, nextOpen, Double.POSITIVE_INFINITY, true);
+		return builder.build();
+	}
+
+	/**
+	 * The satisfiable Boolean combinations of <code>preds</code>, in the format
+	 * of {@link theory.BooleanAlgebra#GetMinterms}. The reals are split into
+	 * the bounds of the intervals and the open gaps between them, every piece
+	 * is labelled with the predicates containing it, and pieces with the same
+	 * label are joined.
+	 */
+	static Collection<Pair<RealPred, ArrayList<Integer>>> minterms(List<RealPred> preds) {
+		int n = preds.size();
+		int count = 0;
+		for (RealPred p : preds)
+			count += p.bounds.length;
+
+		// piece 2j+1 is the point points[j], piece 2j the gap before it
+		double[] points = new double[count];
+		int m = 0;
+		for (RealPred p : preds)
+			for (double bound : p.bounds)
+				if (bound != Double.NEGATIVE_INFINITY && bound != Double.POSITIVE_INFINITY)
+					points[m++] = bound;
+		Arrays.sort(points, 0, m);
+		int unique = 0;
+		for (int i = 0; i < m; i++)
+			if (unique == 0 || points[unique - 1] != points[i])
+				points[unique++] = points[i];
+		m = unique;
+
+		int pieces = 2 * m + 1;
+		boolean[] member = new boolean[pieces * n];
+		for (int k = 0; k < n; k++) {
+			RealPred p = preds.get(k);
+			for (int i = 0; i < p.bounds.length; i += 2) {
+				int first = p.bounds[i] == Double.NEGATIVE_INFINITY ? 0
+						: 2 * Arrays.binarySearch(points, 0, m, p.bounds[i]) + (p.open[i] ? 2 : 1);
+				int last = p.bounds[i + 1] == Double.POSITIVE_INFINITY ? pieces - 1
+						: 2 * Arrays.binarySearch(points, 0, m, p.bounds[i + 1]) + (p.open[i + 1] ? 0 : 1);
+				for (int s = first; s <= last; s++)
+					member[s * n + k] = true;
 			}
-			
-			if(i == intervals.size() - 1 && interval.third != null) {
-				ret.add(new Quadruple<Double,Boolean,Double,Boolean>(end_point, end_open, null, true));
+		}
+
+		Map<ArrayList<Integer>, Builder> minterms = new LinkedHashMap<ArrayList<Integer>, Builder>();
+		for (int s = 0; s < pieces; s++) {
+			ArrayList<Integer> setBits = new ArrayList<Integer>(n);
+			for (int k = 0; k < n; k++)
+				setBits.add(member[s * n + k] ? 1 : 0);
+			Builder builder = minterms.get(setBits);
+			if (builder == null) {
+				builder = new Builder(4);
+				minterms.put(setBits, builder);
 			}
+			int j = s / 2;
+			if (s % 2 == 1)
+				builder.add(points[j], false, points[j], false);
+			else
+				builder.add(j == 0 ? Double.NEGATIVE_INFINITY : points[j - 1], true,
+						j == m ? Double.POSITIVE_INFINITY : points[j], true);
 		}
-		return ImmutableList.copyOf(ret);
+
+		List<Pair<RealPred, ArrayList<Integer>>> ans = new ArrayList<Pair<RealPred, ArrayList<Integer>>>(minterms.size());
+		for (Map.Entry<ArrayList<Integer>, Builder> minterm : minterms.entrySet())
+			ans.add(new Pair<RealPred, ArrayList<Integer>>(minterm.getValue().build(), minterm.getKey()));
+		return ans;
 	}
-	
-	public boolean isSatisfiedBy(double n) {
-		for (Quadruple<Double,Boolean,Double,Boolean> interval : intervals) {
-			if (inInterval(interval, n)) 
-				return true;
+
+	// collects intervals given in order of lower bound into normal form,
+	// dropping the empty ones
+	private static class Builder {
+		private double[] bounds;
+		private boolean[] open;
+		private int size;
+
+		Builder(int capacity) {
+			bounds = new double[Math.max(capacity, 2)];
+			open = new boolean[bounds.length];
+		}
+
+		void add(double lo, boolean loOpen, double hi, boolean hiOpen) {
+			// -0.0 + 0.0 is 0.0, so that every bound has a single representation
+			// for equals and the binary searches of minterms
+			lo += 0.0;
+			hi += 0.0;
+			loOpen |= lo == Double.NEGATIVE_INFINITY;
+			hiOpen |= hi == Double.POSITIVE_INFINITY;
+			if (lo > hi || (lo == hi && (loOpen || hiOpen)))
+				return;
+			if (size > 0) {
+				double last = bounds[size - 1];
+				boolean lastOpen = open[size - 1];
+				if (lo < last || (lo == last && (!loOpen || !lastOpen))) {
+					if (endsBefore(last, lastOpen, hi, hiOpen)) {
+						bounds[size - 1] = hi;
+						open[size - 1] = hiOpen;
+					}
+					return;
+				}
+			}
+			if (size == bounds.length) {
+				bounds = Arrays.copyOf(bounds, 2 * size);
+				open = Arrays.copyOf(open, 2 * size);
+			}
+			bounds[size] = lo;
+			open[size++] = loOpen;
+			bounds[size] = hi;
+			open[size++] = hiOpen;
+		}
+
+		double[] bounds() {
+			return size == bounds.length ? bounds : Arrays.copyOf(bounds, size);
+		}
+
+		boolean[] open() {
+			return size == open.length ? open : Arrays.copyOf(open, size);
+		}
+
+		RealPred build() {
+			return new RealPred(bounds(), open());
 		}
-		return false;
 	}
-	
-	private static boolean inInterval(Quadruple<Double,Boolean,Double,Boolean> interval, double n) {
-		if (interval.first == null && interval.third == null)
-			return true;
-		if( (interval.first != null && interval.first.equals(n) && !interval.second) || 
-				(interval.third != null && interval.third.equals(n) && !interval.fourth)) //
-			return true;
-		if (interval.first == null)
-			return n < interval.third;
-		if (interval.third == null)
-			return n > interval.first;
-		return interval.first < n && n < interval.third;
-	}
-	
+
 	@Override
 	public String toString() {
-		if (intervals.isEmpty())
+		if (bounds.length == 0)
 			return "empty";
-		List<String> retArr = new ArrayList<String>();
-		for (Quadruple<Double,Boolean,Double,Boolean> interval : intervals) { 
-			String temp = "";
-			if(interval.second || interval.first == null)
-				temp += "(";
-			else
-				temp += "[";
-			if (interval.first == null)
-				temp += "-inf";
-			else 
-				temp += interval.first.toString();
-			temp += ",";
-			if (interval.third == null) 
-				temp += "inf";
-			else
-				temp += interval.third.toString();
-			if(interval.fourth || interval.third == null)
-				temp += ")";
-			else
-				temp += "]";
-			retArr.add(temp);
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < bounds.length; i += 2) {
+			if (i > 0)
+				ret.append("U");
+			ret.append(open[i] ? "(" : "[");
+			ret.append(bounds[i] == Double.NEGATIVE_INFINITY ? "-inf" : Double.toString(bounds[i]));
+			ret.append(",");
+			ret.append(bounds[i + 1] == Double.POSITIVE_INFINITY ? "inf" : Double.toString(bounds[i + 1]));
+			ret.append(open[i + 1] ? ")" : "]");
 		}
-		String ret = retArr.get(0);
-		for(int i = 1; i < retArr.size(); i++)
-			ret += "U" + retArr.get(i);
-		return ret;
+		return ret.toString();
 	}
-	
+
 	@Override
-	public boolean equals(Object obj) { 
-		if (obj instanceof RealPred) 
-			return Objects.equals(intervals, ((RealPred)obj).intervals);
+	public boolean equals(Object obj) {
+		if (obj instanceof RealPred)
+			return Arrays.equals(bounds, ((RealPred)obj).bounds) && Arrays.equals(open, ((RealPred)obj).open);
 		return false;
 	}
-	
+
 	@Override
 	public int hashCode() {
-		return Objects.hash(RealPred.class, intervals);
+		return 31 * Arrays.hashCode(bounds) + Arrays.hashCode(open);
 	}
 
 }
@@ -132,6 +132,12 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 		return !nonEquivalent;
 	}
 
+	@Override
+	public boolean hasCanonicalPredicates() {
+		// the intervals of a CharPred are sorted and merged on construction
+		return true;
+	}
+
 	@Override
 	public boolean IsSatisfiable(CharPred u) {
 		return !checkNotNull(u).intervals.isEmpty();
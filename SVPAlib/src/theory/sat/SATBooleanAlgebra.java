@@ -1,7 +1,11 @@
 package theory.sat;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -14,38 +18,103 @@ import org.sat4j.specs.TimeoutException;
 import theory.BooleanAlgebra;
 import utilities.Pair;
 
+/**
+ * Boolean algebra of propositional formulas over the variables {1, ...,
+ * universe}. Every And and Or gets a Tseitin variable defined in a single
+ * incremental sat4j solver, and satisfiability checks are solves under
+ * assumptions.
+ *
+ * Definitions can be scoped in sessions: the definitions made after
+ * {@link #pushSession()} are guarded by an activation literal that is
+ * assumed by every check, and {@link #popSession()} retracts them by
+ * asserting its negation. The formulas built inside a popped session must
+ * not be used anymore. Once retracted clauses outnumber the live ones, the
+ * solver is rebuilt with the live definitions only and the variables of the
+ * retracted ones are reused. The hash consing caches keep the most recently
+ * used definitions only.
+ */
 public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
+	public static final int DEFAULT_CACHE_CAPACITY = 1 << 16;
+	// the solver is not rebuilt for fewer retracted clauses
+	private static final int MIN_DEAD_CLAUSES = 1 << 14;
+
 	private ISolver solver;
 	private int maxid; // next fresh variable starting with universe + 2. {1,
 						// ..., universe} correspond to members of the
 						// universe, and universe+1 is an always-true variable.
 	private int universe; // size of the universe
 
-	// Hash consing
-	private HashMap<Set<Integer>, Integer> andCache;
-	private HashMap<Set<Integer>, Integer> orCache;
+	// Hash consing, least recently used first
+	private LruCache<Set<Integer>, Integer> andCache;
+	private LruCache<Set<Integer>, Integer> orCache;
+	// the definitions of the live variables, never evicted
 	private HashMap<Integer, Pair<Boolean, TreeSet<Integer>>> reverseCache;
 
-	public SATBooleanAlgebra(ISolver s, int universeSize) {
+	// the open sessions, the base one first
+	private ArrayList<Session> sessions;
+	private int liveClauses;
+	private int deadClauses;
+
+	public SATBooleanAlgebra(ISolver s, int universeSize, int cacheCapacity) {
 		if (universeSize < 0) {
 			throw new IllegalArgumentException("Universe size must be >= 0");
 		}
+		if (cacheCapacity < 0) {
+			throw new IllegalArgumentException("Cache capacity must be >= 0");
+		}
 		solver = s;
 		universe = universeSize;
-		andCache = new HashMap<>();
-		orCache = new HashMap<>();
+		andCache = new LruCache<>(cacheCapacity);
+		orCache = new LruCache<>(cacheCapacity);
 		reverseCache = new HashMap<>();
+		sessions = new ArrayList<>();
+		sessions.add(new Session(0));
 		maxid = universeSize + 2;
-		VecInt trueClause = new VecInt();
-		trueClause.push(universe + 1);
 		reverseCache.put(universe + 1, new Pair<>(true, new TreeSet<Integer>()));
-		unsafeAddClause(trueClause);
+		addTrueClause();
+	}
+
+	public SATBooleanAlgebra(ISolver s, int universeSize) {
+		this(s, universeSize, DEFAULT_CACHE_CAPACITY);
 	}
 
 	public SATBooleanAlgebra(int universeSize) {
 		this(SolverFactory.newDefault(), universeSize);
 	}
 
+	// the definitions made between a push and its pop
+	private static class Session {
+		final int activation; // 0 for the base session
+		final ArrayList<Integer> names = new ArrayList<>();
+		int clauses;
+
+		Session(int activation) {
+			this.activation = activation;
+		}
+	}
+
+	private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		LruCache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private void addTrueClause() {
+		solver.newVar(maxid - 1);
+		VecInt trueClause = new VecInt();
+		trueClause.push(universe + 1);
+		unsafeAddClause(trueClause);
+	}
+
 	private int fresh() {
 		int fresh = maxid;
 		maxid++;
@@ -53,6 +122,131 @@ public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
 		return fresh;
 	}
 
+	/**
+	 * Opens a session: the formulas built until the matching
+	 * {@link #popSession()} are retracted by it
+	 */
+	public void pushSession() {
+		sessions.add(new Session(fresh()));
+	}
+
+	/**
+	 * Closes the innermost session, retracting the definitions of the
+	 * formulas built in it
+	 */
+	public void popSession() {
+		if (sessions.size() == 1) {
+			throw new IllegalStateException("No session to pop");
+		}
+		Session session = sessions.remove(sessions.size() - 1);
+		VecInt retract = new VecInt();
+		retract.push(-session.activation);
+		unsafeAddClause(retract);
+		for (Integer name : session.names) {
+			Pair<Boolean, TreeSet<Integer>> definition = reverseCache.remove(name);
+			(definition.getFirst() ? andCache : orCache).remove(definition.getSecond(), name);
+		}
+		liveClauses -= session.clauses;
+		deadClauses += session.clauses + 1;
+		if (deadClauses >= MIN_DEAD_CLAUSES && deadClauses > liveClauses) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * @return the number of open sessions
+	 */
+	public int getSessionDepth() {
+		return sessions.size() - 1;
+	}
+
+	/**
+	 * Empties the solver and adds back the definitions of the open sessions
+	 * only. Variables of retracted definitions are reused afterwards.
+	 */
+	public void rebuild() {
+		solver.reset();
+		maxid = universe + 2;
+		for (Session session : sessions) {
+			maxid = Math.max(maxid, session.activation + 1);
+			for (Integer name : session.names)
+				maxid = Math.max(maxid, name + 1);
+		}
+		addTrueClause();
+		for (Session session : sessions) {
+			for (Integer name : session.names) {
+				Pair<Boolean, TreeSet<Integer>> definition = reverseCache.get(name);
+				define(name, definition.getFirst(), definition.getSecond(), session.activation);
+			}
+		}
+		deadClauses = 0;
+	}
+
+	/**
+	 * @return the number of variables of the solver
+	 */
+	public int getNumVariables() {
+		return maxid - 1;
+	}
+
+	/**
+	 * @return the number of live And and Or definitions
+	 */
+	public int getNumDefinitions() {
+		return reverseCache.size() - 1;
+	}
+
+	// adds the clauses of name <=> And/Or literals, guarded by activation if
+	// it is not 0, and returns their number
+	private int define(int name, boolean isAnd, Set<Integer> literals, int activation) {
+		// an Or is the negation of the And of the negated literals
+		int sign = isAnd ? 1 : -1;
+		VecInt cubeImpliesCubeName = new VecInt();
+		cubeImpliesCubeName.push(sign * name);
+		for (Integer literal : literals) {
+			// cubeName => literal
+			VecInt cubeNameImpliesLit = new VecInt();
+			cubeNameImpliesLit.push(-sign * name);
+			cubeNameImpliesLit.push(sign * literal);
+			guard(cubeNameImpliesLit, activation);
+			unsafeAddClause(cubeNameImpliesLit);
+
+			cubeImpliesCubeName.push(-sign * literal);
+		}
+		// cube => cubeName
+		guard(cubeImpliesCubeName, activation);
+		unsafeAddClause(cubeImpliesCubeName);
+		return literals.size() + 1;
+	}
+
+	private static void guard(VecInt clause, int activation) {
+		if (activation != 0)
+			clause.push(-activation);
+	}
+
+	// records a new definition in the innermost session
+	private int mkDefinition(boolean isAnd, TreeSet<Integer> literals) {
+		Session session = sessions.get(sessions.size() - 1);
+		int name = fresh();
+		int clauses = define(name, isAnd, literals, session.activation);
+		session.names.add(name);
+		session.clauses += clauses;
+		liveClauses += clauses;
+		(isAnd ? andCache : orCache).put(literals, name);
+		reverseCache.put(name, new Pair<>(isAnd, literals));
+		return name;
+	}
+
+	// the activation literals of the open sessions followed by literals
+	private VecInt assuming(int... literals) {
+		VecInt assumptions = new VecInt(sessions.size() + literals.length);
+		for (int i = 1; i < sessions.size(); i++)
+			assumptions.push(sessions.get(i).activation);
+		for (int literal : literals)
+			assumptions.push(literal);
+		return assumptions;
+	}
+
 	private Set<Integer> promoteAnd(Integer p) {
 		TreeSet<Integer> singleton = new TreeSet<>();
 		singleton.add(p);
@@ -143,28 +337,12 @@ public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
 			return True();
 		} else if (cube.size() == 1) {
 			return cube.iterator().next();
-		} else if (andCache.containsKey(cube)) {
-			return andCache.get(cube);
+		}
+		Integer cached = andCache.get(cube);
+		if (cached != null) {
+			return cached;
 		} else {
-			int cubeName = fresh();
-			// System.out.println(cubeName + " = And " + cube.toString());
-			VecInt cubeImpliesCubeName = new VecInt();
-
-			cubeImpliesCubeName.push(cubeName);
-			for (Integer literal : cube) {
-				// cubeName => literal
-				VecInt cubeNameImpliesLit = new VecInt();
-				cubeNameImpliesLit.push(-cubeName);
-				cubeNameImpliesLit.push(literal);
-				unsafeAddClause(cubeNameImpliesLit);
-
-				cubeImpliesCubeName.push(-literal);
-			}
-			// cube => cubeName
-			unsafeAddClause(cubeImpliesCubeName);
-			andCache.put(cube, cubeName);
-			reverseCache.put(cubeName, new Pair<>(true, cube));
-			return cubeName;
+			return mkDefinition(true, cube);
 		}
 	}
 
@@ -191,27 +369,12 @@ public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
 			return False();
 		} else if (clause.size() == 1) {
 			return clause.iterator().next();
-		} else if (orCache.containsKey(clause)) {
-			return orCache.get(clause);
+		}
+		Integer cached = orCache.get(clause);
+		if (cached != null) {
+			return cached;
 		} else {
-			int clauseName = fresh();
-			// System.out.println(clauseName + " = Or " + clause.toString());
-			// clauseName => clause
-			VecInt clauseNameImpliesClause = new VecInt();
-			clauseNameImpliesClause.push(-clauseName);
-			for (Integer literal : clause) {
-				// literal => cubeName
-				VecInt litImpliesClauseName = new VecInt();
-
-				clauseNameImpliesClause.push(literal);
-				litImpliesClauseName.push(clauseName);
-				litImpliesClauseName.push(-literal);
-				unsafeAddClause(litImpliesClauseName);
-			}
-			unsafeAddClause(clauseNameImpliesClause);
-			orCache.put(clause, clauseName);
-			reverseCache.put(clauseName, new Pair<>(false, clause));
-			return clauseName;
+			return mkDefinition(false, clause);
 		}
 	}
 
@@ -240,16 +403,38 @@ public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
 
 	@Override
 	public boolean AreEquivalent(Integer p, Integer q) {
-		VecInt equiv = new VecInt();
-		equiv.push(-MkOr(MkAnd(p, q), MkAnd(-p, -q)));
-		return !unsafeIsSatisfiable(equiv);
+		// two solves under assumptions define no new variable
+		if (p.equals(q)) {
+			return true;
+		}
+		return !unsafeIsSatisfiable(assuming(p, -q)) && !unsafeIsSatisfiable(assuming(-p, q));
 	}
 
 	@Override
 	public boolean IsSatisfiable(Integer p) {
-		VecInt pclause = new VecInt();
-		pclause.push(p);
-		return unsafeIsSatisfiable(pclause);
+		return unsafeIsSatisfiable(assuming(p));
+	}
+
+	/**
+	 * Checks the satisfiability of every formula of <code>ps</code> against
+	 * the same solver state. The model found for a formula also decides the
+	 * formulas it satisfies, which are not solved again.
+	 *
+	 * @return the i-th element is true if the i-th formula is satisfiable
+	 */
+	public boolean[] AreSatisfiable(List<Integer> ps) {
+		boolean[] satisfiable = new boolean[ps.size()];
+		for (int i = 0; i < ps.size(); i++) {
+			if (satisfiable[i] || !unsafeIsSatisfiable(assuming(ps.get(i)))) {
+				continue;
+			}
+			satisfiable[i] = true;
+			for (int j = i + 1; j < ps.size(); j++) {
+				int literal = ps.get(j);
+				satisfiable[j] |= solver.model(Math.abs(literal)) == literal > 0;
+			}
+		}
+		return satisfiable;
 	}
 
 	@Override
@@ -266,6 +451,9 @@ public class SATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
 			}
 		}
 		assumption.push(-p);
+		for (int i = 1; i < sessions.size(); i++) {
+			assumption.push(sessions.get(i).activation);
+		}
 		return !unsafeIsSatisfiable(assumption);
 	}
 
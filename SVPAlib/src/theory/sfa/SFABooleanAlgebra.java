@@ -1,9 +1,15 @@
 package theory.sfa;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -13,9 +19,19 @@ import automata.sfa.SFAMove;
 import theory.BooleanAlgebra;
 import utilities.Pair;
 
+/**
+ * The Boolean algebra of the languages of SFAs over the algebra <code>ba</code>,
+ * to build automata whose guards are themselves automata.
+ *
+ * Satisfiability is decided by reachability of a final state and remembered
+ * for each SFA object. Conjunctions of several SFAs are computed as a single
+ * product, and disjunctions of several SFAs as a balanced tree of unions.
+ */
 public class SFABooleanAlgebra <P,D> extends BooleanAlgebra <SFA <P,D>, List <D>> {
 
 	private BooleanAlgebra <P,D> ba;
+	// whether an SFA accepts some string, by identity, as SFA has no equals
+	private final Map<SFA<P, D>, Boolean> satisfiable = new WeakHashMap<SFA<P, D>, Boolean>();
 
 	public SFABooleanAlgebra(BooleanAlgebra <P,D> algebra) {
 		ba = algebra;
@@ -49,16 +65,110 @@ public class SFABooleanAlgebra <P,D> extends BooleanAlgebra <SFA <P,D>, List <D>
 
 	@Override
 	public boolean IsSatisfiable(SFA<P, D> arg0) throws TimeoutException {
-		return !SFA.areEquivalent(arg0, SFA.getEmptySFA(ba), ba);
+		Boolean result = satisfiable.get(arg0);
+		if (result == null) {
+			result = reachesFinalState(arg0);
+			satisfiable.put(arg0, result);
+		}
+		return result;
+	}
+
+	// Looks for a final state reachable through satisfiable moves
+	private boolean reachesFinalState(SFA<P, D> aut) throws TimeoutException {
+		if (aut.isEmpty())
+			return false;
+		HashSet<Integer> reached = new HashSet<Integer>();
+		LinkedList<Integer> toVisit = new LinkedList<Integer>();
+		reached.add(aut.getInitialState());
+		toVisit.add(aut.getInitialState());
+		while (!toVisit.isEmpty()) {
+			Integer state = toVisit.removeFirst();
+			if (aut.isFinalState(state))
+				return true;
+			for (SFAMove<P, D> move : aut.getTransitionsFrom(state))
+				if (!reached.contains(move.to) && move.isSatisfiable(ba)) {
+					reached.add(move.to);
+					toVisit.add(move.to);
+				}
+		}
+		return false;
 	}
 
 	@Override
 	public SFA<P, D> MkAnd(Collection<SFA<P, D>> pset) throws TimeoutException {
-		SFA<P,D> result = SFA.getFullSFA(ba);
-		for (SFA<P,D> aut : pset) {
-			result = result.intersectionWith(aut, ba);
+		List<SFA<P, D>> auts = new ArrayList<SFA<P, D>>();
+		for (SFA<P, D> aut : pset) {
+			if (!IsSatisfiable(aut))
+				return False();
+			auts.add(aut.isEpsilonFree() ? aut : aut.removeEpsilonMoves(ba));
+		}
+		if (auts.isEmpty())
+			return True();
+		if (auts.size() == 1)
+			return auts.get(0);
+		// the smaller automata first, so that unsatisfiable combinations of
+		// guards are found early
+		Collections.sort(auts, new Comparator<SFA<P, D>>() {
+			public int compare(SFA<P, D> a, SFA<P, D> b) {
+				return Integer.compare(a.stateCount(), b.stateCount());
+			}
+		});
+		return product(auts);
+	}
+
+	// The product of the epsilon free SFAs auts, exploring the reachable
+	// tuples of states only
+	private SFA<P, D> product(List<SFA<P, D>> auts) throws TimeoutException {
+		Collection<SFAMove<P, D>> transitions = new ArrayList<SFAMove<P, D>>();
+		Collection<Integer> finalStates = new ArrayList<Integer>();
+		HashMap<List<Integer>, Integer> reached = new HashMap<List<Integer>, Integer>();
+		LinkedList<List<Integer>> toVisit = new LinkedList<List<Integer>>();
+
+		List<Integer> initialState = new ArrayList<Integer>();
+		for (SFA<P, D> aut : auts)
+			initialState.add(aut.getInitialState());
+		reached.put(initialState, 0);
+		toVisit.add(initialState);
+
+		Integer[] targets = new Integer[auts.size()];
+		while (!toVisit.isEmpty()) {
+			List<Integer> state = toVisit.removeFirst();
+			int stateId = reached.get(state);
+			boolean isFinal = true;
+			for (int i = 0; i < auts.size() && isFinal; i++)
+				isFinal = auts.get(i).isFinalState(state.get(i));
+			if (isFinal)
+				finalStates.add(stateId);
+			addProductMoves(auts, state, stateId, 0, ba.True(), targets, reached, toVisit, transitions);
+		}
+		return SFA.MkSFA(transitions, 0, finalStates, ba);
+	}
+
+	// Adds the moves from stateId whose guard is the conjunction of guard and
+	// of the guards of moves of the automata from index i on
+	private void addProductMoves(List<SFA<P, D>> auts, List<Integer> state, int stateId, int i, P guard,
+			Integer[] targets, HashMap<List<Integer>, Integer> reached, LinkedList<List<Integer>> toVisit,
+			Collection<SFAMove<P, D>> transitions) throws TimeoutException {
+		if (i == auts.size()) {
+			List<Integer> next = new ArrayList<Integer>(targets.length);
+			Collections.addAll(next, targets);
+			Integer nextId = reached.get(next);
+			if (nextId == null) {
+				nextId = reached.size();
+				reached.put(next, nextId);
+				toVisit.add(next);
+			}
+			transitions.add(new SFAInputMove<P, D>(stateId, nextId, guard));
+			return;
+		}
+		for (SFAInputMove<P, D> move : auts.get(i).getInputMovesFrom(state.get(i))) {
+			P conj = i == 0 ? move.guard : ba.MkAnd(guard, move.guard);
+			// no tuple of moves extends an unsatisfiable prefix
+			if (!ba.IsSatisfiable(conj))
+				continue;
+			targets[i] = move.to;
+			addProductMoves(auts, state, stateId, i + 1, conj, targets, reached, toVisit, transitions);
 		}
-		return result;
 	}
 
 	@Override
@@ -119,11 +229,26 @@ public class SFABooleanAlgebra <P,D> extends BooleanAlgebra <SFA <P,D>, List <D>
 
 	@Override
 	public SFA<P, D> MkOr(Collection<SFA<P, D>> pset) throws TimeoutException {
-		SFA <P,D> result = SFA.getEmptySFA(ba);
-		for (SFA <P,D> aut : pset) {
-			result = result.unionWith(aut, ba);
+		List<SFA<P, D>> auts = new ArrayList<SFA<P, D>>();
+		for (SFA<P, D> aut : pset)
+			if (IsSatisfiable(aut))
+				auts.add(aut);
+		if (auts.isEmpty())
+			return False();
+		// unions of pairs, then of pairs of unions, so that every automaton is
+		// copied a logarithmic number of times
+		while (auts.size() > 1) {
+			List<SFA<P, D>> next = new ArrayList<SFA<P, D>>((auts.size() + 1) / 2);
+			for (int i = 0; i + 1 < auts.size(); i += 2) {
+				SFA<P, D> union = auts.get(i).unionWith(auts.get(i + 1), ba);
+				satisfiable.put(union, true);
+				next.add(union);
+			}
+			if (auts.size() % 2 == 1)
+				next.add(auts.get(auts.size() - 1));
+			auts = next;
 		}
-		return result;
+		return auts.get(0);
 	}
 
 }
\ No newline at end of file
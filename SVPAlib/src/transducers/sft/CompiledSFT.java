@@ -0,0 +1,323 @@
+package transducers.sft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+
+/**
+ * An SFT compiled for repeated evaluation. Epsilon moves are removed once,
+ * states are renumbered densely and the moves of every state are stored in
+ * arrays, so evaluating an input never rebuilds the transducer.
+ *
+ * Deterministic transducers are evaluated in a single iterative pass that
+ * appends to one output buffer. Nondeterministic transducers are evaluated by
+ * a breadth-first simulation that keeps, for every reachable state, only the
+ * first run reaching it in the order of the moves; outputs of the runs are
+ * shared through parent pointers. Which of several outputs a nondeterministic
+ * transducer returns depends on that order. Both modes take time linear in the
+ * length of the input.
+ *
+ * @param <P>
+ *			The type of predicates forming the Boolean algebra
+ * @param <F>
+ *			The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *			The domain of the Boolean algebra
+ */
+public class CompiledSFT<P, F, S> {
+
+	/**
+	 * Receives the output symbols of a streaming evaluation
+	 */
+	public interface OutputSink<S> {
+		void accept(S symbol);
+	}
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final SFT<P, F, S> sft;
+	private final boolean isDeterministic;
+
+	private final int initialState;
+	// moves of state q are guards[q][i] / outputFunctions[q][i] -> targets[q][i]
+	private final Object[][] guards;
+	private final Object[][][] outputFunctions;
+	private final int[][] targets;
+	// null if q is not final, the first of its tails otherwise
+	private final List<List<S>> finalTails;
+
+	/**
+	 * Compiles <code>sftWithEps</code>, removing its epsilon moves
+	 *
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public CompiledSFT(SFT<P, F, S> sftWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this.ba = ba;
+		this.sft = sftWithEps.removeEpsilonMoves(ba);
+		this.isDeterministic = sft.isDeterministic();
+
+		Map<Integer, Integer> stateIds = new HashMap<Integer, Integer>();
+		for (Integer state : sft.getStates())
+			stateIds.put(state, stateIds.size());
+
+		int stateCount = stateIds.size();
+		guards = new Object[stateCount][];
+		outputFunctions = new Object[stateCount][][];
+		targets = new int[stateCount][];
+		finalTails = new ArrayList<List<S>>(Collections.<List<S>>nCopies(stateCount, null));
+
+		for (Integer state : sft.getStates()) {
+			int id = stateIds.get(state);
+			List<SFTInputMove<P, F, S>> moves = new ArrayList<SFTInputMove<P, F, S>>(sft.getInputMovesFrom(state));
+
+			guards[id] = new Object[moves.size()];
+			outputFunctions[id] = new Object[moves.size()][];
+			targets[id] = new int[moves.size()];
+
+			for (int i = 0; i < moves.size(); i++) {
+				SFTInputMove<P, F, S> move = moves.get(i);
+				guards[id][i] = move.guard;
+				outputFunctions[id][i] = move.outputFunctions.toArray();
+				targets[id][i] = stateIds.get(move.to);
+			}
+
+			if (sft.isFinalState(state)) {
+				Set<List<S>> tails = sft.getFinalStatesAndTails().get(state);
+				finalTails.set(id, tails.isEmpty() ? Collections.<S>emptyList() : tails.iterator().next());
+			}
+		}
+
+		initialState = stateIds.get(sft.getInitialState());
+	}
+
+	/**
+	 * @return the epsilon-free SFT this object evaluates
+	 */
+	public SFT<P, F, S> getSFT() {
+		return sft;
+	}
+
+	/**
+	 * @return true if the compiled SFT is deterministic and is evaluated in
+	 *         a single pass
+	 */
+	public boolean isDeterministic() {
+		return isDeterministic;
+	}
+
+	/**
+	 * Computes one of the outputs produced when reading input, the same
+	 * returned by {@link SFT#outputOn}
+	 *
+	 * @return one output sequence, null if undefined
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(List<S> input) throws TimeoutException {
+		List<S> output = new ArrayList<S>();
+		return outputOn(input, output) ? output : null;
+	}
+
+	/**
+	 * Clears <code>output</code> and fills it with the output produced when
+	 * reading <code>input</code>, so the same buffer can be reused across
+	 * calls.
+	 *
+	 * @return false if the output is undefined, in which case the content of
+	 *         <code>output</code> is unspecified
+	 * @throws TimeoutException
+	 */
+	public boolean outputOn(List<S> input, List<S> output) throws TimeoutException {
+		output.clear();
+
+		Evaluation evaluation = new Evaluation(output::add, false);
+		for (S symbol : input)
+			if (!evaluation.step(symbol))
+				return false;
+
+		return evaluation.finish();
+	}
+
+	/**
+	 * Starts a streaming evaluation that emits output symbols to
+	 * <code>sink</code> as soon as they are known.
+	 */
+	public Evaluation stream(OutputSink<S> sink) {
+		return new Evaluation(sink, true);
+	}
+
+	// ------------------------------------------------------
+	// Evaluation
+	// ------------------------------------------------------
+
+	/**
+	 * A run of the nondeterministic simulation: its current state and the
+	 * last output segment it produced
+	 */
+	private static class Run<S> {
+		final int state;
+		final OutputSegment<S> output;
+
+		Run(int state, OutputSegment<S> output) {
+			this.state = state;
+			this.output = output;
+		}
+	}
+
+	/**
+	 * Output symbols produced by one move, linked to the output of the
+	 * previous moves of the run
+	 */
+	private static class OutputSegment<S> {
+		final OutputSegment<S> parent;
+		final Object[] symbols;
+
+		OutputSegment(OutputSegment<S> parent, Object[] symbols) {
+			this.parent = parent;
+			this.symbols = symbols;
+		}
+	}
+
+	/**
+	 * State of an evaluation consuming the input one symbol at a time.
+	 * Output of deterministic transducers is emitted at every step; output
+	 * of nondeterministic ones is emitted once all surviving runs share it,
+	 * which for streaming evaluations happens as soon as a single run is
+	 * left.
+	 */
+	public class Evaluation {
+		private final OutputSink<S> sink;
+		private final boolean eager;
+
+		private int state;
+		private List<Run<S>> runs;
+		private OutputSegment<S> emitted;
+		private boolean defined;
+
+		private Evaluation(OutputSink<S> sink, boolean eager) {
+			this.sink = sink;
+			this.eager = eager;
+			this.state = initialState;
+			this.defined = true;
+
+			if (!isDeterministic) {
+				runs = new ArrayList<Run<S>>();
+				runs.add(new Run<S>(initialState, null));
+			}
+		}
+
+		/**
+		 * Reads <code>symbol</code>.
+		 * @return false if no run can read it; the output is then undefined
+		 * @throws TimeoutException
+		 */
+		@SuppressWarnings("unchecked")
+		public boolean step(S symbol) throws TimeoutException {
+			if (!defined)
+				return false;
+
+			if (isDeterministic) {
+				Object[] stateGuards = guards[state];
+
+				for (int i = 0; i < stateGuards.length; i++) {
+					if (ba.HasModel((P) stateGuards[i], symbol)) {
+						for (Object outputFunc : outputFunctions[state][i])
+							sink.accept(ba.MkSubstFuncConst((F) outputFunc, symbol));
+						state = targets[state][i];
+						return true;
+					}
+				}
+
+				defined = false;
+				return false;
+			}
+
+			// Runs are kept in the order of their moves, and only the first
+			// run reaching a state is kept
+			List<Run<S>> nextRuns = new ArrayList<Run<S>>();
+			boolean[] reached = new boolean[targets.length];
+
+			for (Run<S> run : runs) {
+				Object[] stateGuards = guards[run.state];
+
+				for (int i = 0; i < stateGuards.length; i++) {
+					int to = targets[run.state][i];
+
+					if (!reached[to] && ba.HasModel((P) stateGuards[i], symbol)) {
+						Object[] funcs = outputFunctions[run.state][i];
+						Object[] symbols = new Object[funcs.length];
+						for (int j = 0; j < funcs.length; j++)
+							symbols[j] = ba.MkSubstFuncConst((F) funcs[j], symbol);
+
+						reached[to] = true;
+						nextRuns.add(new Run<S>(to, symbols.length == 0 ? run.output
+								: new OutputSegment<S>(run.output, symbols)));
+					}
+				}
+			}
+
+			runs = nextRuns;
+
+			if (runs.isEmpty()) {
+				defined = false;
+				return false;
+			}
+
+			if (eager && runs.size() == 1)
+				emitUpTo(runs.get(0).output);
+
+			return true;
+		}
+
+		/**
+		 * Ends the input and emits the remaining output, including the tail
+		 * of the final state.
+		 * @return true if the input is accepted, false if the output is undefined
+		 */
+		public boolean finish() {
+			if (!defined)
+				return false;
+
+			if (isDeterministic) {
+				if (finalTails.get(state) == null)
+					return false;
+
+				for (S symbol : finalTails.get(state))
+					sink.accept(symbol);
+				return true;
+			}
+
+			for (Run<S> run : runs) {
+				if (finalTails.get(run.state) != null) {
+					emitUpTo(run.output);
+					for (S symbol : finalTails.get(run.state))
+						sink.accept(symbol);
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		// Emits the segments between the last emitted one and segment
+		@SuppressWarnings("unchecked")
+		private void emitUpTo(OutputSegment<S> segment) {
+			LinkedList<OutputSegment<S>> pending = new LinkedList<OutputSegment<S>>();
+			for (OutputSegment<S> s = segment; s != emitted; s = s.parent)
+				pending.addFirst(s);
+
+			for (OutputSegment<S> s : pending)
+				for (Object symbol : s.symbols)
+					sink.accept((S) symbol);
+
+			emitted = segment;
+		}
+	}
+}
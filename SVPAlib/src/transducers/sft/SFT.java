@@ -154,7 +154,9 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	}
 
 	/**
-	 * Computes one of the outputs produced when reading input. Null if no such output exists
+	 * Computes one of the outputs produced when reading input. Null if no such output exists.
+	 * Removes the epsilon moves of <code>sftWithEps</code> on every call, use {@link CompiledSFT}
+	 * to evaluate many inputs.
 	 *
 	 * @param input
 	 * @param ba
@@ -163,21 +165,26 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P, F, S> List<S> outputOn(SFT<P, F, S> sftWithEps, List<S> input,
 												 BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		return new CompiledSFT<P, F, S>(sftWithEps, ba).outputOn(input);
+	}
 
-		// codes for nondeterministic but single-valued symbolic finite transducers
+	/**
+	 * Computes all the outputs produced when reading input by a backtracking search, which takes
+	 * exponential time and stack space linear in the input. Kept as a reference for testing
+	 * {@link CompiledSFT}.
+	 *
+	 * @return the outputs in the order the search finds them, empty if undefined
+	 * @throws TimeoutException
+	 */
+	public static <P, F, S> List<List<S>> allOutputsOn(SFT<P, F, S> sftWithEps, List<S> input,
+			BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
 		List<List<S>> outputs = new ArrayList<List<S>>();
 
 		SFT<P, F, S> sft = sftWithEps.removeEpsilonMoves(ba);
 		// guarantee that there are no epsilon transitions for now
 
 		backtrack(outputs, new ArrayList<S>(), sft, sft.getInitialState(), input, 0, ba);
-
-		// if you want the method to be adapt to non single-valued symbolic finite transducers, you could just return
-		// the whole outputs.
-		if (outputs.size() != 0)
-			return outputs.get(0);
-		else
-			return null;
+		return outputs;
 	}
 
 	// use backtrack method to get all possible outputs
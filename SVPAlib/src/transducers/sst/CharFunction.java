@@ -35,6 +35,10 @@ public class CharFunction<P, F, S> implements Token<P, F, S> {
 		this.unaryFunction = unaryFunction;
 	}
 
+	public F getFunction() {
+		return unaryFunction;
+	}
+
 	public List<S> applyTo(VariableAssignment<S> assignment, S input,
 			BooleanAlgebraSubst<P, F, S> ba) {
 		List<S> out = new LinkedList<S>();
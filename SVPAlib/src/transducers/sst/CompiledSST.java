@@ -0,0 +1,302 @@
+package transducers.sst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+
+/**
+ * An SST compiled for repeated and streaming evaluation. Epsilon moves are
+ * removed once and variable updates are turned into arrays of token codes.
+ *
+ * Variable values are persistent ropes shared between configurations, so an
+ * update such as <code>x := x y</code> allocates one node instead of copying
+ * the values of x and y. The memory used by an evaluation is linear in the
+ * length of the input read so far and values are only flattened when the
+ * output function is applied.
+ *
+ * For every reachable state only the assignment {@link SST#outputOn} lists
+ * first is kept, states being visited in increasing order.
+ *
+ * @param <P>
+ *			The type of predicates forming the Boolean algebra
+ * @param <F>
+ *			The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *			The domain of the Boolean algebra
+ */
+public class CompiledSST<P, F, S> {
+
+	// token codes: a non negative code is the id of a variable
+	private static final int CONSTANT = -1;
+	private static final int FUNCTION = -2;
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final SST<P, F, S> sst;
+	private final int variableCount;
+
+	private final int initialState;
+	// moves of state q are guards[q][i] -> targets[q][i], where the update of
+	// variable x is the token codes codes[q][i][x] with arguments args[q][i][x]
+	private final Object[][] guards;
+	private final int[][] targets;
+	private final int[][][][] codes;
+	private final Object[][][][] args;
+	// output function of state q, null if q is not final
+	private final int[][] outputCodes;
+	private final Object[][] outputArgs;
+
+	/**
+	 * Compiles <code>sstWithEps</code>, removing its epsilon moves
+	 */
+	public CompiledSST(SST<P, F, S> sstWithEps, BooleanAlgebraSubst<P, F, S> ba) {
+		this.ba = ba;
+		this.sst = sstWithEps.removeEpsilonMoves(ba);
+		this.variableCount = sst.variableCount;
+
+		// dense ids follow the order of the original state ids
+		TreeMap<Integer, Integer> stateIds = new TreeMap<Integer, Integer>();
+		for (Integer state : sst.getStates())
+			stateIds.put(state, 0);
+		int id = 0;
+		for (Integer state : stateIds.keySet())
+			stateIds.put(state, id++);
+
+		int stateCount = stateIds.size();
+		guards = new Object[stateCount][];
+		targets = new int[stateCount][];
+		codes = new int[stateCount][][][];
+		args = new Object[stateCount][][][];
+		outputCodes = new int[stateCount][];
+		outputArgs = new Object[stateCount][];
+
+		for (Integer state : stateIds.keySet()) {
+			int q = stateIds.get(state);
+			List<SSTInputMove<P, F, S>> moves = new ArrayList<SSTInputMove<P, F, S>>(sst.getInputMovesFrom(state));
+
+			guards[q] = new Object[moves.size()];
+			targets[q] = new int[moves.size()];
+			codes[q] = new int[moves.size()][variableCount][];
+			args[q] = new Object[moves.size()][variableCount][];
+
+			for (int i = 0; i < moves.size(); i++) {
+				SSTInputMove<P, F, S> move = moves.get(i);
+				guards[q][i] = move.guard;
+				targets[q][i] = stateIds.get(move.to);
+
+				ArrayList<List<Token<P, F, S>>> update = move.variableUpdate.variableUpdate;
+				for (int x = 0; x < variableCount; x++) {
+					List<? extends Token<P, F, S>> tokens = x < update.size() ? update.get(x)
+							: new ArrayList<Token<P, F, S>>();
+					codes[q][i][x] = new int[tokens.size()];
+					args[q][i][x] = new Object[tokens.size()];
+					compileTokens(tokens, codes[q][i][x], args[q][i][x]);
+				}
+			}
+
+			if (sst.isFinalState(state)) {
+				List<ConstantToken<P, F, S>> tokens = sst.outputFunction.get(state).update;
+				outputCodes[q] = new int[tokens.size()];
+				outputArgs[q] = new Object[tokens.size()];
+				compileTokens(tokens, outputCodes[q], outputArgs[q]);
+			}
+		}
+
+		initialState = stateIds.get(sst.getInitialState());
+	}
+
+	// Fills codes and args with the encoding of tokens
+	private static <P, F, S> void compileTokens(List<? extends Token<P, F, S>> tokens, int[] codes, Object[] args) {
+		for (int i = 0; i < tokens.size(); i++) {
+			Token<P, F, S> token = tokens.get(i);
+			if (token instanceof SSTVariable) {
+				codes[i] = ((SSTVariable<?, ?, ?>) token).id;
+			} else if (token instanceof CharConstant) {
+				codes[i] = CONSTANT;
+				args[i] = ((CharConstant<?, ?, ?>) token).constant;
+			} else if (token instanceof CharFunction) {
+				codes[i] = FUNCTION;
+				args[i] = ((CharFunction<?, ?, ?>) token).unaryFunction;
+			} else
+				throw new IllegalArgumentException("Unsupported token " + token);
+		}
+	}
+
+	/**
+	 * @return the epsilon-free SST this object evaluates
+	 */
+	public SST<P, F, S> getSST() {
+		return sst;
+	}
+
+	/**
+	 * Computes one of the outputs produced when reading input, the same
+	 * returned by {@link SST#outputOn}
+	 *
+	 * @return one output sequence, null if undefined
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(List<S> input) throws TimeoutException {
+		Evaluation evaluation = evaluate();
+		for (S symbol : input)
+			if (!evaluation.step(symbol))
+				return null;
+
+		return evaluation.getOutput();
+	}
+
+	/**
+	 * Starts an evaluation that reads the input one symbol at a time
+	 */
+	public Evaluation evaluate() {
+		return new Evaluation();
+	}
+
+	// ------------------------------------------------------
+	// Evaluation
+	// ------------------------------------------------------
+
+	/**
+	 * The current configuration of an evaluation. Since variable values are
+	 * never modified, the output can be extracted after any prefix of the
+	 * input and the evaluation continued afterwards.
+	 */
+	public class Evaluation {
+
+		// assignments[q] is null if state q is not reachable
+		private Rope[][] assignments;
+		private boolean defined;
+
+		private Evaluation() {
+			assignments = new Rope[targets.length][];
+			assignments[initialState] = new Rope[variableCount];
+			defined = true;
+		}
+
+		/**
+		 * Reads <code>symbol</code>.
+		 * @return false if no run can read it; the output is then undefined
+		 * @throws TimeoutException
+		 */
+		@SuppressWarnings("unchecked")
+		public boolean step(S symbol) throws TimeoutException {
+			if (!defined)
+				return false;
+
+			Rope[][] next = new Rope[targets.length][];
+			boolean reached = false;
+
+			for (int q = 0; q < assignments.length; q++) {
+				Rope[] current = assignments[q];
+				if (current == null)
+					continue;
+
+				for (int i = 0; i < guards[q].length; i++) {
+					int to = targets[q][i];
+					if (next[to] == null && ba.HasModel((P) guards[q][i], symbol)) {
+						Rope[] values = new Rope[variableCount];
+						for (int x = 0; x < variableCount; x++)
+							values[x] = apply(codes[q][i][x], args[q][i][x], current, symbol);
+
+						next[to] = values;
+						reached = true;
+					}
+				}
+			}
+
+			assignments = next;
+			defined = reached;
+			return reached;
+		}
+
+		/**
+		 * Applies the output function of the first final state reached
+		 *
+		 * @return the output on the input read so far, null if undefined
+		 */
+		public List<S> getOutput() {
+			if (!defined)
+				return null;
+
+			for (int q = 0; q < assignments.length; q++)
+				if (assignments[q] != null && outputCodes[q] != null) {
+					List<S> output = new ArrayList<S>();
+					Rope.appendTo(apply(outputCodes[q], outputArgs[q], assignments[q], null), output);
+					return output;
+				}
+
+			return null;
+		}
+
+		// Builds the value of one token sequence, sharing the variable values
+		@SuppressWarnings("unchecked")
+		private Rope apply(int[] tokenCodes, Object[] tokenArgs, Rope[] values, S symbol) {
+			Rope value = null;
+			for (int t = 0; t < tokenCodes.length; t++) {
+				int code = tokenCodes[t];
+				if (code >= 0)
+					value = Rope.concat(value, values[code]);
+				else if (code == CONSTANT)
+					value = Rope.concat(value, new Rope(tokenArgs[t]));
+				else
+					value = Rope.concat(value, new Rope(ba.MkSubstFuncConst((F) tokenArgs[t], symbol)));
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * An immutable sequence of symbols: either a single symbol or the
+	 * concatenation of two non-empty ropes. The empty sequence is null.
+	 */
+	private static class Rope {
+		final Object symbol;
+		final Rope left;
+		final Rope right;
+
+		Rope(Object symbol) {
+			this.symbol = symbol;
+			this.left = null;
+			this.right = null;
+		}
+
+		private Rope(Rope left, Rope right) {
+			this.symbol = null;
+			this.left = left;
+			this.right = right;
+		}
+
+		static Rope concat(Rope left, Rope right) {
+			if (left == null)
+				return right;
+			if (right == null)
+				return left;
+			return new Rope(left, right);
+		}
+
+		// Appends the symbols of rope to output without recursion, ropes built
+		// by long inputs being arbitrarily deep
+		@SuppressWarnings("unchecked")
+		static <S> void appendTo(Rope rope, List<S> output) {
+			if (rope == null)
+				return;
+
+			Deque<Rope> toVisit = new ArrayDeque<Rope>();
+			toVisit.push(rope);
+			while (!toVisit.isEmpty()) {
+				Rope current = toVisit.pop();
+				if (current.left == null) {
+					output.add((S) current.symbol);
+				} else {
+					toVisit.push(current.right);
+					toVisit.push(current.left);
+				}
+			}
+		}
+	}
+}
@@ -180,7 +180,8 @@ public class SST<P, F, S> extends Automaton<P, S> {
 
 	/**
 	 * Computes one of the ouptuts produced when reading input. Null if no such
-	 * output exists
+	 * output exists. Use {@link CompiledSST} to evaluate the same SST on
+	 * several inputs or on a stream.
 	 * 
 	 * @param input
 	 * @param ba
@@ -189,56 +190,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P1, F1, S1> List<S1> outputOn(SST<P1, F1, S1> sstWithEps, List<S1> input,
 			BooleanAlgebraSubst<P1, F1, S1> ba) throws TimeoutException {
-
-		// composition
-		SST<P1, F1, S1> sst = sstWithEps.removeEpsilonMoves(ba);
-		// Assume that there are no epsilon transitions for now
-
-		Map<Integer, Collection<VariableAssignment<S1>>> currConf = new HashMap<Integer, Collection<VariableAssignment<S1>>>();
-
-		List<VariableAssignment<S1>> initialVariableAssignment = new ArrayList<VariableAssignment<S1>>();
-		initialVariableAssignment.add(VariableAssignment.MkInitialValue(sst.variableCount, ba));
-		currConf.put(sst.initialState, initialVariableAssignment);
-
-		for (S1 el : input)
-			currConf = sst.getNextConfig(currConf, el, ba);
-
-		for (int state : currConf.keySet()) {
-			if (sst.isFinalState(state)) {
-				Collection<VariableAssignment<S1>> varVals = currConf.get(state);
-				for (VariableAssignment<S1> assignment : varVals) {
-					// apply outputFunction
-					OutputUpdate<P1, F1, S1> outputUpdate = sst.outputFunction.get(state);
-
-					return outputUpdate.applyTo(assignment, ba);
-				}
-			}
-		}
-
-		return null;
-	}
-
-	// Makes one step on the current config and symbol in the sst
-	private Map<Integer, Collection<VariableAssignment<S>>> getNextConfig(
-			Map<Integer, Collection<VariableAssignment<S>>> currConfig, S input, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-
-		Map<Integer, Collection<VariableAssignment<S>>> newConfig = new HashMap<Integer, Collection<VariableAssignment<S>>>();
-
-		for (int state : currConfig.keySet()) {
-			Collection<VariableAssignment<S>> sourceAssignments = currConfig.get(state);
-			for (SSTInputMove<P, F, S> move : getInputMovesFrom(state))
-				if (move.hasModel(input, ba)) {
-					Collection<VariableAssignment<S>> targetAssignments = new ArrayList<VariableAssignment<S>>();
-					if (newConfig.containsKey(move.to))
-						targetAssignments = newConfig.get(move.to);
-					else
-						newConfig.put(move.to, targetAssignments);
-
-					for (VariableAssignment<S> assig : sourceAssignments)
-						targetAssignments.add(move.variableUpdate.applyTo(assig, input, ba));
-				}
-		}
-		return newConfig;
+		return new CompiledSST<P1, F1, S1>(sstWithEps, ba).outputOn(input);
 	}
 
 	/**
@@ -1647,6 +1599,20 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		return initialState;
 	}
 
+	/**
+	 * Returns the number of variables
+	 */
+	public int getVariableCount() {
+		return variableCount;
+	}
+
+	/**
+	 * Returns the output function, defined on the final states
+	 */
+	public Map<Integer, OutputUpdate<P, F, S>> getOutputFunction() {
+		return outputFunction;
+	}
+
 	@Override
 	public Collection<Integer> getStates() {
 		return states;
@@ -20,7 +20,7 @@ import theory.BooleanAlgebra;
  */
 public class SSTEpsilon<P, F, S> extends SSTMove<P, F, S> {	
 	
-	SimpleVariableUpdate<P, F, S> variableUpdate;
+	public SimpleVariableUpdate<P, F, S> variableUpdate;
 	
 	/**
 	 * An Epsilon transition from <code>from<code> to <code>to</code> performing the update
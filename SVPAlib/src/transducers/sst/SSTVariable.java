@@ -36,6 +36,10 @@ public class SSTVariable<P, F, S> implements ConstantToken<P, F, S> {
 		this.id = id;
 	}
 
+	public Integer getId() {
+		return id;
+	}
+
 	public List<S> applyTo(VariableAssignment<S> assignment, S input,
 			BooleanAlgebraSubst<P, F, S> ba) {
 		return assignment.variableValue(id);
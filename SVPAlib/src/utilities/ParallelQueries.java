@@ -0,0 +1,64 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Runs a batch of membership queries on an executor, for the parallel
+ * oracle adapters of the learners
+ */
+public class ParallelQueries {
+
+	private ParallelQueries() {
+	}
+
+	/**
+	 * A query of a batch
+	 */
+	public interface Query {
+		boolean answer() throws TimeoutException;
+	}
+
+	/**
+	 * Submits all the queries to executor and waits for their answers
+	 *
+	 * @return the answers, in the order of queries
+	 * @throws TimeoutException
+	 *             if a query times out or the calling thread is interrupted
+	 */
+	public static List<Boolean> answerAll(ExecutorService executor, List<? extends Query> queries)
+			throws TimeoutException {
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(queries.size());
+		for (final Query query : queries)
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() throws TimeoutException {
+					return query.answer();
+				}
+			});
+
+		List<Boolean> answers = new ArrayList<Boolean>(queries.size());
+		try {
+			for (Future<Boolean> future : executor.invokeAll(tasks))
+				answers.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while waiting for membership queries");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TimeoutException)
+				throw (TimeoutException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		return answers;
+	}
+}
@@ -0,0 +1,217 @@
+package utilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Answers to membership queries stored in a trie, so that words sharing a
+ * prefix share its nodes. The same cache can be used by several oracles and
+ * across learning runs, and saved to disk to be reused later.
+ *
+ * If the target language is known to be prefix-closed, a word having a
+ * rejected prefix is answered as rejected without being stored.
+ *
+ * @param <S>
+ *            The type of the symbols of the words
+ */
+public class QueryCache<S> {
+
+	/**
+	 * Answers a batch of membership queries
+	 */
+	public interface Batch<S> {
+		List<Boolean> answer(List<List<S>> words) throws TimeoutException;
+	}
+
+	private static class Node<S> {
+		Map<S, Node<S>> children;
+		Boolean answer;
+
+		Node<S> child(S symbol) {
+			return children == null ? null : children.get(symbol);
+		}
+	}
+
+	private final boolean prefixClosed;
+	private final Node<S> root = new Node<S>();
+	private int size;
+	private int hits;
+	private int misses;
+
+	/**
+	 * An empty cache
+	 */
+	public QueryCache() {
+		this(false);
+	}
+
+	/**
+	 * An empty cache, answering the extensions of rejected words as rejected
+	 * if prefixClosed is true
+	 */
+	public QueryCache(boolean prefixClosed) {
+		this.prefixClosed = prefixClosed;
+	}
+
+	/**
+	 * @return the answer to the query on <code>word</code>, null if it is not
+	 *         known
+	 */
+	public synchronized Boolean lookup(List<S> word) {
+		Node<S> node = root;
+		for (S symbol : word) {
+			if (prefixClosed && Boolean.FALSE.equals(node.answer)) {
+				hits++;
+				return false;
+			}
+			node = node.child(symbol);
+			if (node == null) {
+				misses++;
+				return null;
+			}
+		}
+		if (node.answer == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return node.answer;
+	}
+
+	/**
+	 * Stores the answer to the query on <code>word</code>
+	 */
+	public synchronized void put(List<S> word, boolean answer) {
+		Node<S> node = root;
+		for (S symbol : word) {
+			if (node.children == null)
+				node.children = new HashMap<S, Node<S>>();
+			Node<S> child = node.children.get(symbol);
+			if (child == null) {
+				child = new Node<S>();
+				node.children.put(symbol, child);
+			}
+			node = child;
+		}
+		if (node.answer == null)
+			size++;
+		node.answer = answer;
+	}
+
+	/**
+	 * Answers a batch of queries, forwarding the distinct unknown words to
+	 * <code>queries</code> as a single batch and storing their answers
+	 *
+	 * @return the answers, in the order of words
+	 * @throws TimeoutException
+	 */
+	public List<Boolean> answerAll(List<List<S>> words, Batch<S> queries) throws TimeoutException {
+		List<Boolean> answers = new ArrayList<Boolean>(words.size());
+		Map<List<S>, Integer> missing = new LinkedHashMap<List<S>, Integer>();
+		for (List<S> word : words) {
+			Boolean answer = lookup(word);
+			if (answer == null && !missing.containsKey(word))
+				missing.put(word, missing.size());
+			answers.add(answer);
+		}
+		if (missing.isEmpty())
+			return answers;
+
+		List<List<S>> toQuery = new ArrayList<List<S>>(missing.keySet());
+		List<Boolean> queried = queries.answer(toQuery);
+		for (int i = 0; i < toQuery.size(); i++)
+			put(toQuery.get(i), queried.get(i));
+		for (int i = 0; i < words.size(); i++)
+			if (answers.get(i) == null)
+				answers.set(i, queried.get(missing.get(words.get(i))));
+		return answers;
+	}
+
+	/**
+	 * @return true if the target language is assumed to be prefix-closed
+	 */
+	public boolean isPrefixClosed() {
+		return prefixClosed;
+	}
+
+	/**
+	 * @return the number of words stored
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups answered by the cache
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to be forwarded to an oracle
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Saves the stored answers to <code>file</code>. Symbols are written with
+	 * Java serialization.
+	 */
+	public synchronized void save(File file) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+			out.writeBoolean(prefixClosed);
+			out.writeInt(size);
+
+			// depth-first visit carrying the word of every node
+			Deque<Pair<Node<S>, ArrayList<S>>> toVisit = new ArrayDeque<Pair<Node<S>, ArrayList<S>>>();
+			toVisit.push(new Pair<Node<S>, ArrayList<S>>(root, new ArrayList<S>()));
+			while (!toVisit.isEmpty()) {
+				Pair<Node<S>, ArrayList<S>> current = toVisit.pop();
+				Node<S> node = current.first;
+				if (node.answer != null) {
+					out.writeObject(current.second);
+					out.writeBoolean(node.answer);
+				}
+				if (node.children != null)
+					for (Map.Entry<S, Node<S>> child : node.children.entrySet()) {
+						ArrayList<S> word = new ArrayList<S>(current.second);
+						word.add(child.getKey());
+						toVisit.push(new Pair<Node<S>, ArrayList<S>>(child.getValue(), word));
+					}
+			}
+		}
+	}
+
+	/**
+	 * Loads a cache saved with {@link #save}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <S> QueryCache<S> load(File file) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+			QueryCache<S> cache = new QueryCache<S>(in.readBoolean());
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				List<S> word = (List<S>) in.readObject();
+				cache.put(word, in.readBoolean());
+			}
+			return cache;
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown symbol type in query cache " + file, e);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package test.CSFA;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.csfa.CSFA;
+import automata.csfa.CSFAMove;
+import automata.sfa.SFA;
+import logic.regex.DerivativeAutomaton;
+import logic.regex.Regex;
+import logic.regex.RegexFactory;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+public class CSFAUnitTest {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	RegexFactory<CharPred, Character> f = new RegexFactory<>();
+
+	@Test
+	public void testLargeBound() throws TimeoutException {
+		// [a-z]{1,1000}
+		Regex<CharPred, Character> regex = f.MkRepeat(f.MkAtom(new CharPred('a', 'z')), 1, 1000);
+		CSFA<CharPred, Character> csfa = regex.getCSFA();
+		assertEquals(2, csfa.stateCount());
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			sb.append((char) ('a' + i % 26));
+		assertTrue(csfa.accepts(lOfS(sb.toString()), ba));
+		assertFalse(csfa.accepts(lOfS(sb + "a"), ba));
+		assertFalse(csfa.accepts(lOfS(""), ba));
+		assertFalse(csfa.accepts(lOfS("abc1"), ba));
+		assertEquals(1001, (int) csfa.toSFA(ba).stateCount());
+	}
+
+	@Test
+	public void testCountingSets() throws TimeoutException {
+		// .*a{3,5}b: the counting state is reached by runs with different
+		// counter values
+		Regex<CharPred, Character> regex = f.MkConcat(Arrays.asList(f.MkStar(f.MkAtom(ba.True())),
+				f.MkRepeat(f.MkAtom(new CharPred('a')), 3, 5), f.MkAtom(new CharPred('b'))));
+		CSFA<CharPred, Character> csfa = regex.getCSFA();
+		assertTrue(csfa.accepts(lOfS("aaaaaaaaab"), ba));
+		assertTrue(csfa.accepts(lOfS("xaaab"), ba));
+		assertFalse(csfa.accepts(lOfS("xaab"), ba));
+		assertFalse(csfa.accepts(lOfS("aaaaaaaaa"), ba));
+
+		// a{2,}b with an unbounded counter
+		CSFA<CharPred, Character> unbounded = f
+				.MkConcat(f.MkRepeat(f.MkAtom(new CharPred('a')), 2, RegexFactory.UNBOUNDED),
+						f.MkAtom(new CharPred('b')))
+				.getCSFA();
+		assertFalse(unbounded.accepts(lOfS("ab"), ba));
+		assertTrue(unbounded.accepts(lOfS("aab"), ba));
+		assertTrue(unbounded.accepts(lOfS("aaaaaaab"), ba));
+	}
+
+	@Test
+	public void testMkCSFA() throws TimeoutException {
+		// 0 -a-> 1, 1 -a/++-> 1, 1 -b-> 0, with 1 counting to [2,3]
+		List<CSFAMove<CharPred, Character>> moves = new ArrayList<>();
+		moves.add(new CSFAMove<>(0, 1, new CharPred('a')));
+		moves.add(new CSFAMove<>(1, 1, new CharPred('a'), true));
+		moves.add(new CSFAMove<>(1, 0, new CharPred('b')));
+		Map<Integer, CSFA.Counter> counters = new HashMap<>();
+		counters.put(1, new CSFA.Counter(2, 3));
+		CSFA<CharPred, Character> csfa = CSFA.MkCSFA(moves, 0, Arrays.asList(0), counters);
+
+		assertTrue(csfa.accepts(lOfS("aabaaab"), ba));
+		assertFalse(csfa.accepts(lOfS("ab"), ba));
+		assertFalse(csfa.accepts(lOfS("aaaab"), ba));
+
+		SFA<CharPred, Character> sfa = csfa.toSFA(ba);
+		assertTrue(sfa.accepts(lOfS("aabaaab"), ba));
+		assertFalse(sfa.accepts(lOfS("aaaab"), ba));
+	}
+
+	@Test
+	public void testRandom() throws TimeoutException {
+		Random random = new Random(7);
+		for (int i = 0; i < 100; i++) {
+			Regex<CharPred, Character> regex = randomRegex(random, 4);
+			CSFA<CharPred, Character> csfa = regex.getCSFA();
+			DerivativeAutomaton<CharPred, Character> dfa = new DerivativeAutomaton<>(regex, f, ba);
+
+			for (int j = 0; j < 20; j++) {
+				List<Character> input = new ArrayList<>();
+				int length = random.nextInt(8);
+				for (int k = 0; k < length; k++)
+					input.add((char) ('a' + random.nextInt(3)));
+				assertEquals(regex.toString(), dfa.accepts(input), csfa.accepts(input, ba));
+			}
+			assertTrue(regex.toString(), SFA.areEquivalent(dfa.toSFA(), csfa.toSFA(ba), ba));
+		}
+	}
+
+	// A random regular expression over a, b and c
+	private Regex<CharPred, Character> randomRegex(Random random, int depth) {
+		int choice = depth == 0 ? 0 : random.nextInt(6);
+		switch (choice) {
+		case 0: {
+			char a = (char) ('a' + random.nextInt(3));
+			char b = (char) ('a' + random.nextInt(3));
+			return f.MkAtom(new CharPred((char) Math.min(a, b), (char) Math.max(a, b)));
+		}
+		case 1:
+			return f.MkStar(randomRegex(random, depth - 1));
+		case 2: {
+			int min = random.nextInt(4);
+			int max = random.nextInt(4) == 0 ? RegexFactory.UNBOUNDED : min + random.nextInt(4);
+			// mostly repetitions of atoms, which have counters
+			Regex<CharPred, Character> operand = randomRegex(random, random.nextBoolean() ? 0 : depth - 1);
+			return f.MkRepeat(operand, min, max);
+		}
+		case 3:
+			return f.MkUnion(randomRegex(random, depth - 1), randomRegex(random, depth - 1));
+		default:
+			return f.MkConcat(randomRegex(random, depth - 1), randomRegex(random, depth - 1));
+		}
+	}
+
+	private List<Character> lOfS(String s) {
+		List<Character> l = new ArrayList<>();
+		for (char c : s.toCharArray())
+			l.add(c);
+		return l;
+	}
+}
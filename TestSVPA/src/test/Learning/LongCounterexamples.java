@@ -0,0 +1,29 @@
+package test.Learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebra;
+
+//Picks long counterexamples, on which the counterexample strategies differ the most
+public class LongCounterexamples {
+
+	//a word of difference with at least minLength symbols, a shortest word if there is none
+	public static <P, S> List<S> witness(SFA<P, S> difference, int minLength, BooleanAlgebra<P, S> ba)
+			throws TimeoutException {
+		List<SFAMove<P, S>> transitions = new ArrayList<SFAMove<P, S>>();
+		for (int i = 0; i < minLength; i++)
+			transitions.add(new SFAInputMove<P, S>(i, i + 1, ba.True()));
+		transitions.add(new SFAInputMove<P, S>(minLength, minLength, ba.True()));
+		SFA<P, S> longWords = SFA.MkSFA(transitions, 0, Arrays.asList(minLength), ba);
+
+		List<S> witness = difference.intersectionWith(longWords, ba).getWitness(ba);
+		return witness != null ? witness : difference.getWitness(ba);
+	}
+}
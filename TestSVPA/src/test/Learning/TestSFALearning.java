@@ -1,11 +1,16 @@
 package test.Learning;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
@@ -13,8 +18,11 @@ import org.sat4j.specs.TimeoutException;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
+import learning.sfa.CachedOracle;
+import learning.sfa.CounterexampleStrategy;
 import learning.sfa.Learner;
 import learning.sfa.Oracle;
+import learning.sfa.ParallelOracle;
 import learning.sfa.SFAOracle;
 import theory.BooleanAlgebra;
 import theory.ProductAlgebra;
@@ -22,6 +30,7 @@ import theory.cartesian.CartesianProduct;
 import theory.intervals.BoundedIntegerSolver;
 import theory.intervals.IntPred;
 import utilities.Pair;
+import utilities.QueryCache;
 
 public class TestSFALearning {
 
@@ -50,6 +59,113 @@ public class TestSFALearning {
 		assertTrue(learned.getStates().size() <= given.getStates().size());
 	}
 	
+	@Test
+	public void testParallelOracle() throws TimeoutException {
+		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
+		
+		Integer init = 1;
+		List<Integer> fin = Arrays.asList(1);
+		List<SFAMove<IntPred, Integer>> trans = new ArrayList<SFAMove<IntPred, Integer>>();
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 1, new IntPred(0, 50)));
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 1, new IntPred(101, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 2, new IntPred(51, 100)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 3, new IntPred(21, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 4, new IntPred(0, 20)));
+		trans.add(new SFAInputMove<IntPred, Integer>(3, 3, new IntPred(null, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 1, new IntPred(null, 20)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 3, new IntPred(21, null)));
+		SFA<IntPred, Integer> given = SFA.MkSFA(trans, init, fin, ba, false);
+		
+		Oracle<IntPred, Integer> sequential = new SFAOracle<IntPred, Integer>(given, ba);
+		SFA<IntPred, Integer> expected = new Learner<IntPred, Integer>().learn(sequential, ba);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Oracle<IntPred, Integer> o = new ParallelOracle<IntPred, Integer>(
+					new SFAOracle<IntPred, Integer>(given, ba), executor);
+			SFA<IntPred, Integer> learned = new Learner<IntPred, Integer>().learn(o, ba);
+			
+			assertTrue(SFA.areEquivalent(given, learned, ba));
+			assertTrue(learned.getStates().size() == expected.getStates().size());
+			assertTrue(o.getNumMembership() == sequential.getNumMembership());
+			assertTrue(o.getNumEquivalence() == sequential.getNumEquivalence());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testQueryCache() throws TimeoutException, IOException {
+		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
+		
+		Integer init = 1;
+		List<Integer> fin = Arrays.asList(2, 3);
+		List<SFAMove<IntPred, Integer>> trans = new ArrayList<SFAMove<IntPred, Integer>>();
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 2, new IntPred(null, 50)));
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 4, new IntPred(51, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 3, new IntPred(null, 30)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 4, new IntPred(31, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(3, 4, new IntPred(null, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 1, new IntPred(null, 20)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 2, new IntPred(51, 80)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 3, new IntPred(21, 50)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 4, new IntPred(81, null)));
+		SFA<IntPred, Integer> given = SFA.MkSFA(trans, init, fin, ba, false);
+		
+		QueryCache<Integer> cache = new QueryCache<Integer>();
+		CachedOracle<IntPred, Integer> o = new CachedOracle<IntPred, Integer>(
+				new SFAOracle<IntPred, Integer>(given, ba), cache);
+		SFA<IntPred, Integer> learned = new Learner<IntPred, Integer>().learn(o, ba);
+		assertTrue(SFA.areEquivalent(given, learned, ba));
+		assertTrue(cache.getMisses() == cache.size());
+		
+		// a second run finds the answers of the first one
+		int misses = cache.getMisses();
+		File file = File.createTempFile("queries", ".cache");
+		file.deleteOnExit();
+		cache.save(file);
+		QueryCache<Integer> loaded = QueryCache.load(file);
+		assertTrue(loaded.size() == cache.size());
+		
+		CachedOracle<IntPred, Integer> o2 = new CachedOracle<IntPred, Integer>(
+				new SFAOracle<IntPred, Integer>(given, ba), loaded);
+		SFA<IntPred, Integer> relearned = new Learner<IntPred, Integer>().learn(o2, ba);
+		assertTrue(SFA.areEquivalent(given, relearned, ba));
+		assertTrue(cache.getMisses() == misses);
+		
+		// a fixed sequence of queries, with repetitions, is answered from a
+		// saved cache without asking the oracle
+		List<List<Integer>> words = Arrays.asList(Arrays.asList(10), Arrays.asList(10, 5),
+				Arrays.asList(60), Arrays.asList(10), Arrays.asList(10, 5, 3), new ArrayList<Integer>(),
+				Arrays.asList(10, 5));
+		QueryCache<Integer> replay = new QueryCache<Integer>();
+		CachedOracle<IntPred, Integer> o3 = new CachedOracle<IntPred, Integer>(
+				new SFAOracle<IntPred, Integer>(given, ba), replay);
+		List<Boolean> answers = new ArrayList<Boolean>();
+		for (List<Integer> word : words)
+			answers.add(o3.checkMembership(word));
+		assertEquals(5, replay.getMisses());
+		assertEquals(2, replay.getHits());
+		
+		File replayFile = File.createTempFile("replay", ".cache");
+		replayFile.deleteOnExit();
+		replay.save(replayFile);
+		QueryCache<Integer> replayed = QueryCache.load(replayFile);
+		CachedOracle<IntPred, Integer> o4 = new CachedOracle<IntPred, Integer>(
+				new SFAOracle<IntPred, Integer>(given, ba), replayed);
+		assertEquals(answers.subList(0, 4), o4.checkMemberships(words.subList(0, 4)));
+		for (int i = 4; i < words.size(); i++)
+			assertEquals(answers.get(i), o4.checkMembership(words.get(i)));
+		assertEquals(0, replayed.getMisses());
+		assertEquals(words.size(), replayed.getHits());
+		
+		// extensions of rejected words of a prefix-closed language
+		QueryCache<Integer> prefixClosed = new QueryCache<Integer>(true);
+		prefixClosed.put(Arrays.asList(1, 2), false);
+		assertTrue(prefixClosed.lookup(Arrays.asList(1, 2, 3)) == Boolean.FALSE);
+		assertTrue(prefixClosed.lookup(Arrays.asList(1)) == null);
+	}
+	
 	@Test
 	public void testMMExample() throws TimeoutException {
 		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
@@ -76,6 +192,49 @@ public class TestSFALearning {
 		assertTrue(learned.getStates().size() <= given.getStates().size());
 	}
 	
+	@Test
+	public void testRivestSchapire() throws TimeoutException {
+		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
+
+		Integer init = 1;
+		List<Integer> fin = Arrays.asList(2, 3);
+		List<SFAMove<IntPred, Integer>> trans = new ArrayList<SFAMove<IntPred, Integer>>();
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 2, new IntPred(null, 50)));
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 4, new IntPred(51, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 3, new IntPred(null, 30)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 4, new IntPred(31, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(3, 4, new IntPred(null, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 1, new IntPred(null, 20)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 2, new IntPred(51, 80)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 3, new IntPred(21, 50)));
+		trans.add(new SFAInputMove<IntPred, Integer>(4, 4, new IntPred(81, null)));
+		SFA<IntPred, Integer> given = SFA.MkSFA(trans, init, fin, ba, false);
+		
+		Learner<IntPred, Integer> ell = new Learner<IntPred, Integer>();
+		Oracle<IntPred, Integer> o = new SFAOracle<IntPred, Integer>(given, ba);
+		SFA<IntPred, Integer> learned = ell.learn(o, ba, CounterexampleStrategy.RIVEST_SCHAPIRE);
+
+		assertTrue(SFA.areEquivalent(given, learned, ba));
+		assertTrue(learned.getStates().size() <= given.getStates().size());
+
+		// on long counterexamples the binary search asks fewer queries than
+		// adding every prefix
+		int[] counterexampleMembership = new int[2];
+		for (CounterexampleStrategy strategy : CounterexampleStrategy.values()) {
+			Learner<IntPred, Integer> learner = new Learner<IntPred, Integer>();
+			Oracle<IntPred, Integer> longOracle = new SFAOracle<IntPred, Integer>(given, ba) {
+				@Override
+				protected List<Integer> witness(SFA<IntPred, Integer> difference) throws TimeoutException {
+					return LongCounterexamples.witness(difference, 200, ba);
+				}
+			};
+			assertTrue(SFA.areEquivalent(given, learner.learn(longOracle, ba, strategy), ba));
+			counterexampleMembership[strategy.ordinal()] = learner.getNumCounterexampleMembership();
+		}
+		assertTrue(counterexampleMembership[CounterexampleStrategy.RIVEST_SCHAPIRE.ordinal()]
+				< counterexampleMembership[CounterexampleStrategy.ALL_PREFIXES.ordinal()]);
+	}
+	
 	@Test
 	public void testMMPartialOrderExample() throws TimeoutException {
 		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0, 100);
@@ -18,6 +18,7 @@ import algebralearning.sfa.SFAMembershipOracle;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
+import learning.sfa.CounterexampleStrategy;
 import learning.sfa.Learner;
 import learning.sfa.Oracle;
 import learning.sfa.SFAOracle;
@@ -185,6 +186,46 @@ public class TestSymbolicCE {
 		
 	}
 	
+	@Test
+	public void testLearningRivestSchapire() throws TimeoutException {
+		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
+		
+		Integer init = 1;
+		List<Integer> fin = Arrays.asList(2);
+		List<SFAMove<IntPred, Integer>> trans = new ArrayList<SFAMove<IntPred, Integer>>();
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 2, new IntPred(0, 5)));
+		trans.add(new SFAInputMove<IntPred, Integer>(1, 2, new IntPred(6, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 2, new IntPred(10, null)));
+		trans.add(new SFAInputMove<IntPred, Integer>(2, 1, new IntPred(0, 9)));
+		SFA<IntPred, Integer> given = SFA.MkSFA(trans, init, fin, ba, false);
+		
+		SymbolicLearner<IntPred, Integer> ell = new SymbolicLearner<IntPred, Integer>();
+		SymbolicOracle<IntPred, Integer> o = new SinglePathSFAOracle<IntPred, Integer>(given, ba);
+		SFA<IntPred, Integer> learned = ell.learn(o, ba, CounterexampleStrategy.RIVEST_SCHAPIRE);
+		
+		assertTrue(SFA.areEquivalent(given, learned, ba));
+		assertTrue(learned.getStates().size() <= given.getStates().size());
+		
+		// on long counterexamples the binary search asks fewer queries than
+		// adding every prefix, and it never falls back to adding them
+		int[] counterexampleMembership = new int[2];
+		for (CounterexampleStrategy strategy : CounterexampleStrategy.values()) {
+			SymbolicLearner<IntPred, Integer> learner = new SymbolicLearner<IntPred, Integer>();
+			SymbolicOracle<IntPred, Integer> longOracle = new SinglePathSFAOracle<IntPred, Integer>(given, ba) {
+				@Override
+				protected List<Integer> witness(SFA<IntPred, Integer> difference) throws TimeoutException {
+					return LongCounterexamples.witness(difference, 200, ba);
+				}
+			};
+			assertTrue(SFA.areEquivalent(given, learner.learn(longOracle, ba, strategy), ba));
+			counterexampleMembership[strategy.ordinal()] = learner.getNumCounterexampleMembership();
+			if (strategy == CounterexampleStrategy.RIVEST_SCHAPIRE)
+				assertTrue(learner.getNumPrefixCounterexamples() == 0);
+		}
+		assertTrue(counterexampleMembership[CounterexampleStrategy.RIVEST_SCHAPIRE.ordinal()]
+				< counterexampleMembership[CounterexampleStrategy.ALL_PREFIXES.ordinal()]);
+	}
+	
 	@Test
 	public void testLearning3() throws TimeoutException {
 		BooleanAlgebra<IntPred, Integer> ba = new BoundedIntegerSolver(0,null);
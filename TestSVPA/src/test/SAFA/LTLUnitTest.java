@@ -1,11 +1,13 @@
 package test.SAFA;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
@@ -15,7 +17,9 @@ import automata.safa.booleanexpression.BDDExpressionFactory;
 import automata.safa.booleanexpression.SumOfProductsFactory;
 import logic.ltl.And;
 import logic.ltl.Eventually;
+import logic.ltl.False;
 import logic.ltl.Globally;
+import logic.ltl.LTLFactory;
 import logic.ltl.LTLFormula;
 import logic.ltl.Next;
 import logic.ltl.Not;
@@ -23,6 +27,7 @@ import logic.ltl.Or;
 import logic.ltl.Predicate;
 import logic.ltl.True;
 import logic.ltl.Until;
+import logic.ltl.WeakUntil;
 import theory.bdd.BDD;
 import theory.bddalgebra.BDDSolver;
 import theory.characters.CharPred;
@@ -298,6 +303,98 @@ public class LTLUnitTest {
 		assertTrue(models("ba", notA));
 	}
 
+	@Test
+	public void testFactory() throws TimeoutException {
+		LTLFactory<CharPred, Character> f = new LTLFactory<>();
+		LTLFormula<CharPred, Character> pa = f.MkPredicate(new CharPred('a'));
+		LTLFormula<CharPred, Character> pb = f.MkPredicate(new CharPred('b'));
+		assertTrue(pa == f.MkPredicate(new CharPred('a')));
+		assertTrue(f.MkUntil(pa, f.MkEventually(pb)) == f.MkUntil(pa, f.MkEventually(pb)));
+
+		// conjunctions are flattened, without duplicates
+		LTLFormula<CharPred, Character> conj = f.MkAnd(pa, f.MkAnd(pb, pa));
+		assertTrue(conj == f.MkAnd(pa, pb));
+		assertTrue(f.MkAnd(pa, f.False()) == f.False());
+		assertTrue(f.MkOr(pa, f.False()) == pa);
+
+		// the negation normal form shares the subformulas
+		int size = f.size();
+		LTLFormula<CharPred, Character> phi = new Not<>(new And<>(new Eventually<>(new Predicate<>(new CharPred('a'))),
+				new Globally<>(new Eventually<>(new Predicate<>(new CharPred('a'))))));
+		LTLFormula<CharPred, Character> nnf = phi.pushNegations(ba, f);
+		assertTrue(nnf == phi.pushNegations(ba, f));
+		assertTrue(f.size() > size);
+		assertEquals(nnf, phi.pushNegations(ba));
+	}
+
+	@Test
+	public void testWitness() throws TimeoutException {
+		Random random = new Random(9);
+		for (int i = 0; i < 200; i++) {
+			LTLFormula<CharPred, Character> phi = randomFormula(random, 4);
+			SAFA<CharPred, Character> safa = phi.pushNegations(ba).getSAFA(ba);
+			List<Character> witness = phi.getWitness(ba);
+			assertEquals(phi.toString(), !SAFA.isEmpty(safa, ba), witness != null);
+			if (witness != null)
+				assertTrue(phi.toString(), safa.accepts(witness, ba));
+		}
+
+		LTLFormula<CharPred, Character> ab = new And<>(new Next<>(new Predicate<>(new CharPred('b'))),
+				new Predicate<>(new CharPred('a')));
+		assertEquals(lOfS("ab"), ab.getWitness(ba));
+		LTLFormula<CharPred, Character> never = new And<>(new Globally<>(new Predicate<>(new CharPred('a'))),
+				new Eventually<>(new Predicate<>(new CharPred('b'))));
+		assertFalse(never.isSatisfiable(ba));
+	}
+
+	@Test
+	public void testLargeConjunction() throws TimeoutException {
+		// a conjunction of many eventualities, whose configurations are too
+		// many to be all built
+		int size = 40;
+		BDDSolver bs = new BDDSolver(size);
+		List<LTLFormula<BDD, BDD>> conjuncts = new LinkedList<>();
+		for (int i = 0; i < size; i++)
+			conjuncts.add(new Eventually<>(new Predicate<BDD, BDD>(bs.factory.ithVar(i))));
+		LTLFormula<BDD, BDD> sat = new And<>(conjuncts);
+		List<BDD> witness = sat.getWitness(bs);
+		assertTrue(sat.pushNegations(bs).getSAFA(bs).accepts(witness, bs));
+
+		// proving emptiness visits them all, up to inclusion
+		conjuncts = new LinkedList<>(conjuncts.subList(0, 10));
+		conjuncts.add(new Globally<>(new Predicate<BDD, BDD>(bs.factory.nithVar(0))));
+		assertFalse(new And<>(conjuncts).isSatisfiable(bs));
+	}
+
+	// A random formula over a, b and c
+	private LTLFormula<CharPred, Character> randomFormula(Random random, int depth) {
+		int choice = depth == 0 ? random.nextInt(3) : random.nextInt(11);
+		switch (choice) {
+		case 0:
+			return new Predicate<>(new CharPred((char) ('a' + random.nextInt(3))));
+		case 1:
+			return random.nextInt(4) == 0 ? new True<>() : new Predicate<>(new CharPred('a', 'b'));
+		case 2:
+			return random.nextInt(4) == 0 ? new False<>() : new Predicate<>(new CharPred('b', 'c'));
+		case 3:
+			return new Not<>(randomFormula(random, depth - 1));
+		case 4:
+			return new And<>(randomFormula(random, depth - 1), randomFormula(random, depth - 1));
+		case 5:
+			return new Or<>(randomFormula(random, depth - 1), randomFormula(random, depth - 1));
+		case 6:
+			return new Next<>(randomFormula(random, depth - 1));
+		case 7:
+			return new Eventually<>(randomFormula(random, depth - 1));
+		case 8:
+			return new Globally<>(randomFormula(random, depth - 1));
+		case 9:
+			return new Until<>(randomFormula(random, depth - 1), randomFormula(random, depth - 1));
+		default:
+			return new WeakUntil<>(randomFormula(random, depth - 1), randomFormula(random, depth - 1));
+		}
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
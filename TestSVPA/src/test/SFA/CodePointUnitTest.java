@@ -0,0 +1,157 @@
+package test.SFA;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import strings.CodePointMatcher;
+import theory.characters.CharPred;
+import theory.intervals.CodePointSolver;
+import theory.intervals.IntPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+public class CodePointUnitTest {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	CodePointSolver cpba = new CodePointSolver();
+
+	@Test
+	public void testSurrogatePairs() throws TimeoutException {
+		// all the supplementary characters
+		CharPred high = new CharPred(Character.MIN_HIGH_SURROGATE, Character.MAX_HIGH_SURROGATE);
+		CharPred low = new CharPred(Character.MIN_LOW_SURROGATE, Character.MAX_LOW_SURROGATE);
+		assertEquals(new IntPred(0x10000, 0x10FFFF), CodePointSolver.fromSurrogatePairs(high, low));
+		assertEquals(new IntPred(0x10000, 0x10FFFF),
+				CodePointSolver.fromSurrogatePairs(ba.True(), new CharPred('a', Character.MAX_VALUE)));
+
+		// U+1F600..U+1F64F, the emoticons
+		IntPred emoticons = CodePointSolver.fromSurrogatePairs(new CharPred('\uD83D'), new CharPred('\uDE00', '\uDE4F'));
+		assertEquals(new IntPred(0x1F600, 0x1F64F), emoticons);
+
+		// a split range of low surrogates gives intervals per high surrogate,
+		// merged where the last pair of a high surrogate meets the next one
+		IntPred split = CodePointSolver.fromSurrogatePairs(new CharPred('\uD800', '\uD801'),
+				ba.MkOr(new CharPred('\uDC00'), new CharPred('\uDFFF')));
+		assertEquals(3, split.getIntervals().size());
+		assertTrue(split.isSatisfiedBy(Character.toCodePoint('\uD801', '\uDFFF')));
+		assertFalse(split.isSatisfiedBy(Character.toCodePoint('\uD801', '\uDC01')));
+
+		assertFalse(cpba.IsSatisfiable(CodePointSolver.fromSurrogatePairs(new CharPred('a'), low)));
+		assertEquals(new IntPred(0, 0x10FFFF), cpba.MkNot(cpba.False()));
+		assertEquals(new IntPred(0x61, 0x61), CodePointSolver.fromCharPred(new CharPred('a')));
+	}
+
+	@Test
+	public void testMatcher() throws TimeoutException {
+		// a followed by emoticons
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('a')));
+		transitions.add(new SFAInputMove<CharPred, Character>(1, 2, new CharPred('\uD83D')));
+		transitions.add(new SFAInputMove<CharPred, Character>(2, 1, new CharPred('\uDE00', '\uDE4F')));
+		SFA<CharPred, Character> sfa = SFA.MkSFA(transitions, 0, Arrays.asList(1), ba);
+
+		SFA<IntPred, Integer> cpsfa = CodePointMatcher.fromCharSFA(sfa, ba, cpba);
+		CodePointMatcher matcher = new CodePointMatcher(cpsfa, cpba);
+
+		String ok = "a\uD83D\uDE00\uD83D\uDE4F";
+		assertTrue(matcher.matches(ok));
+		assertTrue(matcher.matches(ok.getBytes(StandardCharsets.UTF_8)));
+		assertTrue(matcher.matches(Arrays.asList(0x61, 0x1F600, 0x1F64F)));
+		assertFalse(matcher.matches("a\uD83D"));
+		assertFalse(matcher.matches("a\uD83D\uDE50"));
+		assertFalse(matcher.matches(""));
+		assertFalse(matcher.matches(new byte[0]));
+
+		// a prefix of a longer byte array
+		byte[] bytes = (ok + "b").getBytes(StandardCharsets.UTF_8);
+		assertFalse(matcher.matches(bytes));
+		assertTrue(matcher.matches(bytes, 0, bytes.length - 1));
+		// a truncated sequence
+		assertFalse(matcher.matches(bytes, 0, bytes.length - 2));
+	}
+
+	@Test
+	public void testMalformedUTF8() throws TimeoutException {
+		Collection<SFAMove<IntPred, Integer>> transitions = new LinkedList<SFAMove<IntPred, Integer>>();
+		transitions.add(new SFAInputMove<IntPred, Integer>(0, 0, cpba.True()));
+		CodePointMatcher matcher = new CodePointMatcher(SFA.MkSFA(transitions, 0, Arrays.asList(0), cpba), cpba);
+
+		assertTrue(matcher.matches("\u0000\u00e9\u4e2d\uD83D\uDE00\uDBFF\uDFFF".getBytes(StandardCharsets.UTF_8)));
+		assertTrue(matcher.matches(new byte[] { (byte) 0xF4, (byte) 0x8F, (byte) 0xBF, (byte) 0xBF }));
+		// overlong encodings
+		assertFalse(matcher.matches(new byte[] { (byte) 0xC0, (byte) 0x80 }));
+		assertFalse(matcher.matches(new byte[] { (byte) 0xE0, (byte) 0x80, (byte) 0xAF }));
+		assertFalse(matcher.matches(new byte[] { (byte) 0xF0, (byte) 0x8F, (byte) 0xBF, (byte) 0xBF }));
+		// an encoded surrogate
+		assertFalse(matcher.matches(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }));
+		// beyond U+10FFFF
+		assertFalse(matcher.matches(new byte[] { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }));
+		// a missing and an unexpected continuation byte
+		assertFalse(matcher.matches(new byte[] { (byte) 0xC3, 0x41 }));
+		assertFalse(matcher.matches(new byte[] { (byte) 0x80 }));
+		// unpaired surrogates in UTF-16 are read as themselves
+		assertTrue(matcher.matches("\uDC00\uD800"));
+	}
+
+	@Test
+	public void testRandomConversion() throws TimeoutException {
+		Random random = new Random(7);
+		char[] pivots = { 'a', 'b', '\uD800', '\uD83D', '\uDBFF', '\uDC00', '\uDE00', '\uDE4F', '\uDFFF',
+				'\uFFFF' };
+
+		for (int round = 0; round < 50; round++) {
+			int states = 1 + random.nextInt(4);
+			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+			for (int t = 0; t < 3 * states; t++) {
+				char a = pivots[random.nextInt(pivots.length)];
+				char b = pivots[random.nextInt(pivots.length)];
+				transitions.add(new SFAInputMove<CharPred, Character>(random.nextInt(states), random.nextInt(states),
+						new CharPred((char) Math.min(a, b), (char) Math.max(a, b))));
+			}
+			List<Integer> finals = new ArrayList<Integer>();
+			for (int q = 0; q < states; q++)
+				if (random.nextBoolean())
+					finals.add(q);
+			SFA<CharPred, Character> sfa = SFA.MkSFA(transitions, 0, finals, ba);
+			CodePointMatcher matcher = new CodePointMatcher(CodePointMatcher.fromCharSFA(sfa, ba, cpba), cpba);
+
+			for (int i = 0; i < 100; i++) {
+				StringBuilder sb = new StringBuilder();
+				int length = random.nextInt(6);
+				for (int j = 0; j < length; j++)
+					sb.append(pivots[random.nextInt(pivots.length)]);
+				String s = sb.toString();
+				List<Character> chars = new ArrayList<Character>();
+				for (char c : s.toCharArray())
+					chars.add(c);
+
+				boolean expected = sfa.accepts(chars, ba);
+				assertEquals(s, expected, matcher.matches(s));
+				List<Integer> codePoints = new ArrayList<Integer>();
+				boolean wellFormed = true;
+				for (int j = 0; j < s.length(); j = s.offsetByCodePoints(j, 1)) {
+					int c = s.codePointAt(j);
+					codePoints.add(c);
+					wellFormed &= c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE;
+				}
+				assertEquals(s, expected, matcher.matches(codePoints));
+				if (wellFormed)
+					assertEquals(s, expected, matcher.matches(s.getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+	}
+}
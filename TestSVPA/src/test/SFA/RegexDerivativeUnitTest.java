@@ -0,0 +1,140 @@
+package test.SFA;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import logic.regex.DerivativeAutomaton;
+import logic.regex.Regex;
+import logic.regex.RegexFactory;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
+
+public class RegexDerivativeUnitTest {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	RegexFactory<CharPred, Character> f = new RegexFactory<>();
+
+	@Test
+	public void testCanonicalForm() {
+		Regex<CharPred, Character> a = f.MkAtom(new CharPred('a'));
+		Regex<CharPred, Character> b = f.MkAtom(new CharPred('b'));
+		assertTrue(a == f.MkAtom(new CharPred('a')));
+		assertTrue(f.MkUnion(a, b) == f.MkUnion(b, f.MkUnion(a, f.Empty())));
+		assertTrue(f.MkConcat(f.MkConcat(a, b), a) == f.MkConcat(a, f.MkConcat(b, a)));
+		assertTrue(f.Empty() == f.MkConcat(a, f.Empty()));
+		assertTrue(a == f.MkConcat(f.Epsilon(), a));
+		assertTrue(f.MkStar(a) == f.MkStar(f.MkStar(a)));
+		assertTrue(f.MkStar(a) == f.MkRepeat(f.MkOptional(a), 3, RegexFactory.UNBOUNDED));
+		assertTrue(f.Epsilon() == f.MkRepeat(a, 0, 0));
+	}
+
+	@Test
+	public void testRandom() throws TimeoutException {
+		Random random = new Random(5);
+		for (int i = 0; i < 100; i++) {
+			Pair<Regex<CharPred, Character>, SFA<CharPred, Character>> regex = randomRegex(random, 4);
+			DerivativeAutomaton<CharPred, Character> aut = new DerivativeAutomaton<>(regex.first, f, ba);
+
+			for (int j = 0; j < 20; j++) {
+				List<Character> input = new ArrayList<>();
+				int length = random.nextInt(6);
+				for (int k = 0; k < length; k++)
+					input.add((char) ('a' + random.nextInt(3)));
+				assertEquals(regex.first.toString(), regex.second.accepts(input, ba), aut.accepts(input));
+			}
+
+			SFA<CharPred, Character> sfa = aut.toSFA();
+			assertTrue(regex.first.toString(), sfa.isDeterministic(ba));
+			assertTrue(regex.first.toString(), SFA.areEquivalent(regex.second, sfa, ba));
+		}
+	}
+
+	@Test
+	public void testBoundedRepetition() throws TimeoutException {
+		// a{500}b: the matcher only builds the states it reads and their
+		// successors
+		Regex<CharPred, Character> regex = f.MkConcat(f.MkRepeat(f.MkAtom(new CharPred('a')), 500, 500),
+				f.MkAtom(new CharPred('b')));
+		DerivativeAutomaton<CharPred, Character> aut = new DerivativeAutomaton<>(regex, f, ba);
+		assertFalse(aut.accepts(lOfS("aab")));
+		assertEquals(4, aut.stateCount());
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 500; i++)
+			sb.append('a');
+		assertTrue(aut.accepts(lOfS(sb + "b")));
+		assertFalse(aut.accepts(lOfS(sb + "ab")));
+		assertEquals(502, aut.stateCount());
+		assertEquals(502, (int) aut.toSFA().stateCount());
+
+		// (a|b)*a(a|b){8}: the derivatives remember the last 9 characters, and
+		// the minimal SFA has a sink for the other characters
+		Regex<CharPred, Character> ab = f.MkAtom(new CharPred('a', 'b'));
+		regex = f.MkConcat(Arrays.asList(f.MkStar(ab), f.MkAtom(new CharPred('a')), f.MkRepeat(ab, 8, 8)));
+		aut = new DerivativeAutomaton<>(regex, f, ba);
+		assertTrue(aut.accepts(lOfS("bbabbbbbbbb")));
+		assertFalse(aut.accepts(lOfS("bbbabbbbbbb")));
+		assertEquals(513, (int) SFA.getMinimalOf(aut.toSFA(), ba).stateCount());
+	}
+
+	// A random regular expression over a, b and c, and an equivalent SFA
+	// built by the usual constructions
+	private Pair<Regex<CharPred, Character>, SFA<CharPred, Character>> randomRegex(Random random, int depth)
+			throws TimeoutException {
+		int choice = depth == 0 ? random.nextInt(2) : random.nextInt(7);
+		if (choice <= 1) {
+			char a = (char) ('a' + random.nextInt(3));
+			char b = choice == 0 ? a : (char) ('a' + random.nextInt(3));
+			CharPred p = new CharPred((char) Math.min(a, b), (char) Math.max(a, b));
+			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<>();
+			transitions.add(new SFAInputMove<>(0, 1, p));
+			return new Pair<>(f.MkAtom(p), SFA.MkSFA(transitions, 0, Arrays.asList(1), ba));
+		}
+
+		Pair<Regex<CharPred, Character>, SFA<CharPred, Character>> left = randomRegex(random, depth - 1);
+		switch (choice) {
+		case 2:
+			return new Pair<>(f.MkStar(left.first), SFA.star(left.second, ba));
+		case 3: {
+			int min = random.nextInt(3);
+			int max = min + random.nextInt(3);
+			SFA<CharPred, Character> sfa = SFA.MkSFA(new LinkedList<>(), 0, Arrays.asList(0), ba);
+			SFA<CharPred, Character> optional = SFA.union(left.second, sfa, ba);
+			for (int i = 0; i < max; i++)
+				sfa = SFA.concatenate(sfa, i < min ? left.second : optional, ba);
+			return new Pair<>(f.MkRepeat(left.first, min, max), sfa);
+		}
+		case 4: {
+			Pair<Regex<CharPred, Character>, SFA<CharPred, Character>> right = randomRegex(random, depth - 1);
+			return new Pair<>(f.MkUnion(left.first, right.first), SFA.union(left.second, right.second, ba));
+		}
+		default: {
+			Pair<Regex<CharPred, Character>, SFA<CharPred, Character>> right = randomRegex(random, depth - 1);
+			return new Pair<>(f.MkConcat(left.first, right.first),
+					SFA.concatenate(left.second, right.second, ba));
+		}
+		}
+	}
+
+	private List<Character> lOfS(String s) {
+		List<Character> l = new ArrayList<>();
+		for (char c : s.toCharArray())
+			l.add(c);
+		return l;
+	}
+}
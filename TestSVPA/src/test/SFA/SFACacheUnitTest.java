@@ -0,0 +1,185 @@
+package test.SFA;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFACache;
+import automata.sfa.SFACache.Key;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import serialization.AutomatonSerializer;
+import serialization.CharPredCodec;
+import test.Serialization.SerializedSFAs;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+public class SFACacheUnitTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	AtomicInteger compilations = new AtomicInteger();
+
+	// Compiles a source to the SFA of the words over its characters
+	SFACache.Compiler<CharPred, Character> compiler = source -> {
+		compilations.incrementAndGet();
+		Collection<SFAMove<CharPred, Character>> transitions = new ArrayList<>();
+		for (char c : source.toCharArray())
+			transitions.add(new SFAInputMove<>(0, 0, new CharPred(c)));
+		return SFA.MkSFA(transitions, 0, Arrays.asList(0), ba);
+	};
+
+	@Test
+	public void testPipeline() throws TimeoutException {
+		SFACache<CharPred, Character> cache = new SFACache<>(ba, compiler, Long.MAX_VALUE);
+		Key ab = Key.of("ab");
+		Key pipeline = ab.intersectionWith(Key.of("bc")).determinize().minimize();
+		SFA<CharPred, Character> sfa = cache.get(pipeline);
+		assertTrue(sfa.accepts(lOfS("bbb"), ba));
+		assertFalse(sfa.accepts(lOfS("ab"), ba));
+		assertEquals(2, compilations.get());
+		assertEquals(5, cache.getMissCount());
+		assertEquals(5, cache.size());
+
+		// the same pipeline, built again, and its prefixes are cached
+		assertTrue(sfa == cache.get(Key.of("ab").intersectionWith(Key.of("bc")).determinize().minimize()));
+		cache.get("ab");
+		cache.get(ab.complement());
+		assertEquals(2, compilations.get());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(6, cache.getMissCount());
+		assertEquals(6, cache.size());
+
+		// the operands of a binary operation are ordered
+		assertFalse(pipeline.equals(Key.of("bc").intersectionWith(ab).determinize().minimize()));
+		assertEquals("2:ab.intersection(2:bc).determinize.minimize", pipeline.toString());
+	}
+
+	@Test
+	public void testEviction() throws TimeoutException {
+		SFA<CharPred, Character> one = compiler.compile("a");
+		long size = SFACache.estimateFootprint(one);
+		SFACache<CharPred, Character> cache = new SFACache<>(ba, compiler, 2 * size);
+		cache.get("a");
+		cache.get("b");
+		cache.get("a");
+		cache.get("c");
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2 * size, cache.getFootprint());
+
+		// b was the least recently used
+		cache.get("a");
+		cache.get("b");
+		assertEquals(2, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+
+		// an SFA larger than the cache is not kept
+		SFACache<CharPred, Character> small = new SFACache<>(ba, compiler, size - 1);
+		small.get("a");
+		small.get("a");
+		assertEquals(0, small.size());
+		assertEquals(2, small.getMissCount());
+	}
+
+	@Test
+	public void testSingleFlight() throws Exception {
+		int threads = 8;
+		SFACache<CharPred, Character>[] cache = new SFACache[1];
+		// the compilation waits for all the other requests
+		cache[0] = new SFACache<>(ba, source -> {
+			long end = System.currentTimeMillis() + 10000;
+			while (cache[0].getSharedBuildCount() < threads - 1 && System.currentTimeMillis() < end)
+				Thread.yield();
+			return compiler.compile(source);
+		}, Long.MAX_VALUE);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<SFA<CharPred, Character>>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++)
+				results.add(executor.submit(() -> cache[0].get("ab")));
+			SFA<CharPred, Character> first = results.get(0).get();
+			for (Future<SFA<CharPred, Character>> result : results)
+				assertTrue(first == result.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, compilations.get());
+		assertEquals(1, cache[0].getMissCount());
+		assertEquals(threads - 1, cache[0].getSharedBuildCount());
+	}
+
+	@Test
+	public void testDiskTier() throws TimeoutException, IOException {
+		File directory = folder.newFolder("sfas");
+		AutomatonSerializer<CharPred, Void, Character> serializer = new AutomatonSerializer<>(new CharPredCodec());
+		Key key = Key.of("ab").determinize();
+
+		SFACache<CharPred, Character> cache = new SFACache<>(ba, compiler, Long.MAX_VALUE);
+		cache.setDiskTier(directory, serializer);
+		SFA<CharPred, Character> sfa = cache.get(key);
+		assertEquals(2, directory.listFiles().length);
+
+		// another cache loads the SFAs instead of compiling them
+		SFACache<CharPred, Character> restarted = new SFACache<>(ba, compiler, Long.MAX_VALUE);
+		restarted.setDiskTier(directory, serializer);
+		assertTrue(SFA.areEquivalent(sfa, restarted.get(key), ba));
+		assertEquals(1, compilations.get());
+		assertEquals(1, restarted.getDiskHitCount());
+
+		// a corrupted file is computed again
+		for (File file : directory.listFiles())
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				out.write(new byte[] { 1, 2, 3 });
+			}
+		SFACache<CharPred, Character> corrupted = new SFACache<>(ba, compiler, Long.MAX_VALUE);
+		corrupted.setDiskTier(directory, serializer);
+		assertTrue(SFA.areEquivalent(sfa, corrupted.get(key), ba));
+		assertEquals(2, corrupted.getDiskErrorCount());
+		assertEquals(2, compilations.get());
+
+		// so is a complete file with an initial state out of range
+		for (File file : directory.listFiles()) {
+			byte[] bytes = SerializedSFAs.bytes(sfa, serializer);
+			ByteBuffer.wrap(bytes).putInt(SerializedSFAs.initialStateOffset(bytes), 1000);
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				out.write(bytes);
+			}
+		}
+		SFACache<CharPred, Character> outOfRange = new SFACache<>(ba, compiler, Long.MAX_VALUE);
+		outOfRange.setDiskTier(directory, serializer);
+		assertTrue(SFA.areEquivalent(sfa, outOfRange.get(key), ba));
+		assertEquals(2, outOfRange.getDiskErrorCount());
+		assertEquals(0, outOfRange.getDiskHitCount());
+		assertEquals(3, compilations.get());
+	}
+
+	private List<Character> lOfS(String s) {
+		List<Character> l = new ArrayList<>();
+		for (char c : s.toCharArray())
+			l.add(c);
+		return l;
+	}
+}
@@ -17,6 +17,7 @@ import java.util.Map;
 import java.util.HashMap;
 
 import theory.characters.*;
+import transducers.sft.CompiledSFT;
 import transducers.sft.SFT;
 import transducers.sft.SFTMove;
 import transducers.sft.SFTInputMove;
@@ -724,6 +725,100 @@ public class SFTUnitTest {
 
 	}
 
+	@Test
+	public void testCompiledSFT() throws Exception {
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		for (String input: new String[] {"", "a", "b", "c", "d", "z", "1", " ", "bb", "ab", "ac", "ccc", "abcz",
+				"bcsaee", "12-3", "1b- *&@3", "bcbcbcbcbcbcbc", "dcdcdc"})
+			inputs.add(stringToListOfCharacter(input));
+
+		// [a-z]* shifted by one, and a nondeterministic variant that may switch to copying after [a-c]
+		List<SFTMove<CharPred, CharFunc, Character>> loopTransitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>();
+		List<CharFunc> shift = new ArrayList<CharFunc>();
+		shift.add(new CharOffset(1));
+		loopTransitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 0, new CharPred('a', 'z'), shift));
+		Map<Integer, Set<List<Character>>> loopFinStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		loopFinStatesAndTails.put(0, new HashSet<List<Character>>());
+		SFT<CharPred, CharFunc, Character> loopSFT = SFT.MkSFT(loopTransitions, 0, loopFinStatesAndTails, ba);
+
+		List<SFTMove<CharPred, CharFunc, Character>> nondetTransitions = new LinkedList<SFTMove<CharPred, CharFunc, Character>>(loopTransitions);
+		List<CharFunc> copy = new ArrayList<CharFunc>();
+		copy.add(new CharOffset(0));
+		copy.add(new CharConstant('-'));
+		nondetTransitions.add(new SFTInputMove<CharPred, CharFunc, Character>(0, 1, new CharPred('a', 'c'), copy));
+		nondetTransitions.add(new SFTInputMove<CharPred, CharFunc, Character>(1, 1, new CharPred('a', 'z'), copy));
+		Map<Integer, Set<List<Character>>> nondetFinStatesAndTails = new HashMap<Integer, Set<List<Character>>>();
+		nondetFinStatesAndTails.put(1, new HashSet<List<Character>>());
+		SFT<CharPred, CharFunc, Character> nondetSFT = SFT.MkSFT(nondetTransitions, 0, nondetFinStatesAndTails, ba);
+
+		List<SFT<CharPred, CharFunc, Character>> sfts = new ArrayList<SFT<CharPred, CharFunc, Character>>(allSFTs);
+		for (SFT<CharPred, CharFunc, Character> firstSft: allSFTs)
+			sfts.add(firstSft.composeWith(mySFT231, ba));
+		sfts.add(loopSFT);
+		sfts.add(nondetSFT);
+		assertFalse(new CompiledSFT<CharPred, CharFunc, Character>(nondetSFT, ba).isDeterministic());
+
+		List<Character> buffer = new ArrayList<Character>();
+		for (SFT<CharPred, CharFunc, Character> sft: sfts) {
+			CompiledSFT<CharPred, CharFunc, Character> compiled = new CompiledSFT<CharPred, CharFunc, Character>(sft, ba);
+			for (List<Character> input: inputs) {
+				// the output picked among several depends on the order of the moves
+				List<List<Character>> outputs = SFT.allOutputsOn(sft, input, ba);
+				List<Character> expected = compiled.outputOn(input);
+				assertEquals(outputs.isEmpty(), expected == null);
+				if (expected != null)
+					assertTrue(outputs.contains(expected));
+				if (compiled.isDeterministic() && expected != null)
+					assertEquals(outputs.get(0), expected);
+				assertEquals(expected, sft.outputOn(input, ba));
+				assertEquals(expected != null, compiled.outputOn(input, buffer));
+				if (expected != null)
+					assertEquals(expected, buffer);
+
+				final List<Character> streamed = new ArrayList<Character>();
+				CompiledSFT<CharPred, CharFunc, Character>.Evaluation evaluation = compiled.stream(streamed::add);
+				boolean defined = true;
+				for (Character c: input)
+					defined = defined && evaluation.step(c);
+				defined = defined && evaluation.finish();
+				assertEquals(expected != null, defined);
+				if (expected != null)
+					assertEquals(expected, streamed);
+			}
+		}
+
+		assertEquals(stringToListOfCharacter("bcd"), loopSFT.outputOn(stringToListOfCharacter("abc"), ba));
+		assertTrue(isShiftedThenCopied(nondetSFT.outputOn(stringToListOfCharacter("abc"), ba), stringToListOfCharacter("abc")));
+		assertEquals(null, nondetSFT.outputOn(stringToListOfCharacter("de"), ba));
+
+		// long inputs no longer overflow the stack
+		List<Character> longInput = new ArrayList<Character>();
+		List<Character> shifted = new ArrayList<Character>();
+		for (int i = 0; i < 200000; i++) {
+			longInput.add('b');
+			shifted.add('c');
+		}
+		assertEquals(shifted, loopSFT.outputOn(longInput, ba));
+		assertTrue(isShiftedThenCopied(nondetSFT.outputOn(longInput, ba), longInput));
+	}
+
+	// Whether output is an output of the nondeterministic SFT of testCompiledSFT on input: a
+	// prefix of input shifted by one, followed by the rest of the input with '-' after every symbol
+	private static boolean isShiftedThenCopied(List<Character> output, List<Character> input) {
+		if (output == null)
+			return false;
+		int shifted = 2 * input.size() - output.size();
+		if (shifted < 0 || shifted >= input.size() || input.get(shifted) > 'c')
+			return false;
+		for (int i = 0; i < shifted; i++)
+			if (output.get(i) != input.get(i) + 1)
+				return false;
+		for (int i = shifted; i < input.size(); i++)
+			if (output.get(2 * i - shifted) != input.get(i).charValue() || output.get(2 * i - shifted + 1) != '-')
+				return false;
+		return true;
+	}
+
 	/**
 	 *
 	 * Method: compose(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps, BooleanAlgebraSubst<P, F, S> ba)
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import automata.sra.*;
 import logic.ltl.Predicate;
@@ -428,6 +429,98 @@ public class SRAUnitTest {
         assertFalse(sra2.isLanguageEquivalent(sra1, ba, Long.MAX_VALUE));
     }
 
+    @Test
+    public void testPreparedSRAQueries() throws TimeoutException {
+        CharPred abcPred = ba.MkOr(Arrays.asList(new CharPred('a'), new CharPred('b'), new CharPred('c')));
+
+        LinkedList<Character> registers1 = new LinkedList<Character>();
+        registers1.add('a');
+        Collection<SRAMove<CharPred, Character>> transitions1 = new LinkedList<SRAMove<CharPred, Character>>();
+        transitions1.add(new SRACheckMove<>(0, 1, abcPred, 0));
+        SRA<CharPred, Character> sra1 = SRA.MkSRA(transitions1, 0, Collections.singleton(1), registers1, ba);
+
+        LinkedList<Character> registers2 = new LinkedList<Character>();
+        registers2.add(null);
+        Collection<SRAMove<CharPred, Character>> transitions2 = new LinkedList<SRAMove<CharPred, Character>>();
+        transitions2.add(new SRAFreshMove<>(0, 1, abcPred, 0, registers2.size()));
+        SRA<CharPred, Character> sra2 = SRA.MkSRA(transitions2, 0, Collections.singleton(1), registers2, ba);
+
+        PreparedSRA<CharPred, Character> p1 = sra1.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> p2 = sra2.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> pa = autA.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> pb = autB.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> pm = msraAut.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> pEmpty = SRA.getEmptySRA(ba).prepare(ba, Long.MAX_VALUE);
+
+        // Repeated queries reuse the prepared forms
+        for (int i = 0; i < 2; i++) {
+            assertTrue(p2.languageIncludes(p1, Long.MAX_VALUE));
+            assertFalse(p1.languageIncludes(p2, Long.MAX_VALUE));
+            assertFalse(p1.isLanguageEquivalent(p2, Long.MAX_VALUE));
+            assertTrue(p1.isLanguageEquivalent(p1, Long.MAX_VALUE));
+        }
+
+        assertFalse(PreparedSRA.canSimulate(pa, pb, false, Long.MAX_VALUE));
+        assertTrue(PreparedSRA.canSimulate(pa, pa, true, Long.MAX_VALUE));
+        assertFalse(pm.isLanguageEmpty(Long.MAX_VALUE));
+        assertTrue(pEmpty.isLanguageEmpty(Long.MAX_VALUE));
+        assertTrue(pa.languageIncludes(pEmpty, Long.MAX_VALUE));
+
+        PreparedSRA<CharPred, Character> pInt = autA.intersectionWith(autB, ba, Long.MAX_VALUE).prepare(ba, Long.MAX_VALUE);
+        assertTrue(pa.languageIncludes(pInt, Long.MAX_VALUE));
+        assertTrue(pb.languageIncludes(pInt, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSimulationCheckerCounterexample() throws TimeoutException {
+        CharPred abcPred = ba.MkOr(Arrays.asList(new CharPred('a'), new CharPred('b'), new CharPred('c')));
+
+        LinkedList<Character> registers1 = new LinkedList<Character>();
+        registers1.add('a');
+        Collection<SRAMove<CharPred, Character>> transitions1 = new LinkedList<SRAMove<CharPred, Character>>();
+        transitions1.add(new SRACheckMove<>(0, 1, abcPred, 0));
+        SRA<CharPred, Character> sra1 = SRA.MkSRA(transitions1, 0, Collections.singleton(1), registers1, ba);
+
+        LinkedList<Character> registers2 = new LinkedList<Character>();
+        registers2.add(null);
+        Collection<SRAMove<CharPred, Character>> transitions2 = new LinkedList<SRAMove<CharPred, Character>>();
+        transitions2.add(new SRAFreshMove<>(0, 1, abcPred, 0, registers2.size()));
+        SRA<CharPred, Character> sra2 = SRA.MkSRA(transitions2, 0, Collections.singleton(1), registers2, ba);
+
+        PreparedSRA<CharPred, Character> p1 = sra1.prepare(ba, Long.MAX_VALUE);
+        PreparedSRA<CharPred, Character> p2 = sra2.prepare(ba, Long.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (ForkJoinPool p : Arrays.asList(null, pool)) {
+                SRASimulationChecker<CharPred, Character> included =
+                        SRASimulationChecker.forInclusion(p2, p1, p, Long.MAX_VALUE);
+                assertTrue(included.check(Long.MAX_VALUE));
+                assertTrue(included.getCounterexample() == null);
+
+                SRASimulationChecker<CharPred, Character> notIncluded =
+                        SRASimulationChecker.forInclusion(p1, p2, p, Long.MAX_VALUE);
+                assertFalse(notIncluded.check(Long.MAX_VALUE));
+                List<Character> cex = notIncluded.getCounterexample();
+                assertTrue(sra2.accepts(cex, ba));
+                assertFalse(sra1.accepts(cex, ba));
+
+                SRASimulationChecker<CharPred, Character> notEquivalent =
+                        SRASimulationChecker.forEquivalence(p1, p2, p, Long.MAX_VALUE);
+                assertFalse(notEquivalent.check(Long.MAX_VALUE));
+                cex = notEquivalent.getCounterexample();
+                assertTrue(sra1.accepts(cex, ba) != sra2.accepts(cex, ba));
+
+                PreparedSRA<CharPred, Character> pa = autA.prepare(ba, Long.MAX_VALUE);
+                PreparedSRA<CharPred, Character> pb = autB.prepare(ba, Long.MAX_VALUE);
+                assertTrue(new SRASimulationChecker<>(pa, pa, true, p).check(Long.MAX_VALUE));
+                assertFalse(new SRASimulationChecker<>(pa, pb, false, p).check(Long.MAX_VALUE));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     public void testMkComplete() throws TimeoutException {
         CharPred abcPred = ba.MkOr(Arrays.asList(new CharPred('a'), new CharPred('b'), new CharPred('c')));
@@ -24,6 +24,7 @@ import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
 import transducers.sst.CharConstant;
 import transducers.sst.CharFunction;
+import transducers.sst.CompiledSST;
 import transducers.sst.ConstantToken;
 import transducers.sst.FunctionalVariableUpdate;
 import transducers.sst.OutputUpdate;
@@ -368,6 +369,56 @@ public class SSTUnitTest {
 
 	}
 
+	@Test
+	public void testCompiledSST() throws TimeoutException {
+
+		try {
+			UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+
+			SST<CharPred, CharFunc, Character> leftStar = getCommaSepDelNumKeepAlph(ba).leftStar(ba);
+			CompiledSST<CharPred, CharFunc, Character> compiled = new CompiledSST<>(leftStar, ba);
+
+			// the blocks in reverse order, without their digits
+			String[][] expectedOutputs = { { "", "" }, { "a2,bb,", "bb,a," }, { "a22,b", null },
+					{ "ab,c3,d,", "d,c,ab," } };
+			for (String[] expected : expectedOutputs) {
+				List<Character> output = compiled.outputOn(lOfS(expected[0]));
+				assertTrue(expected[1] == null ? output == null : ba.stringOfList(output).equals(expected[1]));
+				output = leftStar.outputOn(lOfS(expected[0]), ba);
+				assertTrue(expected[1] == null ? output == null : ba.stringOfList(output).equals(expected[1]));
+			}
+
+			// the output can be extracted after every prefix
+			CompiledSST<CharPred, CharFunc, Character>.Evaluation evaluation = compiled.evaluate();
+			for (Character c : lOfS("a2,"))
+				assertTrue(evaluation.step(c));
+			assertTrue(ba.stringOfList(evaluation.getOutput()).equals("a,"));
+			for (Character c : lOfS("bb"))
+				assertTrue(evaluation.step(c));
+			assertTrue(evaluation.getOutput() == null);
+			assertTrue(evaluation.step(','));
+			assertTrue(ba.stringOfList(evaluation.getOutput()).equals("bb,a,"));
+			assertTrue(!evaluation.step('#'));
+			assertTrue(evaluation.getOutput() == null);
+
+			// long inputs build deep values
+			StringBuilder sb = new StringBuilder();
+			StringBuilder letters = new StringBuilder();
+			for (int i = 0; i < 50000; i++) {
+				sb.append("ab,");
+				letters.append("ab");
+			}
+			List<Character> output = leftStar.outputOn(lOfS(sb.toString()), ba);
+			assertTrue(ba.stringOfList(output).equals(sb.toString()));
+			output = getSSTd(ba).outputOn(lOfS(sb.toString().replace(',', '1')), ba);
+			assertTrue(ba.stringOfList(output).equals(letters.toString()));
+
+		} catch (AutomataException e) {
+			System.out.print(e);
+		}
+
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
@@ -5,10 +5,12 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import com.google.common.collect.ImmutableList;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -23,6 +25,8 @@ import automata.svpa.Internal;
 import automata.svpa.Return;
 import automata.svpa.SVPA;
 import automata.svpa.SVPAMove;
+import automata.svpa.SVPASimulator;
+import automata.svpa.SVPAValidator;
 import automata.svpa.TaggedSymbol;
 import automata.svpa.TaggedSymbol.SymbolTag;
 import theory.BooleanAlgebra;
@@ -107,6 +111,113 @@ public class SVPAUnitTest {
 		assertTrue(totA.stateCount == autA.stateCount + 1);
 		assertTrue(totA.transitionCount == 21);
 	}
+
+	@Test
+	public void testDeterminize() throws TimeoutException, AutomataException {
+		// many overlapping guards out of the same state
+		Collection<SVPAMove<ICharPred, Character>> transitions = new LinkedList<SVPAMove<ICharPred, Character>>();
+		for (int i = 0; i < 12; i++) {
+			transitions.add(new Internal<ICharPred, Character>(0, i + 1, new CharPred('a', (char) ('b' + i))));
+			transitions.add(new Internal<ICharPred, Character>(i + 1, 0, alpha));
+			transitions.add(new Call<ICharPred, Character>(i + 1, 0, i % 3, new CharPred((char) ('a' + i), 'z')));
+			transitions.add(new Return<ICharPred, Character>(i + 1, i + 1, i % 3, equality));
+		}
+		SVPA<ICharPred, Character> wide = SVPA.MkSVPA(transitions, Arrays.asList(0), Arrays.asList(3, 7), ba);
+
+		Random random = new Random(5);
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, autPeter, wide)) {
+			SVPA<ICharPred, Character> det = aut.determinize(ba);
+			assertTrue(det.isDeterministic(ba));
+
+			for (List<TaggedSymbol<Character>> word : randomNestedWords(random, 300))
+				assertTrue(aut.accepts(word, ba) == det.accepts(word, ba));
+		}
+	}
+
+	@Test
+	public void testValidator() throws TimeoutException, AutomataException {
+		Random random = new Random(11);
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, autPeter)) {
+			SVPAValidator<ICharPred, Character> validator = new SVPAValidator<ICharPred, Character>(aut, ba);
+
+			for (List<TaggedSymbol<Character>> word : randomNestedWords(random, 300))
+				assertTrue(aut.accepts(word, ba) == validator.validate(word));
+		}
+
+		// matched tags, nested far deeper than the initial stack
+		Collection<SVPAMove<ICharPred, Character>> transitions = new LinkedList<SVPAMove<ICharPred, Character>>();
+		transitions.add(new Call<ICharPred, Character>(0, 0, 0, alpha));
+		transitions.add(new Internal<ICharPred, Character>(0, 0, alpha));
+		transitions.add(new Return<ICharPred, Character>(0, 0, 0, equality));
+		SVPA<ICharPred, Character> matched = SVPA.MkSVPA(transitions, Arrays.asList(0), Arrays.asList(0), ba);
+
+		SVPAValidator<ICharPred, Character> validator = new SVPAValidator<ICharPred, Character>(matched, ba);
+		int depth = 100000;
+		for (int i = 0; i < depth; i++)
+			assertTrue(validator.call((char) ('a' + i % 26)));
+		assertTrue(validator.internal('x'));
+		assertTrue(validator.getDepth() == depth);
+		for (int i = depth - 1; i > 0; i--)
+			assertTrue(validator.ret((char) ('a' + i % 26)));
+		assertTrue(validator.isAccepting());
+		assertFalse(validator.ret('b'));
+		assertTrue(validator.isRejected());
+		assertFalse(validator.internal('a'));
+
+		validator.reset();
+		assertTrue(validator.isAccepting());
+		assertTrue(validator.getDepth() == 0);
+	}
+
+	@Test
+	public void testSimulator() throws TimeoutException, AutomataException {
+		// every call and return can move to both states with both stack
+		// states, so the number of distinct stacks is exponential in the depth
+		Collection<SVPAMove<ICharPred, Character>> transitions = new LinkedList<SVPAMove<ICharPred, Character>>();
+		for (int from = 0; from < 2; from++)
+			for (int to = 0; to < 2; to++)
+				for (int stackState = 0; stackState < 2; stackState++) {
+					transitions.add(new Call<ICharPred, Character>(from, to, stackState, alpha));
+					transitions.add(new Return<ICharPred, Character>(from, to, stackState, equality));
+				}
+		transitions.add(new Internal<ICharPred, Character>(0, 1, new CharPred('a')));
+		transitions.add(new Internal<ICharPred, Character>(1, 0, new CharPred('b')));
+		SVPA<ICharPred, Character> ambiguous = SVPA.MkSVPA(transitions, Arrays.asList(0), Arrays.asList(1), ba);
+
+		Random random = new Random(13);
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, autPeter, ambiguous)) {
+			SVPASimulator<ICharPred, Character> simulator = new SVPASimulator<ICharPred, Character>(aut, ba);
+			SVPAValidator<ICharPred, Character> validator = new SVPAValidator<ICharPred, Character>(aut, ba);
+
+			for (List<TaggedSymbol<Character>> word : randomNestedWords(random, 300)) {
+				boolean accepted = aut.acceptsWithExplicitStacks(word, ba);
+				assertTrue(simulator.accepts(word) == accepted);
+				assertTrue(validator.validate(word) == accepted);
+			}
+		}
+
+		List<TaggedSymbol<Character>> deep = new LinkedList<TaggedSymbol<Character>>();
+		int depth = 2000;
+		for (int i = 0; i < depth; i++)
+			deep.add(new TaggedSymbol<Character>((char) ('a' + i % 26), SymbolTag.Call));
+		deep.add(new TaggedSymbol<Character>('a', SymbolTag.Internal));
+		for (int i = depth - 1; i >= 0; i--)
+			deep.add(new TaggedSymbol<Character>((char) ('a' + i % 26), SymbolTag.Return));
+
+		// the explicit stacks are exponential in the depth, so the
+		// determinized validator is the reference
+		SVPAValidator<ICharPred, Character> validator = new SVPAValidator<ICharPred, Character>(ambiguous, ba);
+		SVPASimulator<ICharPred, Character> simulator = new SVPASimulator<ICharPred, Character>(ambiguous, ba);
+		assertTrue(validator.validate(deep));
+		assertTrue(simulator.accepts(deep));
+		assertTrue(simulator.getStateCount() == 2);
+
+		deep.set(depth + 1, new TaggedSymbol<Character>('b', SymbolTag.Return));
+		assertFalse(validator.validate(deep));
+		assertFalse(simulator.accepts(deep));
+		assertTrue(simulator.isRejected());
+	}
+
 	//
 	// @Test
 	// public void testComplement() {
@@ -612,6 +723,20 @@ public class SVPAUnitTest {
 																				 returnPred));
 	}
 
+	// count random nested words of length at most 7 over a few characters
+	private List<List<TaggedSymbol<Character>>> randomNestedWords(Random random, int count) {
+		List<Character> chars = Arrays.asList('a', 'b', 'c', 'h', 'x', '1');
+		List<List<TaggedSymbol<Character>>> words = new ArrayList<List<TaggedSymbol<Character>>>();
+		for (int w = 0; w < count; w++) {
+			List<TaggedSymbol<Character>> word = new LinkedList<TaggedSymbol<Character>>();
+			for (int l = random.nextInt(8); l > 0; l--)
+				word.add(new TaggedSymbol<Character>(chars.get(random.nextInt(chars.size())),
+						SymbolTag.values()[random.nextInt(3)]));
+			words.add(word);
+		}
+		return words;
+	}
+
 	// Another test from Peter
 	@Test
 	public void testBigIntersection() throws TimeoutException{
@@ -0,0 +1,283 @@
+package test.Serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.safa.SAFA;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import logic.ltl.LTLFactory;
+import logic.ltl.LTLFormula;
+import logic.regex.DerivativeAutomaton;
+import logic.regex.RegexFactory;
+import serialization.AutomatonSerializer;
+import serialization.BDDCodec;
+import serialization.CharFuncCodec;
+import serialization.CharPredCodec;
+import serialization.CharacterCodec;
+import theory.bdd.BDD;
+import theory.bddalgebra.BDDSolver;
+import theory.characters.CharFunc;
+import theory.characters.CharOffset;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import transducers.sft.SFT;
+import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTInputMove;
+import transducers.sft.SFTMove;
+import transducers.sst.CharConstant;
+import transducers.sst.CharFunction;
+import transducers.sst.ConstantToken;
+import transducers.sst.FunctionalVariableUpdate;
+import transducers.sst.OutputUpdate;
+import transducers.sst.SST;
+import transducers.sst.SSTEpsilon;
+import transducers.sst.SSTInputMove;
+import transducers.sst.SSTMove;
+import transducers.sst.SSTVariable;
+import transducers.sst.SimpleVariableUpdate;
+import transducers.sst.Token;
+
+public class SerializationUnitTest {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	AutomatonSerializer<CharPred, CharFunc, Character> serializer = new AutomatonSerializer<>(new CharPredCodec(),
+			new CharFuncCodec(), new CharacterCodec());
+
+	@Test
+	public void testSFA() throws IOException, TimeoutException {
+		// ([a-c]|x)*x{3}, determinized
+		RegexFactory<CharPred, Character> f = new RegexFactory<>();
+		SFA<CharPred, Character> sfa = new DerivativeAutomaton<>(
+				f.MkConcat(f.MkStar(f.MkUnion(f.MkAtom(new CharPred('a', 'c')), f.MkAtom(new CharPred('x')))),
+						f.MkRepeat(f.MkAtom(new CharPred('x')), 3, 3)),
+				f, ba).toSFA();
+		assertTrue(sfa.isDeterministic(ba));
+
+		SFA<CharPred, Character> read = serializer.readSFA(ByteBuffer.wrap(bytes(sfa)), ba);
+		assertEquals(sfa.stateCount(), read.stateCount());
+		assertEquals(sfa.getTransitionCount(), read.getTransitionCount());
+		assertEquals(sfa.getInitialState(), read.getInitialState());
+		assertEquals(new HashSet<>(sfa.getFinalStates()), new HashSet<>(read.getFinalStates()));
+		assertTrue(read.isDeterministic());
+		assertTrue(SFA.areEquivalent(sfa, read, ba));
+
+		// epsilon moves and states that are not numbered from 0
+		Collection<SFAMove<CharPred, Character>> transitions = new ArrayList<>();
+		transitions.add(new SFAInputMove<>(10, 20, new CharPred('a')));
+		transitions.add(new SFAEpsilon<>(20, 10));
+		transitions.add(new SFAInputMove<>(20, 30, new CharPred('0', '9')));
+		SFA<CharPred, Character> eps = SFA.MkSFA(transitions, 10, Arrays.asList(30), ba, false, false);
+		read = serializer.readSFA(ByteBuffer.wrap(bytes(eps)), ba);
+		assertEquals(new HashSet<>(eps.getStates()), new HashSet<>(read.getStates()));
+		assertEquals(1, read.getEpsilonFrom(20).size());
+		assertTrue(read.accepts(lOfS("aaa5"), ba));
+		assertTrue(SFA.areEquivalent(eps, read, ba));
+	}
+
+	@Test
+	public void testMappedFile() throws IOException, TimeoutException {
+		SFA<CharPred, Character> sfa = new RegexFactory<CharPred, Character>().MkAtom(new CharPred('a', 'z'))
+				.getCSFA().toSFA(ba);
+		File file = File.createTempFile("sfa", ".aut");
+		file.deleteOnExit();
+		try (OutputStream out = new FileOutputStream(file)) {
+			serializer.write(sfa, out);
+		}
+		SFA<CharPred, Character> read = serializer.readSFA(AutomatonSerializer.map(file), ba);
+		assertTrue(SFA.areEquivalent(sfa, read, ba));
+	}
+
+	@Test
+	public void testBDD() throws IOException, TimeoutException {
+		BDDSolver bs = new BDDSolver(4);
+		BDD x0 = bs.factory.ithVar(0);
+		BDD x1 = bs.factory.ithVar(1);
+		BDD x3 = bs.factory.ithVar(3);
+		Collection<SFAMove<BDD, BDD>> transitions = new ArrayList<>();
+		transitions.add(new SFAInputMove<>(0, 1, x0.and(x1)));
+		transitions.add(new SFAInputMove<>(1, 1, x0.or(x3.not())));
+		transitions.add(new SFAInputMove<>(1, 2, x1.xor(x3)));
+		SFA<BDD, BDD> sfa = SFA.MkSFA(transitions, 0, Arrays.asList(2), bs);
+
+		AutomatonSerializer<BDD, Void, BDD> same = new AutomatonSerializer<>(new BDDCodec(bs.factory));
+		byte[] bytes = SerializedSFAs.bytes(sfa, same);
+		assertTrue(SFA.areEquivalent(sfa, same.readSFA(ByteBuffer.wrap(bytes), bs), bs));
+
+		// loading in another factory and back gives the same automaton
+		BDDSolver other = new BDDSolver(4);
+		AutomatonSerializer<BDD, Void, BDD> otherSerializer = new AutomatonSerializer<>(new BDDCodec(other.factory));
+		SFA<BDD, BDD> copy = otherSerializer.readSFA(ByteBuffer.wrap(bytes), other);
+		assertEquals(sfa.getTransitionCount(), copy.getTransitionCount());
+		SFA<BDD, BDD> back = same.readSFA(ByteBuffer.wrap(SerializedSFAs.bytes(copy, otherSerializer)), bs);
+		assertTrue(SFA.areEquivalent(sfa, back, bs));
+	}
+
+	@Test
+	public void testSAFA() throws IOException, TimeoutException {
+		// F a & G (a -> X b), whose moves go to conjunctions of states
+		LTLFactory<CharPred, Character> f = new LTLFactory<>();
+		LTLFormula<CharPred, Character> a = f.MkPredicate(new CharPred('a'));
+		LTLFormula<CharPred, Character> b = f.MkPredicate(new CharPred('b'));
+		LTLFormula<CharPred, Character> notA = f.MkPredicate(ba.MkNot(new CharPred('a')));
+		LTLFormula<CharPred, Character> phi = f.MkAnd(f.MkEventually(a), f.MkGlobally(f.MkOr(notA, f.MkNext(b))));
+		SAFA<CharPred, Character> safa = phi.getSAFA(ba);
+
+		AutomatonSerializer<CharPred, Void, Character> safaSerializer = new AutomatonSerializer<>(
+				new CharPredCodec());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		safaSerializer.write(safa, out);
+		SAFA<CharPred, Character> read = safaSerializer.readSAFA(ByteBuffer.wrap(out.toByteArray()), ba);
+		assertEquals(safa.stateCount(), read.stateCount());
+		assertEquals(safa.getTransitionCount(), read.getTransitionCount());
+		assertEquals(safa.getInitialState(), read.getInitialState());
+
+		Random random = new Random(3);
+		for (int i = 0; i < 200; i++) {
+			List<Character> input = randomInput(random, "abc", 6);
+			assertEquals(input.toString(), safa.accepts(input, ba), read.accepts(input, ba));
+		}
+	}
+
+	@Test
+	public void testSFT() throws IOException, TimeoutException {
+		// shifts letters, replaces a digit by "#" and appends "!" after a
+		// final digit
+		List<CharFunc> shift = Arrays.asList(new CharOffset(1), new theory.characters.CharConstant('-'));
+		Collection<SFTMove<CharPred, CharFunc, Character>> transitions = new ArrayList<>();
+		transitions.add(new SFTInputMove<>(0, 0, new CharPred('a', 'y'), shift));
+		transitions.add(new SFTInputMove<>(0, 1, new CharPred('0', '9'),
+				Arrays.<CharFunc>asList(new theory.characters.CharConstant('#'))));
+		transitions.add(new SFTEpsilon<CharPred, CharFunc, Character>(1, 0, Arrays.asList('.')));
+		Map<Integer, Set<List<Character>>> finalStatesAndTails = new HashMap<>();
+		finalStatesAndTails.put(0, new HashSet<>());
+		finalStatesAndTails.put(1, new HashSet<>(Arrays.asList(Arrays.asList('!'))));
+		SFT<CharPred, CharFunc, Character> sft = SFT.MkSFT(transitions, 0, finalStatesAndTails, ba);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(sft, out);
+		SFT<CharPred, CharFunc, Character> read = serializer.readSFT(ByteBuffer.wrap(out.toByteArray()), ba);
+		assertEquals(sft.getFinalStatesAndTails(), read.getFinalStatesAndTails());
+		assertEquals(sft.getTransitions().size(), read.getTransitions().size());
+		for (String input : Arrays.asList("", "abc", "ab3", "a1b2", "z"))
+			assertEquals(input, sft.outputOn(lOfS(input), ba), read.outputOn(lOfS(input), ba));
+	}
+
+	@Test
+	public void testSST() throws IOException, TimeoutException {
+		// x collects the shifted letters and y the digits in reverse, then
+		// an epsilon move appends y to x
+		Collection<SSTMove<CharPred, CharFunc, Character>> transitions = new ArrayList<>();
+		ArrayList<List<Token<CharPred, CharFunc, Character>>> letter = new ArrayList<>();
+		letter.add(Arrays.asList(new SSTVariable<>(0), new CharFunction<>(new CharOffset(1))));
+		letter.add(Arrays.asList(new SSTVariable<>(1)));
+		transitions.add(new SSTInputMove<>(0, 0, new CharPred('a', 'y'), new FunctionalVariableUpdate<>(letter)));
+		ArrayList<List<Token<CharPred, CharFunc, Character>>> digit = new ArrayList<>();
+		digit.add(Arrays.asList(new SSTVariable<>(0)));
+		digit.add(Arrays.asList(new CharFunction<>(new CharOffset(0)), new SSTVariable<>(1)));
+		transitions.add(new SSTInputMove<>(0, 0, new CharPred('0', '9'), new FunctionalVariableUpdate<>(digit)));
+		ArrayList<List<ConstantToken<CharPred, CharFunc, Character>>> append = new ArrayList<>();
+		append.add(Arrays.asList(new SSTVariable<>(0), new CharConstant<>('|'), new SSTVariable<>(1)));
+		append.add(new ArrayList<>());
+		transitions.add(new SSTEpsilon<>(0, 1, new SimpleVariableUpdate<>(append)));
+		Map<Integer, OutputUpdate<CharPred, CharFunc, Character>> outputFunction = new HashMap<>();
+		outputFunction.put(1, new OutputUpdate<>(Arrays.asList(new SSTVariable<>(0), new CharConstant<>('!'))));
+		SST<CharPred, CharFunc, Character> sst = SST.MkSST(transitions, 0, 2, outputFunction, ba);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(sst, out);
+		SST<CharPred, CharFunc, Character> read = serializer.readSST(ByteBuffer.wrap(out.toByteArray()), ba);
+		assertEquals(sst.getVariableCount(), read.getVariableCount());
+		assertEquals(sst.getTransitions().size(), read.getTransitions().size());
+		assertEquals(lOfS("bcd|21!"), read.outputOn(lOfS("a1bc2"), ba));
+		for (String input : Arrays.asList("", "abc", "123", "a1b2"))
+			assertEquals(input, sst.outputOn(lOfS(input), ba), read.outputOn(lOfS(input), ba));
+	}
+
+	@Test
+	public void testInvalidInput() throws IOException, TimeoutException {
+		SFA<CharPred, Character> sfa = SFA.getFullSFA(ba);
+		byte[] bytes = bytes(sfa);
+
+		// another kind
+		expectIOException(() -> serializer.readSAFA(ByteBuffer.wrap(bytes), ba));
+
+		// another version
+		byte[] version = bytes.clone();
+		version[5]++;
+		expectIOException(() -> serializer.readSFA(ByteBuffer.wrap(version), ba));
+
+		// truncated
+		expectIOException(() -> serializer.readSFA(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 4)), ba));
+
+		// an initial state out of range
+		byte[] initial = bytes.clone();
+		ByteBuffer.wrap(initial).putInt(SerializedSFAs.initialStateOffset(initial), 1000);
+		expectIOException(() -> serializer.readSFA(ByteBuffer.wrap(initial), ba));
+
+		// the target and the guard of the move, before the epsilon table
+		for (int offset : new int[] { 16, 12 }) {
+			byte[] move = bytes.clone();
+			ByteBuffer.wrap(move).putInt(move.length - offset, -1);
+			expectIOException(() -> serializer.readSFA(ByteBuffer.wrap(move), ba));
+		}
+
+		// list offsets not starting from 0
+		byte[] lists = bytes.clone();
+		ByteBuffer.wrap(lists).putInt(SerializedSFAs.listsOffset(lists) + 4, -1);
+		expectIOException(() -> serializer.readSFA(ByteBuffer.wrap(lists), ba));
+	}
+
+	private interface Read {
+		void run() throws IOException, TimeoutException;
+	}
+
+	private void expectIOException(Read read) throws TimeoutException {
+		try {
+			read.run();
+			fail("The input should be rejected");
+		} catch (IOException e) {
+		}
+	}
+
+	private byte[] bytes(SFA<CharPred, Character> sfa) throws IOException {
+		return SerializedSFAs.bytes(sfa, serializer);
+	}
+
+	private List<Character> randomInput(Random random, String alphabet, int maxLength) {
+		List<Character> input = new ArrayList<>();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++)
+			input.add(alphabet.charAt(random.nextInt(alphabet.length())));
+		return input;
+	}
+
+	private List<Character> lOfS(String s) {
+		List<Character> l = new ArrayList<>();
+		for (char c : s.toCharArray())
+			l.add(c);
+		return l;
+	}
+}
@@ -0,0 +1,40 @@
+package test.Serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import automata.sfa.SFA;
+import serialization.AutomatonSerializer;
+
+// Writes SFAs to bytes and locates the fields of their layout, so that tests
+// can corrupt them
+public class SerializedSFAs {
+
+	public static <P, F, S> byte[] bytes(SFA<P, S> sfa, AutomatonSerializer<P, F, S> serializer)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(sfa, out);
+		return out.toByteArray();
+	}
+
+	// The offset of the list table of a serialized SFA, after the header and
+	// the predicate pool
+	public static int listsOffset(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int length = buffer.getInt(8);
+		return 12 + (length + 3) / 4 * 4;
+	}
+
+	// The offset of the index of the initial state of a serialized SFA, after
+	// the lists and the states
+	public static int initialStateOffset(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position(listsOffset(bytes));
+		int listCount = buffer.getInt();
+		int elements = buffer.getInt(buffer.position() + 4 * listCount);
+		buffer.position(buffer.position() + 4 * (listCount + 1 + elements));
+		int stateCount = buffer.getInt();
+		return buffer.position() + 4 * stateCount;
+	}
+}
@@ -1,9 +1,16 @@
 package test.Theory;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
+import org.sat4j.minisat.SolverFactory;
 
 import theory.sat.SATBooleanAlgebra;
 
@@ -60,4 +67,103 @@ public class SATUnitTest {
 		boolean[] m2 = ba.generateWitness(p2);
 		assertTrue(ba.HasModel(p2, m2));
 	}
+
+	@Test
+	public void testSessions() {
+		Integer p = ba.MkAnd(1, 2);
+		int variables = ba.getNumVariables();
+		int definitions = ba.getNumDefinitions();
+
+		ba.pushSession();
+		Integer q = ba.MkAnd(p, ba.MkOr(-1, -2));
+		assertEquals(1, ba.getSessionDepth());
+		assertFalse(ba.IsSatisfiable(q));
+		assertTrue(ba.IsSatisfiable(ba.MkOr(q, 3)));
+		assertTrue(ba.AreEquivalent(ba.MkAnd(1, 2), p));
+		boolean[] m = ba.generateWitness(ba.MkOr(-1, 3));
+		assertTrue(ba.HasModel(ba.MkOr(-1, 3), m));
+
+		ba.pushSession();
+		Integer r = ba.MkAnd(-1, 3);
+		assertTrue(ba.IsSatisfiable(r));
+		assertTrue(ba.AreEquivalent(ba.MkAnd(r, ba.MkOr(1, 2)), ba.MkAnd(Arrays.asList(-1, 2, 3))));
+		ba.popSession();
+		ba.popSession();
+		assertEquals(0, ba.getSessionDepth());
+		assertEquals(definitions, ba.getNumDefinitions());
+
+		// the retracted definitions do not constrain the base formulas
+		assertTrue(ba.IsSatisfiable(p));
+		assertTrue(ba.IsSatisfiable(-3));
+		ba.rebuild();
+		assertEquals(variables, ba.getNumVariables());
+		// the variables of the retracted definitions are reused
+		assertTrue(ba.IsSatisfiable(ba.MkAnd(-1, 3)));
+		assertEquals(variables + 1, ba.getNumVariables());
+		assertTrue(ba.IsSatisfiable(p));
+		assertFalse(ba.IsSatisfiable(ba.MkAnd(p, -2)));
+		assertTrue(ba.AreEquivalent(p, ba.MkAnd(2, 1)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPopWithoutPush() {
+		new SATBooleanAlgebra(universe).popSession();
+	}
+
+	@Test
+	public void testRandomSessions() {
+		// formulas built in sessions agree with a fresh algebra
+		Random random = new Random(3);
+		int n = 6;
+		SATBooleanAlgebra sba = new SATBooleanAlgebra(SolverFactory.newDefault(), n, 8);
+		Integer base = sba.MkOr(1, sba.MkAnd(2, -3));
+		for (int round = 0; round < 40; round++) {
+			sba.pushSession();
+			SATBooleanAlgebra fresh = new SATBooleanAlgebra(n);
+			List<Integer> fs = new ArrayList<>();
+			List<Integer> gs = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				int[] f = randomFormula(random, sba, fresh, n, 3);
+				fs.add(sba.MkAnd(base, f[0]));
+				gs.add(fresh.MkAnd(fresh.MkOr(1, fresh.MkAnd(2, -3)), f[1]));
+			}
+			boolean[] batch = sba.AreSatisfiable(fs);
+			for (int i = 0; i < fs.size(); i++) {
+				assertEquals(fresh.IsSatisfiable(gs.get(i)), batch[i]);
+				assertEquals(fresh.IsSatisfiable(gs.get(i)), sba.IsSatisfiable(fs.get(i)));
+				assertEquals(fresh.AreEquivalent(gs.get(i), gs.get(0)), sba.AreEquivalent(fs.get(i), fs.get(0)));
+			}
+			sba.popSession();
+			if (round % 10 == 9)
+				sba.rebuild();
+		}
+		assertEquals(2, sba.getNumDefinitions());
+	}
+
+	// a random formula built in both algebras
+	private static int[] randomFormula(Random random, SATBooleanAlgebra a, SATBooleanAlgebra b, int n,
+			int depth) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			int v = (1 + random.nextInt(n)) * (random.nextBoolean() ? 1 : -1);
+			return new int[] { v, v };
+		}
+		int[] l = randomFormula(random, a, b, n, depth - 1);
+		int[] r = randomFormula(random, a, b, n, depth - 1);
+		switch (random.nextInt(3)) {
+		case 0:
+			return new int[] { a.MkAnd(l[0], r[0]), b.MkAnd(l[1], r[1]) };
+		case 1:
+			return new int[] { a.MkOr(l[0], r[0]), b.MkOr(l[1], r[1]) };
+		default:
+			return new int[] { a.MkNot(a.MkAnd(l[0], r[0])), b.MkNot(b.MkAnd(l[1], r[1])) };
+		}
+	}
+
+	@Test
+	public void testAreSatisfiable() {
+		List<Integer> ps = Arrays.asList(1, ba.MkAnd(1, -1), ba.MkAnd(1, 2), ba.MkAnd(ba.MkOr(1, 2), -1),
+				ba.False(), ba.True());
+		assertEquals(Arrays.toString(new boolean[] { true, false, true, true, false, true }),
+				Arrays.toString(ba.AreSatisfiable(ps)));
+	}
 }
@@ -0,0 +1,110 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+import theory.bdd.BDDFactory.CacheStats;
+
+public class TestBDDCache {
+
+	static final int VARS = 12;
+
+	@Test
+	public void testCacheStats() {
+		BDDFactory f = BDDFactory.init("java", 10000, 1000);
+		f.setVarNum(VARS);
+		assertFalse(f.setCacheStatsEnabled(true));
+		CacheStats stats = f.getCacheStats();
+		stats.reset();
+
+		List<BDD> first = randomBDDs(f, new Random(5));
+		int misses = stats.opMiss;
+		assertTrue(misses > 0);
+		assertTrue(stats.uniqueAccess > 0);
+
+		// the same operations again are answered by the caches
+		int hits = stats.opHit;
+		List<BDD> second = randomBDDs(f, new Random(5));
+		assertTrue(stats.opHit > hits);
+		for (int i = 0; i < first.size(); i++)
+			assertTrue(first.get(i).equals(second.get(i)));
+
+		assertTrue(f.setCacheStatsEnabled(false));
+		stats.reset();
+		randomBDDs(f, new Random(6));
+		assertEquals(0, stats.opMiss);
+		assertEquals(0, stats.uniqueAccess);
+	}
+
+	@Test
+	public void testSmallTables() {
+		// garbage collections, node table and cache resizes happen during the
+		// operations of the first factory
+		BDDFactory small = BDDFactory.init("java", 50, 5);
+		small.setCacheRatio(4);
+		small.setVarNum(VARS);
+		BDDFactory reference = BDDFactory.init("micro", 100000, 10000);
+		reference.setVarNum(VARS);
+
+		for (int seed = 0; seed < 5; seed++) {
+			List<BDD> actual = randomBDDs(small, new Random(seed));
+			List<BDD> expected = randomBDDs(reference, new Random(seed));
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).satCount(), actual.get(i).satCount(), 0);
+				assertEquals(expected.get(i).nodeCount(), actual.get(i).nodeCount());
+			}
+		}
+		assertTrue(small.getGCStats().num > 0);
+	}
+
+	// The results of random operations on random cubes
+	private List<BDD> randomBDDs(BDDFactory f, Random random) {
+		List<BDD> bdds = new ArrayList<BDD>();
+		for (int i = 0; i < 6; i++) {
+			BDD b = f.zero();
+			for (int c = 0; c < 5; c++) {
+				BDD cube = f.one();
+				for (int l = 0; l < 3; l++) {
+					int var = random.nextInt(VARS);
+					cube.andWith(random.nextBoolean() ? f.ithVar(var) : f.nithVar(var));
+				}
+				b.orWith(cube);
+			}
+			bdds.add(b);
+		}
+		for (int i = 0; i < 30; i++) {
+			BDD x = bdds.get(random.nextInt(bdds.size()));
+			BDD y = bdds.get(random.nextInt(bdds.size()));
+			BDD z = bdds.get(random.nextInt(bdds.size()));
+			switch (random.nextInt(5)) {
+			case 0:
+				bdds.add(x.and(y));
+				break;
+			case 1:
+				bdds.add(x.xor(y));
+				break;
+			case 2:
+				bdds.add(x.ite(y, z));
+				break;
+			case 3:
+				bdds.add(x.exist(f.ithVar(random.nextInt(VARS))));
+				break;
+			default:
+				bdds.add(x.or(y).not());
+				break;
+			}
+		}
+		for (BDD b : bdds)
+			b.satCount();
+		return bdds;
+	}
+}
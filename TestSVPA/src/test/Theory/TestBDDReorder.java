@@ -0,0 +1,83 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import theory.bdd.BDD;
+import theory.bddalgebra.BDDSolver;
+
+public class TestBDDReorder {
+
+	static final int PAIRS = 10;
+
+	@Test
+	public void testAutoReorder() throws Exception {
+		File file = File.createTempFile("bdd", ".order");
+		file.delete();
+		file.deleteOnExit();
+
+		BDDSolver fixed = new BDDSolver(2 * PAIRS, "java");
+		BDD expected = pairs(fixed);
+
+		BDDSolver solver = new BDDSolver(2 * PAIRS, "java");
+		solver.setAutoReorder(500, 10000, file.getPath());
+		BDD reordered = pairs(solver);
+
+		assertTrue(solver.getReorderCount() > 0);
+		assertEquals(expected.satCount(), reordered.satCount(), 0);
+		// x_i and y_i end up next to each other
+		assertTrue(reordered.nodeCount() < expected.nodeCount() / 10);
+		assertTrue(file.exists());
+
+		// the saved order is applied before building anything
+		BDDSolver loaded = new BDDSolver(2 * PAIRS, "java");
+		loaded.setAutoReorder(500, 10000, file.getPath());
+		BDD small = pairs(loaded);
+		assertEquals(0, loaded.getReorderCount());
+		assertEquals(reordered.nodeCount(), small.nodeCount());
+		assertEquals(expected.satCount(), small.satCount(), 0);
+		assertTrue(Arrays.equals(solver.getVarOrder(), loaded.getVarOrder()));
+
+		// an order for a different number of variables is ignored
+		assertFalse(new BDDSolver(3, "java").loadVarOrder(file.getPath()));
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		BDDSolver solver = new BDDSolver(2 * PAIRS, "java");
+		solver.setAutoReorder(100, 0, null);
+		pairs(solver);
+		// the first reordering uses up the budget
+		assertEquals(1, solver.getReorderCount());
+	}
+
+	@Test
+	public void testAutoSize() {
+		// about 2^15 nodes
+		BDDSolver solver = new BDDSolver(28, "java");
+		int nodes = solver.factory.getNodeTableSize();
+		int cache = solver.factory.getCacheSize();
+		pairs(solver, 14);
+		assertTrue(solver.factory.getNodeTableSize() > nodes);
+		assertTrue(solver.factory.getCacheSize() > cache);
+	}
+
+	// (x_0 & y_0) | ... | (x_n & y_n), exponential in the order x_0..x_n
+	// y_0..y_n
+	private BDD pairs(BDDSolver solver) {
+		return pairs(solver, PAIRS);
+	}
+
+	private BDD pairs(BDDSolver solver, int n) {
+		BDD result = solver.False();
+		for (int i = 0; i < n; i++)
+			result = solver.MkOr(result, solver.MkAnd(solver.factory.ithVar(i), solver.factory.ithVar(n + i)));
+		return result;
+	}
+}
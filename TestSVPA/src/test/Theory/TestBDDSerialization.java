@@ -0,0 +1,134 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+
+public class TestBDDSerialization {
+
+	static final int VARS = 16;
+
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		for (String from : new String[] { "java", "micro", "jdd" }) {
+			for (String to : new String[] { "java", "micro", "jdd" }) {
+				BDDFactory source = BDDFactory.init(from, 10000, 1000);
+				source.setVarNum(VARS);
+				BDD[] roots = randomBDDs(source, new Random(42));
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				source.saveBinary(out, roots);
+
+				BDDFactory target = BDDFactory.init(to, 1000, 1000);
+				BDD[] loaded = target.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+
+				assertEquals(VARS, target.varNum());
+				assertSame(roots, loaded);
+
+				// loading in the same factory returns the same nodes
+				BDD[] reloaded = source.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+				for (int i = 0; i < roots.length; i++)
+					assertTrue(roots[i].equals(reloaded[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testCorruptNodeCount() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(0x42444442); // magic
+		data.writeByte(1); // version
+		data.writeByte(0); // no variables
+		data.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F }); // -1 nodes
+		data.writeByte(1); // one root
+		data.flush();
+
+		for (String kind : new String[] { "java", "micro", "jdd" }) {
+			BDDFactory f = BDDFactory.init(kind, 1000, 1000);
+			try {
+				f.loadBinary(new ByteArrayInputStream(out.toByteArray()));
+				fail("negative node count accepted by " + kind);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		File file = File.createTempFile("bdd", ".snapshot");
+		file.deleteOnExit();
+
+		for (String kind : new String[] { "java", "micro", "jdd" }) {
+			BDDFactory source = BDDFactory.init(kind, 10000, 1000);
+			source.setVarNum(VARS);
+			BDD[] roots = randomBDDs(source, new Random(7));
+			source.saveSnapshot(file.getPath(), roots);
+
+			BDDFactory target = BDDFactory.init(kind, 100, 1000);
+			assertSame(roots, target.loadSnapshot(file.getPath()));
+
+			// a different variable order goes through ite
+			BDDFactory reordered = BDDFactory.init(kind, 1000, 1000);
+			reordered.setVarNum(VARS);
+			int[] order = new int[VARS];
+			for (int i = 0; i < VARS; i++)
+				order[i] = VARS - 1 - i;
+			reordered.setVarOrder(order);
+			assertSame(roots, reordered.loadSnapshot(file.getPath()));
+		}
+	}
+
+	// Random BDDs sharing nodes, plus the constants
+	private BDD[] randomBDDs(BDDFactory f, Random random) {
+		BDD[] roots = new BDD[12];
+		roots[0] = f.zero();
+		roots[1] = f.one();
+		for (int i = 2; i < roots.length; i++) {
+			BDD b = i % 3 == 0 ? roots[i - 1].id() : f.zero();
+			for (int c = 0; c < 6; c++) {
+				BDD cube = f.one();
+				for (int l = 0; l < 4; l++) {
+					int var = random.nextInt(VARS);
+					cube.andWith(random.nextBoolean() ? f.ithVar(var) : f.nithVar(var));
+				}
+				b.orWith(cube);
+			}
+			roots[i] = b;
+		}
+		return roots;
+	}
+
+	// Compares BDDs of different factories by truth table
+	private void assertSame(BDD[] expected, BDD[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].satCount(), actual[i].satCount(), 0);
+			for (int assignment = 0; assignment < 1 << VARS; assignment += 997)
+				assertEquals(evaluate(expected[i], assignment), evaluate(actual[i], assignment));
+		}
+	}
+
+	private boolean evaluate(BDD b, int assignment) {
+		BDD r = b.id();
+		for (int var = 0; var < VARS; var++) {
+			BDD lit = (assignment & (1 << var)) != 0 ? r.getFactory().ithVar(var) : r.getFactory().nithVar(var);
+			r.andWith(lit);
+		}
+		boolean result = !r.isZero();
+		r.free();
+		return result;
+	}
+}
@@ -0,0 +1,109 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import com.google.common.collect.ImmutableList;
+
+import theory.intervals.BoundedIntegerSolver;
+import theory.intervals.IntPred;
+import theory.intervals.IntegerSolver;
+import theory.intervals.StdIntPred;
+import utilities.Pair;
+
+public class TestIntPred {
+	IntegerSolver ba = new IntegerSolver();
+
+	@Test
+	public void testNormalForm() {
+		IntPred p = new IntPred(ImmutableList.of(ImmutablePair.of(5, 7), ImmutablePair.of(0, 2),
+				ImmutablePair.of(3, 4), ImmutablePair.of(10, (Integer) null)));
+		assertEquals("[0,7]U[10,inf]", p.toString());
+		assertEquals(ImmutableList.of(ImmutablePair.of(0, 7), ImmutablePair.of(10, (Integer) null)), p.getIntervals());
+		assertTrue(p.equals(ba.MkOr(new IntPred(0, 7), new IntPred(10, null))));
+		assertTrue(ba.AreEquivalent(StdIntPred.TRUE, ba.MkOr(p, ba.MkNot(p))));
+		assertFalse(ba.IsSatisfiable(ba.MkAnd(p, ba.MkNot(p))));
+		assertTrue(p.isSatisfiedBy(Integer.MAX_VALUE));
+		assertFalse(p.isSatisfiedBy(Integer.MIN_VALUE));
+		assertEquals(ImmutableList.of(ImmutablePair.of((Integer) null, -1), ImmutablePair.of(8, 9)),
+				IntPred.invertIntervals(p.getIntervals()));
+	}
+
+	@Test
+	public void testOperationsAgainstMembership() {
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			IntPred p1 = randomPred(random);
+			IntPred p2 = randomPred(random);
+			IntPred and = ba.MkAnd(p1, p2);
+			IntPred or = ba.MkOr(p1, p2);
+			IntPred orAll = ba.MkOr(Arrays.asList(p1, p2, and));
+			IntPred not = ba.MkNot(p1);
+			for (int n = -25; n <= 25; n++) {
+				assertEquals(p1.isSatisfiedBy(n) && p2.isSatisfiedBy(n), and.isSatisfiedBy(n));
+				assertEquals(p1.isSatisfiedBy(n) || p2.isSatisfiedBy(n), or.isSatisfiedBy(n));
+				assertEquals(or.isSatisfiedBy(n), orAll.isSatisfiedBy(n));
+				assertEquals(!p1.isSatisfiedBy(n), not.isSatisfiedBy(n));
+			}
+			assertEquals(p1, ba.MkNot(not));
+		}
+	}
+
+	@Test
+	public void testMinterms() throws TimeoutException {
+		Random random = new Random(11);
+		BoundedIntegerSolver bounded = new BoundedIntegerSolver(-10, 10);
+		for (int round = 0; round < 50; round++) {
+			ArrayList<IntPred> preds = new ArrayList<IntPred>();
+			for (int k = 0; k < 4; k++)
+				preds.add(randomPred(random));
+			checkMinterms(ba.GetMinterms(preds), preds, -25, 25, null);
+			checkMinterms(bounded.GetMinterms(preds), preds, -25, 25, bounded.True());
+		}
+	}
+
+	// every integer of the universe is in exactly one minterm, which agrees
+	// with its bits
+	private void checkMinterms(Collection<Pair<IntPred, ArrayList<Integer>>> minterms, List<IntPred> preds,
+			int from, int to, IntPred universe) {
+		Set<ArrayList<Integer>> bits = new HashSet<ArrayList<Integer>>();
+		for (Pair<IntPred, ArrayList<Integer>> minterm : minterms) {
+			assertTrue(ba.IsSatisfiable(minterm.first));
+			assertTrue(bits.add(minterm.second));
+		}
+		for (int n = from; n <= to; n++) {
+			int count = 0;
+			for (Pair<IntPred, ArrayList<Integer>> minterm : minterms)
+				if (minterm.first.isSatisfiedBy(n)) {
+					count++;
+					for (int k = 0; k < preds.size(); k++)
+						assertEquals(preds.get(k).isSatisfiedBy(n), minterm.second.get(k) == 1);
+				}
+			assertEquals(universe == null || universe.isSatisfiedBy(n) ? 1 : 0, count);
+		}
+	}
+
+	private static IntPred randomPred(Random random) {
+		ImmutableList.Builder<ImmutablePair<Integer, Integer>> intervals = ImmutableList.builder();
+		int count = random.nextInt(4);
+		for (int i = 0; i < count; i++) {
+			int lo = random.nextInt(40) - 20;
+			int hi = lo + random.nextInt(6);
+			intervals.add(ImmutablePair.of(random.nextInt(8) == 0 ? null : lo, random.nextInt(8) == 0 ? null : hi));
+		}
+		return new IntPred(intervals.build());
+	}
+}
@@ -0,0 +1,119 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import theory.ProductAlgebra;
+import theory.cartesian.CartesianProduct;
+import theory.intervals.BoundedIntegerSolver;
+import theory.intervals.IntPred;
+import theory.intervals.IntegerSolver;
+import utilities.Pair;
+
+public class TestProductAlgebra {
+
+	static final int MAX = 12;
+
+	@Test
+	public void testCanonical() throws TimeoutException {
+		IntegerSolver ba = new IntegerSolver();
+		assertTrue(ba.hasCanonicalPredicates());
+		checkRandom(ba, new Random(2));
+	}
+
+	@Test
+	public void testNotCanonical() throws TimeoutException {
+		// the fallback on AreEquivalent
+		BoundedIntegerSolver ba = new BoundedIntegerSolver(0, MAX);
+		assertFalse(ba.hasCanonicalPredicates());
+		checkRandom(ba, new Random(4));
+	}
+
+	@Test
+	public void testNormalForm() throws TimeoutException {
+		IntegerSolver ba = new IntegerSolver();
+		List<Pair<IntPred, IntPred>> products = new ArrayList<Pair<IntPred, IntPred>>();
+		products.add(new Pair<IntPred, IntPred>(new IntPred(0, 5), new IntPred(0, 1)));
+		products.add(new Pair<IntPred, IntPred>(new IntPred(3, 8), new IntPred(2, 3)));
+		products.add(new Pair<IntPred, IntPred>(new IntPred(9, 9), new IntPred(0, 1)));
+		products.add(new Pair<IntPred, IntPred>(new IntPred(10, 11), ba.False()));
+		CartesianProduct<IntPred, IntPred> p = new CartesianProduct<IntPred, IntPred>(products);
+		p.normalize(ba, ba);
+
+		// [0,2]u[9,9] x [0,1], [3,5] x [0,3], [6,8] x [2,3]
+		assertTrue(p.isNormalized());
+		assertEquals(3, p.getProducts().size());
+		for (Pair<IntPred, IntPred> pair : p.getProducts())
+			if (pair.second.equals(new IntPred(0, 1)))
+				assertEquals(ba.MkOr(new IntPred(0, 2), new IntPred(9, 9)), pair.first);
+	}
+
+	private void checkRandom(BooleanAlgebra<IntPred, Integer> ba, Random random) throws TimeoutException {
+		ProductAlgebra<IntPred, Integer, IntPred, Integer> pba = new ProductAlgebra<IntPred, Integer, IntPred, Integer>(
+				ba, ba);
+		for (int round = 0; round < 50; round++) {
+			CartesianProduct<IntPred, IntPred> p = randomProduct(ba, random);
+			CartesianProduct<IntPred, IntPred> q = randomProduct(ba, random);
+			CartesianProduct<IntPred, IntPred> not = pba.MkNot(p);
+			CartesianProduct<IntPred, IntPred> or = pba.MkOr(p, q);
+			CartesianProduct<IntPred, IntPred> and = pba.MkAnd(p, q);
+
+			boolean same = true;
+			for (int x = 0; x <= MAX; x++)
+				for (int y = 0; y <= MAX; y++) {
+					Pair<Integer, Integer> el = new Pair<Integer, Integer>(x, y);
+					boolean inP = pba.HasModel(p, el);
+					boolean inQ = pba.HasModel(q, el);
+					same &= inP == inQ;
+					assertEquals(!inP, pba.HasModel(not, el));
+					assertEquals(inP || inQ, pba.HasModel(or, el));
+					assertEquals(inP && inQ, pba.HasModel(and, el));
+				}
+
+			assertEquals(same, pba.AreEquivalent(p, q));
+			assertTrue(pba.AreEquivalent(p, pba.MkOr(p, p)));
+			assertTrue(pba.AreEquivalent(p, pba.MkNot(not)));
+			assertFalse(pba.AreEquivalent(p, not));
+
+			// normalization keeps the set of pairs and makes the first
+			// components disjoint
+			List<Pair<IntPred, IntPred>> products = new ArrayList<Pair<IntPred, IntPred>>(p.getProducts());
+			CartesianProduct<IntPred, IntPred> normal = new CartesianProduct<IntPred, IntPred>(products);
+			normal.normalize(ba, ba);
+			assertTrue(pba.AreEquivalent(p, normal));
+			List<Pair<IntPred, IntPred>> cells = normal.getProducts();
+			for (int i = 0; i < cells.size(); i++)
+				for (int j = i + 1; j < cells.size(); j++) {
+					assertFalse(ba.IsSatisfiable(ba.MkAnd(cells.get(i).first, cells.get(j).first)));
+					assertFalse(ba.AreEquivalent(cells.get(i).second, cells.get(j).second));
+				}
+		}
+	}
+
+	// A union of up to three products of intervals in [0,MAX]; the intervals
+	// of the first components are sometimes unbounded, within the domain of ba
+	private CartesianProduct<IntPred, IntPred> randomProduct(BooleanAlgebra<IntPred, Integer> ba, Random random)
+			throws TimeoutException {
+		List<Pair<IntPred, IntPred>> products = new ArrayList<Pair<IntPred, IntPred>>();
+		int size = random.nextInt(4);
+		for (int i = 0; i < size; i++) {
+			int a = random.nextInt(MAX + 1);
+			int b = a + random.nextInt(MAX + 1 - a);
+			int c = random.nextInt(MAX + 1);
+			int d = c + random.nextInt(MAX + 1 - c);
+			IntPred first = new IntPred(a == 0 && random.nextBoolean() ? null : a,
+					b == MAX && random.nextBoolean() ? null : b);
+			products.add(new Pair<IntPred, IntPred>(ba.MkAnd(ba.True(), first), new IntPred(c, d)));
+		}
+		return new CartesianProduct<IntPred, IntPred>(products);
+	}
+}
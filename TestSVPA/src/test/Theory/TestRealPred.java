@@ -11,6 +11,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.*;
+import utilities.Pair;
 import utilities.Quadruple;
 
 public class TestRealPred {
@@ -52,6 +53,64 @@ public class TestRealPred {
 		assertTrue(ba.AreEquivalent(p7, p8));
 	}
 	
+	@Test
+	public void testNormalForm() {
+		RealPred p = ba.MkOr(new RealPred(0.0, false, 1.0, true), new RealPred(1.0, false, 2.0, false));
+		assertTrue(p.equals(new RealPred(0.0, false, 2.0, false)));
+		assertTrue(p.toString().equals("[0.0,2.0]"));
+		
+		RealPred q = ba.MkOr(new RealPred(0.0, true, 1.0, true), new RealPred(1.0, true, 2.0, true));
+		assertFalse(q.isSatisfiedBy(1.0));
+		assertTrue(q.getIntervals().size() == 2);
+		assertTrue(ba.MkNot(q).isSatisfiedBy(1.0));
+		assertTrue(ba.MkNot(ba.MkNot(q)).equals(q));
+		assertTrue(StdRealPred.TRUE.isSatisfiedBy(Double.POSITIVE_INFINITY));
+	}
+	
+	@Test
+	public void testMinterms() {
+		ArrayList<RealPred> preds = new ArrayList<RealPred>(Arrays.asList(
+				new RealPred(0.0, false, 1.0, true),
+				new RealPred(0.5, true, null, false),
+				new RealPred(1.0)));
+		Collection<Pair<RealPred, ArrayList<Integer>>> minterms = ba.GetMinterms(preds);
+		
+		double[] samples = {-1.0, 0.0, 0.25, 0.5, 0.75, 1.0, 1.5};
+		Set<ArrayList<Integer>> bits = new HashSet<ArrayList<Integer>>();
+		for (Pair<RealPred, ArrayList<Integer>> minterm : minterms)
+			assertTrue(bits.add(minterm.second));
+		for (double x : samples) {
+			int count = 0;
+			for (Pair<RealPred, ArrayList<Integer>> minterm : minterms)
+				if (minterm.first.isSatisfiedBy(x)) {
+					count++;
+					for (int k = 0; k < preds.size(); k++)
+						assertTrue(preds.get(k).isSatisfiedBy(x) == (minterm.second.get(k) == 1));
+				}
+			assertTrue(count == 1);
+		}
+		assertTrue(minterms.size() == 5);
+	}
+	
+	@Test
+	public void testSignedZero() {
+		RealPred zero = new RealPred(0.0);
+		RealPred negativeZero = new RealPred(-0.0);
+		assertTrue(zero.equals(negativeZero));
+		assertTrue(zero.hashCode() == negativeZero.hashCode());
+		assertTrue(ba.AreEquivalent(zero, negativeZero));
+		assertTrue(ba.MkNot(negativeZero).equals(ba.MkNot(zero)));
+		
+		ArrayList<RealPred> preds = new ArrayList<RealPred>(Arrays.asList(
+				new RealPred(-0.0, false, 1.0, false),
+				new RealPred(0.0, false, 2.0, false)));
+		Collection<Pair<RealPred, ArrayList<Integer>>> minterms = ba.GetMinterms(preds);
+		assertTrue(minterms.size() == 3);
+		for (Pair<RealPred, ArrayList<Integer>> minterm : minterms)
+			if (minterm.first.isSatisfiedBy(0.0))
+				assertTrue(minterm.second.equals(Arrays.asList(1, 1)));
+	}
+	
 	/*
 	@Test
 	public void testGetSep() {
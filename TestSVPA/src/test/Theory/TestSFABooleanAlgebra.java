@@ -0,0 +1,102 @@
+package test.Theory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import theory.sfa.SFABooleanAlgebra;
+
+public class TestSFABooleanAlgebra {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	SFABooleanAlgebra<CharPred, Character> sba = new SFABooleanAlgebra<CharPred, Character>(ba);
+
+	@Test
+	public void testIsSatisfiable() throws TimeoutException {
+		assertFalse(sba.IsSatisfiable(sba.False()));
+		assertTrue(sba.IsSatisfiable(sba.True()));
+		assertTrue(sba.IsSatisfiable(sba.MkAtom(Arrays.asList('a', 'b'))));
+
+		// the final state is only reachable through an epsilon move
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('a')));
+		transitions.add(new SFAEpsilon<CharPred, Character>(1, 2));
+		SFA<CharPred, Character> eps = SFA.MkSFA(transitions, 0, Arrays.asList(2), ba, false, false);
+		assertTrue(sba.IsSatisfiable(eps));
+
+		// a final state that is not reachable
+		transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 1, new CharPred('a')));
+		transitions.add(new SFAInputMove<CharPred, Character>(2, 1, new CharPred('b')));
+		SFA<CharPred, Character> dead = SFA.MkSFA(transitions, 0, Arrays.asList(2), ba, false, false, true);
+		assertFalse(sba.IsSatisfiable(dead));
+
+		Random random = new Random(3);
+		for (int i = 0; i < 100; i++) {
+			SFA<CharPred, Character> aut = randomSFA(random);
+			assertEquals(!SFA.areEquivalent(aut, SFA.getEmptySFA(ba), ba), sba.IsSatisfiable(aut));
+		}
+	}
+
+	@Test
+	public void testNaryOperations() throws TimeoutException {
+		assertTrue(SFA.areEquivalent(sba.True(), sba.MkAnd(new ArrayList<SFA<CharPred, Character>>()), ba));
+		assertFalse(sba.IsSatisfiable(sba.MkOr(new ArrayList<SFA<CharPred, Character>>())));
+
+		Random random = new Random(11);
+		for (int round = 0; round < 30; round++) {
+			List<SFA<CharPred, Character>> auts = new ArrayList<SFA<CharPred, Character>>();
+			int size = 1 + random.nextInt(5);
+			for (int i = 0; i < size; i++)
+				auts.add(random.nextInt(10) == 0 ? sba.False() : randomSFA(random));
+
+			SFA<CharPred, Character> and = SFA.getFullSFA(ba);
+			SFA<CharPred, Character> or = SFA.getEmptySFA(ba);
+			for (SFA<CharPred, Character> aut : auts) {
+				and = and.intersectionWith(aut, ba);
+				or = or.unionWith(aut, ba);
+			}
+			assertTrue(SFA.areEquivalent(and, sba.MkAnd(auts), ba));
+			assertTrue(SFA.areEquivalent(or, sba.MkOr(auts), ba));
+		}
+	}
+
+	// A small SFA over a, b and c, with epsilon moves
+	private SFA<CharPred, Character> randomSFA(Random random) throws TimeoutException {
+		int states = 1 + random.nextInt(4);
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		for (int t = 0; t < 2 * states; t++) {
+			int from = random.nextInt(states);
+			int to = random.nextInt(states);
+			if (random.nextInt(5) == 0)
+				transitions.add(new SFAEpsilon<CharPred, Character>(from, to));
+			else {
+				char a = (char) ('a' + random.nextInt(3));
+				char b = (char) ('a' + random.nextInt(3));
+				transitions.add(new SFAInputMove<CharPred, Character>(from, to,
+						new CharPred((char) Math.min(a, b), (char) Math.max(a, b))));
+			}
+		}
+		List<Integer> finals = new ArrayList<Integer>();
+		for (int q = 0; q < states; q++)
+			if (random.nextInt(3) == 0)
+				finals.add(q);
+		return SFA.MkSFA(transitions, 0, finals, ba, false, false, true);
+	}
+}
@@ -6,11 +6,20 @@ import org.junit.BeforeClass;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.sat4j.specs.TimeoutException;
 
 import automata.sfa.SFAMove;
+import strings.BoundedEditDistanceMatcher;
+import strings.EditDistanceRepair;
 import strings.EditDistanceStrToSFA;
 import automata.sfa.SFA;
 import utilities.Pair;
@@ -38,6 +47,10 @@ public class StringCorrectionUnitTest {
 	private static SFA<CharPred, Character> mySA41;
 	private static SFA<CharPred, Character> mySA42;
 	private static UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	// all the automata above, and the strings to repair against each of them
+	private static List<SFA<CharPred, Character>> sfas;
+	private static List<String> strings = Arrays.asList("", "a", "b", "aa", "ab", "bc", "aaa", "abc", "acb", "bce",
+			"cde", "abba", "aab", "abcad", "abcde", "bcaab", "accbc", "aaabbbccc", "aaaaaaaaa");
 
 	@BeforeClass
 	public static void before() throws Exception {
@@ -185,6 +198,9 @@ public class StringCorrectionUnitTest {
 		finStates42.add(1);
 		finStates42.add(3);
 		mySA42 = SFA.MkSFA(transitions42, 1, finStates42, ba);
+
+		sfas = Arrays.asList(mySA11, mySA12, mySA13, mySA21, mySA22, mySA23, mySA24, mySA25, mySA26, mySA31, mySA32,
+				mySA33, mySA34, mySA35, mySA41, mySA42);
 	}
 
 	/**
@@ -559,4 +575,95 @@ public class StringCorrectionUnitTest {
 		correctString = EditDistanceStrToSFA.getCorrectString(mySA42, "aab");
 		assertTrue(correctString.equals("abaa") || correctString.equals("aa"));
 	}
+
+	/**
+	 *
+	 * Method: EditDistanceRepair.distance(String inpStr), repair(String inpStr)
+	 *
+	 */
+	@Test
+	public void testEditDistanceRepair() throws Exception {
+		for (SFA<CharPred, Character> sfa : sfas) {
+			EditDistanceRepair repair = new EditDistanceRepair(sfa, ba);
+			for (String s : strings) {
+				int distance = repair.distance(s);
+				// EditDistanceStrToSFA does not insert characters into the empty string
+				if (!s.isEmpty())
+					assertEquals(EditDistanceStrToSFA.computeShortestEditDistance(sfa, s), distance);
+				String correctString = repair.repair(s);
+				if (distance < 0) {
+					assertTrue(correctString == null);
+				} else {
+					assertTrue(sfa.accepts(lOfS(correctString), ba));
+					assertEquals(distance, EditDistanceStrToStr.getEditDistance(s, correctString));
+				}
+			}
+		}
+
+		assertEquals(5, new EditDistanceRepair(mySA32, ba).distance(""));
+		assertEquals("abcde", new EditDistanceRepair(mySA32, ba).repair(""));
+
+		// bounded distance
+		EditDistanceRepair bounded = new EditDistanceRepair(mySA32, ba, 2);
+		assertEquals(2, bounded.distance("bce"));
+		assertEquals("abcde", bounded.repair("bce"));
+		assertEquals(-1, bounded.distance("aaaaaaaaa"));
+		assertTrue(bounded.repair("ab") == null);
+
+		// the same engine used from several threads
+		final EditDistanceRepair shared = new EditDistanceRepair(mySA35, ba);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> distances = new ArrayList<Future<Integer>>();
+			for (int k = 0; k < 200; k++) {
+				final String s = strings.get(k % strings.size());
+				distances.add(executor.submit(new Callable<Integer>() {
+					public Integer call() {
+						return shared.distance(s);
+					}
+				}));
+			}
+			for (int k = 0; k < 200; k++)
+				assertEquals(shared.distance(strings.get(k % strings.size())), distances.get(k).get().intValue());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * Method: BoundedEditDistanceMatcher.distance(String inpStr)
+	 *
+	 */
+	@Test
+	public void testBoundedEditDistanceMatcher() throws TimeoutException {
+		for (SFA<CharPred, Character> sfa : sfas) {
+			EditDistanceRepair repair = new EditDistanceRepair(sfa, ba);
+			for (int k = 0; k <= 3; k++) {
+				BoundedEditDistanceMatcher matcher = new BoundedEditDistanceMatcher(sfa, ba, k);
+				for (String s : strings) {
+					int distance = repair.distance(s);
+					int expected = distance > k ? -1 : distance;
+					// EditDistanceStrToSFA does not insert characters into the empty string
+					if (!s.isEmpty())
+						assertEquals(EditDistanceStrToSFA.computeShortestEditDistance(sfa, s), distance);
+					assertEquals(expected, matcher.distance(s));
+					assertEquals(expected >= 0, matcher.matches(s));
+				}
+			}
+		}
+
+		// characters outside of all guards
+		BoundedEditDistanceMatcher matcher = new BoundedEditDistanceMatcher(mySA32, ba, 1);
+		assertEquals(1, matcher.distance("abcd\u4e2d"));
+		assertEquals(1, matcher.distance("abcd"));
+		assertEquals(-1, matcher.distance("\u4e2d\u4e2dcde"));
+	}
+
+	private static List<Character> lOfS(String s) {
+		List<Character> l = new ArrayList<Character>();
+		for (char c : s.toCharArray())
+			l.add(c);
+		return l;
+	}
 }